@@ -0,0 +1,171 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.BatchGenerator;
+import edu.hawaii.ctfoo.lang_generator.GenerationResult;
+import edu.hawaii.ctfoo.lang_generator.Parser;
+
+/**
+ * Measures generating the sentences of a file of samples with a
+ * {@link BatchGenerator}, against reading the same file one line at a time
+ * through a {@link BufferedReader} like the Generator reads STDIN. The rate
+ * of the "megabytes" counter is the throughput in MB/s.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class BatchBenchmark {
+
+    /**
+     * The size of the file in MB.
+     */
+    private static final int MEGABYTES = 4;
+
+    /**
+     * The number of worker threads of the batch.
+     */
+    @Param({ "1", "4" })
+    public int threads;
+
+    /**
+     * The file of samples.
+     */
+    private Path file;
+
+    /**
+     * The Parser used by the line at a time path.
+     */
+    private final Parser parser = new Parser();
+
+    /**
+     * Discards the sentences.
+     */
+    private final PrintStream nowhere = new PrintStream(
+            OutputStream.nullOutputStream());
+
+    /**
+     * Counts the MB read.
+     *
+     * @author Christopher Foo
+     *
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        /**
+         * The number of MB read in this iteration.
+         */
+        public double megabytes;
+
+        /**
+         * Resets the counter before each iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.megabytes = 0;
+        }
+    }
+
+    /**
+     * Writes the samples to a temporary file until it is {@link #MEGABYTES}
+     * long.
+     *
+     * @throws IOException
+     *             If the file could not be written.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        String[] kinds = { "buy", "sell", "findgroup", "findmore" };
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < MEGABYTES << 20; i++) {
+            text.append(Samples.get(kinds[i % kinds.length])).append('\n');
+        }
+        this.file = Files.createTempFile("batch", ".txt");
+        Files.write(this.file, text.toString().getBytes(
+                Charset.defaultCharset()));
+    }
+
+    /**
+     * Deletes the file.
+     *
+     * @throws IOException
+     *             If the file could not be deleted.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(this.file);
+    }
+
+    /**
+     * Generates the file with a {@link BatchGenerator}.
+     *
+     * @param counters
+     *            The counters of the iteration.
+     * @throws IOException
+     *             If the file could not be read.
+     */
+    @Benchmark
+    public void batch(Counters counters) throws IOException {
+        long bytes = new BatchGenerator(this.threads,
+                BatchGenerator.DEFAULT_CHUNK_SIZE, null).run(this.file,
+                this.nowhere, this.nowhere);
+        counters.megabytes += bytes / (1024.0 * 1024.0);
+    }
+
+    /**
+     * Generates the file one line at a time on the calling thread.
+     *
+     * @param counters
+     *            The counters of the iteration.
+     * @throws IOException
+     *             If the file could not be read.
+     */
+    @Benchmark
+    public void lines(Counters counters) throws IOException {
+        BufferedReader in = Files.newBufferedReader(this.file,
+                Charset.defaultCharset());
+        try {
+            String line = in.readLine();
+            while (line != null) {
+                for (String sentence : GenerationResult.generate(
+                        this.parser, line).getSentences()) {
+                    this.nowhere.println(sentence);
+                }
+                line = in.readLine();
+            }
+        } finally {
+            in.close();
+        }
+        counters.megabytes += Files.size(this.file) / (1024.0 * 1024.0);
+    }
+}
@@ -0,0 +1,133 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.GenerationResult;
+import edu.hawaii.ctfoo.lang_generator.Parser;
+import edu.hawaii.ctfoo.lang_generator.ResultCache;
+import edu.hawaii.ctfoo.lang_generator.WorkloadGenerator;
+
+/**
+ * Measures the throughput of generating a stream of representations in which
+ * a share of the lines are reposts, with and without a {@link ResultCache}.
+ * Reposts are drawn from a set of popular listings with a heavy tailed
+ * distribution, like the listings reposted in a trade channel, and the other
+ * lines are seen only once.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+    /**
+     * The number of lines in the stream, which is replayed from the start
+     * once it has been used up.
+     */
+    private static final int STREAM_LENGTH = 1 << 16;
+
+    /**
+     * The number of popular listings that are reposted.
+     */
+    private static final int POPULAR_LISTINGS = 1024;
+
+    /**
+     * The maximum weight of the cache, a few thousand entries.
+     */
+    private static final long CACHE_WEIGHT = 1 << 20;
+
+    /**
+     * The share of the lines that are reposts.
+     */
+    @Param({ "0.5", "0.8", "0.95" })
+    public double duplicateRate;
+
+    /**
+     * If the results are cached.
+     */
+    @Param({ "true", "false" })
+    public boolean cached;
+
+    /**
+     * The lines generated in turn.
+     */
+    private String[] stream;
+
+    /**
+     * The index of the next line.
+     */
+    private int next;
+
+    /**
+     * The Parser used on every miss.
+     */
+    private final Parser parser = new Parser();
+
+    /**
+     * The cache or null if the results are not cached.
+     */
+    private ResultCache cache;
+
+    /**
+     * Generates the stream of lines and creates an empty cache.
+     */
+    @Setup
+    public void setUp() {
+        WorkloadGenerator workload = new WorkloadGenerator(42);
+        String[] popular = new String[POPULAR_LISTINGS];
+        for (int i = 0; i < popular.length; i++) {
+            popular[i] = workload.next();
+        }
+
+        Random random = new Random(42);
+        this.stream = new String[STREAM_LENGTH];
+        for (int i = 0; i < this.stream.length; i++) {
+            if (random.nextDouble() < this.duplicateRate) {
+
+                // Pareto distributed rank, most reposts are of a few listings
+                double rank = Math.pow(1 - random.nextDouble(), -1 / 1.1) - 1;
+                this.stream[i] = popular[(int) Math.min(rank,
+                        POPULAR_LISTINGS - 1)];
+            } else {
+                this.stream[i] = workload.next();
+            }
+        }
+
+        this.next = 0;
+        this.cache = this.cached ? new ResultCache(CACHE_WEIGHT,
+                ResultCache.DEFAULT_THREAD_CACHE_SIZE) : null;
+    }
+
+    /**
+     * Generates the sentences of the next line of the stream.
+     *
+     * @return The result of the line.
+     */
+    @Benchmark
+    public GenerationResult generate() {
+        String input = this.stream[this.next];
+        this.next = (this.next + 1) & (STREAM_LENGTH - 1);
+        if (this.cache == null) {
+            return GenerationResult.generate(this.parser, input);
+        }
+        return this.cache.get(this.parser, input);
+    }
+}
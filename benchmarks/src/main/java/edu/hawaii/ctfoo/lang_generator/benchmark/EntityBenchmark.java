@@ -0,0 +1,96 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.CouldNotParseException;
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.Tree;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
+import edu.hawaii.ctfoo.lang_generator.TypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.entity.Entity;
+import edu.hawaii.ctfoo.lang_generator.entity.EntityRegistry;
+
+/**
+ * Measures creating an {@link Entity} from its node through the
+ * {@link EntityRegistry} against the reflective lookup that the sentences
+ * used before it, which found the class by the name of the token type and
+ * called its constructor that takes the node.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+
+    /**
+     * The package of the entity classes, used to find them by name.
+     */
+    private static final String ENTITY_PACKAGE = "edu.hawaii.ctfoo.lang_generator.entity.";
+
+    /**
+     * The type of the entity to create.
+     */
+    @Param({ "item", "player", "instance" })
+    public String type;
+
+    /**
+     * The node of the entity.
+     */
+    private Tree<ParseToken> node;
+
+    /**
+     * Parses a sample holding an entity of the {@link type} and finds its
+     * node.
+     *
+     * @throws CouldNotParseException
+     *             If the sample could not be parsed.
+     */
+    @Setup
+    public void setUp() throws CouldNotParseException {
+        String kind = this.type.equals("item") ? "buy" : "findgroup";
+        Tree<ParseToken> root = Samples.trees(Samples.get(kind)).get(0);
+        this.node = root.findAll(this.type, new TypeMatcher()).get(0);
+    }
+
+    /**
+     * Creates the entity through the registry.
+     *
+     * @return The new entity.
+     */
+    @Benchmark
+    public Entity registry() {
+        return EntityRegistry.create(this.node);
+    }
+
+    /**
+     * Creates the entity by looking up its class and constructor
+     * reflectively every time, the baseline for the registry.
+     *
+     * @return The new entity.
+     * @throws ReflectiveOperationException
+     *             If the class or constructor could not be found or called.
+     */
+    @Benchmark
+    public Entity reflection() throws ReflectiveOperationException {
+        return Class.forName(ENTITY_PACKAGE + this.node.getNode().getType())
+                .asSubclass(Entity.class).getConstructor(TreeView.class)
+                .newInstance(this.node);
+    }
+}
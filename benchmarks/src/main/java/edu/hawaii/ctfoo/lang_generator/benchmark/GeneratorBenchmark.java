@@ -0,0 +1,81 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.Generator;
+
+/**
+ * Measures the String helpers of the {@link Generator}:
+ * {@link Generator#appendCommaList(List, StringBuilder, String, String...)}
+ * with nested lists and {@link Generator#pluralize(String)} with regular,
+ * irregular and unchanged words.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    /**
+     * A list of alternatives, one of which is itself a list.
+     */
+    private final List<?> list = Arrays.asList("2 Healers",
+            Arrays.asList("1 Mage", "1 Rogue"), "4 Dps");
+
+    /**
+     * The words pluralized in turn.
+     */
+    private final String[] words = { "Sword of Doom", "Staff", "Boots",
+            "Knife", "Mage", "Ruby" };
+
+    /**
+     * Reused for every list so that only the list formatting allocates.
+     */
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * The index of the next word to pluralize.
+     */
+    private int next;
+
+    /**
+     * Formats the nested list.
+     *
+     * @return The length of the formatted list.
+     */
+    @Benchmark
+    public int appendCommaList() {
+        this.builder.setLength(0);
+        Generator.appendCommaList(this.list, this.builder, "or", "and");
+        return this.builder.length();
+    }
+
+    /**
+     * Pluralizes the next word.
+     *
+     * @return The plural form.
+     */
+    @Benchmark
+    public String pluralize() {
+        String word = this.words[this.next];
+        this.next = (this.next + 1) % this.words.length;
+        return Generator.pluralize(word);
+    }
+}
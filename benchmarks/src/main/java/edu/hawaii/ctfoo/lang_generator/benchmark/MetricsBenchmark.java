@@ -0,0 +1,101 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.CouldNotParseException;
+import edu.hawaii.ctfoo.lang_generator.GeneratorMetrics;
+import edu.hawaii.ctfoo.lang_generator.Parser;
+import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
+
+/**
+ * Measures the overhead of the {@link GeneratorMetrics} by parsing and
+ * rendering every sample with the metrics enabled and disabled.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    /**
+     * If the metrics are recorded.
+     */
+    @Param({ "true", "false" })
+    public boolean enabled;
+
+    /**
+     * The samples parsed in turn.
+     */
+    private final String[] inputs = { Samples.BUY, Samples.SELL,
+            Samples.FIND_GROUP, Samples.FIND_MORE };
+
+    /**
+     * The Parser used for every sample.
+     */
+    private final Parser parser = new Parser();
+
+    /**
+     * Reused for every render.
+     */
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * The metrics that are turned on or off.
+     */
+    private final GeneratorMetrics metrics = GeneratorMetrics.getDefault();
+
+    /**
+     * Turns the metrics on or off.
+     */
+    @Setup
+    public void setUp() {
+        this.metrics.setEnabled(this.enabled);
+    }
+
+    /**
+     * Turns the metrics back on.
+     */
+    @TearDown
+    public void tearDown() {
+        this.metrics.setEnabled(true);
+    }
+
+    /**
+     * Parses and renders all of the samples.
+     *
+     * @return The total length of the rendered sentences.
+     * @throws CouldNotParseException
+     *             If a sample could not be parsed.
+     */
+    @Benchmark
+    public int parseAndRender() throws CouldNotParseException {
+        int length = 0;
+        for (String input : this.inputs) {
+            for (Sentence sentence : this.parser.parseToResult(input)
+                    .getSentences()) {
+                this.builder.setLength(0);
+                this.metrics.render(sentence, this.builder);
+                length += this.builder.length();
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,91 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.CouldNotParseException;
+import edu.hawaii.ctfoo.lang_generator.Parser;
+import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
+
+/**
+ * Measures {@link Parser#parse(String)}, which lexes a representation and
+ * builds its trees, and {@link Parser#generateSentences()}, which builds the
+ * {@link Sentence}s of the trees.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    /**
+     * The kind of sentence to parse.
+     */
+    @Param({ "buy", "sell", "findgroup", "findmore" })
+    public String kind;
+
+    /**
+     * The representation of the sentence.
+     */
+    private String input;
+
+    /**
+     * The Parser, which already holds the parse of the input for
+     * {@link #generateSentences()}.
+     */
+    private Parser parser;
+
+    /**
+     * Parses the input once so the sentences can be generated from it.
+     *
+     * @throws CouldNotParseException
+     *             If the sample could not be parsed.
+     */
+    @Setup
+    public void setUp() throws CouldNotParseException {
+        this.input = Samples.get(this.kind);
+        this.parser = new Parser();
+        this.parser.parse(this.input);
+    }
+
+    /**
+     * Lexes the representation and builds its trees.
+     *
+     * @return The Parser holding the parse, so it is not optimized away.
+     * @throws CouldNotParseException
+     *             If the sample could not be parsed.
+     */
+    @Benchmark
+    public Parser parse() throws CouldNotParseException {
+        Parser fresh = new Parser();
+        fresh.parse(this.input);
+        return fresh;
+    }
+
+    /**
+     * Builds the sentences of the parsed trees.
+     *
+     * @return The sentences.
+     */
+    @Benchmark
+    public List<Sentence> generateSentences() {
+        return this.parser.generateSentences();
+    }
+}
@@ -0,0 +1,101 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.CouldNotParseException;
+import edu.hawaii.ctfoo.lang_generator.GeneratorMetrics;
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.Tree;
+import edu.hawaii.ctfoo.lang_generator.sentence.RenderPlans;
+import edu.hawaii.ctfoo.lang_generator.sentence.SentenceRegistry;
+
+/**
+ * Measures building and rendering the sentence of a parse tree whose shape
+ * keeps recurring, once through its {@link SentenceRegistry Sentence} and
+ * once with the compiled plan of its shape from {@link RenderPlans}.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanBenchmark {
+
+    /**
+     * The kind of sentence to render.
+     */
+    @Param({ "buy", "sell", "findgroup", "findmore" })
+    public String kind;
+
+    /**
+     * The parse tree of the sample.
+     */
+    private Tree<ParseToken> root;
+
+    /**
+     * The plans, holding the plan of the sample's shape.
+     */
+    private RenderPlans plans;
+
+    /**
+     * Reused for every render.
+     */
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Parses the sample and renders it twice, which compiles the plan of its
+     * shape.
+     *
+     * @throws CouldNotParseException
+     *             If the sample could not be parsed.
+     */
+    @Setup
+    public void setUp() throws CouldNotParseException {
+        this.root = Samples.trees(Samples.get(this.kind)).get(0);
+        this.plans = new RenderPlans(RenderPlans.DEFAULT_MAXIMUM_PLANS, true);
+        this.plans.render(this.root, this.builder);
+        this.plans.render(this.root, this.builder);
+    }
+
+    /**
+     * Builds the sentence and renders it into the reused builder.
+     *
+     * @return The length of the rendered sentence.
+     */
+    @Benchmark
+    public int sentence() {
+        this.builder.setLength(0);
+        GeneratorMetrics.getDefault().render(
+                SentenceRegistry.create(this.root), this.builder);
+        return this.builder.length();
+    }
+
+    /**
+     * Renders the sentence into the reused builder with the plan of its
+     * shape.
+     *
+     * @return The length of the rendered sentence.
+     */
+    @Benchmark
+    public int plan() {
+        this.builder.setLength(0);
+        this.plans.render(this.root, this.builder);
+        return this.builder.length();
+    }
+}
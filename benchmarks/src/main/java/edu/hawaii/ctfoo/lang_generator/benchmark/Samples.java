@@ -0,0 +1,112 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import edu.hawaii.ctfoo.lang_generator.CouldNotParseException;
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.Parser;
+import edu.hawaii.ctfoo.lang_generator.Tree;
+import edu.hawaii.ctfoo.lang_generator.TreeReader;
+import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
+
+/**
+ * The semantic representations used by the benchmarks, one for each kind of
+ * sentence. Each uses most of the features of its sentence so that the
+ * benchmarks cover the same paths as real input.
+ *
+ * @author Christopher Foo
+ *
+ */
+final class Samples {
+
+    /**
+     * A buy sentence with a named item, a player and a contact method.
+     */
+    static final String BUY = "buy(a) object(a,b) item(b,c) name(c,\"Sword of Doom\") "
+            + "quantity(c,2) subject(a,d) player(d,e) class(e,Warrior) "
+            + "contactmethod(a,\"PST\")";
+
+    /**
+     * A sell sentence with an alternative item and a price in gold.
+     */
+    static final String SELL = "sell(a) object(a,b) item(b,c) type(c,Helm) rarity(c,Epic) "
+            + "level(c,70) value(c,v) moneyamount(v,m) denomination(m,1500) "
+            + "currency(m,Gold) ; item(b,f) name(f,Shield) subject(a,d) "
+            + "player(d,e) role(e,Tank) quantity(e,3)";
+
+    /**
+     * A find group sentence with a detailed player and instance.
+     */
+    static final String FIND_GROUP = "findgroup(a) subject(a,b) player(b,c) class(c,Thief) "
+            + "specialization(c,Shadow) race(c,Elf) level(c,60) itemlevel(c,300) "
+            + "object(a,d) instance(d,e) name(e,\"Molten Core\") mode(e,Raid) "
+            + "difficulty(e,Heroic)";
+
+    /**
+     * A find more sentence with nested player lists and alternative
+     * instances.
+     */
+    static final String FIND_MORE = "findmore(a) object(a,b) player(b,c) role(c,Healer) "
+            + "quantity(c,2) , player(b,d) class(d,Mage) ; player(b,g) role(g,Dps) "
+            + "quantity(g,4) instance(a,e) name(e,Deadmines) ; instance(a,f) "
+            + "name(f,\"Stockade\")";
+
+    /**
+     * Prevents Samples from being instantiated.
+     */
+    private Samples() {
+    }
+
+    /**
+     * Gets the representation of the given kind of sentence.
+     *
+     * @param kind
+     *            "buy", "sell", "findgroup" or "findmore".
+     * @return The representation of that kind.
+     */
+    static String get(String kind) {
+        if (kind.equals("buy")) {
+            return BUY;
+        } else if (kind.equals("sell")) {
+            return SELL;
+        } else if (kind.equals("findgroup")) {
+            return FIND_GROUP;
+        } else if (kind.equals("findmore")) {
+            return FIND_MORE;
+        }
+        throw new IllegalArgumentException("Unknown sentence kind: " + kind);
+    }
+
+    /**
+     * Parses the representation of the given kind of sentence into its
+     * single {@link Sentence}.
+     *
+     * @param kind
+     *            "buy", "sell", "findgroup" or "findmore".
+     * @return The sentence of the representation.
+     * @throws CouldNotParseException
+     *             If the sample could not be parsed.
+     */
+    static Sentence sentence(String kind) throws CouldNotParseException {
+        return new Parser().parseToResult(get(kind)).getSentences().get(0);
+    }
+
+    /**
+     * Parses the given representation into its mutable {@link Tree}s, for
+     * the benchmarks of the Tree form itself. The trees of a
+     * {@link Parser#parseToResult(CharSequence)} are read-only views instead.
+     *
+     * @param input
+     *            The semantic representation.
+     * @return The parse trees of the representation.
+     * @throws CouldNotParseException
+     *             If the representation could not be parsed.
+     */
+    static List<Tree<ParseToken>> trees(String input)
+            throws CouldNotParseException {
+        return new TreeReader(ByteBuffer.wrap(input
+                .getBytes(StandardCharsets.UTF_8))).next();
+    }
+}
@@ -0,0 +1,84 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.CouldNotParseException;
+import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
+
+/**
+ * Measures the rendering of each kind of {@link Sentence}, both through
+ * {@link Sentence#toString()} and into a reused builder with
+ * {@link Sentence#render(StringBuilder)}.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SentenceBenchmark {
+
+    /**
+     * The kind of sentence to render.
+     */
+    @Param({ "buy", "sell", "findgroup", "findmore" })
+    public String kind;
+
+    /**
+     * The sentence to render.
+     */
+    private Sentence sentence;
+
+    /**
+     * Reused for every render.
+     */
+    private final StringBuilder builder = new StringBuilder();
+
+    /**
+     * Builds the sentence of the sample.
+     *
+     * @throws CouldNotParseException
+     *             If the sample could not be parsed.
+     */
+    @Setup
+    public void setUp() throws CouldNotParseException {
+        this.sentence = Samples.sentence(this.kind);
+    }
+
+    /**
+     * Renders the sentence into a new String.
+     *
+     * @return The rendered sentence.
+     */
+    @Benchmark
+    public String sentenceToString() {
+        return this.sentence.toString();
+    }
+
+    /**
+     * Renders the sentence into the reused builder.
+     *
+     * @return The length of the rendered sentence.
+     */
+    @Benchmark
+    public int render() {
+        this.builder.setLength(0);
+        this.sentence.render(this.builder);
+        return this.builder.length();
+    }
+}
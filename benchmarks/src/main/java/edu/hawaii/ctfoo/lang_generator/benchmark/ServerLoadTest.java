@@ -0,0 +1,322 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import edu.hawaii.ctfoo.lang_generator.GeneratorServer;
+import edu.hawaii.ctfoo.lang_generator.WorkloadGenerator;
+
+/**
+ * A load test of a running {@link GeneratorServer}. Each client posts the
+ * representations of its own {@link WorkloadGenerator} to the server one at a
+ * time over a kept alive connection, as fast as the server answers. After a
+ * warm-up the requests are counted for a fixed time and the throughput, the
+ * median and 99th percentile latency and the number of requests rejected
+ * with status 503 are printed. Run it with
+ *
+ * <pre>
+ * gradle :benchmarks:loadTest -PloadTestArgs="--clients 32 --duration 10"
+ * </pre>
+ *
+ * against a server started with <code>-Dsun.net.httpserver.nodelay=true</code>,
+ * see {@link GeneratorServer}.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class ServerLoadTest {
+
+    /**
+     * The size of the buffer the responses are read into.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The URL the representations are posted to.
+     */
+    private final URL url;
+
+    /**
+     * The number of clients.
+     */
+    private final int clients;
+
+    /**
+     * The seed of the first client's workload. Each client adds its index.
+     */
+    private final long seed;
+
+    /**
+     * If the requests are counted. Set after the warm-up.
+     */
+    private volatile boolean measuring;
+
+    /**
+     * If the clients keep sending requests.
+     */
+    private volatile boolean running;
+
+    /**
+     * Creates a new ServerLoadTest.
+     *
+     * @param url
+     *            The URL the representations are posted to.
+     * @param clients
+     *            The number of clients.
+     * @param seed
+     *            The seed of the first client's workload.
+     */
+    private ServerLoadTest(URL url, int clients, long seed) {
+        this.url = url;
+        this.clients = clients;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the clients for the warm-up and the measurement and prints the
+     * results.
+     *
+     * @param warmupMillis
+     *            The length of the warm-up in milliseconds.
+     * @param durationMillis
+     *            The length of the measurement in milliseconds.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting for the
+     *             clients.
+     */
+    private void run(long warmupMillis, long durationMillis)
+            throws InterruptedException {
+        Client[] workers = new Client[this.clients];
+        Thread[] threads = new Thread[this.clients];
+        this.running = true;
+        for (int i = 0; i < this.clients; i++) {
+            workers[i] = new Client(new WorkloadGenerator(this.seed + i));
+            threads[i] = new Thread(workers[i], "load-client-" + i);
+            threads[i].start();
+        }
+
+        Thread.sleep(warmupMillis);
+        this.measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(durationMillis);
+        this.measuring = false;
+        long elapsed = System.nanoTime() - start;
+        this.running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int count = 0;
+        long rejected = 0;
+        long failed = 0;
+        for (Client worker : workers) {
+            count += worker.count;
+            rejected += worker.rejected;
+            failed += worker.failed;
+        }
+        long[] latencies = new long[count];
+        count = 0;
+        for (Client worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, count,
+                    worker.count);
+            count += worker.count;
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("clients=%d  %.0f req/s  p50 %.1f ms  p99 %.1f ms"
+                + "  %d answered with 503  %d failed%n", this.clients,
+                count * 1e9 / elapsed, percentile(latencies, 0.5) / 1e6,
+                percentile(latencies, 0.99) / 1e6, rejected, failed);
+    }
+
+    /**
+     * Gets a percentile of the given sorted latencies.
+     *
+     * @param latencies
+     *            The sorted latencies in nanoseconds.
+     * @param share
+     *            The share of the latencies at or below the percentile.
+     * @return The latency of the percentile or 0 if there are none.
+     */
+    private static long percentile(long[] latencies, double share) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(share * latencies.length) - 1;
+        return latencies[Math.max(index, 0)];
+    }
+
+    /**
+     * A client posting one representation at a time.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private final class Client implements Runnable {
+
+        /**
+         * The representations to post.
+         */
+        private final WorkloadGenerator workload;
+
+        /**
+         * Reused to read the responses.
+         */
+        private final byte[] buffer;
+
+        /**
+         * The latencies of the counted requests in nanoseconds.
+         */
+        private long[] latencies;
+
+        /**
+         * The number of counted requests.
+         */
+        private int count;
+
+        /**
+         * The number of counted requests answered with status 503.
+         */
+        private long rejected;
+
+        /**
+         * The number of counted requests that failed with an I/O error.
+         */
+        private long failed;
+
+        /**
+         * Creates a new Client.
+         *
+         * @param workload
+         *            The representations to post.
+         */
+        private Client(WorkloadGenerator workload) {
+            this.workload = workload;
+            this.buffer = new byte[BUFFER_SIZE];
+            this.latencies = new long[1024];
+        }
+
+        @Override
+        /**
+         * Posts the representations until the test is over.
+         */
+        public void run() {
+            ServerLoadTest test = ServerLoadTest.this;
+            while (test.running) {
+                byte[] body = this.workload.next().getBytes(
+                        StandardCharsets.UTF_8);
+                long start = System.nanoTime();
+                int status;
+                try {
+                    status = this.post(body);
+                } catch (IOException e) {
+                    if (test.measuring) {
+                        this.failed++;
+                    }
+                    continue;
+                }
+                long latency = System.nanoTime() - start;
+
+                if (test.measuring) {
+                    if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+                        this.rejected++;
+                    } else {
+                        if (this.count == this.latencies.length) {
+                            this.latencies = Arrays.copyOf(this.latencies,
+                                    this.count * 2);
+                        }
+                        this.latencies[this.count++] = latency;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Posts a single representation and reads the whole response, so
+         * that the connection can be reused by the next request.
+         *
+         * @param body
+         *            The UTF-8 representation.
+         * @return The status of the response.
+         * @throws IOException
+         *             If the request could not be sent or the response
+         *             could not be read.
+         */
+        private int post(byte[] body) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) ServerLoadTest.this.url
+                    .openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type",
+                    "text/plain; charset=UTF-8");
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+
+            int status = connection.getResponseCode();
+            InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection
+                    .getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                try {
+                    while (in.read(this.buffer) != -1) {
+                        // Drained so the connection is kept alive
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+            return status;
+        }
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args
+     *            Any of "--url URL" (http://localhost:8080/generate),
+     *            "--clients N" (8), "--warmup SECONDS" (2), "--duration
+     *            SECONDS" (5) and "--seed N" (42).
+     * @throws Exception
+     *             If the arguments are invalid or the test was interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080/generate";
+        int clients = 8;
+        double warmup = 2;
+        double duration = 5;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            if (args[i].equals("--url")) {
+                url = value;
+            } else if (args[i].equals("--clients")) {
+                clients = Integer.parseInt(value);
+            } else if (args[i].equals("--warmup")) {
+                warmup = Double.parseDouble(value);
+            } else if (args[i].equals("--duration")) {
+                duration = Double.parseDouble(value);
+            } else if (args[i].equals("--seed")) {
+                seed = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: "
+                        + args[i]);
+            }
+        }
+        if (clients < 1) {
+            throw new IllegalArgumentException(
+                    "The number of clients must be at least 1.");
+        }
+
+        new ServerLoadTest(new URL(url), clients, seed).run(
+                (long) (warmup * 1000), (long) (duration * 1000));
+    }
+}
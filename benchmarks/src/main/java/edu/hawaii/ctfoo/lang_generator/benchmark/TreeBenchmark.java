@@ -0,0 +1,92 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.CouldNotParseException;
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TokenTypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.Tree;
+import edu.hawaii.ctfoo.lang_generator.TreeKey;
+import edu.hawaii.ctfoo.lang_generator.TypeMatcher;
+
+/**
+ * Measures {@link Tree#findAll(Object, edu.hawaii.ctfoo.lang_generator.MatchFunctor)}
+ * on the tree of the find more sample, the deepest of the samples, with both
+ * the String and the {@link TokenType} keys, and building the
+ * {@link TreeKey} of the same tree.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeBenchmark {
+
+    /**
+     * The matcher for the String keys.
+     */
+    private final TypeMatcher typeMatcher = new TypeMatcher();
+
+    /**
+     * The tree to search.
+     */
+    private Tree<ParseToken> tree;
+
+    /**
+     * Parses the find more sample into its tree.
+     *
+     * @throws CouldNotParseException
+     *             If the sample could not be parsed.
+     */
+    @Setup
+    public void setUp() throws CouldNotParseException {
+        this.tree = Samples.trees(Samples.FIND_MORE).get(0);
+    }
+
+    /**
+     * Finds every player below the root by its type name.
+     *
+     * @return The matching nodes.
+     */
+    @Benchmark
+    public List<Tree<ParseToken>> findAllByName() {
+        return this.tree.findAll("player", this.typeMatcher);
+    }
+
+    /**
+     * Finds every player below the root by its {@link TokenType}.
+     *
+     * @return The matching nodes.
+     */
+    @Benchmark
+    public List<Tree<ParseToken>> findAllByType() {
+        return this.tree.findAll(TokenType.PLAYER, TokenTypeMatcher.INSTANCE);
+    }
+
+    /**
+     * Builds the canonical key of the tree.
+     *
+     * @return The key of the tree.
+     */
+    @Benchmark
+    public TreeKey treeKey() {
+        return TreeKey.of(this.tree);
+    }
+}
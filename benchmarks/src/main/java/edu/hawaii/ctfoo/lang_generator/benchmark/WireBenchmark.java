@@ -0,0 +1,130 @@
+package edu.hawaii.ctfoo.lang_generator.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.hawaii.ctfoo.lang_generator.CouldNotParseException;
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.Tree;
+import edu.hawaii.ctfoo.lang_generator.TreeEncoder;
+import edu.hawaii.ctfoo.lang_generator.TreeReader;
+
+/**
+ * Measures reading the parse trees of a sample with a {@link TreeReader},
+ * once from its text and once from its binary record, and writing the
+ * record with a {@link TreeEncoder}. The values of the tokens read from text
+ * are only created when they are first read, so every value is read.
+ *
+ * @author Christopher Foo
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireBenchmark {
+
+    /**
+     * The kind of sample to read.
+     */
+    @Param({ "buy", "sell", "findgroup", "findmore" })
+    public String kind;
+
+    /**
+     * The UTF-8 text of the sample.
+     */
+    private ByteBuffer text;
+
+    /**
+     * The binary record of the sample.
+     */
+    private ByteBuffer binary;
+
+    /**
+     * The parse trees of the sample.
+     */
+    private List<Tree<ParseToken>> trees;
+
+    /**
+     * Encodes the sample as text and as a binary record.
+     *
+     * @throws CouldNotParseException
+     *             If the sample could not be parsed.
+     */
+    @Setup
+    public void setUp() throws CouldNotParseException {
+        String sample = Samples.get(this.kind);
+        this.text = ByteBuffer.wrap(sample.getBytes(StandardCharsets.UTF_8));
+        this.trees = Samples.trees(sample);
+        this.binary = ByteBuffer.wrap(TreeEncoder.encode(this.trees));
+    }
+
+    /**
+     * Reads the trees from the text.
+     *
+     * @return The total length of the values.
+     * @throws CouldNotParseException
+     *             If the sample could not be parsed.
+     */
+    @Benchmark
+    public int text() throws CouldNotParseException {
+        return valueLength(new TreeReader(this.text).next());
+    }
+
+    /**
+     * Reads the trees from the binary record.
+     *
+     * @return The total length of the values.
+     * @throws CouldNotParseException
+     *             If the record could not be read.
+     */
+    @Benchmark
+    public int binary() throws CouldNotParseException {
+        return valueLength(new TreeReader(this.binary).next());
+    }
+
+    /**
+     * Writes the binary record of the trees.
+     *
+     * @return The record.
+     */
+    @Benchmark
+    public byte[] encode() {
+        return TreeEncoder.encode(this.trees);
+    }
+
+    /**
+     * Reads every value of the given trees.
+     *
+     * @param trees
+     *            The nodes to read, along with their descendants.
+     * @return The total length of the values.
+     */
+    private static int valueLength(List<Tree<ParseToken>> trees) {
+        int length = 0;
+        for (Tree<ParseToken> tree : trees) {
+            String value = tree.getNode().getValue();
+            if (value != null) {
+                length += value.length();
+            }
+            length += valueLength(tree.getDirectChildren());
+        }
+        return length;
+    }
+}
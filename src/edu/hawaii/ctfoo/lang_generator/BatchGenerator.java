@@ -0,0 +1,396 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Generates the sentences of a whole file of semantic representations, one
+ * per line, for batch runs over files that are too large to read through a
+ * {@link java.io.BufferedReader} one line at a time. The file is memory
+ * mapped and split into chunks that end at a line feed. The chunks are
+ * generated in parallel on a {@link ForkJoinPool}, and the output of each
+ * chunk is written in the same order as the chunks appear in the file, with
+ * its warnings and parse errors written to the error stream in its place.
+ * The output is the same as generating the lines one at a time.
+ * <p>
+ * A mapping can not be larger than 2 GB, so the file is mapped in windows
+ * that slide over it. The chunks of a window are split off its mapping, and
+ * the line that runs past the end of a window starts the next one. At most
+ * a fixed number of chunks are generated but not yet written, so a slow
+ * writer holds back the splitting instead of filling memory.
+ * <p>
+ * The file is read and the sentences are written in the default charset,
+ * the same as STDIN and STDOUT, which must encode line feeds and carriage
+ * returns as single bytes. Lines end at a line feed, a carriage return or
+ * both like {@link java.io.BufferedReader#readLine()}.
+ *
+ * @author Christopher Foo
+ *
+ */
+public class BatchGenerator {
+
+    /**
+     * The default size of a chunk in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 18;
+
+    /**
+     * The default size of a mapping window in bytes.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    /**
+     * The number of chunks that may be in flight for each worker thread.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * The line separator written after each sentence, the same as the one
+     * used by {@link PrintStream#println()}.
+     */
+    private static final String LINE_SEPARATOR = System
+            .getProperty("line.separator");
+
+    /**
+     * The charset of the file and the sentences.
+     */
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /**
+     * The {@link Parser} shared by all of the workers. It is not modified
+     * while generating.
+     */
+    private final Parser parser;
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threads;
+
+    /**
+     * The size of a chunk in bytes. Chunks are longer if their last line
+     * runs past it.
+     */
+    private final int chunkSize;
+
+    /**
+     * The largest size of a mapping in bytes.
+     */
+    private final int windowSize;
+
+    /**
+     * The cache of the results or null to not cache them.
+     */
+    private final ResultCache cache;
+
+    /**
+     * Creates a new BatchGenerator.
+     *
+     * @param threads
+     *            The number of worker threads.
+     * @param chunkSize
+     *            The size of a chunk in bytes.
+     * @param cache
+     *            The cache of the results or null to not cache them. It is
+     *            shared by the worker threads.
+     */
+    public BatchGenerator(int threads, int chunkSize, ResultCache cache) {
+        this(threads, chunkSize, DEFAULT_WINDOW_SIZE, cache);
+    }
+
+    /**
+     * Creates a new BatchGenerator with the given size of the mapping
+     * windows.
+     *
+     * @param threads
+     *            The number of worker threads.
+     * @param chunkSize
+     *            The size of a chunk in bytes.
+     * @param windowSize
+     *            The largest size of a mapping in bytes. Lines may not be
+     *            longer than a window.
+     * @param cache
+     *            The cache of the results or null to not cache them.
+     */
+    BatchGenerator(int threads, int chunkSize, int windowSize,
+            ResultCache cache) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "The number of threads must be at least 1.");
+        }
+        if (chunkSize < 1 || windowSize < chunkSize) {
+            throw new IllegalArgumentException(
+                    "The chunk size must be positive and fit in a window.");
+        }
+        this.parser = new Parser();
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.windowSize = windowSize;
+        this.cache = cache;
+    }
+
+    /**
+     * Generates the sentences of every line of the given file and writes
+     * them to the given stream. Returns once every line has been written.
+     *
+     * @param file
+     *            The file to read the semantic representations from.
+     * @param out
+     *            The stream to write the sentences to.
+     * @param err
+     *            The stream to write the warnings and errors to.
+     * @return The number of bytes read from the file.
+     * @throws IOException
+     *             If the file could not be read, holds a line longer than a
+     *             window, or the sentences could not be written.
+     */
+    public long run(Path file, OutputStream out, PrintStream err)
+            throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        Deque<ChunkTask> pending = new ArrayDeque<ChunkTask>();
+        int maxPending = this.threads * CHUNKS_PER_THREAD;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long windowLength = Math.min(this.windowSize, size - position);
+                boolean last = position + windowLength == size;
+                MappedByteBuffer window = channel.map(
+                        FileChannel.MapMode.READ_ONLY, position, windowLength);
+
+                int start = 0;
+                while (start < windowLength) {
+                    int end = findChunkEnd(window, start, this.chunkSize, last);
+                    if (end == -1) {
+                        break;
+                    }
+                    ByteBuffer chunk = window.duplicate();
+                    chunk.limit(end).position(start);
+                    ChunkTask task = new ChunkTask(chunk.slice());
+                    pool.execute(task);
+                    pending.add(task);
+                    while (pending.size() > maxPending) {
+                        write(pending.poll().join(), out, err);
+                    }
+                    start = end;
+                }
+
+                // The line running past the end of the window starts the
+                // next one
+                if (start == 0) {
+                    throw new IOException("A line at byte " + position
+                            + " is longer than " + this.windowSize
+                            + " bytes.");
+                }
+                position += start;
+            }
+
+            while (!pending.isEmpty()) {
+                write(pending.poll().join(), out, err);
+            }
+            return size;
+        } finally {
+
+            // The chunks already written are not lost if a later one fails
+            out.flush();
+            channel.close();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Finds the end of the chunk starting at the given offset of a window,
+     * just after the first line feed at or past the chunk size. If there is
+     * none before the end of the window, the chunk ends after the last line
+     * feed of the window instead.
+     *
+     * @param window
+     *            The mapping of the window.
+     * @param start
+     *            The offset of the start of the chunk.
+     * @param chunkSize
+     *            The size of a chunk.
+     * @param last
+     *            If the window ends at the end of the file.
+     * @return The offset after the end of the chunk, or -1 if the window
+     *         has no line feed after the start.
+     */
+    private static int findChunkEnd(ByteBuffer window, int start,
+            int chunkSize, boolean last) {
+        int limit = window.limit();
+        if (last && limit - start <= chunkSize) {
+            return limit;
+        }
+        int target = start + Math.min(chunkSize, limit - start) - 1;
+        for (int i = target; i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        if (last) {
+            return limit;
+        }
+        for (int i = target - 1; i >= start; i--) {
+            if (window.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the output of a chunk, with its warnings and errors.
+     *
+     * @param result
+     *            The result of the chunk.
+     * @param out
+     *            The stream to write the sentences to.
+     * @param err
+     *            The stream to write the warnings and errors to.
+     * @throws IOException
+     *             If the sentences could not be written.
+     */
+    private static void write(ChunkResult result, OutputStream out,
+            PrintStream err) throws IOException {
+        if (result.errors.length() > 0) {
+            err.print(result.errors);
+        }
+        out.write(result.output);
+    }
+
+    /**
+     * Generates the sentences of every line of a single chunk.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private class ChunkTask extends RecursiveTask<ChunkResult> {
+
+        /**
+         * Automatically generated ID.
+         */
+        private static final long serialVersionUID = -2918044217617357640L;
+
+        /**
+         * The bytes of the chunk.
+         */
+        private final ByteBuffer chunk;
+
+        /**
+         * Creates a new ChunkTask for the given bytes.
+         *
+         * @param chunk
+         *            The bytes of the chunk, from its position to its limit.
+         */
+        private ChunkTask(ByteBuffer chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        /**
+         * Copies the chunk out of the mapping and generates its lines in
+         * order.
+         */
+        protected ChunkResult compute() {
+            byte[] bytes = new byte[this.chunk.remaining()];
+            this.chunk.get(bytes);
+
+            StringBuilder output = new StringBuilder(bytes.length);
+            StringBuilder errors = new StringBuilder();
+            int start = 0;
+            while (start < bytes.length) {
+                int end = start;
+                while (end < bytes.length && bytes[end] != '\n'
+                        && bytes[end] != '\r') {
+                    end++;
+                }
+                this.generate(new String(bytes, start, end - start, CHARSET),
+                        output, errors);
+
+                if (end < bytes.length && bytes[end++] == '\r'
+                        && end < bytes.length && bytes[end] == '\n') {
+                    end++;
+                }
+                start = end;
+            }
+            return new ChunkResult(output.toString().getBytes(CHARSET),
+                    errors.toString());
+        }
+
+        /**
+         * Generates the sentences of a single line. An exception thrown while
+         * generating is the error of the line's {@link GenerationResult}, so
+         * that the rest of the chunk is still generated.
+         *
+         * @param line
+         *            The semantic representation.
+         * @param output
+         *            The builder to append the sentences to.
+         * @param errors
+         *            The builder to append the warnings and errors to.
+         */
+        private void generate(String line, StringBuilder output,
+                StringBuilder errors) {
+            BatchGenerator generator = BatchGenerator.this;
+            GenerationResult result = generator.cache == null ? GenerationResult
+                    .generate(generator.parser, line) : generator.cache.get(
+                    generator.parser, line);
+
+            List<String> warnings = result.getWarnings();
+            for (String warning : warnings) {
+                errors.append(warning).append(LINE_SEPARATOR);
+            }
+            if (result.isError()) {
+                errors.append(result.getError()).append(LINE_SEPARATOR);
+            }
+            for (String sentence : result.getSentences()) {
+                output.append(sentence).append(LINE_SEPARATOR);
+            }
+        }
+    }
+
+    /**
+     * The encoded sentences and the errors of a single chunk.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static final class ChunkResult {
+
+        /**
+         * The encoded sentences.
+         */
+        private final byte[] output;
+
+        /**
+         * The warnings and parse errors.
+         */
+        private final String errors;
+
+        /**
+         * Creates a new ChunkResult.
+         *
+         * @param output
+         *            The encoded sentences.
+         * @param errors
+         *            The warnings and parse errors.
+         */
+        private ChunkResult(byte[] output, String errors) {
+            this.output = output;
+            this.errors = errors;
+        }
+    }
+}
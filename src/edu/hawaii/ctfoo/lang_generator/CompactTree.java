@@ -0,0 +1,751 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compact form of the parse trees of a single semantic representation.
+ * Instead of a {@link Tree} and {@link ParseToken} object for each token,
+ * every token is a node number and its fields are stored in parallel arrays.
+ * The nodes are numbered in pre-order, so the descendants of a node are the
+ * nodes that directly follow it. Types and values are kept as offsets into
+ * the original input and are only turned into Strings when they are read.
+ * <p>
+ * {@link #getTrees()} and {@link #getTree(int)} return lightweight, read-only
+ * {@link TreeView}s of the nodes so that the code that only walks the trees
+ * (i.e. the sentences) can run on a CompactTree without it being expanded.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class CompactTree {
+
+    /**
+     * The value used for missing nodes and offsets.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Flag set if the token was negated.
+     */
+    private static final byte NEGATED = 1;
+
+    /**
+     * Flag set if the token is connected with an AND.
+     */
+    private static final byte AND = 2;
+
+    /**
+     * Flag set if the token is connected with an OR.
+     */
+    private static final byte OR = 4;
+
+    /**
+     * The {@link TokenType}s indexed by their ordinals.
+     */
+    private static final TokenType[] types = TokenType.values();
+
+    /**
+     * The input the tokens were read from.
+     */
+    private final CharSequence source;
+
+    /**
+     * The parent of each node. {@link #NONE} for the roots.
+     */
+    private final int[] parent;
+
+    /**
+     * The first child of each node. {@link #NONE} if it has no children.
+     */
+    private final int[] firstChild;
+
+    /**
+     * The next sibling of each node. The roots are siblings of each other.
+     * {@link #NONE} for the last child.
+     */
+    private final int[] nextSibling;
+
+    /**
+     * The ordinal of the {@link TokenType} of each node.
+     */
+    private final byte[] typeId;
+
+    /**
+     * The offsets of the start and end of the type of each node in the
+     * {@link source}, two entries per node.
+     */
+    private final int[] typeOffset;
+
+    /**
+     * The offsets of the start and end of the value of each node in the
+     * {@link source}, two entries per node. {@link #NONE} if the node has no
+     * value.
+     */
+    private final int[] valueOffset;
+
+    /**
+     * The logic and negation flags of each node.
+     */
+    private final byte[] flags;
+
+    /**
+     * The ID of each node. null if the node has no ID.
+     */
+    private final String[] ids;
+
+    /**
+     * Creates a new, empty CompactTree for the given number of nodes.
+     *
+     * @param source
+     *            The input the tokens were read from.
+     * @param size
+     *            The number of nodes.
+     */
+    private CompactTree(CharSequence source, int size) {
+        this.source = source;
+        this.parent = new int[size];
+        this.firstChild = new int[size];
+        this.nextSibling = new int[size];
+        this.typeId = new byte[size];
+        this.typeOffset = new int[size * 2];
+        this.valueOffset = new int[size * 2];
+        this.flags = new byte[size];
+        this.ids = new String[size];
+    }
+
+    /**
+     * Parses the given semantic representation into a CompactTree. The
+     * lexing and building are recorded the same as for the {@link Tree}s of
+     * the {@link Parser}.
+     *
+     * @param input
+     *            The semantic representation in string form. It is copied, so
+     *            a mutable CharSequence may be reused once this returns.
+     * @return The CompactTree of the representation.
+     * @throws CouldNotParseException
+     *             If the given string does not match the expected semantic
+     *             representation.
+     */
+    public static CompactTree parse(CharSequence input)
+            throws CouldNotParseException {
+
+        // The types and values are read from the input lazily
+        String source = input.toString();
+        return Parser.buildCompactTree(source, new TokenIndex(Parser
+                .lex(source)));
+    }
+
+    /**
+     * Builds the CompactTree of the given tokens.
+     *
+     * @param source
+     *            The input the tokens were read from.
+     * @param tokens
+     *            The tokens of the representation.
+     * @return The CompactTree of the tokens.
+     */
+    static CompactTree build(CharSequence source, TokenIndex tokens) {
+        CompactTree tree = new CompactTree(source, tokens.size());
+
+        // Number the tokens in pre-order using an explicit stack so that
+        // deep representations can not overflow the call stack. The stack
+        // can never hold more than every token once.
+        List<ParseToken> stack = new ArrayList<ParseToken>();
+        int[] stackParents = new int[tokens.size()];
+        List<ParseToken> roots = tokens.getDirectChildren(null);
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            stackParents[stack.size()] = NONE;
+            stack.add(roots.get(i));
+        }
+
+        int[] lastChild = new int[tokens.size()];
+        int lastRoot = NONE;
+        int node = 0;
+        while (!stack.isEmpty()) {
+            int parentNode = stackParents[stack.size() - 1];
+            ParseToken token = stack.remove(stack.size() - 1);
+            tree.set(node, token);
+            tree.parent[node] = parentNode;
+            tree.firstChild[node] = NONE;
+            tree.nextSibling[node] = NONE;
+            lastChild[node] = NONE;
+
+            // Link the node to its previous sibling
+            if (parentNode == NONE) {
+                if (lastRoot != NONE) {
+                    tree.nextSibling[lastRoot] = node;
+                }
+                lastRoot = node;
+            } else {
+                if (lastChild[parentNode] == NONE) {
+                    tree.firstChild[parentNode] = node;
+                } else {
+                    tree.nextSibling[lastChild[parentNode]] = node;
+                }
+                lastChild[parentNode] = node;
+            }
+
+            if (token.getId() != null) {
+                List<ParseToken> children = tokens.getDirectChildren(token
+                        .getId());
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stackParents[stack.size()] = node;
+                    stack.add(children.get(i));
+                }
+            }
+            node++;
+        }
+        return tree;
+    }
+
+    /**
+     * Copies the fields of the given token into the arrays of the given node.
+     *
+     * @param node
+     *            The node to set.
+     * @param token
+     *            The token read by the {@link Lexer}.
+     */
+    private void set(int node, ParseToken token) {
+        this.typeId[node] = (byte) token.getTypeSymbol().ordinal();
+        this.typeOffset[node * 2] = token.getTypeStart();
+        this.typeOffset[node * 2 + 1] = token.getTypeEnd();
+        this.valueOffset[node * 2] = token.getValueStart();
+        this.valueOffset[node * 2 + 1] = token.getValueEnd();
+        this.ids[node] = token.getId();
+
+        byte nodeFlags = 0;
+        if (token.isNegated()) {
+            nodeFlags |= NEGATED;
+        }
+        if (token.getLogic() == LogicOp.AND) {
+            nodeFlags |= AND;
+        } else if (token.getLogic() == LogicOp.OR) {
+            nodeFlags |= OR;
+        }
+        this.flags[node] = nodeFlags;
+    }
+
+    /**
+     * Gets the number of nodes.
+     *
+     * @return The number of nodes in all of the trees.
+     */
+    public int size() {
+        return this.parent.length;
+    }
+
+    /**
+     * Gets the root nodes.
+     *
+     * @return The root nodes in the order they were read.
+     */
+    public int[] getRoots() {
+        return this.siblingsFrom(this.size() > 0 ? 0 : NONE);
+    }
+
+    /**
+     * Gets the parent of the given node.
+     *
+     * @param node
+     *            The node.
+     * @return The parent of the node or {@link #NONE} if it is a root.
+     */
+    public int getParent(int node) {
+        return this.parent[node];
+    }
+
+    /**
+     * Gets the first child of the given node.
+     *
+     * @param node
+     *            The node.
+     * @return The first child of the node or {@link #NONE} if it has none.
+     */
+    public int getFirstChild(int node) {
+        return this.firstChild[node];
+    }
+
+    /**
+     * Gets the next sibling of the given node.
+     *
+     * @param node
+     *            The node.
+     * @return The next sibling of the node or {@link #NONE} if it is the last.
+     */
+    public int getNextSibling(int node) {
+        return this.nextSibling[node];
+    }
+
+    /**
+     * Gets the {@link TokenType} of the given node.
+     *
+     * @param node
+     *            The node.
+     * @return The TokenType of the node.
+     */
+    public TokenType getTypeSymbol(int node) {
+        return types[this.typeId[node]];
+    }
+
+    /**
+     * Gets the type of the given node in the same form as
+     * {@link ParseToken#getType()}.
+     *
+     * @param node
+     *            The node.
+     * @return The type of the node.
+     */
+    public String getType(int node) {
+        return this.getToken(node).getType();
+    }
+
+    /**
+     * Gets the value of the given node in the same form as
+     * {@link ParseToken#getValue()}.
+     *
+     * @param node
+     *            The node.
+     * @return The value of the node or null if it has none.
+     */
+    public String getValue(int node) {
+        return this.getToken(node).getValue();
+    }
+
+    /**
+     * Gets the ID of the given node.
+     *
+     * @param node
+     *            The node.
+     * @return The ID of the node or null if it has none.
+     */
+    public String getId(int node) {
+        return this.ids[node];
+    }
+
+    /**
+     * Gets the logic operation used to connect the given node with the
+     * others.
+     *
+     * @param node
+     *            The node.
+     * @return The logic operation or null if it has none.
+     */
+    public LogicOp getLogic(int node) {
+        if ((this.flags[node] & AND) != 0) {
+            return LogicOp.AND;
+        } else if ((this.flags[node] & OR) != 0) {
+            return LogicOp.OR;
+        }
+        return null;
+    }
+
+    /**
+     * Checks if the given node was negated.
+     *
+     * @param node
+     *            The node.
+     * @return If the node was negated.
+     */
+    public boolean isNegated(int node) {
+        return (this.flags[node] & NEGATED) != 0;
+    }
+
+    /**
+     * Creates a new {@link ParseToken} with the fields of the given node.
+     *
+     * @param node
+     *            The node.
+     * @return A new token for the node.
+     */
+    public ParseToken getToken(int node) {
+        ParseToken token = new ParseToken();
+        token.setType(this.source, this.typeOffset[node * 2],
+                this.typeOffset[node * 2 + 1]);
+        if (this.valueOffset[node * 2] != NONE) {
+            token.setValue(this.source, this.valueOffset[node * 2],
+                    this.valueOffset[node * 2 + 1]);
+        }
+        token.setId(this.ids[node]);
+        if (this.parent[node] != NONE) {
+            token.setParent(this.ids[this.parent[node]]);
+        }
+        token.setLogic(this.getLogic(node));
+        token.setNegated(this.isNegated(node));
+        return token;
+    }
+
+    /**
+     * Gets the direct children (1 level) of the given node.
+     *
+     * @param node
+     *            The node.
+     * @return The children of the node in order.
+     */
+    public int[] getDirectChildren(int node) {
+        return this.siblingsFrom(this.firstChild[node]);
+    }
+
+    /**
+     * Finds the direct children of the given node with the given type.
+     *
+     * @param node
+     *            The node.
+     * @param type
+     *            The {@link TokenType} to find.
+     * @return The matching children in order.
+     */
+    public int[] findDirect(int node, TokenType type) {
+        int count = 0;
+        for (int child = this.firstChild[node]; child != NONE; child = this.nextSibling[child]) {
+            if (this.typeId[child] == type.ordinal()) {
+                count++;
+            }
+        }
+
+        int[] matches = new int[count];
+        count = 0;
+        for (int child = this.firstChild[node]; child != NONE; child = this.nextSibling[child]) {
+            if (this.typeId[child] == type.ordinal()) {
+                matches[count++] = child;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds all of the descendants of the given node with the given type.
+     *
+     * @param node
+     *            The node.
+     * @param type
+     *            The {@link TokenType} to find.
+     * @return The matching descendants in pre-order.
+     */
+    public int[] findAll(int node, TokenType type) {
+        int end = this.subtreeEnd(node);
+        int count = 0;
+        for (int i = node + 1; i < end; i++) {
+            if (this.typeId[i] == type.ordinal()) {
+                count++;
+            }
+        }
+
+        int[] matches = new int[count];
+        count = 0;
+        for (int i = node + 1; i < end; i++) {
+            if (this.typeId[i] == type.ordinal()) {
+                matches[count++] = i;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the node after the last descendant of the given node.
+     *
+     * @param node
+     *            The node.
+     * @return The node after the subtree of the node.
+     */
+    private int subtreeEnd(int node) {
+        for (int current = node; current != NONE; current = this.parent[current]) {
+            if (this.nextSibling[current] != NONE) {
+                return this.nextSibling[current];
+            }
+        }
+        return this.size();
+    }
+
+    /**
+     * Collects the given node and all of its next siblings.
+     *
+     * @param first
+     *            The first node.
+     * @return The node and its next siblings in order.
+     */
+    private int[] siblingsFrom(int first) {
+        int count = 0;
+        for (int node = first; node != NONE; node = this.nextSibling[node]) {
+            count++;
+        }
+
+        int[] siblings = new int[count];
+        count = 0;
+        for (int node = first; node != NONE; node = this.nextSibling[node]) {
+            siblings[count++] = node;
+        }
+        return siblings;
+    }
+
+    /**
+     * Gets a read-only {@link TreeView} of the given node.
+     *
+     * @param node
+     *            The node.
+     * @return A view backed by this CompactTree.
+     */
+    public TreeView<ParseToken> getTree(int node) {
+        return new Views().get(node);
+    }
+
+    /**
+     * Gets read-only {@link TreeView}s of all of the roots. The views of the
+     * nodes reached from them are created once, the first time they are
+     * needed, and shared by the walks from the same roots, so walking the
+     * trees again does not allocate new views or tokens.
+     *
+     * @return The views of the roots in the order they were read.
+     */
+    public List<TreeView<ParseToken>> getTrees() {
+        return new Views().get(this.getRoots());
+    }
+
+    /**
+     * Gets read-only {@link TreeView}s of all of the roots that may be read by
+     * any number of threads at once. Unlike {@link #getTrees()}, the views of
+     * all of the nodes, their children and their tokens are created up front
+     * and the tokens are frozen, so reading the views never changes them.
+     *
+     * @return An unmodifiable list of the views of the roots in the order
+     *         they were read.
+     */
+    List<TreeView<ParseToken>> getSharedTrees() {
+        Views views = new Views();
+        for (int node = 0; node < this.size(); node++) {
+            Node view = views.get(node);
+            view.getNode().freeze();
+            view.getDirectChildren();
+        }
+        return Collections.unmodifiableList(views.get(this.getRoots()));
+    }
+
+    @Override
+    /**
+     * Returns the structure of the trees in the same form as Parser's toString.
+     */
+    public String toString() {
+        StringBuilder returnString = new StringBuilder();
+        for (int root : this.getRoots()) {
+            this.appendTree(root, returnString);
+            returnString.append("\n");
+        }
+        return returnString.toString();
+    }
+
+    /**
+     * Appends the structure of the subtree of the given node in the same form
+     * as {@link Tree#toString()}.
+     *
+     * @param node
+     *            The root of the subtree.
+     * @param builder
+     *            The builder to append to.
+     */
+    private void appendTree(int node, StringBuilder builder) {
+        int end = this.subtreeEnd(node);
+
+        // The subtree is the range of nodes after the node in pre-order, so
+        // only the depth of each one has to be found
+        int[] depths = new int[end - node];
+        for (int i = node; i < end; i++) {
+            int depth = (i == node) ? 0 : depths[this.parent[i] - node] + 1;
+            depths[i - node] = depth;
+            for (int j = 0; j < depth; j++) {
+                builder.append('\t');
+            }
+            builder.append(this.getToken(i).toString() + "\n");
+        }
+    }
+
+    /**
+     * The views of the nodes reached from one call to {@link #getTree(int)},
+     * {@link #getTrees()} or {@link #getSharedTrees()}. Each view is created
+     * the first time it is reached and then reused, as are their tokens, so
+     * the cache lives only as long as the views do and the CompactTree itself
+     * is never changed. The views of a cache must not be used by several
+     * threads at once, unless they were all created up front by
+     * getSharedTrees().
+     *
+     * @author Christopher Foo
+     *
+     */
+    private final class Views {
+
+        /**
+         * The view of each node. null until it is first reached.
+         */
+        private final Node[] nodes;
+
+        /**
+         * Creates a new, empty cache of views.
+         */
+        private Views() {
+            this.nodes = new Node[CompactTree.this.size()];
+        }
+
+        /**
+         * Gets the view of the given node, creating it the first time.
+         *
+         * @param node
+         *            The node.
+         * @return The view of the node.
+         */
+        private Node get(int node) {
+            Node view = this.nodes[node];
+            if (view == null) {
+                view = new Node(this, node);
+                this.nodes[node] = view;
+            }
+            return view;
+        }
+
+        /**
+         * Gets the views of the given nodes.
+         *
+         * @param nodes
+         *            The nodes.
+         * @return The views of the nodes in the same order.
+         */
+        private List<TreeView<ParseToken>> get(int[] nodes) {
+            List<TreeView<ParseToken>> views = new ArrayList<TreeView<ParseToken>>(
+                    nodes.length);
+            for (int node : nodes) {
+                views.add(this.get(node));
+            }
+            return views;
+        }
+    }
+
+    /**
+     * A read-only {@link TreeView} of a single node of a CompactTree. The
+     * {@link ParseToken} of the view is created the first time it is read
+     * and kept with the view. Changes to it, such as the negation set while
+     * reading a sentence, are seen through the same view but are not written
+     * back to the CompactTree.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private final class Node implements TreeView<ParseToken> {
+
+        /**
+         * The cache that this view belongs to.
+         */
+        private final Views views;
+
+        /**
+         * The node that this is a view of.
+         */
+        private final int node;
+
+        /**
+         * The token of the node. null until it is first read.
+         */
+        private ParseToken token;
+
+        /**
+         * The views of the children. null until they are first read.
+         */
+        private List<TreeView<ParseToken>> children;
+
+        /**
+         * Creates a new view of the given node.
+         *
+         * @param views
+         *            The cache that the view belongs to.
+         * @param node
+         *            The node.
+         */
+        private Node(Views views, int node) {
+            this.views = views;
+            this.node = node;
+        }
+
+        @Override
+        public ParseToken getNode() {
+            if (this.token == null) {
+                this.token = CompactTree.this.getToken(this.node);
+            }
+            return this.token;
+        }
+
+        @Override
+        public TreeView<ParseToken> getParent() {
+            int parentNode = CompactTree.this.parent[this.node];
+            return (parentNode == NONE) ? null : this.views.get(parentNode);
+        }
+
+        @Override
+        public List<TreeView<ParseToken>> getDirectChildren() {
+            if (this.children == null) {
+                this.children = Collections.unmodifiableList(this.views
+                        .get(CompactTree.this.getDirectChildren(this.node)));
+            }
+            return this.children;
+        }
+
+        @Override
+        public <U> List<TreeView<ParseToken>> findDirect(U key,
+                MatchFunctor<U, ParseToken> matcher) {
+            if (matcher instanceof TokenTypeMatcher) {
+                return this.views.get(CompactTree.this.findDirect(this.node,
+                        (TokenType) key));
+            }
+
+            List<TreeView<ParseToken>> matches = new ArrayList<TreeView<ParseToken>>();
+            for (TreeView<ParseToken> child : this.getDirectChildren()) {
+                if (matcher.match(key, child.getNode())) {
+                    matches.add(child);
+                }
+            }
+            return matches;
+        }
+
+        @Override
+        public <U> List<TreeView<ParseToken>> findAll(U key,
+                MatchFunctor<U, ParseToken> matcher) {
+            if (matcher instanceof TokenTypeMatcher) {
+                return this.views.get(CompactTree.this.findAll(this.node,
+                        (TokenType) key));
+            }
+
+            List<TreeView<ParseToken>> matches = new ArrayList<TreeView<ParseToken>>();
+            int end = CompactTree.this.subtreeEnd(this.node);
+            for (int i = this.node + 1; i < end; i++) {
+                Node descendant = this.views.get(i);
+                if (matcher.match(key, descendant.getNode())) {
+                    matches.add(descendant);
+                }
+            }
+            return matches;
+        }
+
+        @Override
+        public <U> Iterable<TreeView<ParseToken>> iterateDirect(U key,
+                MatchFunctor<U, ParseToken> matcher) {
+
+            // Scanning the arrays is cheap enough that the matches are found
+            // up front
+            return this.findDirect(key, matcher);
+        }
+
+        @Override
+        public <U> Iterable<TreeView<ParseToken>> iterateAll(U key,
+                MatchFunctor<U, ParseToken> matcher) {
+            return this.findAll(key, matcher);
+        }
+
+        @Override
+        /**
+         * Returns the structure of the subtree in the same form as Tree's toString.
+         */
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            CompactTree.this.appendTree(this.node, builder);
+            return builder.toString();
+        }
+    }
+}
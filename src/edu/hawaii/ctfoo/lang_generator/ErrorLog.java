@@ -0,0 +1,86 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reports the errors found while building the entities of a sentence. The
+ * errors are printed to STDERR unless the current thread is capturing them,
+ * which lets a worker thread keep the errors with the representation that
+ * caused them.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class ErrorLog {
+
+    /**
+     * The errors captured by each thread. null when the thread is not
+     * capturing its errors.
+     */
+    private static final ThreadLocal<List<String>> captured = new ThreadLocal<List<String>>();
+
+    /**
+     * Prevents the ErrorLog from being instantiated.
+     */
+    private ErrorLog() {
+    }
+
+    /**
+     * Reports the given error.
+     *
+     * @param message
+     *            The error message.
+     */
+    public static void error(String message) {
+        List<String> errors = captured.get();
+        if (errors == null) {
+            System.err.println(message);
+        } else {
+            errors.add(message);
+        }
+    }
+
+    /**
+     * Starts capturing the errors reported by the current thread.
+     */
+    public static void startCapture() {
+        captured.set(new ArrayList<String>());
+    }
+
+    /**
+     * Stops capturing the errors reported by the current thread.
+     *
+     * @return The errors reported since {@link #startCapture()} in the order
+     *         they were reported. Empty if the thread was not capturing.
+     */
+    public static List<String> stopCapture() {
+        List<String> errors = captured.get();
+        captured.remove();
+        if (errors == null) {
+            return new ArrayList<String>();
+        }
+        return errors;
+    }
+
+    /**
+     * Describes an unexpected exception thrown while generating the
+     * sentences of a representation, so that it can be reported as the error
+     * of that representation instead of ending the whole run.
+     *
+     * @param input
+     *            The semantic representation or null if its text is not
+     *            known, as for a binary record of a {@link TreeReader}.
+     * @param e
+     *            The exception.
+     * @return The error message.
+     */
+    public static String describe(String input, RuntimeException e) {
+        if (input == null) {
+            return "Error: Could not generate the sentences of a "
+                    + "representation: " + e + ".";
+        }
+        return "Error: Could not generate the sentences of \"" + input
+                + "\": " + e + ".";
+    }
+}
@@ -0,0 +1,162 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+/**
+ * Estimates how often keys were used recently, as used by the TinyLFU
+ * admission policy of the {@link ResultCache}. The estimates come from a
+ * count-min sketch of 4-bit counters, so a key is never underestimated but
+ * may be overestimated when it shares counters with other keys. Once the
+ * number of increments reaches ten times the size of the table, every counter
+ * is halved so that the estimates follow the keys that are currently in use.
+ * <p>
+ * Each long in the table holds 16 counters. A key uses four counters from
+ * the same quarter of four different longs.
+ * <p>
+ * Not thread safe, the owner must lock around every call.
+ *
+ * @author Christopher Foo
+ *
+ */
+final class FrequencySketch {
+
+    /**
+     * The largest value of a counter.
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * Keeps the low 3 bits of every counter when halving.
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * Keeps the lowest bit of every counter.
+     */
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    /**
+     * The seeds of the four hash functions that pick the longs of a key.
+     */
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L,
+            0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+    /**
+     * The counters.
+     */
+    private final long[] table;
+
+    /**
+     * The mask that maps a hash to an index of the {@link table}.
+     */
+    private final int tableMask;
+
+    /**
+     * The number of increments after which the counters are halved.
+     */
+    private final int sampleSize;
+
+    /**
+     * The number of increments since the counters were last halved.
+     */
+    private int size;
+
+    /**
+     * Creates a new empty FrequencySketch.
+     *
+     * @param expectedKeys
+     *            The number of keys expected to be tracked at once, usually
+     *            the number of entries the cache can hold.
+     */
+    FrequencySketch(long expectedKeys) {
+        int length = (int) Math.min(Math.max(expectedKeys, 8), 1 << 24);
+        length = Integer.highestOneBit(length - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+    }
+
+    /**
+     * Gets the estimated number of recent uses of the key with the given
+     * hash.
+     *
+     * @param hash
+     *            The spread hash of the key.
+     * @return The estimated number of uses, at most 15.
+     */
+    int frequency(int hash) {
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int shift = (start + i) << 2;
+            int count = (int) ((this.table[this.indexOf(hash, i)] >>> shift) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Counts a use of the key with the given hash, halving all of the
+     * counters if the sample size has been reached.
+     *
+     * @param hash
+     *            The spread hash of the key.
+     */
+    void increment(int hash) {
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            added |= this.incrementAt(this.indexOf(hash, i), start + i);
+        }
+
+        if (added && ++this.size == this.sampleSize) {
+            this.reset();
+        }
+    }
+
+    /**
+     * Increments the given counter unless it is already at its maximum.
+     *
+     * @param index
+     *            The index of the long holding the counter.
+     * @param counter
+     *            The counter within the long, 0 to 15.
+     * @return If the counter was incremented.
+     */
+    private boolean incrementAt(int index, int counter) {
+        int shift = counter << 2;
+        long mask = 0xFL << shift;
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += 1L << shift;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halves every counter. The odd counts that are rounded down are taken
+     * off the number of increments so that the next reset comes as late as
+     * it should.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < this.table.length; i++) {
+            odd += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.size = (this.size - (odd >>> 2)) >>> 1;
+    }
+
+    /**
+     * Gets the index of the long holding the given counter of a key.
+     *
+     * @param hash
+     *            The spread hash of the key.
+     * @param i
+     *            Which of the four hash functions to use.
+     * @return The index within the {@link table}.
+     */
+    private int indexOf(int hash, int i) {
+        long index = (hash + SEEDS[i]) * SEEDS[i];
+        index += index >>> 32;
+        return (int) index & this.tableMask;
+    }
+}
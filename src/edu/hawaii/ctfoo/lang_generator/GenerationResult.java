@@ -0,0 +1,334 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.hawaii.ctfoo.lang_generator.sentence.RenderPlans;
+import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
+
+/**
+ * The rendered sentences of a single semantic representation, or the error
+ * that kept it from being parsed. Unlike {@link ParseResult}, a
+ * representation that could not be parsed still has a GenerationResult, so a
+ * stream of representations can report each failure in its place. An
+ * exception thrown while building or rendering the sentences is turned into
+ * the error as well, kept with the sentences rendered before it, so one bad
+ * representation never ends the stream.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class GenerationResult {
+
+    /**
+     * The semantic representation.
+     */
+    private final String input;
+
+    /**
+     * The rendered sentences. Empty if the representation could not be
+     * parsed, and only those rendered before the error if generating them
+     * failed.
+     */
+    private final List<String> sentences;
+
+    /**
+     * The errors reported while building the entities of the sentences.
+     */
+    private final List<String> warnings;
+
+    /**
+     * The error or null if all of the sentences were generated.
+     */
+    private final String error;
+
+    /**
+     * If the error is a parse error rather than an exception thrown while
+     * generating the sentences.
+     */
+    private final boolean parseError;
+
+    /**
+     * Creates a new GenerationResult whose error, if any, is not a parse
+     * error.
+     *
+     * @param input
+     *            The semantic representation.
+     * @param sentences
+     *            The rendered sentences.
+     * @param warnings
+     *            The errors reported while building the entities.
+     * @param error
+     *            The error or null if all of the sentences were generated.
+     */
+    public GenerationResult(String input, List<String> sentences,
+            List<String> warnings, String error) {
+        this.input = input;
+        this.sentences = Collections.unmodifiableList(new ArrayList<String>(
+                sentences));
+        this.warnings = Collections.unmodifiableList(new ArrayList<String>(
+                warnings));
+        this.error = error;
+        this.parseError = false;
+    }
+
+    /**
+     * Creates a new GenerationResult that shares the given unmodifiable
+     * lists.
+     *
+     * @param input
+     *            The semantic representation.
+     * @param sentences
+     *            The unmodifiable list of the rendered sentences.
+     * @param warnings
+     *            The unmodifiable list of the errors.
+     * @param error
+     *            The error or null if all of the sentences were generated.
+     * @param parseError
+     *            If the error is a parse error.
+     */
+    private GenerationResult(String input, List<String> sentences,
+            List<String> warnings, String error, boolean parseError) {
+        this.input = input;
+        this.sentences = sentences;
+        this.warnings = warnings;
+        this.error = error;
+        this.parseError = parseError;
+    }
+
+    /**
+     * Parses the given representation with the given {@link Parser} and
+     * renders its sentences. The errors reported while building the entities
+     * are kept in the result instead of being printed.
+     *
+     * @param parser
+     *            The Parser to use. It is not modified, so it may be shared
+     *            between threads.
+     * @param input
+     *            The semantic representation.
+     * @return The rendered sentences or the error of the representation.
+     */
+    public static GenerationResult generate(Parser parser, String input) {
+        List<Tree<ParseToken>> trees;
+        try {
+            trees = Parser.buildTrees(new TokenIndex(Parser.lex(input)));
+        } catch (CouldNotParseException e) {
+            return error(input, e);
+        } catch (RuntimeException e) {
+            return new GenerationResult(input,
+                    Collections.<String> emptyList(),
+                    Collections.<String> emptyList(), ErrorLog.describe(input,
+                            e), false);
+        }
+        return generate(parser, input, trees);
+    }
+
+    /**
+     * Builds and renders the sentences of the given parse trees, with the
+     * default {@link RenderPlans} if they are enabled. The errors reported
+     * while building the entities are kept in the result instead of being
+     * printed.
+     *
+     * @param parser
+     *            The Parser to use. It is not modified, so it may be shared
+     *            between threads.
+     * @param input
+     *            The semantic representation.
+     * @param trees
+     *            The parse trees of the representation.
+     * @return The rendered sentences of the representation, or those
+     *         rendered before an exception and its description.
+     */
+    static GenerationResult generate(Parser parser, String input,
+            List<Tree<ParseToken>> trees) {
+        List<String> sentences = new ArrayList<String>();
+        List<String> warnings;
+        String error = null;
+
+        ErrorLog.startCapture();
+        try {
+            RenderPlans plans = RenderPlans.getDefault();
+            if (plans.isEnabled()) {
+                StringBuilder builder = new StringBuilder();
+                for (Tree<ParseToken> root : trees) {
+                    builder.setLength(0);
+                    if (plans.render(root, builder)) {
+                        GeneratorMetrics.getDefault().recordSentence(
+                                root.getNode());
+                        sentences.add(builder.toString());
+                    }
+                }
+            } else {
+                error = renderAll(input, parser.generateSentences(trees),
+                        sentences);
+            }
+        } catch (RuntimeException e) {
+            error = ErrorLog.describe(input, e);
+        } finally {
+            warnings = ErrorLog.stopCapture();
+        }
+        return new GenerationResult(input,
+                Collections.unmodifiableList(sentences),
+                Collections.unmodifiableList(warnings), error, false);
+    }
+
+    /**
+     * Renders the given sentences that were already built, for the callers
+     * that build and render them separately.
+     *
+     * @param input
+     *            The semantic representation.
+     * @param sentences
+     *            The sentences of the representation.
+     * @param warnings
+     *            The errors reported while building the sentences.
+     * @return The rendered sentences of the representation, or those
+     *         rendered before an exception and its description.
+     */
+    static GenerationResult render(String input, List<Sentence> sentences,
+            List<String> warnings) {
+        List<String> rendered = new ArrayList<String>(sentences.size());
+        String error = renderAll(input, sentences, rendered);
+        return new GenerationResult(input,
+                Collections.unmodifiableList(rendered),
+                Collections.unmodifiableList(warnings), error, false);
+    }
+
+    /**
+     * Renders the given sentences into the given list, stopping at the first
+     * one that throws.
+     *
+     * @param input
+     *            The semantic representation.
+     * @param sentences
+     *            The sentences to render.
+     * @param rendered
+     *            The list to add the rendered sentences to.
+     * @return The description of the exception or null if every sentence
+     *         was rendered.
+     */
+    private static String renderAll(String input, List<Sentence> sentences,
+            List<String> rendered) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            for (Sentence sentence : sentences) {
+                builder.setLength(0);
+                GeneratorMetrics.getDefault().render(sentence, builder);
+                rendered.add(builder.toString());
+            }
+        } catch (RuntimeException e) {
+            return ErrorLog.describe(input, e);
+        }
+        return null;
+    }
+
+    /**
+     * Creates the result of a representation that could not be parsed.
+     *
+     * @param input
+     *            The semantic representation.
+     * @param e
+     *            The parse error.
+     * @return The result holding the parse error.
+     */
+    static GenerationResult error(String input, CouldNotParseException e) {
+        return new GenerationResult(input, Collections.<String> emptyList(),
+                Collections.<String> emptyList(), e.getMessage(), true);
+    }
+
+    /**
+     * Gets the same result for another representation, such as one that
+     * only differs in its token IDs.
+     *
+     * @param input
+     *            The other semantic representation.
+     * @return A result with the same sentences, warnings and error.
+     */
+    GenerationResult withInput(String input) {
+        return new GenerationResult(input, this.sentences, this.warnings,
+                this.error, this.parseError);
+    }
+
+    /**
+     * Gets the semantic representation.
+     *
+     * @return The representation the sentences were generated from.
+     */
+    public String getInput() {
+        return this.input;
+    }
+
+    /**
+     * Gets the rendered sentences.
+     *
+     * @return An unmodifiable list of the sentences. Empty if the
+     *         representation could not be parsed, and only those rendered
+     *         before the error if generating them failed.
+     */
+    public List<String> getSentences() {
+        return this.sentences;
+    }
+
+    /**
+     * Gets the errors reported while building the entities of the sentences.
+     *
+     * @return An unmodifiable list of the errors.
+     */
+    public List<String> getWarnings() {
+        return this.warnings;
+    }
+
+    /**
+     * Gets the error that kept the representation from being parsed, or
+     * that stopped its sentences from being generated. The error is written
+     * after the sentences.
+     *
+     * @return The error or null if all of the sentences were generated.
+     */
+    public String getError() {
+        return this.error;
+    }
+
+    /**
+     * Checks if the representation could not be parsed or its sentences
+     * could not all be generated.
+     *
+     * @return If there is an error.
+     */
+    public boolean isError() {
+        return this.error != null;
+    }
+
+    /**
+     * Checks if the representation could not be parsed, as opposed to an
+     * exception thrown while generating its sentences.
+     *
+     * @return If the error is a parse error.
+     */
+    public boolean isParseError() {
+        return this.parseError;
+    }
+
+    @Override
+    /**
+     * Returns the sentences one per line, followed by the error if there is
+     * one.
+     */
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < this.sentences.size(); i++) {
+            if (i > 0) {
+                builder.append('\n');
+            }
+            builder.append(this.sentences.get(i));
+        }
+        if (this.error != null) {
+            if (builder.length() > 0) {
+                builder.append('\n');
+            }
+            builder.append(this.error);
+        }
+        return builder.toString();
+    }
+}
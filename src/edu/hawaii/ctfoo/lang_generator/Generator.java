@@ -1,12 +1,21 @@
 package edu.hawaii.ctfoo.lang_generator;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.Arrays;
-import java.util.Iterator;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
+import edu.hawaii.ctfoo.lang_generator.entity.Entity;
+import edu.hawaii.ctfoo.lang_generator.entity.MoneyAmount;
+import edu.hawaii.ctfoo.lang_generator.sentence.RenderPlans;
 import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
 
 /**
@@ -19,6 +28,12 @@ import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
  */
 public class Generator {
 
+    /**
+     * The size of the buffer used to write the sentences when they are
+     * generated by a {@link GeneratorPipeline}.
+     */
+    static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     /**
      * The {@link Parser} object used to parse the input from STDIN.
      */
@@ -49,22 +64,42 @@ public class Generator {
     }
 
     /**
-     * Attempts to change the given string to it's plural form.
+     * Attempts to change the given string to it's plural form using the
+     * default {@link Pluralizer}.
      * 
      * @param string
      *            The String that should be made into its plural form.
      * @return The plural form of the given string.
      */
     public static String pluralize(String string) {
-        char lastChar = Character
-                .toLowerCase(string.charAt(string.length() - 1));
-        if (lastChar == 'y') {
-            return string.substring(0, string.length() - 1) + "ies";
-        } else if (lastChar == 's') {
-            return string + "es";
-        } else {
-            return string + "s";
-        }
+        return Pluralizer.getDefault().pluralize(string);
+    }
+
+    /**
+     * The terminator strings used when no inner list terminators are given.
+     */
+    private static final String[] NO_TERMINATORS = new String[0];
+
+    /**
+     * The terminator used for sublists that do not have their own terminator.
+     */
+    private static final String DEFAULT_TERMINATOR = "and";
+
+    /**
+     * Appends the given list to the given builder as a comma separated list
+     * terminated by the given terminator string. All sublists are terminated
+     * by "and".
+     * 
+     * @param objects
+     *            The list of objects to be appended.
+     * @param builder
+     *            The {@link StringBuilder} to append the created list to.
+     * @param terminator
+     *            The terminator string of the entire list.
+     */
+    public static void appendCommaList(List<?> objects, StringBuilder builder,
+            String terminator) {
+        appendCommaList(objects, builder, terminator, NO_TERMINATORS, 0);
     }
 
     /**
@@ -84,68 +119,150 @@ public class Generator {
      */
     public static void appendCommaList(List<?> objects, StringBuilder builder,
             String terminator, String... innerListTerminator) {
+        appendCommaList(objects, builder, terminator, innerListTerminator, 0);
+    }
+
+    /**
+     * Appends the given list to the given builder as a comma separated list.
+     * Sublists are appended with the inner list terminator at the given depth
+     * so that the terminators never need to be copied.
+     * 
+     * @param objects
+     *            The list of objects to be appended.
+     * @param builder
+     *            The {@link StringBuilder} to append the created list to.
+     * @param terminator
+     *            The terminator string of the list.
+     * @param innerListTerminator
+     *            The terminator strings of all levels of sublists.
+     * @param depth
+     *            The index in innerListTerminator of the terminator for the
+     *            sublists of this list.
+     */
+    private static void appendCommaList(List<?> objects,
+            StringBuilder builder, String terminator,
+            String[] innerListTerminator, int depth) {
         int listLength = objects.size();
+        String innerTerminator = (depth < innerListTerminator.length)
+                ? innerListTerminator[depth] : DEFAULT_TERMINATOR;
 
         // Special case: Only 2 elements
         if (listLength == 2) {
 
             // If element is a list, recursive calls
             if (objects.get(0) instanceof List<?>) {
-                if (innerListTerminator.length < 1) {
-                    appendCommaList((List<?>) objects.get(0), builder, "and");
-                    builder.append(" " + terminator + " ");
-                    appendCommaList((List<?>) objects.get(1), builder, "and");
-                } else {
-                    appendCommaList((List<?>) objects.get(0), builder,
-                            innerListTerminator[0], Arrays.copyOfRange(
-                                    innerListTerminator, 1,
-                                    innerListTerminator.length));
-                    builder.append(" " + terminator + " ");
-                    appendCommaList((List<?>) objects.get(1), builder,
-                            innerListTerminator[0], Arrays.copyOfRange(
-                                    innerListTerminator, 1,
-                                    innerListTerminator.length));
-                }
+                appendCommaList((List<?>) objects.get(0), builder,
+                        innerTerminator, innerListTerminator, depth + 1);
+                builder.append(' ').append(terminator).append(' ');
+                appendCommaList((List<?>) objects.get(1), builder,
+                        innerTerminator, innerListTerminator, depth + 1);
             }
 
             // Otherwise, just append special case;
             else {
-                builder.append(objects.get(0) + " " + terminator + " "
-                        + objects.get(1));
+                appendElement(objects.get(0), builder, false);
+                builder.append(' ').append(terminator).append(' ');
+                appendElement(objects.get(1), builder, false);
             }
-            return;
         }
 
         // Either 1 or fewer elements or more than 2
         else {
             for (int i = 0; i < listLength; i++) {
+                Object element = objects.get(i);
 
                 // If element is a list, recursive calls
-                if (objects.get(i) instanceof List<?>) {
-                    if (innerListTerminator.length < 1) {
-                        appendCommaList((List<?>) objects.get(i), builder,
-                                "and");
-                    } else {
-                        appendCommaList((List<?>) objects.get(i), builder,
-                                innerListTerminator[0], Arrays.copyOfRange(
-                                        innerListTerminator, 1,
-                                        innerListTerminator.length));
-                    }
+                if (element instanceof List<?>) {
+                    appendCommaList((List<?>) element, builder,
+                            innerTerminator, innerListTerminator, depth + 1);
                 }
 
                 // Otherwise, just append
                 else {
-                    builder.append(objects.get(i).toString().trim());
+                    appendElement(element, builder, true);
                 }
 
                 // Handle comma separators
                 if (i < listLength - 2) {
                     builder.append(", ");
                 } else if (i == listLength - 2) {
-                    builder.append(", " + terminator + " ");
+                    builder.append(", ").append(terminator).append(' ');
                 }
             }
-            return;
+        }
+    }
+
+    /**
+     * Appends a single element of a list to the given builder. {@link Entity}
+     * and {@link MoneyAmount} elements are rendered straight into the
+     * builder; other elements are appended as Strings.
+     * 
+     * @param element
+     *            The element to append.
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     * @param trim
+     *            If the String form of a non-Entity element should be
+     *            trimmed. Entities and MoneyAmounts are never padded.
+     */
+    private static void appendElement(Object element, StringBuilder builder,
+            boolean trim) {
+        if (element instanceof Entity) {
+            ((Entity) element).render(builder);
+        } else if (element instanceof MoneyAmount) {
+            ((MoneyAmount) element).render(builder);
+        } else if (trim) {
+            appendTrimmed(element.toString(), builder);
+        } else {
+            builder.append(element);
+        }
+    }
+
+    /**
+     * Appends the given characters to the given builder without their leading
+     * and trailing whitespace, the same way as {@link String#trim()} but
+     * without creating the trimmed String.
+     * 
+     * @param chars
+     *            The characters to append.
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     */
+    private static void appendTrimmed(CharSequence chars, StringBuilder builder) {
+        int start = 0;
+        int end = chars.length();
+        while (start < end && chars.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && chars.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        builder.append(chars, start, end);
+    }
+
+    /**
+     * Removes leading and trailing whitespace from the text appended to the
+     * given builder after the given offset, the same way as
+     * {@link String#trim()}.
+     * 
+     * @param builder
+     *            The {@link StringBuilder} to trim.
+     * @param start
+     *            The offset of the start of the text to trim.
+     */
+    public static void trimFrom(StringBuilder builder, int start) {
+        int end = builder.length();
+        while (end > start && builder.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        builder.setLength(end);
+
+        int first = start;
+        while (first < end && builder.charAt(first) <= ' ') {
+            first++;
+        }
+        if (first > start) {
+            builder.delete(start, first);
         }
     }
 
@@ -162,15 +279,12 @@ public class Generator {
      */
     public static void appendDelimiterList(List<?> objects,
             StringBuilder builder, String delimiter) {
-        Iterator<?> listIterator = objects.listIterator();
-        while (listIterator.hasNext()) {
-            builder.append(listIterator.next().toString().trim());
-            if (listIterator.hasNext()) {
+        int listLength = objects.size();
+        for (int i = 0; i < listLength; i++) {
+            if (i > 0) {
                 builder.append(delimiter);
-            } else {
-                // There is no next, exit the loop to save a check
-                break;
             }
+            appendTrimmed(objects.get(i).toString(), builder);
         }
     }
 
@@ -178,42 +292,438 @@ public class Generator {
      * Runs the Language Generator.
      * 
      * @param args
-     *            [0] = If "-t" option it will print out the parse trees of the
-     *            entered representations.
+     *            "-t" to print out the parse trees of the entered
+     *            representations. "--threads N" to generate the sentences on N
+     *            worker threads, written in the same order as the
+     *            representations were entered. "--unordered" to write the
+     *            sentences of each representation as soon as they are ready.
+     *            "--staged" to run each step of the generation on its own
+     *            thread, see {@link StagedPipeline}, and "--stats" to print
+     *            how busy each step was afterwards. "--metrics" to print the
+     *            {@link GeneratorMetrics} to STDERR in the Prometheus text
+     *            format afterwards. "--cache" to reuse the sentences of
+     *            representations that were already generated, see
+     *            {@link ResultCache}, when generating on the calling thread
+     *            or serving. "--plans" to render recurring sentence shapes
+     *            with compiled plans, see {@link RenderPlans}, likewise when
+     *            generating on the calling thread or serving. "--encode" to
+     *            write the parse trees of the representations to STDOUT in
+     *            the binary format of the {@link TreeEncoder} instead, and
+     *            "--binary" to read that format, or text, from STDIN with a
+     *            {@link TreeReader}. "--batch FILE" to generate the
+     *            sentences of a whole file on "--threads N" threads, see
+     *            {@link BatchGenerator}, and with "--stats" print how fast
+     *            the file was read. "--server PORT" to serve the sentences over HTTP
+     *            instead, see {@link GeneratorServer}, with at most
+     *            "--max-concurrent N" requests handled at once.
      */
     public static void main(String[] args) {
-        Generator generator = new Generator();
         boolean showTree = false;
-        if (args.length > 0 && args[0].equalsIgnoreCase("-t")) {
-            showTree = true;
+        boolean ordered = true;
+        boolean staged = false;
+        boolean stats = false;
+        boolean metrics = false;
+        boolean cache = false;
+        boolean plans = false;
+        boolean encode = false;
+        boolean binary = false;
+        String batch = null;
+        int threads = 0;
+        int port = 0;
+        int maxConcurrent = GeneratorServer.DEFAULT_MAX_CONCURRENT;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equalsIgnoreCase("-t")) {
+                showTree = true;
+            } else if (args[i].equals("--unordered")) {
+                ordered = false;
+            } else if (args[i].equals("--staged")) {
+                staged = true;
+            } else if (args[i].equals("--stats")) {
+                stats = true;
+            } else if (args[i].equals("--metrics")) {
+                metrics = true;
+            } else if (args[i].equals("--cache")) {
+                cache = true;
+            } else if (args[i].equals("--plans")) {
+                plans = true;
+            } else if (args[i].equals("--encode")) {
+                encode = true;
+            } else if (args[i].equals("--binary")) {
+                binary = true;
+            } else if (args[i].equals("--batch") && i + 1 < args.length) {
+                batch = args[++i];
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = parsePositive("number of threads", args[++i]);
+            } else if (args[i].equals("--server") && i + 1 < args.length) {
+                port = parsePositive("port", args[++i]);
+            } else if (args[i].equals("--max-concurrent")
+                    && i + 1 < args.length) {
+                maxConcurrent = parsePositive("concurrency limit", args[++i]);
+            }
+            if (threads < 0 || port < 0 || maxConcurrent < 0) {
+                return;
+            }
+        }
+
+        // Stop before any input is read if the irregular plurals are missing,
+        // rather than failing on the first plural
+        try {
+            Pluralizer.getDefault();
+        } catch (ExceptionInInitializerError e) {
+            System.err.println("Error: " + e.getCause().getMessage());
+            return;
+        }
+
+        if (plans) {
+            RenderPlans.getDefault().setEnabled(true);
+        }
+
+        // The request threads may be short lived, so the server only uses
+        // the shared tier of the cache
+        if (port > 0) {
+            runServer(port, maxConcurrent, cache ? new ResultCache(
+                    ResultCache.DEFAULT_MAXIMUM_WEIGHT, 0) : null);
+            return;
+        }
+
+        if (batch != null) {
+            runBatch(Paths.get(batch), threads > 0 ? threads : Runtime
+                    .getRuntime().availableProcessors(),
+                    cache ? new ResultCache(
+                            ResultCache.DEFAULT_MAXIMUM_WEIGHT, 0) : null,
+                    stats);
+            if (metrics) {
+                System.err.print(GeneratorMetrics.getDefault()
+                        .getPrometheusText());
+            }
+            return;
+        }
+
+        // Unordered output only makes sense with multiple workers
+        if (!ordered && threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        Generator generator = new Generator();
+        ResultCache resultCache = null;
+        if (encode) {
+            generator.runEncode();
+        } else if (binary) {
+            generator.runBinary();
+        } else if (staged) {
+            generator.runStaged(new StagedPipeline(showTree), stats);
+        } else if (threads > 0) {
+            generator.runPipeline(new GeneratorPipeline(threads, ordered,
+                    showTree));
+        } else if ((cache || plans) && !showTree) {
+            resultCache = cache ? new ResultCache() : null;
+            generator.runResults(resultCache);
+        } else {
+            generator.run(showTree);
+        }
+
+        if (metrics) {
+            System.err.print(GeneratorMetrics.getDefault().getPrometheusText());
+            if (resultCache != null) {
+                System.err.print(resultCache.getPrometheusText());
+            }
         }
+    }
+
+    /**
+     * Parses the value of a command line option that must be a positive
+     * integer.
+     * 
+     * @param name
+     *            The name of the value used in the error message.
+     * @param value
+     *            The value to parse.
+     * @return The parsed value or -1 if it is not a positive integer.
+     */
+    private static int parsePositive(String name, String value) {
         try {
-            String input = generator.in.readLine();
+            int parsed = Integer.parseInt(value);
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        System.err.println("Error: The " + name
+                + " must be a positive integer.");
+        return -1;
+    }
+
+    /**
+     * Runs a {@link GeneratorServer} on the given port until the process is
+     * stopped.
+     * 
+     * @param port
+     *            The port to listen on.
+     * @param maxConcurrent
+     *            The maximum number of requests handled at once.
+     * @param cache
+     *            The cache of the results or null to not cache them.
+     */
+    private static void runServer(int port, int maxConcurrent,
+            ResultCache cache) {
+        try {
+            GeneratorServer server = new GeneratorServer(
+                    new InetSocketAddress(port), maxConcurrent, cache);
+            server.start();
+            System.err.println("Listening on port "
+                    + server.getAddress().getPort() + ".");
+        } catch (IOException e) {
+            System.err.println("Error: Could not listen on port " + port
+                    + ".");
+        }
+    }
+
+    /**
+     * Generates the sentences of every line of a file with a
+     * {@link BatchGenerator} and prints them.
+     * 
+     * @param file
+     *            The file of semantic representations.
+     * @param threads
+     *            The number of worker threads.
+     * @param cache
+     *            The cache of the results or null to not cache them.
+     * @param stats
+     *            If the size of the file and how fast it was read should be
+     *            printed to STDERR afterwards.
+     */
+    private static void runBatch(Path file, int threads, ResultCache cache,
+            boolean stats) {
+        BufferedOutputStream out = new BufferedOutputStream(System.out,
+                OUTPUT_BUFFER_SIZE);
+        try {
+            long start = System.nanoTime();
+            long bytes = new BatchGenerator(threads,
+                    BatchGenerator.DEFAULT_CHUNK_SIZE, cache).run(file, out,
+                    System.err);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (stats) {
+                double megabytes = bytes / (1024.0 * 1024.0);
+                System.err.println(String.format(
+                        "Batch: %.1f MB in %.2f s, %.1f MB/s on %d threads.",
+                        megabytes, seconds, megabytes / seconds, threads));
+            }
+        } catch (IOException e) {
+            System.err.println("Error: Could not generate the sentences of "
+                    + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the representations from STDIN and prints their sentences one
+     * at a time on the calling thread.
+     * 
+     * @param showTree
+     *            If the parse trees should be printed after the sentences.
+     */
+    private void run(boolean showTree) {
+        try {
+            String input = this.in.readLine();
             while (input != null) {
                 try {
-                    generator.parser.parse(input);
-                    List<Sentence> sentences = generator.parser
-                            .generateSentences();
-                    for (Sentence sentence : sentences) {
-                        System.out.println(sentence);
+                    List<Tree<ParseToken>> trees = Parser
+                            .buildTrees(new TokenIndex(Parser.lex(input)));
+                    GenerationResult result = GenerationResult.generate(
+                            this.parser, input, trees);
+                    printResult(result);
+
+                    if (showTree && !result.isError()) {
+                        StringBuilder output = new StringBuilder();
+                        for (Tree<ParseToken> tree : trees) {
+                            output.append(tree).append('\n');
+                        }
+                        System.out.println(output);
                     }
+                } catch (CouldNotParseException e) {
+                    System.err.println(e.getMessage());
+                }
+                input = this.in.readLine();
+            }
+        }
+
+        catch (IOException e2) {
+            System.err.println("Error: Could not read from STDIN.");
+        }
+
+        finally {
+            this.closeStream();
+        }
+    }
+
+    /**
+     * Reads the representations from STDIN and prints their
+     * {@link GenerationResult}s one at a time on the calling thread, reusing
+     * the results of the representations that were already generated if
+     * they are cached.
+     * 
+     * @param cache
+     *            The cache of the results or null to not cache them.
+     */
+    private void runResults(ResultCache cache) {
+        try {
+            String input = this.in.readLine();
+            while (input != null) {
+                GenerationResult result = cache == null ? GenerationResult
+                        .generate(this.parser, input) : cache.get(this.parser,
+                        input);
+                printResult(result);
+                input = this.in.readLine();
+            }
+        }
+
+        catch (IOException e2) {
+            System.err.println("Error: Could not read from STDIN.");
+        }
+
+        finally {
+            this.closeStream();
+        }
+    }
+
+    /**
+     * Prints the warnings of the given result and its error to STDERR and
+     * its sentences to STDOUT. The error is printed after the sentences that
+     * were rendered before it.
+     * 
+     * @param result
+     *            The result to print.
+     */
+    private static void printResult(GenerationResult result) {
+        for (String warning : result.getWarnings()) {
+            System.err.println(warning);
+        }
+        for (String sentence : result.getSentences()) {
+            System.out.println(sentence);
+        }
+        if (result.isError()) {
+            System.out.flush();
+            System.err.println(result.getError());
+        }
+    }
+
+    /**
+     * Reads the representations from STDIN and writes their parse trees to
+     * STDOUT with a {@link TreeEncoder}. The representations that could not
+     * be parsed are reported and left out.
+     */
+    private void runEncode() {
+        TreeEncoder encoder = new TreeEncoder(new BufferedOutputStream(
+                System.out, OUTPUT_BUFFER_SIZE));
+        try {
+            String input = this.in.readLine();
+            while (input != null) {
+                try {
+                    encoder.write(input);
+                } catch (CouldNotParseException e) {
+                    System.err.println(e.getMessage());
+                }
+                input = this.in.readLine();
+            }
+            encoder.flush();
+        }
+
+        catch (IOException e2) {
+            System.err.println("Error: Could not read from STDIN.");
+        }
 
-                    if (showTree) {
-                        System.out.println(generator.parser);
+        finally {
+            this.closeStream();
+        }
+    }
+
+    /**
+     * Reads the parse trees written by a {@link TreeEncoder}, or the
+     * representations as text, from STDIN with a {@link TreeReader} and
+     * prints their {@link GenerationResult}s one at a time on the calling
+     * thread.
+     */
+    private void runBinary() {
+        try {
+            TreeReader reader = new TreeReader(ByteBuffer.wrap(System.in
+                    .readAllBytes()));
+            boolean more = true;
+            while (more) {
+                try {
+                    List<Tree<ParseToken>> trees = reader.next();
+                    if (trees == null) {
+                        more = false;
+                    } else {
+                        printResult(GenerationResult.generate(this.parser,
+                                reader.getInput(), trees));
                     }
                 } catch (CouldNotParseException e) {
                     System.err.println(e.getMessage());
                 }
-                input = generator.in.readLine();
             }
         }
 
+        catch (CouldNotParseException e) {
+            System.err.println(e.getMessage());
+        }
+
         catch (IOException e2) {
             System.err.println("Error: Could not read from STDIN.");
         }
 
         finally {
-            generator.closeStream();
+            this.closeStream();
+        }
+    }
+
+    /**
+     * Reads the representations from STDIN and prints their sentences using
+     * the given {@link GeneratorPipeline}.
+     * 
+     * @param pipeline
+     *            The pipeline used to generate the sentences.
+     */
+    private void runPipeline(GeneratorPipeline pipeline) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out),
+                OUTPUT_BUFFER_SIZE);
+        try {
+            pipeline.run(this.in, out, System.err);
+        } catch (IOException e) {
+            System.err.println("Error: Could not read from STDIN.");
+        } catch (InterruptedException e) {
+            System.err.println("Error: Interrupted while generating sentences.");
+        } finally {
+            this.closeStream();
+        }
+    }
+
+    /**
+     * Reads the representations from STDIN and prints their sentences using
+     * the given {@link StagedPipeline}.
+     * 
+     * @param pipeline
+     *            The pipeline used to generate the sentences.
+     * @param stats
+     *            If the {@link StageStats} of each stage should be printed to
+     *            STDERR afterwards.
+     */
+    private void runStaged(StagedPipeline pipeline, boolean stats) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out),
+                OUTPUT_BUFFER_SIZE);
+        try {
+            pipeline.run(this.in, out, System.err);
+        } catch (IOException e) {
+            System.err.println("Error: Could not read from STDIN.");
+        } catch (InterruptedException e) {
+            System.err.println("Error: Interrupted while generating sentences.");
+        } finally {
+            this.closeStream();
+        }
+
+        if (stats) {
+            for (StageStats stage : pipeline.getStageStats()) {
+                System.err.println(stage);
+            }
         }
     }
 }
@@ -0,0 +1,529 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import edu.hawaii.ctfoo.lang_generator.event.Events;
+import edu.hawaii.ctfoo.lang_generator.event.RenderEvent;
+import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
+
+/**
+ * Counts the representations, parse failures, sentences and error renders of
+ * the Language Generator and records the latencies of lexing, tree building,
+ * sentence building and rendering. The counters are {@link LongAdder}s and the
+ * latencies {@link LatencyHistogram}s, so recording never takes a lock and
+ * threads rarely contend.
+ * <p>
+ * The {@link Parser} records the first three stages and the parse failures;
+ * the sentences are rendered through {@link #render(Sentence, StringBuilder)}
+ * to record the last. When disabled, nothing is timed or counted. The metrics
+ * are enabled unless the system property {@link #ENABLED_PROPERTY} is
+ * "false", and can be read over JMX once {@link #registerMBean()} is called
+ * or as Prometheus text from {@link #getPrometheusText()}.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class GeneratorMetrics implements GeneratorMetricsMXBean {
+
+    /**
+     * The name the metrics are published under over JMX.
+     */
+    public static final String OBJECT_NAME = "edu.hawaii.ctfoo.lang_generator:type=GeneratorMetrics";
+
+    /**
+     * The system property that disables the metrics when set to "false".
+     */
+    public static final String ENABLED_PROPERTY = "edu.hawaii.ctfoo.lang_generator.metrics";
+
+    /**
+     * The start of the messages rendered by sentences that are not valid.
+     */
+    private static final String ERROR_RENDER_PREFIX = "< Error";
+
+    /**
+     * The metrics shared by the whole Language Generator.
+     */
+    private static final GeneratorMetrics defaultMetrics = new GeneratorMetrics(
+            !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY)));
+
+    /**
+     * If the metrics are being recorded.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * The number of representations parsed.
+     */
+    private final LongAdder representations;
+
+    /**
+     * The number of representations that could not be parsed.
+     */
+    private final LongAdder parseFailures;
+
+    /**
+     * The number of sentences rendered as error messages.
+     */
+    private final LongAdder errorRenders;
+
+    /**
+     * The number of sentences of each known type, indexed by the ordinal of
+     * its {@link TokenType}.
+     */
+    private final LongAdder[] sentences;
+
+    /**
+     * The number of sentences of each type registered outside of the
+     * {@link TokenType}s, keyed by the lower case type.
+     */
+    private final ConcurrentHashMap<String, LongAdder> otherSentences;
+
+    /**
+     * The lexing latencies.
+     */
+    private final LatencyHistogram lexLatency;
+
+    /**
+     * The tree building latencies.
+     */
+    private final LatencyHistogram treeLatency;
+
+    /**
+     * The sentence building latencies.
+     */
+    private final LatencyHistogram sentenceLatency;
+
+    /**
+     * The rendering latencies.
+     */
+    private final LatencyHistogram renderLatency;
+
+    /**
+     * Creates a new GeneratorMetrics.
+     *
+     * @param enabled
+     *            If the metrics should be recorded.
+     */
+    public GeneratorMetrics(boolean enabled) {
+        this.enabled = enabled;
+        this.representations = new LongAdder();
+        this.parseFailures = new LongAdder();
+        this.errorRenders = new LongAdder();
+        this.sentences = new LongAdder[TokenType.values().length];
+        for (int i = 0; i < this.sentences.length; i++) {
+            this.sentences[i] = new LongAdder();
+        }
+        this.otherSentences = new ConcurrentHashMap<String, LongAdder>();
+        this.lexLatency = new LatencyHistogram();
+        this.treeLatency = new LatencyHistogram();
+        this.sentenceLatency = new LatencyHistogram();
+        this.renderLatency = new LatencyHistogram();
+    }
+
+    /**
+     * Gets the metrics shared by the whole Language Generator.
+     *
+     * @return The shared GeneratorMetrics.
+     */
+    public static GeneratorMetrics getDefault() {
+        return defaultMetrics;
+    }
+
+    /**
+     * Publishes the shared metrics over JMX under {@link #OBJECT_NAME}. Does
+     * nothing if they are already published.
+     *
+     * @throws JMException
+     *             If the metrics could not be published.
+     */
+    public static void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        synchronized (GeneratorMetrics.class) {
+            if (!server.isRegistered(name)) {
+                server.registerMBean(defaultMetrics, name);
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts timing a stage.
+     *
+     * @return The current time in nanoseconds, or 0 if disabled.
+     */
+    public long start() {
+        return this.enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a parsed representation and the time it took to lex.
+     *
+     * @param start
+     *            The time returned by {@link #start()} before lexing.
+     * @return The current time, the start of the next stage.
+     */
+    public long recordLex(long start) {
+        return this.record(this.lexLatency, start, true);
+    }
+
+    /**
+     * Records the time it took to build the parse trees.
+     *
+     * @param start
+     *            The time at which tree building started.
+     * @return The current time, the start of the next stage.
+     */
+    public long recordTree(long start) {
+        return this.record(this.treeLatency, start, false);
+    }
+
+    /**
+     * Records the time it took to build the sentences.
+     *
+     * @param start
+     *            The time at which sentence building started.
+     */
+    public void recordSentences(long start) {
+        this.record(this.sentenceLatency, start, false);
+    }
+
+    /**
+     * Records a representation that could not be parsed.
+     */
+    public void recordParseFailure() {
+        if (this.enabled) {
+            this.representations.increment();
+            this.parseFailures.increment();
+        }
+    }
+
+    /**
+     * Counts a built sentence.
+     *
+     * @param type
+     *            The token of the sentence.
+     */
+    public void recordSentence(ParseToken type) {
+        if (!this.enabled) {
+            return;
+        }
+        TokenType symbol = type.getTypeSymbol();
+        if (symbol != TokenType.UNKNOWN) {
+            this.sentences[symbol.ordinal()].increment();
+            return;
+        }
+
+        String key = type.getType().toLowerCase(Locale.ENGLISH);
+        LongAdder count = this.otherSentences.get(key);
+        if (count == null) {
+            LongAdder created = new LongAdder();
+            count = this.otherSentences.putIfAbsent(key, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.increment();
+    }
+
+    /**
+     * Renders the given sentence to the given builder, recording how long it
+     * took and if it rendered an error message, and recording it as a
+     * {@link RenderEvent} while the Flight Recorder is running.
+     *
+     * @param sentence
+     *            The sentence to render.
+     * @param builder
+     *            The {@link StringBuilder} to append the sentence to.
+     */
+    public void render(Sentence sentence, StringBuilder builder) {
+        boolean recording = Events.isRecorderRunning();
+        if (!this.enabled && !recording) {
+            sentence.render(builder);
+            return;
+        }
+
+        RenderEvent event = null;
+        if (recording) {
+            event = new RenderEvent();
+            event.begin();
+        }
+        int offset = builder.length();
+        long start = this.start();
+        sentence.render(builder);
+        boolean error = this.recordRender(start, builder, offset);
+        if (event != null && event.shouldCommit()) {
+            event.sentenceType = sentence.getClass().getSimpleName();
+            event.outputLength = builder.length() - offset;
+            event.error = error;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records how long it took to render a sentence and if it rendered an
+     * error message, for sentences rendered by {@link #render(Sentence,
+     * StringBuilder)} or without a {@link Sentence} by a compiled render
+     * plan.
+     *
+     * @param start
+     *            The time returned by {@link #start()} before rendering.
+     * @param builder
+     *            The {@link StringBuilder} the sentence was appended to.
+     * @param offset
+     *            The offset of the sentence in the builder.
+     * @return If the sentence is an error message.
+     */
+    public boolean recordRender(long start, StringBuilder builder, int offset) {
+        boolean error = startsWith(builder, offset, ERROR_RENDER_PREFIX);
+        if (this.enabled) {
+            this.renderLatency.record(System.nanoTime() - start);
+            if (error) {
+                this.errorRenders.increment();
+            }
+        }
+        return error;
+    }
+
+    @Override
+    public long getRepresentations() {
+        return this.representations.sum();
+    }
+
+    @Override
+    public long getParseFailures() {
+        return this.parseFailures.sum();
+    }
+
+    @Override
+    public long getErrorRenders() {
+        return this.errorRenders.sum();
+    }
+
+    @Override
+    public Map<String, Long> getSentences() {
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (TokenType type : TokenType.values()) {
+            long count = this.sentences[type.ordinal()].sum();
+            if (count > 0) {
+                counts.put(type.getName(), count);
+            }
+        }
+        for (Map.Entry<String, LongAdder> entry : this.otherSentences
+                .entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    @Override
+    public LatencySnapshot getLexLatency() {
+        return this.lexLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getTreeLatency() {
+        return this.treeLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getSentenceLatency() {
+        return this.sentenceLatency.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getRenderLatency() {
+        return this.renderLatency.snapshot();
+    }
+
+    @Override
+    public String getPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        appendCounter(text, "generator_representations_total",
+                "Semantic representations parsed.", this.getRepresentations());
+        appendCounter(text, "generator_parse_failures_total",
+                "Semantic representations that could not be parsed.",
+                this.getParseFailures());
+        appendCounter(text, "generator_error_renders_total",
+                "Sentences rendered as an error message.",
+                this.getErrorRenders());
+
+        text.append("# HELP generator_sentences_total Sentences built by type.\n");
+        text.append("# TYPE generator_sentences_total counter\n");
+        for (Map.Entry<String, Long> entry : this.getSentences().entrySet()) {
+            text.append("generator_sentences_total{type=\"")
+                    .append(escapeLabel(entry.getKey())).append("\"} ")
+                    .append(entry.getValue()).append('\n');
+        }
+
+        text.append("# HELP generator_stage_latency_seconds Latency of each stage of the generation.\n");
+        text.append("# TYPE generator_stage_latency_seconds summary\n");
+        appendSummary(text, "lex", this.getLexLatency());
+        appendSummary(text, "tree", this.getTreeLatency());
+        appendSummary(text, "sentence", this.getSentenceLatency());
+        appendSummary(text, "render", this.getRenderLatency());
+        return text.toString();
+    }
+
+    @Override
+    public void reset() {
+        this.representations.reset();
+        this.parseFailures.reset();
+        this.errorRenders.reset();
+        for (LongAdder count : this.sentences) {
+            count.reset();
+        }
+        this.otherSentences.clear();
+        this.lexLatency.reset();
+        this.treeLatency.reset();
+        this.sentenceLatency.reset();
+        this.renderLatency.reset();
+    }
+
+    /**
+     * Records the time since the given start in the given histogram.
+     *
+     * @param histogram
+     *            The histogram of the stage.
+     * @param start
+     *            The time at which the stage started.
+     * @param representation
+     *            If a parsed representation should also be counted.
+     * @return The current time, or 0 if disabled.
+     */
+    private long record(LatencyHistogram histogram, long start,
+            boolean representation) {
+        if (!this.enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+
+        // Enabled part way through the stage, there is no start to use
+        if (start != 0) {
+            histogram.record(now - start);
+        }
+        if (representation) {
+            this.representations.increment();
+        }
+        return now;
+    }
+
+    /**
+     * Checks if the given builder has the given prefix at the given offset.
+     *
+     * @param builder
+     *            The builder to check.
+     * @param offset
+     *            The offset of the prefix.
+     * @param prefix
+     *            The prefix to look for.
+     * @return If the prefix is found at the offset.
+     */
+    private static boolean startsWith(StringBuilder builder, int offset,
+            String prefix) {
+        if (builder.length() - offset < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (builder.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a counter in the Prometheus text format.
+     *
+     * @param text
+     *            The builder to append to.
+     * @param name
+     *            The name of the counter.
+     * @param help
+     *            The description of the counter.
+     * @param value
+     *            The value of the counter.
+     */
+    static void appendCounter(StringBuilder text, String name,
+            String help, long value) {
+        text.append("# HELP ").append(name).append(' ').append(help)
+                .append('\n');
+        text.append("# TYPE ").append(name).append(" counter\n");
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Appends the quantiles, sum and count of a stage's latencies in the
+     * Prometheus text format, in seconds.
+     *
+     * @param text
+     *            The builder to append to.
+     * @param stage
+     *            The name of the stage.
+     * @param latency
+     *            The latencies of the stage.
+     */
+    private static void appendSummary(StringBuilder text, String stage,
+            LatencySnapshot latency) {
+        String name = "generator_stage_latency_seconds";
+        appendQuantile(text, name, stage, "0.5", latency.getP50());
+        appendQuantile(text, name, stage, "0.9", latency.getP90());
+        appendQuantile(text, name, stage, "0.99", latency.getP99());
+        appendQuantile(text, name, stage, "0.999", latency.getP999());
+        text.append(name).append("_sum{stage=\"").append(stage).append("\"} ")
+                .append(latency.getSum() / 1e9).append('\n');
+        text.append(name).append("_count{stage=\"").append(stage)
+                .append("\"} ").append(latency.getCount()).append('\n');
+    }
+
+    /**
+     * Appends a single quantile of a summary in the Prometheus text format.
+     *
+     * @param text
+     *            The builder to append to.
+     * @param name
+     *            The name of the summary.
+     * @param stage
+     *            The name of the stage.
+     * @param quantile
+     *            The quantile.
+     * @param nanos
+     *            The value of the quantile in nanoseconds.
+     */
+    private static void appendQuantile(StringBuilder text, String name,
+            String stage, String quantile, long nanos) {
+        text.append(name).append("{stage=\"").append(stage)
+                .append("\",quantile=\"").append(quantile).append("\"} ")
+                .append(nanos / 1e9).append('\n');
+    }
+
+    /**
+     * Escapes a Prometheus label value.
+     *
+     * @param value
+     *            The label value.
+     * @return The value with backslashes, quotes and new lines escaped.
+     */
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"")
+                .replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,98 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.Map;
+
+/**
+ * The management interface of the {@link GeneratorMetrics}, published over
+ * JMX under {@link GeneratorMetrics#OBJECT_NAME}.
+ *
+ * @author Christopher Foo
+ *
+ */
+public interface GeneratorMetricsMXBean {
+
+    /**
+     * Checks if the metrics are being recorded.
+     *
+     * @return If the metrics are enabled.
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns the recording of the metrics on or off.
+     *
+     * @param enabled
+     *            If the metrics should be recorded.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Gets the number of semantic representations parsed, including the ones
+     * that could not be parsed.
+     *
+     * @return The number of representations.
+     */
+    long getRepresentations();
+
+    /**
+     * Gets the number of representations that could not be parsed.
+     *
+     * @return The number of parse failures.
+     */
+    long getParseFailures();
+
+    /**
+     * Gets the number of sentences rendered as an error message instead of a
+     * sentence.
+     *
+     * @return The number of error renders.
+     */
+    long getErrorRenders();
+
+    /**
+     * Gets the number of sentences built for each type of sentence.
+     *
+     * @return The counts keyed by the lower case sentence type.
+     */
+    Map<String, Long> getSentences();
+
+    /**
+     * Gets the latencies of splitting the representations into tokens.
+     *
+     * @return The lexing latencies.
+     */
+    LatencySnapshot getLexLatency();
+
+    /**
+     * Gets the latencies of building the parse trees from the tokens.
+     *
+     * @return The tree building latencies.
+     */
+    LatencySnapshot getTreeLatency();
+
+    /**
+     * Gets the latencies of building the sentences from the parse trees.
+     *
+     * @return The sentence building latencies.
+     */
+    LatencySnapshot getSentenceLatency();
+
+    /**
+     * Gets the latencies of rendering each sentence.
+     *
+     * @return The rendering latencies.
+     */
+    LatencySnapshot getRenderLatency();
+
+    /**
+     * Gets all of the metrics in the Prometheus text format.
+     *
+     * @return The metrics as Prometheus text.
+     */
+    String getPrometheusText();
+
+    /**
+     * Resets all of the counters and latencies.
+     */
+    void reset();
+}
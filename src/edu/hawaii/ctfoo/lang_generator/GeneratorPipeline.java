@@ -0,0 +1,456 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the sentences of many semantic representations at once. A reader
+ * thread reads the representations one line at a time and hands them to a
+ * pool of worker threads that parse them and render their sentences. At most
+ * a fixed number of lines are read but not yet written, so a slow writer
+ * holds back the reader instead of filling memory.
+ * <p>
+ * When ordered, the results are written by a single writer in the same order
+ * as the lines were read, with the errors of each line written to the error
+ * stream in its place. When unordered, each worker writes its results
+ * as soon as they are ready.
+ *
+ * @author Christopher Foo
+ *
+ */
+public class GeneratorPipeline {
+
+    /**
+     * The number of lines that may be in flight for each worker thread.
+     */
+    private static final int LINES_PER_THREAD = 64;
+
+    /**
+     * The line separator written after each sentence, the same as the one
+     * used by {@link PrintStream#println()}.
+     */
+    private static final String LINE_SEPARATOR = System
+            .getProperty("line.separator");
+
+    /**
+     * The {@link Parser} shared by all of the workers. It is only used
+     * through {@link GenerationResult}, which does not modify it, so it is
+     * safe to use from multiple threads.
+     */
+    private final Parser parser;
+
+    /**
+     * The number of worker threads.
+     */
+    private final int threads;
+
+    /**
+     * If the results are written in the same order as the lines were read.
+     */
+    private final boolean ordered;
+
+    /**
+     * If the parse trees are written after the sentences of each line.
+     */
+    private final boolean showTree;
+
+    /**
+     * Creates a new GeneratorPipeline.
+     *
+     * @param threads
+     *            The number of worker threads.
+     * @param ordered
+     *            If the results should be written in the same order as the
+     *            lines were read.
+     * @param showTree
+     *            If the parse trees should be written after the sentences of
+     *            each line.
+     */
+    public GeneratorPipeline(int threads, boolean ordered, boolean showTree) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "The number of threads must be at least 1.");
+        }
+        this.parser = new Parser();
+        this.threads = threads;
+        this.ordered = ordered;
+        this.showTree = showTree;
+    }
+
+    /**
+     * Generates the sentences of every line of the given reader and writes
+     * them to the given writer. Returns once every line has been written.
+     *
+     * @param in
+     *            The reader to read the semantic representations from.
+     * @param out
+     *            The writer to write the sentences to.
+     * @param err
+     *            The stream to write the errors to.
+     * @throws IOException
+     *             If the lines could not be read or the sentences could not be
+     *             written.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting for the
+     *             results.
+     */
+    public void run(BufferedReader in, Writer out, PrintStream err)
+            throws IOException, InterruptedException {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "generator-worker-"
+                                        + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        try {
+            if (this.ordered) {
+                this.runOrdered(in, out, err, workers);
+            } else {
+                this.runUnordered(in, out, err, workers);
+            }
+        } finally {
+            workers.shutdownNow();
+
+            // Keep the output of the lines already written even if a later
+            // one failed
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads the lines on a separate reader thread and writes the results on
+     * the calling thread in the same order as the lines were read.
+     *
+     * @param in
+     *            The reader to read the semantic representations from.
+     * @param out
+     *            The writer to write the sentences to.
+     * @param err
+     *            The stream to write the errors to.
+     * @param workers
+     *            The worker threads that generate the sentences.
+     * @throws IOException
+     *             If the lines could not be read or the sentences could not be
+     *             written.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting for the
+     *             results.
+     */
+    private void runOrdered(final BufferedReader in, Writer out,
+            PrintStream err, final ExecutorService workers)
+            throws IOException, InterruptedException {
+
+        // The results in the order the lines were read. The reader blocks
+        // once it is full, which bounds the number of lines in flight.
+        final BlockingQueue<Future<LineResult>> pending;
+        pending = new ArrayBlockingQueue<Future<LineResult>>(this.threads
+                * LINES_PER_THREAD);
+        final Future<LineResult> endOfInput = new EndOfInput();
+        final IOException[] readError = new IOException[1];
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String line = in.readLine();
+                    while (line != null) {
+                        pending.put(workers.submit(new LineTask(line)));
+                        line = in.readLine();
+                    }
+                } catch (IOException e) {
+                    readError[0] = e;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    try {
+                        pending.put(endOfInput);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "generator-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            Future<LineResult> next = pending.take();
+            while (next != endOfInput) {
+                this.write(getResult(next), out, err);
+                next = pending.take();
+            }
+        } finally {
+            reader.interrupt();
+        }
+
+        reader.join();
+        if (readError[0] != null) {
+            throw readError[0];
+        }
+    }
+
+    /**
+     * Reads the lines on the calling thread and lets each worker write its
+     * results as soon as they are ready.
+     *
+     * @param in
+     *            The reader to read the semantic representations from.
+     * @param out
+     *            The writer to write the sentences to.
+     * @param err
+     *            The stream to write the errors to.
+     * @param workers
+     *            The worker threads that generate the sentences.
+     * @throws IOException
+     *             If the lines could not be read or the sentences could not be
+     *             written.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting for the
+     *             results.
+     */
+    private void runUnordered(BufferedReader in, final Writer out,
+            final PrintStream err, ExecutorService workers)
+            throws IOException, InterruptedException {
+        final int capacity = this.threads * LINES_PER_THREAD;
+        final Semaphore inFlight = new Semaphore(capacity);
+        final Exception[] failure = new Exception[1];
+
+        String line = in.readLine();
+        while (line != null && failure[0] == null) {
+            inFlight.acquire();
+            final LineTask task = new LineTask(line);
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        LineResult result = task.call();
+                        synchronized (out) {
+                            GeneratorPipeline.this.write(result, out, err);
+                        }
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    } catch (RuntimeException e) {
+                        failure[0] = e;
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            });
+            line = in.readLine();
+        }
+
+        // Wait for the lines still in flight
+        inFlight.acquire(capacity);
+        if (failure[0] instanceof IOException) {
+            throw (IOException) failure[0];
+        } else if (failure[0] != null) {
+            throw (RuntimeException) failure[0];
+        }
+    }
+
+    /**
+     * Writes the result of a single line. The output and errors are written
+     * in the same order as when the line is generated on a single thread.
+     *
+     * @param result
+     *            The result to write.
+     * @param out
+     *            The writer to write the sentences to.
+     * @param err
+     *            The stream to write the errors to.
+     * @throws IOException
+     *             If the sentences could not be written.
+     */
+    private void write(LineResult result, Writer out, PrintStream err)
+            throws IOException {
+
+        // The errors found while building the sentences come before them
+        if (!result.warnings.isEmpty()) {
+            out.flush();
+            for (String warning : result.warnings) {
+                err.println(warning);
+            }
+        }
+
+        out.write(result.output);
+        if (result.error != null) {
+
+            // Keep the error next to the output of the same line
+            out.flush();
+            err.println(result.error);
+        }
+    }
+
+    /**
+     * Waits for and gets the result of a line.
+     *
+     * @param future
+     *            The future result of the line.
+     * @return The result of the line.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting.
+     */
+    private static LineResult getResult(Future<LineResult> future)
+            throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Parses a single line and renders its sentences.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private class LineTask implements Callable<LineResult> {
+
+        /**
+         * The semantic representation to parse.
+         */
+        private final String line;
+
+        /**
+         * Creates a new LineTask for the given line.
+         *
+         * @param line
+         *            The semantic representation to parse.
+         */
+        private LineTask(String line) {
+            this.line = line;
+        }
+
+        @Override
+        /**
+         * Parses the line and renders its sentences and, if shown, its parse
+         * trees in the same form as the Generator prints them. An unexpected
+         * exception becomes the error of the line through
+         * {@link GenerationResult#generate(Parser, String, List)}, after the
+         * sentences that were rendered before it.
+         */
+        public LineResult call() {
+            List<Tree<ParseToken>> trees;
+            try {
+                trees = Parser.buildTrees(new TokenIndex(Parser
+                        .lex(this.line)));
+            } catch (CouldNotParseException e) {
+                return new LineResult(Collections.<String> emptyList(), "",
+                        e.getMessage());
+            }
+            GenerationResult result = GenerationResult.generate(
+                    GeneratorPipeline.this.parser, this.line, trees);
+
+            StringBuilder builder = new StringBuilder();
+            for (String sentence : result.getSentences()) {
+                builder.append(sentence).append(LINE_SEPARATOR);
+            }
+            if (GeneratorPipeline.this.showTree && !result.isError()) {
+                for (Tree<ParseToken> tree : trees) {
+                    builder.append(tree).append('\n');
+                }
+                builder.append(LINE_SEPARATOR);
+            }
+            return new LineResult(result.getWarnings(), builder.toString(),
+                    result.getError());
+        }
+    }
+
+    /**
+     * The rendered output and errors of a single line.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static final class LineResult {
+
+        /**
+         * The errors reported while building the sentences.
+         */
+        private final List<String> warnings;
+
+        /**
+         * The rendered sentences and parse trees.
+         */
+        private final String output;
+
+        /**
+         * The parse error or null if the line was parsed.
+         */
+        private final String error;
+
+        /**
+         * Creates a new LineResult.
+         *
+         * @param warnings
+         *            The errors reported while building the sentences.
+         * @param output
+         *            The rendered sentences and parse trees.
+         * @param error
+         *            The parse error or null if the line was parsed.
+         */
+        private LineResult(List<String> warnings, String output,
+                String error) {
+            this.warnings = warnings;
+            this.output = output;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Marks the end of the input in the queue of pending results.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static final class EndOfInput implements Future<LineResult> {
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return true;
+        }
+
+        @Override
+        public LineResult get() {
+            return null;
+        }
+
+        @Override
+        public LineResult get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the Language Generator over HTTP using the HTTP server built into the
+ * JDK. Two endpoints are provided:
+ * <ul>
+ * <li><code>POST /generate</code> takes a single semantic representation as
+ * the UTF-8 request body and responds with
+ * <code>{"sentences":["..."]}</code>, or status 400 and
+ * <code>{"error":"..."}</code> if it could not be parsed. If an exception is
+ * thrown while generating the sentences, the status is 500 and the error
+ * follows the sentences rendered before it, if there are any.</li>
+ * <li><code>POST /generate/batch</code> takes one representation per line and
+ * responds with a JSON array holding one of the above objects for each
+ * non-empty line, in the same order. The status is 200 even if some of the
+ * lines have an error.</li>
+ * </ul>
+ * <code>GET /metrics</code> responds with the {@link GeneratorMetrics} in the
+ * Prometheus text format, and the metrics are also published over JMX.
+ * <p>
+ * Errors found while building the entities are added to the response as
+ * <code>"warnings"</code> instead of being printed. Every response has a
+ * Content-Length so connections are kept alive between requests.
+ * <p>
+ * Each request is handled on its own virtual thread when the JDK supports
+ * them, otherwise on a pooled thread. At most a fixed number of requests are
+ * handled at once; requests over the limit are answered with status 503 right
+ * away instead of being queued.
+ * <p>
+ * The JDK HTTP server only sets TCP_NODELAY if the JVM is started with
+ * <code>-Dsun.net.httpserver.nodelay=true</code>. Without it every response
+ * on a kept alive connection waits for the client's delayed ACK, about 40 ms,
+ * so the flag should be given whenever clients reuse their connections. The
+ * property is read once for the whole JVM and is not set by the server.
+ *
+ * @author Christopher Foo
+ *
+ */
+public class GeneratorServer {
+
+    /**
+     * The default maximum number of requests handled at once.
+     */
+    public static final int DEFAULT_MAX_CONCURRENT = 256;
+
+    /**
+     * The largest request body that is accepted, in bytes.
+     */
+    private static final int MAX_BODY_SIZE = 1 << 20;
+
+    /**
+     * The character set of the requests and responses.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The digits used to escape control characters in JSON strings.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The {@link Parser} shared by all of the requests. It is only used
+     * through {@link GenerationResult}, which does not modify it, so it is
+     * safe to use from multiple threads.
+     */
+    private final Parser parser;
+
+    /**
+     * The underlying HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The executor that runs the request handlers.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The permits for the requests that are being handled.
+     */
+    private final Semaphore permits;
+
+    /**
+     * The cache of the results of repeated representations. null if the
+     * results are not cached.
+     */
+    private final ResultCache cache;
+
+    /**
+     * Creates a new GeneratorServer bound to the given address. The server
+     * does not accept requests until it is started.
+     *
+     * @param address
+     *            The address to listen on.
+     * @param maxConcurrent
+     *            The maximum number of requests handled at once.
+     * @throws IOException
+     *             If the server could not be bound to the address.
+     */
+    public GeneratorServer(InetSocketAddress address, int maxConcurrent)
+            throws IOException {
+        this(address, maxConcurrent, null);
+    }
+
+    /**
+     * Creates a new GeneratorServer bound to the given address that caches
+     * the results of repeated representations. The server does not accept
+     * requests until it is started.
+     *
+     * @param address
+     *            The address to listen on.
+     * @param maxConcurrent
+     *            The maximum number of requests handled at once.
+     * @param cache
+     *            The cache of the results, or null to not cache them. The
+     *            request threads may only live for a single request, so the
+     *            cache should be created without thread tables.
+     * @throws IOException
+     *             If the server could not be bound to the address.
+     */
+    public GeneratorServer(InetSocketAddress address, int maxConcurrent,
+            ResultCache cache) throws IOException {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException(
+                    "The concurrency limit must be at least 1.");
+        }
+        this.parser = new Parser();
+        this.permits = new Semaphore(maxConcurrent);
+        this.cache = cache;
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(address, 0);
+        this.server.createContext("/generate", new GenerateHandler(false));
+        this.server.createContext("/generate/batch", new GenerateHandler(true));
+        this.server.createContext("/metrics", new MetricsHandler());
+        this.server.setExecutor(this.executor);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        try {
+            GeneratorMetrics.registerMBean();
+        } catch (JMException e) {
+            System.err.println("Error: Could not publish the metrics over JMX.");
+        }
+        this.server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the given time for the current
+     * requests to finish and then stops the server.
+     *
+     * @param delay
+     *            The maximum time to wait in seconds.
+     */
+    public void stop(int delay) {
+        this.server.stop(delay);
+        this.executor.shutdown();
+    }
+
+    /**
+     * Gets the address the server is listening on.
+     *
+     * @return The bound address.
+     */
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    /**
+     * Creates the executor for the request handlers. A virtual thread per
+     * request is used when the JDK provides
+     * <code>Executors.newVirtualThreadPerTaskExecutor()</code>, otherwise a
+     * pool of daemon threads. The method is looked up at runtime so that the
+     * Generator still runs on JDKs without virtual threads.
+     *
+     * @return The executor for the request handlers.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            // Virtual threads are not supported, use a pool instead
+        } catch (Exception e) {
+            // Virtual threads could not be created, use a pool instead
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "generator-http-"
+                        + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Appends the sentences and errors of the given representation to the
+     * given builder as a JSON object. An exception thrown while getting the
+     * result becomes the error of the object, so that a batch still holds
+     * the results of the other lines.
+     *
+     * @param input
+     *            The semantic representation.
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     * @return The HTTP status of the representation: 200 if its sentences
+     *         were generated, 400 if it could not be parsed and 500 if an
+     *         exception was thrown.
+     */
+    private int appendResult(String input, StringBuilder builder) {
+        GenerationResult result;
+        try {
+            result = this.cache == null ? GenerationResult.generate(
+                    this.parser, input) : this.cache.get(this.parser, input);
+        } catch (RuntimeException e) {
+            builder.append("{\"error\":");
+            appendJsonString(ErrorLog.describe(input, e), builder);
+            builder.append('}');
+            return 500;
+        }
+
+        // The sentences rendered before an exception are kept with its error
+        builder.append('{');
+        if (!result.isError() || !result.getSentences().isEmpty()) {
+            builder.append("\"sentences\":");
+            appendJsonArray(result.getSentences(), builder);
+            if (result.isError()) {
+                builder.append(',');
+            }
+        }
+        if (result.isError()) {
+            builder.append("\"error\":");
+            appendJsonString(result.getError(), builder);
+        }
+
+        if (!result.getWarnings().isEmpty()) {
+            builder.append(",\"warnings\":");
+            appendJsonArray(result.getWarnings(), builder);
+        }
+        builder.append('}');
+        if (!result.isError()) {
+            return 200;
+        }
+        return result.isParseError() ? 400 : 500;
+    }
+
+    /**
+     * Appends the given Strings to the given builder as a JSON array.
+     *
+     * @param strings
+     *            The Strings to append.
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     */
+    private static void appendJsonArray(List<String> strings,
+            StringBuilder builder) {
+        builder.append('[');
+        for (int i = 0; i < strings.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            appendJsonString(strings.get(i), builder);
+        }
+        builder.append(']');
+    }
+
+    /**
+     * Appends the given characters to the given builder as a quoted JSON
+     * string.
+     *
+     * @param chars
+     *            The characters to append.
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     */
+    private static void appendJsonString(CharSequence chars,
+            StringBuilder builder) {
+        builder.append('"');
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < ' ') {
+                builder.append("\\u00").append(HEX_DIGITS[c >> 4])
+                        .append(HEX_DIGITS[c & 0xF]);
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    /**
+     * Reads the whole request body.
+     *
+     * @param exchange
+     *            The exchange of the request.
+     * @return The request body or null if it is larger than
+     *         {@link #MAX_BODY_SIZE}.
+     * @throws IOException
+     *             If the body could not be read.
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read = in.read(buffer);
+        while (read != -1) {
+            if (body.size() + read > MAX_BODY_SIZE) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+            read = in.read(buffer);
+        }
+        return new String(body.toByteArray(), UTF_8);
+    }
+
+    /**
+     * Sends the given response and closes the exchange.
+     *
+     * @param exchange
+     *            The exchange of the request.
+     * @param status
+     *            The HTTP status code.
+     * @param body
+     *            The JSON response body.
+     * @throws IOException
+     *             If the response could not be sent.
+     */
+    private static void respond(HttpExchange exchange, int status,
+            CharSequence body) throws IOException {
+        respond(exchange, status, body, "application/json; charset=utf-8");
+    }
+
+    /**
+     * Sends the given response with the given content type and closes the
+     * exchange.
+     *
+     * @param exchange
+     *            The exchange of the request.
+     * @param status
+     *            The HTTP status code.
+     * @param body
+     *            The response body.
+     * @param contentType
+     *            The content type of the body.
+     * @throws IOException
+     *             If the response could not be sent.
+     */
+    private static void respond(HttpExchange exchange, int status,
+            CharSequence body, String contentType) throws IOException {
+        byte[] bytes = body.toString().getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Handles the single and batch generate endpoints.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private class GenerateHandler implements HttpHandler {
+
+        /**
+         * If the request body holds one representation per line.
+         */
+        private final boolean batch;
+
+        /**
+         * Creates a new GenerateHandler.
+         *
+         * @param batch
+         *            If the request body holds one representation per line.
+         */
+        private GenerateHandler(boolean batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        /**
+         * Generates the sentences of the request body.
+         */
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    exchange.getResponseHeaders().set("Allow", "POST");
+                    respond(exchange, 405,
+                            "{\"error\":\"Only POST is supported.\"}");
+                    return;
+                }
+
+                // Only the exact paths, the contexts also match sub-paths
+                String path = exchange.getRequestURI().getPath();
+                if (!path.equals(exchange.getHttpContext().getPath())) {
+                    respond(exchange, 404, "{\"error\":\"Not found.\"}");
+                    return;
+                }
+
+                if (!GeneratorServer.this.permits.tryAcquire()) {
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    respond(exchange, 503,
+                            "{\"error\":\"Too many concurrent requests.\"}");
+                    return;
+                }
+
+                try {
+                    String body = readBody(exchange);
+                    if (body == null) {
+                        respond(exchange, 413,
+                                "{\"error\":\"Request body is too large.\"}");
+                    } else if (this.batch) {
+                        this.handleBatch(exchange, body);
+                    } else {
+                        this.handleSingle(exchange, body);
+                    }
+                } catch (RuntimeException e) {
+
+                    // Answer instead of dropping the connection, unless the
+                    // response was already started
+                    if (exchange.getResponseCode() == -1) {
+                        respond(exchange, 500,
+                                "{\"error\":\"Internal server error.\"}");
+                    }
+                } finally {
+                    GeneratorServer.this.permits.release();
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        /**
+         * Generates the sentences of a single representation.
+         *
+         * @param exchange
+         *            The exchange of the request.
+         * @param body
+         *            The representation.
+         * @throws IOException
+         *             If the response could not be sent.
+         */
+        private void handleSingle(HttpExchange exchange, String body)
+                throws IOException {
+            StringBuilder builder = new StringBuilder();
+            int status = GeneratorServer.this.appendResult(body.trim(),
+                    builder);
+            respond(exchange, status, builder);
+        }
+
+        /**
+         * Generates the sentences of each line of the request body. Empty
+         * lines are skipped.
+         *
+         * @param exchange
+         *            The exchange of the request.
+         * @param body
+         *            The representations, one per line.
+         * @throws IOException
+         *             If the response could not be sent.
+         */
+        private void handleBatch(HttpExchange exchange, String body)
+                throws IOException {
+            StringBuilder builder = new StringBuilder();
+            builder.append('[');
+            boolean first = true;
+            int lineStart = 0;
+            while (lineStart < body.length()) {
+                int lineEnd = body.indexOf('\n', lineStart);
+                if (lineEnd == -1) {
+                    lineEnd = body.length();
+                }
+                String line = body.substring(lineStart, lineEnd).trim();
+                if (line.length() > 0) {
+                    if (!first) {
+                        builder.append(',');
+                    }
+                    first = false;
+                    GeneratorServer.this.appendResult(line, builder);
+                }
+                lineStart = lineEnd + 1;
+            }
+            builder.append(']');
+            respond(exchange, 200, builder);
+        }
+    }
+
+    /**
+     * Serves the {@link GeneratorMetrics} and the counters of the
+     * {@link ResultCache} in the Prometheus text format.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private class MetricsHandler implements HttpHandler {
+
+        @Override
+        /**
+         * Responds with the current metrics.
+         */
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    respond(exchange, 405,
+                            "{\"error\":\"Only GET is supported.\"}");
+                } else if (!exchange.getRequestURI().getPath()
+                        .equals("/metrics")) {
+                    respond(exchange, 404, "{\"error\":\"Not found.\"}");
+                } else {
+                    String text = GeneratorMetrics.getDefault()
+                            .getPrometheusText();
+                    if (GeneratorServer.this.cache != null) {
+                        text += GeneratorServer.this.cache.getPrometheusText();
+                    }
+                    respond(exchange, 200, text,
+                            "text/plain; version=0.0.4; charset=utf-8");
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
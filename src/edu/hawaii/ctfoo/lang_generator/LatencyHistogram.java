@@ -0,0 +1,200 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies in nanoseconds with log-linear buckets,
+ * in the style of an HDR histogram. Every power of two is split into
+ * {@link #SUB_BUCKETS} equal buckets, so a recorded value is reported within
+ * about 3% of its true value over the whole range, and recording is a single
+ * increment without any locking.
+ * <p>
+ * The counts are striped over several copies of the buckets chosen by the
+ * recording thread, so threads recording at the same time rarely share a
+ * cache line. The percentiles are computed from the sum of the stripes.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The number of bits used for the buckets within a power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of buckets within a power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The largest power of two with its own buckets. Larger values, more than
+     * 18 minutes, are counted in the last bucket.
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    /**
+     * The number of buckets in each stripe.
+     */
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2)
+            * SUB_BUCKETS;
+
+    /**
+     * The maximum number of stripes.
+     */
+    private static final int MAX_STRIPES = 4;
+
+    /**
+     * The counts of all of the stripes, one stripe after the other.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * The mask that maps a thread ID to its stripe.
+     */
+    private final int stripeMask;
+
+    /**
+     * The sum of the recorded values.
+     */
+    private final LongAdder sum;
+
+    /**
+     * The largest recorded value.
+     */
+    private final AtomicLong max;
+
+    /**
+     * Creates a new empty LatencyHistogram with a stripe for each processor,
+     * up to {@link #MAX_STRIPES}.
+     */
+    public LatencyHistogram() {
+        int stripes = Integer.highestOneBit(Math.min(MAX_STRIPES, Runtime
+                .getRuntime().availableProcessors()));
+        this.counts = new AtomicLongArray(stripes * BUCKETS);
+        this.stripeMask = stripes - 1;
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos
+     *            The latency in nanoseconds. Negative values are recorded as
+     *            0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        int stripe = (int) Thread.currentThread().getId() & this.stripeMask;
+        this.counts.incrementAndGet(stripe * BUCKETS + bucketOf(value));
+        this.sum.add(value);
+
+        long current = this.max.get();
+        while (value > current && !this.max.compareAndSet(current, value)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the recorded latencies. Values recorded while the
+     * snapshot is taken may or may not be included.
+     *
+     * @return The count, mean, percentiles and maximum of the latencies.
+     */
+    public LatencySnapshot snapshot() {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            long bucketCount = this.counts.get(i);
+            merged[i % BUCKETS] += bucketCount;
+            count += bucketCount;
+        }
+
+        long max = this.max.get();
+        return new LatencySnapshot(count, this.sum.sum(), valueAt(merged,
+                count, 0.5, max), valueAt(merged, count, 0.9, max), valueAt(
+                merged, count, 0.99, max), valueAt(merged, count, 0.999, max),
+                max);
+    }
+
+    /**
+     * Removes all of the recorded latencies. Latencies recorded at the same
+     * time may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < this.counts.length(); i++) {
+            this.counts.set(i, 0);
+        }
+        this.sum.reset();
+        this.max.set(0);
+    }
+
+    /**
+     * Gets the bucket of the given value.
+     *
+     * @param value
+     *            A value that is not negative.
+     * @return The index of the bucket within a stripe.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS))
+                & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the largest value that falls into the given bucket.
+     *
+     * @param bucket
+     *            The index of the bucket within a stripe.
+     * @return The largest value of the bucket.
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Finds the value at the given percentile of the merged counts.
+     *
+     * @param merged
+     *            The counts of each bucket.
+     * @param count
+     *            The total of the counts.
+     * @param percentile
+     *            The percentile between 0 and 1.
+     * @param max
+     *            The largest recorded value, which no percentile exceeds.
+     * @return The value at the percentile, or 0 if nothing was recorded.
+     */
+    private static long valueAt(long[] merged, long count, double percentile,
+            long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < merged.length; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), max);
+            }
+        }
+        return max;
+    }
+}
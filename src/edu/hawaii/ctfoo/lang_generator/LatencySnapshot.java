@@ -0,0 +1,174 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * The latencies recorded by a {@link LatencyHistogram} at one point in time.
+ * All of the values are in nanoseconds.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class LatencySnapshot {
+
+    /**
+     * The number of recorded latencies.
+     */
+    private final long count;
+
+    /**
+     * The sum of the recorded latencies.
+     */
+    private final long sum;
+
+    /**
+     * The median latency.
+     */
+    private final long p50;
+
+    /**
+     * The 90th percentile latency.
+     */
+    private final long p90;
+
+    /**
+     * The 99th percentile latency.
+     */
+    private final long p99;
+
+    /**
+     * The 99.9th percentile latency.
+     */
+    private final long p999;
+
+    /**
+     * The largest latency.
+     */
+    private final long max;
+
+    /**
+     * Creates a new LatencySnapshot.
+     *
+     * @param count
+     *            The number of recorded latencies.
+     * @param sum
+     *            The sum of the recorded latencies.
+     * @param p50
+     *            The median latency.
+     * @param p90
+     *            The 90th percentile latency.
+     * @param p99
+     *            The 99th percentile latency.
+     * @param p999
+     *            The 99.9th percentile latency.
+     * @param max
+     *            The largest latency.
+     */
+    public LatencySnapshot(long count, long sum, long p50, long p90, long p99,
+            long p999, long max) {
+        this.count = count;
+        this.sum = sum;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * Rebuilds a LatencySnapshot from its JMX form, which lets JMX clients
+     * use {@link GeneratorMetricsMXBean} proxies.
+     *
+     * @param data
+     *            The snapshot as JMX composite data.
+     * @return The rebuilt snapshot.
+     */
+    public static LatencySnapshot from(CompositeData data) {
+        return new LatencySnapshot((Long) data.get("count"),
+                (Long) data.get("sum"), (Long) data.get("p50"),
+                (Long) data.get("p90"), (Long) data.get("p99"),
+                (Long) data.get("p999"), (Long) data.get("max"));
+    }
+
+    /**
+     * Gets the number of recorded latencies.
+     *
+     * @return The number of latencies.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the sum of the recorded latencies.
+     *
+     * @return The sum in nanoseconds.
+     */
+    public long getSum() {
+        return this.sum;
+    }
+
+    /**
+     * Gets the mean of the recorded latencies.
+     *
+     * @return The mean in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        return this.count == 0 ? 0 : (double) this.sum / this.count;
+    }
+
+    /**
+     * Gets the median latency.
+     *
+     * @return The median in nanoseconds.
+     */
+    public long getP50() {
+        return this.p50;
+    }
+
+    /**
+     * Gets the 90th percentile latency.
+     *
+     * @return The 90th percentile in nanoseconds.
+     */
+    public long getP90() {
+        return this.p90;
+    }
+
+    /**
+     * Gets the 99th percentile latency.
+     *
+     * @return The 99th percentile in nanoseconds.
+     */
+    public long getP99() {
+        return this.p99;
+    }
+
+    /**
+     * Gets the 99.9th percentile latency.
+     *
+     * @return The 99.9th percentile in nanoseconds.
+     */
+    public long getP999() {
+        return this.p999;
+    }
+
+    /**
+     * Gets the largest latency.
+     *
+     * @return The largest latency in nanoseconds.
+     */
+    public long getMax() {
+        return this.max;
+    }
+
+    @Override
+    /**
+     * Returns the count and percentiles on a single line.
+     */
+    public String toString() {
+        return "count=" + this.count + " p50=" + this.p50 + "ns p90="
+                + this.p90 + "ns p99=" + this.p99 + "ns p999=" + this.p999
+                + "ns max=" + this.max + "ns";
+    }
+}
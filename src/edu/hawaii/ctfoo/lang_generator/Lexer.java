@@ -0,0 +1,354 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits a semantic representation into {@link ParseToken}s by walking a
+ * single cursor over the original input. Only the offsets of the types and
+ * values are recorded; the Strings themselves are created by the
+ * {@link ParseToken} the first time they are read.
+ *
+ * @author Christopher Foo
+ *
+ */
+public class Lexer {
+
+    /**
+     * The semantic representation being lexed.
+     */
+    private final CharSequence input;
+
+    /**
+     * The end of the input after trailing whitespace is removed.
+     */
+    private final int end;
+
+    /**
+     * The current position of the cursor in the input.
+     */
+    private int position;
+
+    /**
+     * The IDs that have been declared by the tokens read so far.
+     */
+    private final Set<String> declaredIds;
+
+    /**
+     * Creates a new Lexer for the given semantic representation.
+     *
+     * @param input
+     *            The semantic representation to lex.
+     */
+    public Lexer(CharSequence input) {
+        this.input = input;
+        int last = input.length();
+        while (last > 0 && input.charAt(last - 1) <= ' ') {
+            last--;
+        }
+        this.end = last;
+        this.position = this.skipWhitespace(0);
+        this.declaredIds = new HashSet<String>();
+    }
+
+    /**
+     * Reads all of the tokens in the input.
+     *
+     * @return The tokens in the order that they appear in the input.
+     * @throws CouldNotParseException
+     *             If the input does not match the expected semantic
+     *             representation.
+     */
+    public List<ParseToken> tokenize() throws CouldNotParseException {
+        List<ParseToken> tokens = new ArrayList<ParseToken>();
+        while (this.position < this.end) {
+            tokens.add(this.nextToken());
+        }
+        return tokens;
+    }
+
+    /**
+     * Reads the token starting at the cursor and moves the cursor past it.
+     *
+     * @return The token that was read.
+     * @throws CouldNotParseException
+     *             If the token does not match the expected pattern.
+     */
+    private ParseToken nextToken() throws CouldNotParseException {
+        ParseToken token = new ParseToken();
+        switch (this.input.charAt(this.position)) {
+        case ',':
+            token.setLogic(LogicOp.AND);
+            this.readNegationAfterLogic(token);
+            break;
+        case ';':
+            token.setLogic(LogicOp.OR);
+            this.readNegationAfterLogic(token);
+            break;
+        case '-':
+            token.setNegated(true);
+            this.position = this.skipWhitespace(this.position + 1);
+            break;
+        }
+
+        int foundIndex = this.indexOf('(', this.position);
+
+        // No ( for the start of the argument list or no type, syntax error
+        if (foundIndex == -1 || foundIndex == this.position) {
+            throw this.syntaxError();
+        }
+
+        token.setType(this.input, this.position, foundIndex);
+        this.position = this.skipWhitespace(foundIndex + 1);
+
+        foundIndex = this.indexOf(')', this.position);
+
+        // No ) for the end of the argument list, syntax error
+        if (foundIndex == -1) {
+            throw this.syntaxError();
+        }
+
+        if (!this.readArgs(token, this.position, foundIndex)) {
+            throw this.syntaxError();
+        }
+
+        this.position = this.skipWhitespace(foundIndex + 1);
+        return token;
+    }
+
+    /**
+     * Moves the cursor past a logic operator and checks if it is followed by
+     * a negation.
+     *
+     * @param token
+     *            The token that is currently being read.
+     * @throws CouldNotParseException
+     *             If nothing follows the logic operator.
+     */
+    private void readNegationAfterLogic(ParseToken token)
+            throws CouldNotParseException {
+        int i = this.position + 1;
+
+        // Skip the whitespace
+        while (i < this.end
+                && (this.input.charAt(i) == ' ' || this.input.charAt(i) == '\t')) {
+            i++;
+        }
+
+        if (i >= this.end) {
+            throw this.syntaxError();
+        }
+
+        if (this.input.charAt(i) == '-') {
+            token.setNegated(true);
+            this.position = this.skipWhitespace(i + 1);
+        } else {
+            this.position = this.skipWhitespace(this.position + 1);
+        }
+    }
+
+    /**
+     * Reads the arguments between the given offsets into the token. The
+     * arguments are split on commas with trailing empty arguments dropped.
+     *
+     * @param token
+     *            The token that is currently being read.
+     * @param start
+     *            The offset of the first character of the argument list.
+     * @param stop
+     *            The offset of the closing parenthesis of the argument list.
+     * @return If the arguments matched the expected patterns.
+     */
+    private boolean readArgs(ParseToken token, int start, int stop) {
+        int last = stop;
+        while (last > start && this.input.charAt(last - 1) == ',') {
+            last--;
+        }
+
+        // Only commas, there are no arguments at all
+        if (last == start && last != stop) {
+            return false;
+        }
+
+        int comma = this.indexOf(',', start, last);
+        if (comma == -1) {
+            return this.readIdArg(token, start, last);
+        }
+
+        // More than 2 arguments
+        if (this.indexOf(',', comma + 1, last) != -1) {
+            return false;
+        }
+
+        return this.readParentArgs(token, start, comma, comma + 1, last);
+    }
+
+    /**
+     * Reads the single argument of a root token, which must be a new ID.
+     *
+     * @param token
+     *            The token that is currently being read.
+     * @param start
+     *            The offset of the start of the argument.
+     * @param stop
+     *            The offset of the end of the argument.
+     * @return If the argument was a valid ID.
+     */
+    private boolean readIdArg(ParseToken token, int start, int stop) {
+        start = this.skipWhitespace(start, stop);
+        stop = this.trimEnd(start, stop);
+        if (start == stop || !Character.isLowerCase(this.input.charAt(start))) {
+            return false;
+        }
+
+        // Can't have duplicates with the same ID
+        String id = this.input.subSequence(start, stop).toString();
+        if (!this.declaredIds.add(id)) {
+            return false;
+        }
+
+        token.setId(id);
+        return true;
+    }
+
+    /**
+     * Reads the two arguments of a child token. The first is the ID of the
+     * parent and the second is either a new ID or a value.
+     *
+     * @param token
+     *            The token that is currently being read.
+     * @param parentStart
+     *            The offset of the start of the parent argument.
+     * @param parentStop
+     *            The offset of the end of the parent argument.
+     * @param start
+     *            The offset of the start of the second argument.
+     * @param stop
+     *            The offset of the end of the second argument.
+     * @return If the arguments matched the expected patterns.
+     */
+    private boolean readParentArgs(ParseToken token, int parentStart,
+            int parentStop, int start, int stop) {
+        parentStart = this.skipWhitespace(parentStart, parentStop);
+        parentStop = this.trimEnd(parentStart, parentStop);
+
+        // Must have a parent in this case, the first argument is the ID of
+        // the parent
+        if (parentStart == parentStop
+                || !Character.isLowerCase(this.input.charAt(parentStart))) {
+            return false;
+        }
+
+        String parent = this.input.subSequence(parentStart, parentStop)
+                .toString();
+        if (!this.declaredIds.contains(parent)) {
+            return false;
+        }
+        token.setParent(parent);
+
+        start = this.skipWhitespace(start, stop);
+        stop = this.trimEnd(start, stop);
+        if (start == stop) {
+            return false;
+        }
+
+        // If it is a parent itself, the second argument will be a lower case
+        if (Character.isLowerCase(this.input.charAt(start))) {
+            return this.readIdArg(token, start, stop);
+        }
+
+        token.setValue(this.input, start, stop);
+        return true;
+    }
+
+    /**
+     * Creates the exception for a syntax error at the cursor.
+     *
+     * @return The exception describing the rest of the input.
+     */
+    private CouldNotParseException syntaxError() {
+        return new CouldNotParseException("Error: Syntax error in \""
+                + this.input.subSequence(Math.min(this.position, this.end),
+                        this.end) + "\".  Could not parse.");
+    }
+
+    /**
+     * Finds the given character between the given offset and the end of the
+     * input.
+     *
+     * @param c
+     *            The character to find.
+     * @param from
+     *            The offset to start searching from.
+     * @return The offset of the character or -1 if it was not found.
+     */
+    private int indexOf(char c, int from) {
+        return this.indexOf(c, from, this.end);
+    }
+
+    /**
+     * Finds the given character between the given offsets.
+     *
+     * @param c
+     *            The character to find.
+     * @param from
+     *            The offset to start searching from.
+     * @param to
+     *            The offset to stop searching at.
+     * @return The offset of the character or -1 if it was not found.
+     */
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (this.input.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips whitespace from the given offset to the end of the input.
+     *
+     * @param from
+     *            The offset to start from.
+     * @return The offset of the first non-whitespace character.
+     */
+    private int skipWhitespace(int from) {
+        return this.skipWhitespace(from, this.end);
+    }
+
+    /**
+     * Skips whitespace between the given offsets.
+     *
+     * @param from
+     *            The offset to start from.
+     * @param to
+     *            The offset to stop at.
+     * @return The offset of the first non-whitespace character or to if there
+     *         is none.
+     */
+    private int skipWhitespace(int from, int to) {
+        while (from < to && this.input.charAt(from) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Moves the end offset back past any trailing whitespace.
+     *
+     * @param from
+     *            The offset of the start of the range.
+     * @param to
+     *            The offset of the end of the range.
+     * @return The end offset with the trailing whitespace removed.
+     */
+    private int trimEnd(int from, int to) {
+        while (to > from && this.input.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,85 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
+
+/**
+ * The result of parsing a single semantic representation with
+ * {@link Parser#parseToResult(CharSequence)}. A result is immutable, so it
+ * may be shared by any number of threads without synchronization.
+ * <p>
+ * The parse trees are read-only {@link TreeView}s of a {@link CompactTree}
+ * taken once the sentences were built. Their views and {@link ParseToken}s
+ * are created up front, with their type and value Strings, and the tokens are
+ * frozen. The {@link Sentence}s and their entities are sealed, so neither can
+ * be changed through the result.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class ParseResult {
+
+    /**
+     * The parse trees of the representation.
+     */
+    private final CompactTree tree;
+
+    /**
+     * The read-only views of the roots of the {@link tree}.
+     */
+    private final List<TreeView<ParseToken>> trees;
+
+    /**
+     * The sealed sentences generated from the trees.
+     */
+    private final List<Sentence> sentences;
+
+    /**
+     * Creates a new ParseResult with the given trees and sentences. The
+     * sentences are sealed.
+     *
+     * @param tree
+     *            The parse trees of the representation, taken after the
+     *            sentences were built.
+     * @param sentences
+     *            The sentences generated from the trees.
+     */
+    ParseResult(CompactTree tree, List<Sentence> sentences) {
+        for (Sentence sentence : sentences) {
+            sentence.seal();
+        }
+        this.tree = tree;
+        this.trees = tree.getSharedTrees();
+        this.sentences = Collections.unmodifiableList(new ArrayList<Sentence>(
+                sentences));
+    }
+
+    /**
+     * Gets the parse trees of the representation.
+     *
+     * @return An unmodifiable list of the read-only views of the roots.
+     */
+    public List<TreeView<ParseToken>> getTrees() {
+        return this.trees;
+    }
+
+    /**
+     * Gets the sentences generated from the representation.
+     *
+     * @return An unmodifiable list of the sealed sentences.
+     */
+    public List<Sentence> getSentences() {
+        return this.sentences;
+    }
+
+    @Override
+    /**
+     * Returns the structure of the parse trees in the same form as Parser's toString.
+     */
+    public String toString() {
+        return this.tree.toString();
+    }
+}
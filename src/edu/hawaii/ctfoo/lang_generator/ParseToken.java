@@ -9,6 +9,11 @@ public class ParseToken {
      * The type of the token (i.e. Subject, Object, Item, etc)
      */
     private String type = null;
+
+    /**
+     * The {@link TokenType} of the token, determined when the type is set.
+     */
+    private TokenType typeSymbol = TokenType.UNKNOWN;
     
     /**
      * The ID of the token's parent.  null if the token does not have a parent.
@@ -35,12 +40,41 @@ public class ParseToken {
      * If the token was negated or not.
      */
     private boolean negated = false;
+
+    /**
+     * The input the type and value were read from.  null if they were set
+     * directly as Strings.
+     */
+    private CharSequence source = null;
+
+    /**
+     * The offsets of the type in the {@link source}.  Both are -1 if the type
+     * has not been read from the source.
+     */
+    private int typeStart = -1, typeEnd = -1;
+
+    /**
+     * The offsets of the value in the {@link source}.  Both are -1 if the
+     * value has not been read from the source.
+     */
+    private int valueStart = -1, valueEnd = -1;
+
+    /**
+     * If the token can no longer be changed.  Set by {@link #freeze()}.
+     */
+    private boolean frozen = false;
     
     /**
      * Gets the type of the token (i.e. Subject, Object, Item, etc).
      * @return The type of the token.
      */
     public String getType() {
+        if (this.type == null && this.typeStart != -1) {
+            this.type = Character.toUpperCase(this.source
+                    .charAt(this.typeStart))
+                    + this.source.subSequence(this.typeStart + 1, this.typeEnd)
+                            .toString();
+        }
         return this.type;
     }
     /**
@@ -48,7 +82,81 @@ public class ParseToken {
      * @param type The new type of the token.
      */
     public void setType(String type) {
+        this.checkNotFrozen();
         this.type = type;
+        this.typeSymbol = TokenType.lookup(type);
+        this.typeStart = -1;
+        this.typeEnd = -1;
+    }
+    /**
+     * Sets the type of the token to the given value whose {@link TokenType} is already known.
+     * @param type The new type of the token.
+     * @param typeSymbol The TokenType of the new type.
+     */
+    void setType(String type, TokenType typeSymbol) {
+        this.checkNotFrozen();
+        this.type = type;
+        this.typeSymbol = typeSymbol;
+        this.typeStart = -1;
+        this.typeEnd = -1;
+    }
+    /**
+     * Sets the type of the token to the characters between the given offsets of the source.
+     * The String is only created when the type is first read and has its first letter capitalized.
+     * @param source The input that the token was read from.
+     * @param start The offset of the first character of the type.
+     * @param end The offset after the last character of the type.
+     */
+    void setType(CharSequence source, int start, int end) {
+        this.checkNotFrozen();
+        this.source = source;
+        this.type = null;
+        this.typeStart = start;
+        this.typeEnd = end;
+        this.typeSymbol = TokenType.lookup(source, start, end);
+    }
+    /**
+     * Gets the {@link TokenType} of the token. Tokens can be compared by their TokenTypes by
+     * identity unless the type is {@link TokenType#UNKNOWN}.
+     * @return The TokenType of the token.
+     */
+    public TokenType getTypeSymbol() {
+        return this.typeSymbol;
+    }
+    /**
+     * Gets the input that the type and value were read from.
+     * @return The input or null if the type and value were set directly as Strings.
+     */
+    CharSequence getSource() {
+        return this.source;
+    }
+    /**
+     * Gets the offset of the type in the {@link #getSource() source}.
+     * @return The offset of the first character of the type or -1 if it was not read from the source.
+     */
+    int getTypeStart() {
+        return this.typeStart;
+    }
+    /**
+     * Gets the offset of the end of the type in the {@link #getSource() source}.
+     * @return The offset after the last character of the type or -1 if it was not read from the source.
+     */
+    int getTypeEnd() {
+        return this.typeEnd;
+    }
+    /**
+     * Gets the offset of the value in the {@link #getSource() source}.
+     * @return The offset of the first character of the value or -1 if it was not read from the source.
+     */
+    int getValueStart() {
+        return this.valueStart;
+    }
+    /**
+     * Gets the offset of the end of the value in the {@link #getSource() source}.
+     * @return The offset after the last character of the value or -1 if it was not read from the source.
+     */
+    int getValueEnd() {
+        return this.valueEnd;
     }
     /**
      * Gets the ID of the token's parent. null if the token does not have a parent.
@@ -62,6 +170,7 @@ public class ParseToken {
      * @param parent The ID of the token's new parent.  null indicates no parent.
      */
     public void setParent(String parent) {
+        this.checkNotFrozen();
         this.parent = parent;
     }
     /**
@@ -76,6 +185,7 @@ public class ParseToken {
      * @param id The new ID of the token.  null indicates that it is not a parent.
      */
     public void setId(String id) {
+        this.checkNotFrozen();
         this.id = id;
     }
     /**
@@ -83,14 +193,70 @@ public class ParseToken {
      * @return The value of the token.  null if the token is a parent.
      */
     public String getValue() {
+        if (this.value == null && this.valueStart != -1) {
+            this.value = this.readValue();
+        }
         return this.value;
     }
+    /**
+     * Creates the value String from the source with the quotes and surrounding whitespace removed.
+     * @return The value of the token.
+     */
+    private String readValue() {
+        int start = this.valueStart;
+        int end = this.valueEnd;
+        while (start < end && isQuoteOrWhitespace(this.source.charAt(start))) {
+            start++;
+        }
+        while (end > start && isQuoteOrWhitespace(this.source.charAt(end - 1))) {
+            end--;
+        }
+
+        StringBuilder builder = null;
+        for (int i = start; i < end; i++) {
+            char c = this.source.charAt(i);
+            if (c == '"' || c == '\'') {
+                if (builder == null) {
+                    builder = new StringBuilder(end - start);
+                    builder.append(this.source, start, i);
+                }
+            } else if (builder != null) {
+                builder.append(c);
+            }
+        }
+        return (builder == null) ? this.source.subSequence(start, end).toString() : builder.toString();
+    }
+    /**
+     * Checks if the given character is removed from the ends of a value.
+     * @param c The character to check.
+     * @return If the character is a quote or whitespace.
+     */
+    private static boolean isQuoteOrWhitespace(char c) {
+        return c == '"' || c == '\'' || c <= ' ';
+    }
     /**
      * Sets the value of the token to the given value.
      * @param value The new value for the token.
      */
     public void setValue(String value) {
+        this.checkNotFrozen();
         this.value = value;
+        this.valueStart = -1;
+        this.valueEnd = -1;
+    }
+    /**
+     * Sets the value of the token to the characters between the given offsets of the source.
+     * The String is only created when the value is first read.
+     * @param source The input that the token was read from.
+     * @param start The offset of the first character of the value.
+     * @param end The offset after the last character of the value.
+     */
+    void setValue(CharSequence source, int start, int end) {
+        this.checkNotFrozen();
+        this.source = source;
+        this.value = null;
+        this.valueStart = start;
+        this.valueEnd = end;
     }
     /**
      * Gets the logic operation used to link this token with the others.
@@ -104,6 +270,7 @@ public class ParseToken {
      * @param logic The new logic operation of the token.
      */
     public void setLogic(LogicOp logic) {
+        this.checkNotFrozen();
         this.logic = logic;
     }
     
@@ -119,8 +286,34 @@ public class ParseToken {
      * @param negated If the token was negated (true = negated).
      */
     public void setNegated(boolean negated) {
+        this.checkNotFrozen();
         this.negated = negated;
     }
+    /**
+     * Makes the token read-only.  The type and value Strings are created right away, so that
+     * reading the token never changes it and a frozen token may be read by any number of threads.
+     */
+    void freeze() {
+        this.getType();
+        this.getValue();
+        this.frozen = true;
+    }
+    /**
+     * Checks if the token is read-only.
+     * @return If the token was frozen and can no longer be changed.
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+    /**
+     * Throws if the token is read-only.
+     * @throws UnsupportedOperationException If the token was frozen.
+     */
+    private void checkNotFrozen() {
+        if (this.frozen) {
+            throw new UnsupportedOperationException("The token is read-only.");
+        }
+    }
     @Override
     /**
      * Returns a String of the ParseToken in JSON form.
@@ -128,7 +321,7 @@ public class ParseToken {
     public String toString() {
         StringBuilder returnString = new StringBuilder();
         String fieldValue;
-        fieldValue = (this.type == null) ? "null, " : this.type + ", ";
+        fieldValue = (this.getType() == null) ? "null, " : this.getType() + ", ";
         returnString.append("{ Type: " + fieldValue);
 
         fieldValue = (this.id == null) ? "null, " : this.id + ", ";
@@ -137,7 +330,7 @@ public class ParseToken {
         fieldValue = (this.parent == null) ? "null, " : this.parent + ", ";
         returnString.append("Parent: " + fieldValue);
         
-        fieldValue = (this.value == null) ? "null, " : this.value + ", ";
+        fieldValue = (this.getValue() == null) ? "null, " : this.getValue() + ", ";
         returnString.append("Value: " + fieldValue);
         
         fieldValue = (this.logic == null) ? "null, " : this.logic + ", ";
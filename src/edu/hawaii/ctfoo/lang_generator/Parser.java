@@ -1,34 +1,36 @@
 package edu.hawaii.ctfoo.lang_generator;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-import edu.hawaii.ctfoo.lang_generator.sentence.BuySentence;
-import edu.hawaii.ctfoo.lang_generator.sentence.FindGroupSentence;
-import edu.hawaii.ctfoo.lang_generator.sentence.FindMoreSentence;
-import edu.hawaii.ctfoo.lang_generator.sentence.SellSentence;
+import edu.hawaii.ctfoo.lang_generator.event.Events;
+import edu.hawaii.ctfoo.lang_generator.event.ParseEvent;
+import edu.hawaii.ctfoo.lang_generator.event.TreeEvent;
 import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
+import edu.hawaii.ctfoo.lang_generator.sentence.SentenceRegistry;
 
 /**
  * Used for parsing semantic representations in String form into
  * {@link ParseToken}s, {@link Tree}s, and ultimately {@link Sentence}s.
+ * <p>
+ * {@link #parseToResult(CharSequence)} does not use any of the Parser's
+ * fields, so a single Parser may be shared by any number of threads when it
+ * is used. {@link #parse(String)} and {@link #generateSentences()} keep the
+ * most recent parse in the Parser and must not be shared between threads.
  * 
  * @author Christopher Foo
  * 
  */
 public class Parser {
     /**
-     * The {@link ParseTokens} resulting from the initial parse of the string
+     * The {@link ParseTokens} resulting from the most recent call to
+     * {@link parse}. null if nothing has been parsed yet.
      */
-    private List<ParseToken> tokens;
+    private TokenIndex tokens;
 
     /**
-     * The IDs of parent tokens in the {@link tokens} list.
-     */
-    private List<String> parentIds;
-
-    /**
-     * The parse trees derived from the {@link tokens} list.
+     * The parse trees derived from the {@link tokens}.
      */
     private List<Tree<ParseToken>> parseTrees;
 
@@ -36,15 +38,14 @@ public class Parser {
      * Create a new Parser and initialize all of the lists and fields.
      */
     public Parser() {
-        this.tokens = new ArrayList<ParseToken>();
-        this.parentIds = new ArrayList<String>();
+        this.tokens = null;
         this.parseTrees = new ArrayList<Tree<ParseToken>>();
     }
 
     /**
-     * Returns all {@link ParseToken}s from the latest call to
-     * {@link parseToTokens} that are direct children (1 level, child not
-     * grand-child or further) of the token with the given ID.
+     * Returns all {@link ParseToken}s from the latest call to {@link parse}
+     * that are direct children (1 level, child not grand-child or further) of
+     * the token with the given ID.
      * 
      * @param parentId
      *            The ID of the parent token that the direct children should be
@@ -53,16 +54,10 @@ public class Parser {
      *         token with the given ID.
      */
     private List<ParseToken> getDirectChildrenTokens(String parentId) {
-        ArrayList<ParseToken> children = new ArrayList<ParseToken>();
-        for (ParseToken token : this.tokens) {
-            if (token.getParent() == parentId
-                    || (token.getParent() != null && token.getParent().equals(
-                            parentId))) {
-                children.add(token);
-            }
+        if (this.tokens == null) {
+            return Collections.emptyList();
         }
-
-        return children;
+        return this.tokens.getDirectChildren(parentId);
     }
 
     /**
@@ -73,7 +68,7 @@ public class Parser {
      *         strings.
      */
     public List<ParseToken> getRootTokens() {
-        return this.getDirectChildrenTokens(null);
+        return new ArrayList<ParseToken>(this.getDirectChildrenTokens(null));
     }
 
     /**
@@ -84,243 +79,146 @@ public class Parser {
      * @return The token with the matching ID or null if it was not found.
      */
     public ParseToken findId(String id) {
-        if (id == null) {
+        if (this.tokens == null) {
             return null;
         }
-        for (ParseToken token : this.tokens) {
-            if (token.getId() != null && token.getId().equals(id)) {
-                return token;
-            }
-        }
-        return null;
+        return this.tokens.findId(id);
     }
 
     /**
-     * Parses the arguments of a single token in a semantic representation
-     * passed to the Parser.
+     * Parses the given semantic representation and generates its
+     * {@link Sentence}s without modifying the Parser. Safe to call from
+     * multiple threads on the same Parser. The input is copied first, so the
+     * caller may reuse a mutable CharSequence once this returns.
      * 
-     * @param token
-     *            The {@link ParseToken} object that is currently being built by
-     *            the Parser.
-     * @param args
-     *            The arguments of the token.
+     * @param input
+     *            The semantic representation in string form.
+     * @return The immutable parse trees and sentences of the
+     *         representation, which may be shared between threads.
      * @throws CouldNotParseException
-     *             If the arguments do not match the expected patterns.
+     *             If the given string does not match the expected semantic
+     *             representation.
      */
-    private void parseArgs(ParseToken token, String[] args)
+    public ParseResult parseToResult(CharSequence input)
             throws CouldNotParseException {
-        if (args.length > 2) {
-            throw new CouldNotParseException();
-        } else if (args.length == 1) {
-            String arg = args[0].trim();
-            if (Character.isLowerCase(arg.charAt(0))
-                    && !this.parentIds.contains(arg)) {
-                token.setId(arg);
-                this.parentIds.add(arg);
-            }
-
-            else {
-                throw new CouldNotParseException();
-            }
-        }
-
-        else if (args.length == 2) {
-            String arg1 = args[0].trim();
-            String arg2 = args[1].trim();
-            // Must have a parent in this case, the first argument is the ID of
-            // the parent
-            if (Character.isLowerCase(arg1.charAt(0))
-                    && this.parentIds.contains(arg1.trim())) {
-                token.setParent(arg1);
-
-                // If it is a parent itself, the second argument will be a lower
-                // case
-                if (Character.isLowerCase(arg2.charAt(0))) {
-
-                    // Can't have duplicates with the same ID
-                    if (this.parentIds.contains(arg2)) {
-                        throw new CouldNotParseException();
-                    }
-
-                    else {
-                        token.setId(arg2);
-                        this.parentIds.add(arg2);
-                    }
-                }
-
-                else {
-                    token.setValue(arg2.replace("\"", "").replace("'", "")
-                            .trim());
-                }
-            }
-
-            else {
-                throw new CouldNotParseException();
-            }
-        }
-
-        else {
-            throw new CouldNotParseException();
-        }
+        // The tokens read their type and value from the input lazily
+        String source = input.toString();
+        TokenIndex tokens = new TokenIndex(lex(source));
+        List<Tree<ParseToken>> trees = buildTrees(tokens);
+        List<Sentence> sentences = this.generateSentences(trees);
+
+        // The result's trees are taken from the same tokens after the
+        // sentences were built, so they show the negations that building the
+        // sentences marked
+        return new ParseResult(CompactTree.build(source, tokens), sentences);
     }
 
     /**
-     * Parses the given semantic representation into tokens stored in the
-     * {@link tokens} field.
+     * Parses the given semantic representation into its {@link Tree} form.
      * 
      * @param string
-     *            The semantic representation of the sentence.
+     *            The semantic representation in string form.
      * @throws CouldNotParseException
-     *             The given string does not match the expected semantic
+     *             If the given string does not match the expected semantic
      *             representation.
      */
-    private void parseToTokens(String string) throws CouldNotParseException {
-
-        // Make sure lists are clear
-        this.parentIds.clear();
-        this.tokens.clear();
-
-        String stringCopy = new String(string).trim();
-        int foundIndex;
-        String[] args;
-        while (!stringCopy.isEmpty()) {
-            ParseToken token = new ParseToken();
-            switch (stringCopy.charAt(0)) {
-            case ',':
-                token.setLogic(LogicOp.AND);
-
-                // Check for negation after the AND
-                int i = 1;
-
-                // Skip the whitespace
-                char currentChar = stringCopy.charAt(i);
-                while (currentChar == ' ' || currentChar == '\t') {
-                    currentChar = stringCopy.charAt(++i);
-                }
-                if (currentChar == '-') {
-                    token.setNegated(true);
-                    stringCopy = stringCopy.substring(i + 1).trim();
-                } else {
-                    stringCopy = stringCopy.substring(1).trim();
-                }
-                break;
-            case ';':
-                token.setLogic(LogicOp.OR);
-
-                // Check for negation after the OR
-                i = 1;
-
-                // Skip the whitespace
-                currentChar = stringCopy.charAt(i);
-                while (currentChar == ' ' || currentChar == '\t') {
-                    currentChar = stringCopy.charAt(++i);
-                }
-                if (currentChar == '-') {
-                    token.setNegated(true);
-                    stringCopy = stringCopy.substring(i + 1).trim();
-                } else {
-                    stringCopy = stringCopy.substring(1).trim();
-                }
-                break;
-            case '-':
-                token.setNegated(true);
-                stringCopy = stringCopy.substring(1).trim();
-                break;
-            }
-
-            foundIndex = stringCopy.indexOf('(');
-
-            // No ( for the start of the argument list, syntax error
-            if (foundIndex == -1) {
-                throw new CouldNotParseException("Error: Syntax error in \""
-                        + stringCopy + "\".  Could not parse.");
-            }
-
-            token.setType(Character.toUpperCase(stringCopy.charAt(0)) + stringCopy.substring(1, foundIndex));
-            stringCopy = stringCopy.substring(foundIndex + 1).trim();
-
-            foundIndex = stringCopy.indexOf(')');
-
-            // No ) for the end of the argument list, syntax error
-            if (foundIndex == -1) {
-                throw new CouldNotParseException("Error: Syntax error in \""
-                        + stringCopy + "\".  Could not parse.");
-            }
-
-            // Parse arguments
-            args = stringCopy.substring(0, foundIndex).split(",");
-            try {
-                parseArgs(token, args);
-            }
-
-            catch (CouldNotParseException e) {
-                throw new CouldNotParseException("Error: Syntax error in \""
-                        + stringCopy + "\".  Could not parse.");
-            }
-
-            this.tokens.add(token);
-            stringCopy = stringCopy.substring(foundIndex + 1).trim();
-        }
-
-        // Empty parentIds list, do not need it until parseToTokens is called
-        // again.
-        this.parentIds.clear();
+    public void parse(String string) throws CouldNotParseException {
+        TokenIndex parsedTokens = new TokenIndex(lex(string));
+        this.parseTrees = buildTrees(parsedTokens);
+        this.tokens = parsedTokens;
     }
 
     /**
-     * Recursive function used to parse the {@link tokens} into {@link Tree}
-     * structures in the {@link parseTrees} field.
+     * Splits the given semantic representation into its tokens, recording the
+     * lexing in the {@link GeneratorMetrics} and as a {@link ParseEvent}.
      * 
-     * @param parent
-     *            The parent of current token.
-     * @param current
-     *            The token that to parse into a Tree.
+     * @param input
+     *            The semantic representation in string form.
+     * @return The tokens of the representation.
+     * @throws CouldNotParseException
+     *             If the given string does not match the expected semantic
+     *             representation.
      */
-    private void parseToTree(Tree<ParseToken> parent, ParseToken current) {
-        Tree<ParseToken> thisNode;
-        if (parent == null) {
-            thisNode = new Tree<ParseToken>(current, null);
-            this.parseTrees.add(thisNode);
-        } else {
-            thisNode = parent.addChild(current);
+    static List<ParseToken> lex(CharSequence input)
+            throws CouldNotParseException {
+        GeneratorMetrics metrics = GeneratorMetrics.getDefault();
+        ParseEvent event = null;
+        if (Events.isRecorderRunning()) {
+            event = new ParseEvent();
+            event.begin();
         }
-
-        String rootId = current.getId();
-        if (rootId != null) {
-            for (ParseToken child : this.getDirectChildrenTokens(rootId)) {
-                this.parseToTree(thisNode, child);
+        long start = metrics.start();
+        List<ParseToken> tokens = null;
+        try {
+            tokens = new Lexer(input).tokenize();
+            metrics.recordLex(start);
+            return tokens;
+        } catch (CouldNotParseException e) {
+            metrics.recordParseFailure();
+            throw e;
+        } finally {
+            if (event != null && event.shouldCommit()) {
+                event.inputLength = input.length();
+                event.tokenCount = tokens == null ? 0 : tokens.size();
+                event.error = tokens == null;
+                event.commit();
             }
         }
     }
 
     /**
-     * Parses the entire {@link tokens} list into {@link Tree} structures stored
-     * in the {@link parseTree} field.
+     * Builds the parse trees from the given tokens, recording the building in
+     * the {@link GeneratorMetrics} and as a {@link TreeEvent}.
+     * 
+     * @param tokens
+     *            The tokens of a semantic representation.
+     * @return The parse trees of the tokens.
      */
-    private void parseToTree() {
-
-        // Make sure the parseTree is clear
-        this.parseTrees.clear();
-        for (ParseToken root : this.getRootTokens()) {
-            parseToTree(null, root);
+    static List<Tree<ParseToken>> buildTrees(TokenIndex tokens) {
+        GeneratorMetrics metrics = GeneratorMetrics.getDefault();
+        TreeEvent event = null;
+        if (Events.isRecorderRunning()) {
+            event = new TreeEvent();
+            event.begin();
         }
-
-        // The tokens list is not needed any more
-        this.tokens.clear();
+        long start = metrics.start();
+        List<Tree<ParseToken>> trees = tokens.buildTrees();
+        metrics.recordTree(start);
+        if (event != null && event.shouldCommit()) {
+            event.tokenCount = tokens.size();
+            event.treeCount = trees.size();
+            event.commit();
+        }
+        return trees;
     }
 
     /**
-     * Parses the given semantic representation into its {@link Tree} form.
+     * Builds the {@link CompactTree} of the given tokens, recording the
+     * building in the {@link GeneratorMetrics} and as a {@link TreeEvent} the
+     * same as {@link #buildTrees(TokenIndex)}.
      * 
-     * @param string
-     *            The semantic representation in string form.
-     * @throws CouldNotParseException
-     *             If the given string does not match the expected semantic
-     *             representation.
+     * @param input
+     *            The semantic representation the tokens were read from.
+     * @param tokens
+     *            The tokens of the representation.
+     * @return The CompactTree of the tokens.
      */
-    public void parse(String string) throws CouldNotParseException {
-        this.parseToTokens(string); // Remove any whitespace
-        this.parseToTree();
+    static CompactTree buildCompactTree(CharSequence input, TokenIndex tokens) {
+        GeneratorMetrics metrics = GeneratorMetrics.getDefault();
+        TreeEvent event = null;
+        if (Events.isRecorderRunning()) {
+            event = new TreeEvent();
+            event.begin();
+        }
+        long start = metrics.start();
+        CompactTree tree = CompactTree.build(input, tokens);
+        metrics.recordTree(start);
+        if (event != null && event.shouldCommit()) {
+            event.tokenCount = tokens.size();
+            event.treeCount = tree.getRoots().length;
+            event.commit();
+        }
+        return tree;
     }
 
     /**
@@ -329,29 +227,43 @@ public class Parser {
      * @return A list of Sentences for the most recent parse.
      */
     public List<Sentence> generateSentences() {
-        ArrayList<Sentence> sentences = new ArrayList<Sentence>();
-        for (Tree<ParseToken> root : this.parseTrees) {
-            String type = root.getNode().getType();
-            if (type.equalsIgnoreCase("buy")) {
-                sentences.add(new BuySentence(root));
-            }
-
-            else if (type.equalsIgnoreCase("sell")) {
-                sentences.add(new SellSentence(root));
-            }
+        return this.generateSentences(this.parseTrees);
+    }
 
-            else if (type.equalsIgnoreCase("findgroup")) {
-                sentences.add(new FindGroupSentence(root));
-            }
+    /**
+     * Generates all of the {@link Sentence}s for the given
+     * {@link CompactTree} without expanding it. Does not modify the Parser.
+     * 
+     * @param tree
+     *            The CompactTree to generate the sentences for.
+     * @return A list of Sentences for the trees.
+     */
+    public List<Sentence> generateSentences(CompactTree tree) {
+        return this.generateSentences(tree.getTrees());
+    }
 
-            else if (type.equalsIgnoreCase("findmore")) {
-                sentences.add(new FindMoreSentence(root));
-            }
+    /**
+     * Generates all of the {@link Sentence}s for the given parse trees.
+     * 
+     * @param parseTrees
+     *            The parse trees to generate the sentences for.
+     * @return A list of Sentences for the parse trees.
+     */
+    List<Sentence> generateSentences(
+            List<? extends TreeView<ParseToken>> parseTrees) {
+        GeneratorMetrics metrics = GeneratorMetrics.getDefault();
+        long start = metrics.start();
+        ArrayList<Sentence> sentences = new ArrayList<Sentence>();
+        for (TreeView<ParseToken> root : parseTrees) {
+            Sentence sentence = SentenceRegistry.create(root);
 
-            else {
-                // Unrecognized sentence, ignore.
+            // Unrecognized sentences are ignored
+            if (sentence != null) {
+                sentences.add(sentence);
+                metrics.recordSentence(root.getNode());
             }
         }
+        metrics.recordSentences(start);
         return sentences;
     }
 
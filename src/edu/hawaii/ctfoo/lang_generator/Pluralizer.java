@@ -0,0 +1,279 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Changes English nouns to their plural forms. Irregular forms are looked up
+ * in a dictionary and the rest are changed by the suffix rules in
+ * {@link #RULES}. Only the last word of a multi-word name is made plural and
+ * the case of the original word is kept. Computed plurals are cached, up to a
+ * fixed number of entries, so the same names are not rebuilt every time a
+ * sentence is generated.
+ *
+ * @author Christopher Foo
+ *
+ */
+public class Pluralizer {
+
+    /**
+     * The name of the resource containing the default irregular plurals.
+     */
+    public static final String IRREGULARS_RESOURCE = "plurals.properties";
+
+    /**
+     * The default maximum number of cached plurals.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    /**
+     * The suffix rules, checked in order. The first rule whose suffix matches
+     * the end of the word, ignoring case, is used. Words that match no rule
+     * have an "s" appended.
+     */
+    private static final Rule[] RULES = { new Rule("ay", 0, "s"),
+            new Rule("ey", 0, "s"), new Rule("iy", 0, "s"),
+            new Rule("oy", 0, "s"), new Rule("uy", 0, "s"),
+            new Rule("y", 1, "ies"), new Rule("ch", 0, "es"),
+            new Rule("sh", 0, "es"), new Rule("s", 0, "es"),
+            new Rule("x", 0, "es"), new Rule("z", 0, "es"),
+            new Rule("lf", 1, "ves"), new Rule("eaf", 1, "ves") };
+
+    /**
+     * The Pluralizer using the irregular plurals from
+     * {@link #IRREGULARS_RESOURCE}. Loading the class fails if the resource
+     * is missing.
+     */
+    private static final Pluralizer defaultPluralizer = new Pluralizer(
+            loadIrregulars(IRREGULARS_RESOURCE), DEFAULT_CACHE_SIZE);
+
+    /**
+     * The irregular plurals keyed by their lower case singular forms.
+     */
+    private final Map<String, String> irregulars;
+
+    /**
+     * The plurals that have already been computed keyed by the original
+     * word.
+     */
+    private final ConcurrentMap<String, String> cache;
+
+    /**
+     * The maximum number of entries in the {@link cache}.
+     */
+    private final int cacheSize;
+
+    /**
+     * Creates a new Pluralizer with the given irregular plurals.
+     *
+     * @param irregulars
+     *            The plural forms keyed by their singular forms. Both are
+     *            compared ignoring case.
+     * @param cacheSize
+     *            The maximum number of computed plurals to cache. 0 to disable
+     *            the cache.
+     */
+    public Pluralizer(Map<String, String> irregulars, int cacheSize) {
+        Map<String, String> lowerCase = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : irregulars.entrySet()) {
+            lowerCase.put(entry.getKey().toLowerCase(Locale.ENGLISH), entry
+                    .getValue().toLowerCase(Locale.ENGLISH));
+        }
+        this.irregulars = Collections.unmodifiableMap(lowerCase);
+        this.cache = new ConcurrentHashMap<String, String>();
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Gets the Pluralizer using the irregular plurals from
+     * {@link #IRREGULARS_RESOURCE}.
+     *
+     * @return The default Pluralizer.
+     */
+    public static Pluralizer getDefault() {
+        return defaultPluralizer;
+    }
+
+    /**
+     * Changes the given word or name to its plural form.
+     *
+     * @param string
+     *            The String that should be made into its plural form.
+     * @return The plural form of the given string.
+     */
+    public String pluralize(String string) {
+        String plural = this.cache.get(string);
+        if (plural == null) {
+            plural = this.computePlural(string);
+            if (this.cacheSize > 0) {
+
+                // Start over once full so that the cache follows the names
+                // that are currently in use
+                if (this.cache.size() >= this.cacheSize) {
+                    this.cache.clear();
+                }
+                this.cache.put(string, plural);
+            }
+        }
+        return plural;
+    }
+
+    /**
+     * Computes the plural form of the given string without the cache.
+     *
+     * @param string
+     *            The String that should be made into its plural form.
+     * @return The plural form of the given string.
+     */
+    private String computePlural(String string) {
+
+        // Only the last word changes, "Night Elf" becomes "Night Elves"
+        int wordStart = string.length();
+        while (wordStart > 0
+                && Character.isLetter(string.charAt(wordStart - 1))) {
+            wordStart--;
+        }
+        if (wordStart == string.length()) {
+            return (string.length() == 0) ? string : string + "s";
+        }
+
+        String word = string.substring(wordStart);
+        String lowerWord = word.toLowerCase(Locale.ENGLISH);
+        boolean upperCase = word.length() > 1
+                && word.equals(word.toUpperCase(Locale.ENGLISH));
+
+        String irregular = this.irregulars.get(lowerWord);
+        if (irregular != null) {
+            int common = 0;
+            while (common < lowerWord.length() && common < irregular.length()
+                    && lowerWord.charAt(common) == irregular.charAt(common)) {
+                common++;
+            }
+
+            // Keep the original characters that are shared with the plural
+            StringBuilder builder = new StringBuilder(wordStart
+                    + irregular.length());
+            builder.append(string, 0, wordStart + common);
+            String rest = irregular.substring(common);
+            if (upperCase) {
+                rest = rest.toUpperCase(Locale.ENGLISH);
+            } else if (common == 0 && rest.length() > 0
+                    && Character.isUpperCase(word.charAt(0))) {
+                rest = Character.toUpperCase(rest.charAt(0))
+                        + rest.substring(1);
+            }
+            return builder.append(rest).toString();
+        }
+
+        for (Rule rule : RULES) {
+            if (word.regionMatches(true, word.length() - rule.suffix.length(),
+                    rule.suffix, 0, rule.suffix.length())) {
+                return string.substring(0, string.length() - rule.strip)
+                        + (upperCase ? rule.append.toUpperCase(Locale.ENGLISH)
+                                : rule.append);
+            }
+        }
+        return string + "s";
+    }
+
+    /**
+     * Loads the irregular plurals from the given resource. Each entry of the
+     * resource maps a singular form to its plural form, and each plural form
+     * is also mapped to itself.
+     *
+     * @param resource
+     *            The name of the resource relative to this class.
+     * @return The irregular plurals keyed by their singular forms.
+     * @throws IllegalStateException
+     *             If the resource is missing or could not be read, since
+     *             every irregular noun would silently be given a regular
+     *             plural otherwise.
+     */
+    public static Map<String, String> loadIrregulars(String resource) {
+        InputStream in = Pluralizer.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException("Could not find the irregular "
+                    + "plurals resource " + resource + ".");
+        }
+
+        Map<String, String> irregulars = new HashMap<String, String>();
+        try {
+            Properties properties = new Properties();
+            properties.load(in);
+            for (String singular : properties.stringPropertyNames()) {
+                irregulars.put(singular, properties.getProperty(singular)
+                        .trim());
+            }
+
+            // Plural forms that are already plural stay unchanged rather
+            // than falling through to the suffix rules ("Staves" would
+            // otherwise become "Staveses")
+            for (String plural : new ArrayList<String>(irregulars.values())) {
+                if (!irregulars.containsKey(plural)) {
+                    irregulars.put(plural, plural);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the irregular "
+                    + "plurals from " + resource + ".", e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                System.err.println("Error: Could not close " + resource + ".");
+            }
+        }
+        return irregulars;
+    }
+
+    /**
+     * A suffix rule for making words plural.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static final class Rule {
+
+        /**
+         * The lower case suffix that the rule applies to.
+         */
+        private final String suffix;
+
+        /**
+         * The number of characters removed from the end of the word.
+         */
+        private final int strip;
+
+        /**
+         * The lower case characters appended after the characters are
+         * removed.
+         */
+        private final String append;
+
+        /**
+         * Creates a new Rule.
+         *
+         * @param suffix
+         *            The lower case suffix that the rule applies to.
+         * @param strip
+         *            The number of characters removed from the end of the
+         *            word.
+         * @param append
+         *            The lower case characters appended after the characters
+         *            are removed.
+         */
+        private Rule(String suffix, int strip, String append) {
+            this.suffix = suffix;
+            this.strip = strip;
+            this.append = append;
+        }
+    }
+}
@@ -0,0 +1,696 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the {@link GenerationResult}s of semantic
+ * representations keyed by the representation, so that representations that
+ * are posted again and again are only parsed and rendered once.
+ * <p>
+ * The cache has two tiers. Each thread first looks in its own small
+ * direct-mapped table, which needs no locking. Misses go to the shared tier,
+ * which is split into segments that are each locked on their own and keep
+ * their entries in least recently used order. The shared tier is bounded by
+ * the total weight of its entries, roughly the number of characters they
+ * hold.
+ * <p>
+ * When the shared tier is full, a new result is only admitted if its
+ * representation has been seen more often than the entries that would have
+ * to be evicted for it, as estimated by a {@link FrequencySketch} (the
+ * TinyLFU policy). Representations that are only seen once therefore do not
+ * push out the ones that keep being posted.
+ * <p>
+ * Representations that miss the cache are parsed and looked up once more by
+ * the {@link TreeKey} of their parse trees, so that representations that only
+ * differ in their token IDs share a single result. Only representations
+ * whose key is not cached either have their sentences built and rendered.
+ * <p>
+ * The results do not depend on anything but the representation, so cached
+ * results never go stale unless new sentence types are registered, after
+ * which the cache should be {@link #clear() cleared}. The
+ * {@link GeneratorMetrics} only record the representations that miss the
+ * cache.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class ResultCache {
+
+    /**
+     * The default maximum weight of the shared tier, about 32 MB of
+     * characters.
+     */
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 1L << 24;
+
+    /**
+     * The default number of entries of each thread's table.
+     */
+    public static final int DEFAULT_THREAD_CACHE_SIZE = 64;
+
+    /**
+     * The weight added to every entry for the objects holding it.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * The weight of an average entry, used to size the frequency sketches.
+     */
+    private static final int EXPECTED_ENTRY_WEIGHT = 256;
+
+    /**
+     * The smallest maximum weight of a segment. Smaller caches have fewer
+     * segments.
+     */
+    private static final long MIN_SEGMENT_WEIGHT = 1 << 14;
+
+    /**
+     * The maximum number of segments.
+     */
+    private static final int MAX_SEGMENTS = 64;
+
+    /**
+     * The segments of the shared tier.
+     */
+    private final Segment[] segments;
+
+    /**
+     * The mask that maps a hash to its segment.
+     */
+    private final int segmentMask;
+
+    /**
+     * The number of entries of each thread's table. 0 if there are none.
+     */
+    private final int threadCacheSize;
+
+    /**
+     * The table of each thread.
+     */
+    private final ThreadLocal<ThreadCache> threadCaches;
+
+    /**
+     * Incremented whenever the cache is cleared, so that the threads know to
+     * empty their tables.
+     */
+    private final AtomicInteger generation;
+
+    /**
+     * The number of lookups found in a thread's table.
+     */
+    private final LongAdder threadHits;
+
+    /**
+     * The number of lookups found in the shared tier.
+     */
+    private final LongAdder sharedHits;
+
+    /**
+     * The number of lookups found by the {@link TreeKey} of their parse
+     * trees.
+     */
+    private final LongAdder structuralHits;
+
+    /**
+     * The number of lookups that had to generate the result.
+     */
+    private final LongAdder misses;
+
+    /**
+     * The number of entries evicted from the shared tier to make room.
+     */
+    private final LongAdder evictions;
+
+    /**
+     * The number of results that were not admitted to the shared tier.
+     */
+    private final LongAdder rejections;
+
+    /**
+     * Creates a new ResultCache with the {@link #DEFAULT_MAXIMUM_WEIGHT} and
+     * the {@link #DEFAULT_THREAD_CACHE_SIZE}.
+     */
+    public ResultCache() {
+        this(DEFAULT_MAXIMUM_WEIGHT, DEFAULT_THREAD_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new ResultCache.
+     *
+     * @param maximumWeight
+     *            The maximum total weight of the shared tier, roughly the
+     *            number of characters of the representations and their
+     *            results.
+     * @param threadCacheSize
+     *            The number of entries of each thread's table, rounded up to
+     *            a power of two. 0 to only use the shared tier, which is
+     *            better when the threads only live for a few lookups.
+     */
+    public ResultCache(long maximumWeight, int threadCacheSize) {
+        if (maximumWeight < 1) {
+            throw new IllegalArgumentException(
+                    "The maximum weight must be at least 1.");
+        }
+        if (threadCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "The thread cache size must not be negative.");
+        }
+
+        int segmentCount = Integer.highestOneBit(Math.min(MAX_SEGMENTS,
+                4 * Runtime.getRuntime().availableProcessors()));
+        while (segmentCount > 1
+                && maximumWeight / segmentCount < MIN_SEGMENT_WEIGHT) {
+            segmentCount >>>= 1;
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment(maximumWeight / segmentCount);
+        }
+        this.segmentMask = segmentCount - 1;
+
+        this.threadCacheSize = threadCacheSize <= 1 ? threadCacheSize
+                : Integer.highestOneBit(threadCacheSize - 1) << 1;
+        this.threadCaches = new ThreadLocal<ThreadCache>();
+        this.generation = new AtomicInteger();
+        this.threadHits = new LongAdder();
+        this.sharedHits = new LongAdder();
+        this.structuralHits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.rejections = new LongAdder();
+    }
+
+    /**
+     * Gets the result of the given representation, generating it with the
+     * given {@link Parser} and caching it if it is not already cached.
+     *
+     * @param parser
+     *            The Parser used on a miss. It is not modified, so it may be
+     *            shared between threads.
+     * @param input
+     *            The semantic representation.
+     * @return The rendered sentences or the parse error of the
+     *         representation.
+     */
+    public GenerationResult get(Parser parser, String input) {
+        int hash = spread(input.hashCode());
+        ThreadCache local = this.getThreadCache();
+        if (local != null) {
+            GenerationResult result = local.get(input, hash);
+            if (result != null) {
+                this.threadHits.increment();
+                return result;
+            }
+        }
+
+        Segment segment = this.segmentOf(hash);
+        GenerationResult result = segment.get(input, hash);
+        if (result != null) {
+            this.sharedHits.increment();
+        } else {
+            result = this.generate(parser, input, hash);
+        }
+
+        if (local != null) {
+            local.put(input, hash, result);
+        }
+        return result;
+    }
+
+    /**
+     * Parses the given representation and gets the result cached for its
+     * {@link TreeKey}, or builds and renders its sentences. The result is
+     * cached for both the representation and the key, or only the
+     * representation if it has an error.
+     *
+     * @param parser
+     *            The Parser used to build the sentences.
+     * @param input
+     *            The semantic representation.
+     * @param hash
+     *            The spread hash of the representation.
+     * @return The result of the representation.
+     */
+    private GenerationResult generate(Parser parser, String input, int hash) {
+        GenerationResult result;
+        List<Tree<ParseToken>> trees;
+        try {
+            trees = Parser.buildTrees(new TokenIndex(Parser.lex(input)));
+        } catch (CouldNotParseException e) {
+            this.misses.increment();
+            result = GenerationResult.error(input, e);
+            this.segmentOf(hash).put(input, hash, result);
+            return result;
+        }
+
+        // The key is taken before the sentences are built, since building
+        // them marks the children of negated subjects and objects
+        TreeKey key = TreeKey.of(trees);
+        int keyHash = spread(key.hashCode());
+        Segment keySegment = this.segmentOf(keyHash);
+        result = keySegment.get(key, keyHash);
+        if (result != null) {
+            this.structuralHits.increment();
+            result = result.withInput(input);
+        } else {
+            this.misses.increment();
+            result = GenerationResult.generate(parser, input, trees);
+
+            // An error names its representation, so it is not shared with
+            // the representations of the same key
+            if (!result.isError()) {
+                keySegment.put(key, keyHash, result);
+            }
+        }
+        this.segmentOf(hash).put(input, hash, result);
+        return result;
+    }
+
+    /**
+     * Gets the segment of the shared tier holding the given hash.
+     *
+     * @param hash
+     *            The spread hash of a representation or key.
+     * @return The segment of the hash.
+     */
+    private Segment segmentOf(int hash) {
+        return this.segments[(hash >>> 16) & this.segmentMask];
+    }
+
+    /**
+     * Removes every entry from both tiers. The tables of the other threads
+     * are emptied the next time they are used.
+     */
+    public void clear() {
+        this.generation.incrementAndGet();
+        for (Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Gets the number of lookups found in either tier.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return this.threadHits.sum() + this.sharedHits.sum()
+                + this.structuralHits.sum();
+    }
+
+    /**
+     * Gets the number of lookups found in a thread's own table.
+     *
+     * @return The number of thread tier hits.
+     */
+    public long getThreadHits() {
+        return this.threadHits.sum();
+    }
+
+    /**
+     * Gets the number of lookups found in the shared tier.
+     *
+     * @return The number of shared tier hits.
+     */
+    public long getSharedHits() {
+        return this.sharedHits.sum();
+    }
+
+    /**
+     * Gets the number of lookups of representations that were not cached
+     * themselves but had the same {@link TreeKey} as a cached one.
+     *
+     * @return The number of structural hits.
+     */
+    public long getStructuralHits() {
+        return this.structuralHits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that had to generate the result.
+     *
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Gets the number of entries evicted from the shared tier to make room
+     * for more frequently used ones.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Gets the number of generated results that were not admitted to the
+     * shared tier because they were used less often than the entries they
+     * would have replaced, or were too heavy to fit.
+     *
+     * @return The number of rejections.
+     */
+    public long getRejections() {
+        return this.rejections.sum();
+    }
+
+    /**
+     * Gets the number of entries in the shared tier.
+     *
+     * @return The number of entries.
+     */
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Gets the total weight of the entries in the shared tier.
+     *
+     * @return The weight of the entries.
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : this.segments) {
+            weight += segment.weight();
+        }
+        return weight;
+    }
+
+    /**
+     * Gets the counters of the cache in the Prometheus text format.
+     *
+     * @return The counters as Prometheus text.
+     */
+    public String getPrometheusText() {
+        StringBuilder text = new StringBuilder();
+        text.append("# HELP generator_cache_hits_total Lookups found in the result cache by tier.\n");
+        text.append("# TYPE generator_cache_hits_total counter\n");
+        text.append("generator_cache_hits_total{tier=\"thread\"} ")
+                .append(this.getThreadHits()).append('\n');
+        text.append("generator_cache_hits_total{tier=\"shared\"} ")
+                .append(this.getSharedHits()).append('\n');
+        text.append("generator_cache_hits_total{tier=\"structural\"} ")
+                .append(this.getStructuralHits()).append('\n');
+        GeneratorMetrics.appendCounter(text, "generator_cache_misses_total",
+                "Lookups that generated the result.", this.getMisses());
+        GeneratorMetrics.appendCounter(text,
+                "generator_cache_evictions_total",
+                "Entries evicted from the result cache.", this.getEvictions());
+        GeneratorMetrics.appendCounter(text,
+                "generator_cache_rejections_total",
+                "Results not admitted to the result cache.",
+                this.getRejections());
+        text.append("# HELP generator_cache_weight Weight of the entries in the result cache.\n");
+        text.append("# TYPE generator_cache_weight gauge\n");
+        text.append("generator_cache_weight ").append(this.getWeight())
+                .append('\n');
+        return text.toString();
+    }
+
+    @Override
+    /**
+     * Returns the counters and weight on a single line.
+     */
+    public String toString() {
+        return "hits=" + this.getHits() + " (thread " + this.getThreadHits()
+                + ", shared " + this.getSharedHits() + ", structural "
+                + this.getStructuralHits() + ") misses="
+                + this.getMisses() + " evictions=" + this.getEvictions()
+                + " rejections=" + this.getRejections() + " size="
+                + this.getSize() + " weight=" + this.getWeight();
+    }
+
+    /**
+     * Gets the calling thread's table, emptying it if the cache was cleared
+     * since it was last used.
+     *
+     * @return The table or null if the threads do not have tables.
+     */
+    private ThreadCache getThreadCache() {
+        if (this.threadCacheSize == 0) {
+            return null;
+        }
+        int current = this.generation.get();
+        ThreadCache local = this.threadCaches.get();
+        if (local == null || local.generation != current) {
+            local = new ThreadCache(this.threadCacheSize, current);
+            this.threadCaches.set(local);
+        }
+        return local;
+    }
+
+    /**
+     * Mixes the bits of a hash code so that similar representations are
+     * spread over the segments, tables and sketches.
+     *
+     * @param hash
+     *            The hash code of the representation.
+     * @return The spread hash.
+     */
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+
+    /**
+     * Gets the weight of an entry.
+     *
+     * @param key
+     *            The representation or the {@link TreeKey} of its trees.
+     * @param result
+     *            Its result.
+     * @return The weight of the entry.
+     */
+    private static long weigh(Object key, GenerationResult result) {
+        long weight = ENTRY_OVERHEAD;
+        if (key instanceof TreeKey) {
+            weight += ((TreeKey) key).weight();
+        } else {
+            weight += ((String) key).length();
+        }
+        for (String sentence : result.getSentences()) {
+            weight += sentence.length();
+        }
+        for (String warning : result.getWarnings()) {
+            weight += warning.length();
+        }
+        if (result.getError() != null) {
+            weight += result.getError().length();
+        }
+        return weight;
+    }
+
+    /**
+     * A part of the shared tier with its own lock, entries and frequency
+     * sketch. The entries are keyed by either the representation or the
+     * {@link TreeKey} of its trees.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private final class Segment {
+
+        /**
+         * The entries from the least to the most recently used.
+         */
+        private final LinkedHashMap<Object, GenerationResult> entries;
+
+        /**
+         * The recent uses of the representations looked up in this segment.
+         */
+        private final FrequencySketch sketch;
+
+        /**
+         * The maximum total weight of the entries.
+         */
+        private final long maximumWeight;
+
+        /**
+         * The total weight of the entries.
+         */
+        private long weight;
+
+        /**
+         * Creates a new empty Segment.
+         *
+         * @param maximumWeight
+         *            The maximum total weight of the entries.
+         */
+        private Segment(long maximumWeight) {
+            this.entries = new LinkedHashMap<Object, GenerationResult>(16,
+                    0.75f, true);
+            this.sketch = new FrequencySketch(Math.max(1, maximumWeight
+                    / EXPECTED_ENTRY_WEIGHT));
+            this.maximumWeight = maximumWeight;
+            this.weight = 0;
+        }
+
+        /**
+         * Counts a use of the given key and gets its result.
+         *
+         * @param key
+         *            The representation or the key of its trees.
+         * @param hash
+         *            The spread hash of the key.
+         * @return The cached result or null if it is not cached.
+         */
+        private synchronized GenerationResult get(Object key, int hash) {
+            this.sketch.increment(hash);
+            return this.entries.get(key);
+        }
+
+        /**
+         * Adds the given result if it fits, evicting the least recently used
+         * entries as long as each is used less often than the new one.
+         *
+         * @param key
+         *            The representation or the key of its trees.
+         * @param hash
+         *            The spread hash of the key.
+         * @param result
+         *            Its result.
+         */
+        private synchronized void put(Object key, int hash,
+                GenerationResult result) {
+
+            // Another thread may have generated it at the same time
+            if (this.entries.containsKey(key)) {
+                return;
+            }
+
+            long entryWeight = weigh(key, result);
+            if (entryWeight > this.maximumWeight) {
+                ResultCache.this.rejections.increment();
+                return;
+            }
+
+            int frequency = this.sketch.frequency(hash);
+            Iterator<Map.Entry<Object, GenerationResult>> oldest = this.entries
+                    .entrySet().iterator();
+            while (this.weight + entryWeight > this.maximumWeight) {
+                Map.Entry<Object, GenerationResult> victim = oldest.next();
+                Object victimKey = victim.getKey();
+
+                // Ties go to the entry that is already cached
+                if (this.sketch.frequency(spread(victimKey.hashCode())) >= frequency) {
+                    ResultCache.this.rejections.increment();
+                    return;
+                }
+                oldest.remove();
+                this.weight -= weigh(victimKey, victim.getValue());
+                ResultCache.this.evictions.increment();
+            }
+
+            this.entries.put(key, result);
+            this.weight += entryWeight;
+        }
+
+        /**
+         * Removes every entry. The frequencies are kept.
+         */
+        private synchronized void clear() {
+            this.entries.clear();
+            this.weight = 0;
+        }
+
+        /**
+         * Gets the number of entries.
+         *
+         * @return The number of entries.
+         */
+        private synchronized int size() {
+            return this.entries.size();
+        }
+
+        /**
+         * Gets the total weight of the entries.
+         *
+         * @return The weight of the entries.
+         */
+        private synchronized long weight() {
+            return this.weight;
+        }
+    }
+
+    /**
+     * The small direct-mapped table of a single thread. Each representation
+     * can only be in the slot chosen by its hash, replacing whatever was
+     * there before.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static final class ThreadCache {
+
+        /**
+         * The representations in each slot.
+         */
+        private final String[] inputs;
+
+        /**
+         * The results in each slot.
+         */
+        private final GenerationResult[] results;
+
+        /**
+         * The generation of the cache when the table was created.
+         */
+        private final int generation;
+
+        /**
+         * Creates a new empty ThreadCache.
+         *
+         * @param size
+         *            The number of slots, a power of two.
+         * @param generation
+         *            The current generation of the cache.
+         */
+        private ThreadCache(int size, int generation) {
+            this.inputs = new String[size];
+            this.results = new GenerationResult[size];
+            this.generation = generation;
+        }
+
+        /**
+         * Gets the result of the given representation.
+         *
+         * @param input
+         *            The representation.
+         * @param hash
+         *            The spread hash of the representation.
+         * @return The result or null if it is not in its slot.
+         */
+        private GenerationResult get(String input, int hash) {
+            int slot = hash & (this.inputs.length - 1);
+            return input.equals(this.inputs[slot]) ? this.results[slot]
+                    : null;
+        }
+
+        /**
+         * Puts the given result in the slot of its representation.
+         *
+         * @param input
+         *            The representation.
+         * @param hash
+         *            The spread hash of the representation.
+         * @param result
+         *            Its result.
+         */
+        private void put(String input, int hash, GenerationResult result) {
+            int slot = hash & (this.inputs.length - 1);
+            this.inputs[slot] = input;
+            this.results[slot] = result;
+        }
+    }
+}
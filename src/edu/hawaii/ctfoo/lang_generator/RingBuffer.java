@@ -0,0 +1,161 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue for exactly one producer thread and one consumer thread.
+ * The slots are allocated once up front, and putting or taking an element only
+ * writes the producer's or the consumer's position, so neither side takes a
+ * lock. A side that has to wait spins briefly, then yields and finally parks
+ * for short periods until the other side catches up.
+ *
+ * @author Christopher Foo
+ *
+ * @param <E>
+ *            The type of the elements.
+ */
+final class RingBuffer<E> {
+
+    /**
+     * The number of times a waiting thread spins before it starts yielding.
+     */
+    private static final int SPIN_LIMIT = 100;
+
+    /**
+     * The number of times a waiting thread yields before it starts parking.
+     */
+    private static final int YIELD_LIMIT = 200;
+
+    /**
+     * How long a waiting thread parks at a time, in nanoseconds.
+     */
+    private static final long PARK_NANOS = 50000;
+
+    /**
+     * The slots of the buffer. Its length is a power of two.
+     */
+    private final Object[] slots;
+
+    /**
+     * The mask that maps a position to its slot.
+     */
+    private final int mask;
+
+    /**
+     * The position of the next element to take. Only written by the
+     * consumer.
+     */
+    private final AtomicLong head;
+
+    /**
+     * The position of the next element to put. Only written by the producer.
+     */
+    private final AtomicLong tail;
+
+    /**
+     * Creates a new RingBuffer.
+     *
+     * @param capacity
+     *            The minimum number of elements the buffer can hold. Rounded
+     *            up to a power of two.
+     */
+    RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException(
+                    "The capacity must be between 1 and 2^30.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Object[size];
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * Adds the given element, waiting for a free slot if the buffer is full.
+     * Must only be called by the producer.
+     *
+     * @param element
+     *            The element to add.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting.
+     */
+    void put(E element) throws InterruptedException {
+        long position = this.tail.get();
+        int idle = 0;
+        while (position - this.head.get() == this.slots.length) {
+            idle = backOff(idle);
+        }
+        this.slots[(int) position & this.mask] = element;
+        this.tail.lazySet(position + 1);
+    }
+
+    /**
+     * Removes the oldest element, waiting for one if the buffer is empty.
+     * Must only be called by the consumer.
+     *
+     * @return The oldest element.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting.
+     */
+    @SuppressWarnings("unchecked")
+    E take() throws InterruptedException {
+        long position = this.head.get();
+        int idle = 0;
+        while (position == this.tail.get()) {
+            idle = backOff(idle);
+        }
+        int slot = (int) position & this.mask;
+        E element = (E) this.slots[slot];
+        this.slots[slot] = null;
+        this.head.lazySet(position + 1);
+        return element;
+    }
+
+    /**
+     * Gets the number of elements in the buffer. Only an estimate when
+     * called while the producer or consumer is active.
+     *
+     * @return The number of elements.
+     */
+    int size() {
+        return (int) (this.tail.get() - this.head.get());
+    }
+
+    /**
+     * Gets the number of elements the buffer can hold.
+     *
+     * @return The capacity of the buffer.
+     */
+    int capacity() {
+        return this.slots.length;
+    }
+
+    /**
+     * Waits a little longer each time it is called by a thread that can not
+     * make progress.
+     *
+     * @param idle
+     *            The number of times the thread has already waited.
+     * @return The number of times the thread has waited, including this one.
+     * @throws InterruptedException
+     *             If the thread was interrupted.
+     */
+    private static int backOff(int idle) throws InterruptedException {
+        if (idle < SPIN_LIMIT) {
+            Thread.onSpinWait();
+        } else if (idle < YIELD_LIMIT) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        return idle < YIELD_LIMIT ? idle + 1 : idle;
+    }
+}
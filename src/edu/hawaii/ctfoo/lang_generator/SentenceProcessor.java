@@ -0,0 +1,392 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link Flow.Processor} that turns a stream of semantic representations
+ * into a stream of {@link GenerationResult}s. Each representation is parsed
+ * and rendered on the given {@link Executor}, and the results are published
+ * in the same order as the representations were received.
+ * <p>
+ * At most a fixed number of representations are requested from upstream but
+ * not yet delivered downstream, so a slow subscriber holds back the publisher
+ * instead of filling memory. Representations that can not be parsed or
+ * whose sentences fail to build are published as results with an error;
+ * they do not end the stream. The
+ * processor has a single subscriber.
+ *
+ * @author Christopher Foo
+ *
+ */
+public class SentenceProcessor implements
+        Flow.Processor<String, GenerationResult> {
+
+    /**
+     * The default maximum number of representations in flight.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+
+    /**
+     * The {@link Parser} shared by all of the tasks.
+     */
+    private final Parser parser;
+
+    /**
+     * The executor the representations are parsed and rendered on.
+     */
+    private final Executor executor;
+
+    /**
+     * The maximum number of representations in flight.
+     */
+    private final int maxInFlight;
+
+    /**
+     * The finished results that have not been delivered yet. The result with
+     * sequence number n is kept at n % {@link #maxInFlight}; there are never
+     * more than maxInFlight results in flight, so no two share a slot.
+     */
+    private final AtomicReferenceArray<GenerationResult> slots;
+
+    /**
+     * The number of representations received from upstream. Only written by
+     * {@link #onNext(String)}.
+     */
+    private final AtomicLong received;
+
+    /**
+     * The number of results delivered downstream. Only used while draining.
+     */
+    private long delivered;
+
+    /**
+     * The number of results requested downstream and not yet delivered.
+     */
+    private final AtomicLong requested;
+
+    /**
+     * Counts the calls to {@link #drain()} so that only one thread drains at
+     * a time.
+     */
+    private final AtomicInteger drainCount;
+
+    /**
+     * If the upstream requests have been started.
+     */
+    private final AtomicBoolean started;
+
+    /**
+     * The upstream subscription. null until subscribed.
+     */
+    private volatile Flow.Subscription upstream;
+
+    /**
+     * The downstream subscriber. null until subscribed.
+     */
+    private volatile Flow.Subscriber<? super GenerationResult> downstream;
+
+    /**
+     * If upstream has completed or failed.
+     */
+    private volatile boolean done;
+
+    /**
+     * The upstream error. null if there is none.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * The error for a non-positive request. It is delivered right away
+     * instead of after the buffered results. null if there is none.
+     */
+    private volatile Throwable requestFailure;
+
+    /**
+     * If the downstream subscriber has cancelled or been completed.
+     */
+    private volatile boolean terminated;
+
+    /**
+     * Creates a new SentenceProcessor with at most
+     * {@link #DEFAULT_MAX_IN_FLIGHT} representations in flight.
+     *
+     * @param executor
+     *            The executor the representations are parsed and rendered
+     *            on.
+     */
+    public SentenceProcessor(Executor executor) {
+        this(executor, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Creates a new SentenceProcessor.
+     *
+     * @param executor
+     *            The executor the representations are parsed and rendered
+     *            on.
+     * @param maxInFlight
+     *            The maximum number of representations requested from
+     *            upstream but not yet delivered downstream.
+     */
+    public SentenceProcessor(Executor executor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException(
+                    "The number of representations in flight must be at "
+                            + "least 1.");
+        }
+        this.parser = new Parser();
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.slots = new AtomicReferenceArray<GenerationResult>(maxInFlight);
+        this.received = new AtomicLong();
+        this.delivered = 0;
+        this.requested = new AtomicLong();
+        this.drainCount = new AtomicInteger();
+        this.started = new AtomicBoolean();
+    }
+
+    @Override
+    /**
+     * Subscribes the single downstream subscriber. Any later subscribers are
+     * given an error.
+     */
+    public void subscribe(Flow.Subscriber<? super GenerationResult> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("The subscriber must not be null.");
+        }
+        synchronized (this) {
+            if (this.downstream != null) {
+                subscriber.onSubscribe(new EmptySubscription());
+                subscriber.onError(new IllegalStateException(
+                        "The SentenceProcessor already has a subscriber."));
+                return;
+            }
+            this.downstream = subscriber;
+        }
+        subscriber.onSubscribe(new DownstreamSubscription());
+        this.start();
+    }
+
+    @Override
+    /**
+     * Stores the upstream subscription. Representations are requested once
+     * there is also a downstream subscriber.
+     */
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        this.upstream = subscription;
+        this.start();
+    }
+
+    @Override
+    /**
+     * Parses and renders the given representation on the executor. An
+     * exception thrown while generating becomes the error of its result.
+     */
+    public void onNext(String item) {
+        final long sequence = this.received.getAndIncrement();
+        final String input = item;
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // The result holds any exception as its error, so every
+                    // sequence finishes and the results after it are
+                    // delivered
+                    SentenceProcessor.this.finish(sequence, GenerationResult
+                            .generate(SentenceProcessor.this.parser, input));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.finish(sequence, new GenerationResult(input,
+                    Collections.<String> emptyList(),
+                    Collections.<String> emptyList(),
+                    "Error: Could not schedule \"" + input + "\"."));
+        }
+    }
+
+    @Override
+    /**
+     * Passes the error downstream once the results already received have
+     * been delivered.
+     */
+    public void onError(Throwable throwable) {
+        this.failure = throwable;
+        this.done = true;
+        this.drain();
+    }
+
+    @Override
+    /**
+     * Completes downstream once the results already received have been
+     * delivered.
+     */
+    public void onComplete() {
+        this.done = true;
+        this.drain();
+    }
+
+    /**
+     * Requests the first representations from upstream once both the
+     * upstream subscription and the downstream subscriber are present.
+     */
+    private void start() {
+        if (this.upstream != null && this.downstream != null
+                && this.started.compareAndSet(false, true)) {
+            this.upstream.request(this.maxInFlight);
+        }
+    }
+
+    /**
+     * Stores the finished result with the given sequence number and delivers
+     * any results that are ready.
+     *
+     * @param sequence
+     *            The sequence number of the representation.
+     * @param result
+     *            The result of the representation.
+     */
+    private void finish(long sequence, GenerationResult result) {
+        this.slots.set((int) (sequence % this.maxInFlight), result);
+        this.drain();
+    }
+
+    /**
+     * Delivers the finished results in order while there is demand, requests
+     * a new representation from upstream for each result delivered and
+     * terminates downstream once everything has been delivered. Only one
+     * thread drains at a time; calls made while another thread is draining
+     * make that thread loop again.
+     */
+    private void drain() {
+        if (this.drainCount.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super GenerationResult> subscriber = this.downstream;
+            if (subscriber != null && !this.terminated) {
+                long demand = this.requested.get();
+                long emitted = 0;
+                while (emitted < demand && !this.terminated) {
+                    int slot = (int) (this.delivered % this.maxInFlight);
+                    GenerationResult result = this.slots.get(slot);
+                    if (result == null) {
+                        break;
+                    }
+                    this.slots.set(slot, null);
+                    this.delivered++;
+                    emitted++;
+                    subscriber.onNext(result);
+                }
+
+                if (emitted > 0) {
+                    if (demand != Long.MAX_VALUE) {
+                        this.requested.addAndGet(-emitted);
+                    }
+                    if (!this.done && !this.terminated) {
+                        this.upstream.request(emitted);
+                    }
+                }
+
+                if (this.requestFailure != null && !this.terminated) {
+                    this.terminated = true;
+                    subscriber.onError(this.requestFailure);
+                } else if (this.done && !this.terminated
+                        && this.delivered == this.received.get()) {
+                    this.terminated = true;
+                    if (this.failure == null) {
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onError(this.failure);
+                    }
+                }
+            }
+            missed = this.drainCount.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * The subscription given to the downstream subscriber.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private class DownstreamSubscription implements Flow.Subscription {
+
+        @Override
+        /**
+         * Adds to the demand and delivers any results that are ready.
+         */
+        public void request(long n) {
+            if (n <= 0) {
+                SentenceProcessor.this.requestFailure = new IllegalArgumentException(
+                        "The number of requested results must be positive.");
+                SentenceProcessor.this.cancelUpstream();
+            } else {
+                long current;
+                long next;
+                do {
+                    current = SentenceProcessor.this.requested.get();
+                    next = current + n;
+
+                    // Saturate at unbounded demand
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!SentenceProcessor.this.requested.compareAndSet(
+                        current, next));
+            }
+            SentenceProcessor.this.drain();
+        }
+
+        @Override
+        /**
+         * Stops delivering results and cancels upstream.
+         */
+        public void cancel() {
+            SentenceProcessor.this.terminated = true;
+            SentenceProcessor.this.cancelUpstream();
+        }
+    }
+
+    /**
+     * Cancels the upstream subscription if there is one.
+     */
+    private void cancelUpstream() {
+        Flow.Subscription subscription = this.upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * The subscription given to subscribers that are rejected.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static class EmptySubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            // Nothing will be delivered
+        }
+
+        @Override
+        public void cancel() {
+            // Nothing to cancel
+        }
+    }
+}
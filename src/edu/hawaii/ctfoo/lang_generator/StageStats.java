@@ -0,0 +1,165 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+/**
+ * The occupancy of a single stage of a {@link StagedPipeline}. The stage with
+ * the fullest input buffer and the highest busy share is the bottleneck; the
+ * stages after it wait on empty buffers.
+ * <p>
+ * The counters are written only by the thread of the stage, so they may be
+ * read while the pipeline runs but are only exact once it has finished.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class StageStats {
+
+    /**
+     * The name of the stage.
+     */
+    private final String name;
+
+    /**
+     * The number of batches the input buffer of the stage can hold.
+     */
+    private final int capacity;
+
+    /**
+     * The number of batches processed.
+     */
+    private volatile long batches;
+
+    /**
+     * The number of lines processed.
+     */
+    private volatile long lines;
+
+    /**
+     * The time spent processing, in nanoseconds.
+     */
+    private volatile long busyNanos;
+
+    /**
+     * The time spent waiting for input, in nanoseconds.
+     */
+    private volatile long waitNanos;
+
+    /**
+     * The sum of the input buffer sizes seen each time a batch was taken.
+     */
+    private volatile long occupancy;
+
+    /**
+     * Creates a new StageStats.
+     *
+     * @param name
+     *            The name of the stage.
+     * @param capacity
+     *            The number of batches the input buffer of the stage can
+     *            hold.
+     */
+    StageStats(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Records a batch taken from the input buffer.
+     *
+     * @param waited
+     *            The time spent waiting for the batch, in nanoseconds.
+     * @param queued
+     *            The number of batches left in the input buffer, including
+     *            the one taken.
+     */
+    void recordTake(long waited, int queued) {
+        this.waitNanos += waited;
+        this.occupancy += queued;
+    }
+
+    /**
+     * Records a processed batch.
+     *
+     * @param size
+     *            The number of lines in the batch.
+     * @param busy
+     *            The time spent processing the batch, in nanoseconds.
+     */
+    void recordProcessed(int size, long busy) {
+        this.batches++;
+        this.lines += size;
+        this.busyNanos += busy;
+    }
+
+    /**
+     * Gets the name of the stage.
+     *
+     * @return The name of the stage.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the number of lines processed.
+     *
+     * @return The number of lines processed.
+     */
+    public long getLines() {
+        return this.lines;
+    }
+
+    /**
+     * Gets the time spent processing.
+     *
+     * @return The time spent processing, in nanoseconds.
+     */
+    public long getBusyNanos() {
+        return this.busyNanos;
+    }
+
+    /**
+     * Gets the time spent waiting for input.
+     *
+     * @return The time spent waiting for input, in nanoseconds.
+     */
+    public long getWaitNanos() {
+        return this.waitNanos;
+    }
+
+    /**
+     * Gets the share of the stage's time that was spent processing.
+     *
+     * @return A value between 0 and 1, or 0 if nothing was processed.
+     */
+    public double getBusyShare() {
+        long total = this.busyNanos + this.waitNanos;
+        if (total == 0) {
+            return 0;
+        }
+        return (double) this.busyNanos / total;
+    }
+
+    /**
+     * Gets the average share of the input buffer that was full when a batch
+     * was taken.
+     *
+     * @return A value between 0 and 1, or 0 if nothing was processed.
+     */
+    public double getAverageOccupancy() {
+        long taken = this.batches;
+        if (taken == 0) {
+            return 0;
+        }
+        return (double) this.occupancy / taken / this.capacity;
+    }
+
+    @Override
+    /**
+     * Returns the counters of the stage on a single line.
+     */
+    public String toString() {
+        return String.format("%-8s %10d lines  busy %5.1f%%  input %5.1f%% full",
+                this.name, this.lines, this.getBusyShare() * 100,
+                this.getAverageOccupancy() * 100);
+    }
+}
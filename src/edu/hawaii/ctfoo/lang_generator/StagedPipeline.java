@@ -0,0 +1,662 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.hawaii.ctfoo.lang_generator.sentence.Sentence;
+
+/**
+ * Generates the sentences of many semantic representations by running each
+ * step of the generation on its own thread. A reader thread groups the lines
+ * into batches, and the batches pass from the lexing stage to the tree
+ * building, sentence building and rendering stages before they are written on
+ * the calling thread, each stage handing them to the next through a
+ * {@link RingBuffer}.
+ * <p>
+ * The batches are allocated once and returned to the reader after they are
+ * written, so the number of batches bounds the number of lines in flight. As
+ * every stage works on one batch at a time, the results are written in the
+ * same order as the lines were read. The {@link StageStats} of each stage show
+ * how full its input buffer was and how much of its time it was busy, which
+ * points to the slowest stage.
+ *
+ * @author Christopher Foo
+ *
+ */
+public class StagedPipeline {
+
+    /**
+     * The default number of lines in a batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * The default number of batches.
+     */
+    public static final int DEFAULT_BATCHES = 16;
+
+    /**
+     * The line separator written after each sentence, the same as the one
+     * used by {@link PrintStream#println()}.
+     */
+    private static final String LINE_SEPARATOR = System
+            .getProperty("line.separator");
+
+    /**
+     * The {@link Parser} used to build the sentences.
+     */
+    private final Parser parser;
+
+    /**
+     * The maximum number of lines in a batch.
+     */
+    private final int batchSize;
+
+    /**
+     * The number of batches.
+     */
+    private final int batches;
+
+    /**
+     * If the parse trees are written after the sentences of each line.
+     */
+    private final boolean showTree;
+
+    /**
+     * The stats of the stages in the most recent run. Empty before the first
+     * run.
+     */
+    private volatile List<StageStats> stats;
+
+    /**
+     * Creates a new StagedPipeline with the default batch size and number of
+     * batches.
+     *
+     * @param showTree
+     *            If the parse trees should be written after the sentences of
+     *            each line.
+     */
+    public StagedPipeline(boolean showTree) {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_BATCHES, showTree);
+    }
+
+    /**
+     * Creates a new StagedPipeline.
+     *
+     * @param batchSize
+     *            The maximum number of lines in a batch.
+     * @param batches
+     *            The number of batches. Rounded up to a power of two.
+     * @param showTree
+     *            If the parse trees should be written after the sentences of
+     *            each line.
+     */
+    public StagedPipeline(int batchSize, int batches, boolean showTree) {
+        if (batchSize < 1 || batches < 1) {
+            throw new IllegalArgumentException(
+                    "The batch size and number of batches must be at least 1.");
+        }
+        this.parser = new Parser();
+        this.batchSize = batchSize;
+        this.batches = batches;
+        this.showTree = showTree;
+        this.stats = Collections.emptyList();
+    }
+
+    /**
+     * Gets the stats of the stages in the most recent run, in the order the
+     * stages are run.
+     *
+     * @return An unmodifiable list of the stats. Empty before the first run.
+     */
+    public List<StageStats> getStageStats() {
+        return this.stats;
+    }
+
+    /**
+     * Generates the sentences of every line of the given reader and writes
+     * them to the given writer. Returns once every line has been written.
+     *
+     * @param in
+     *            The reader to read the semantic representations from.
+     * @param out
+     *            The writer to write the sentences to.
+     * @param err
+     *            The stream to write the errors to.
+     * @throws IOException
+     *             If the lines could not be read or the sentences could not be
+     *             written.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting for the
+     *             results.
+     */
+    public void run(final BufferedReader in, Writer out, PrintStream err)
+            throws IOException, InterruptedException {
+        final RingBuffer<Batch> free = new RingBuffer<Batch>(this.batches);
+        final RingBuffer<Batch> read = new RingBuffer<Batch>(this.batches);
+        RingBuffer<Batch> lexed = new RingBuffer<Batch>(this.batches);
+        RingBuffer<Batch> built = new RingBuffer<Batch>(this.batches);
+        RingBuffer<Batch> generated = new RingBuffer<Batch>(this.batches);
+        RingBuffer<Batch> rendered = new RingBuffer<Batch>(this.batches);
+
+        // Every buffer can hold all of the batches, so only the reader waits
+        // for space
+        for (int i = 0; i < free.capacity(); i++) {
+            free.put(new Batch(this.batchSize));
+        }
+
+        int capacity = free.capacity();
+        StageStats writeStats = new StageStats("write", capacity);
+        Stage[] stages = { new LexStage(read, lexed, capacity),
+                new TreeStage(lexed, built, capacity),
+                new SentenceStage(built, generated, capacity),
+                new RenderStage(generated, rendered, capacity) };
+        StageStats[] allStats = new StageStats[stages.length + 1];
+        for (int i = 0; i < stages.length; i++) {
+            allStats[i] = stages[i].stats;
+        }
+        allStats[stages.length] = writeStats;
+        this.stats = Collections.unmodifiableList(Arrays.asList(allStats));
+
+        final IOException[] readError = new IOException[1];
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    StagedPipeline.this.read(in, free, read, readError);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "generator-reader");
+
+        Thread[] threads = new Thread[stages.length + 1];
+        threads[0] = reader;
+        for (int i = 0; i < stages.length; i++) {
+            threads[i + 1] = new Thread(stages[i], "generator-"
+                    + stages[i].stats.getName());
+        }
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try {
+            Batch batch;
+            do {
+
+                // Let the output out while waiting for more
+                if (rendered.size() == 0) {
+                    out.flush();
+                }
+                long waitStart = System.nanoTime();
+                batch = rendered.take();
+                long start = System.nanoTime();
+                writeStats.recordTake(start - waitStart, rendered.size() + 1);
+                for (int i = 0; i < batch.size; i++) {
+                    this.write(batch, i, out, err);
+                }
+                writeStats.recordProcessed(batch.size, System.nanoTime()
+                        - start);
+                if (!batch.last) {
+                    batch.clear();
+                    free.put(batch);
+                }
+            } while (!batch.last);
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        out.flush();
+        if (readError[0] != null) {
+            throw readError[0];
+        }
+    }
+
+    /**
+     * Reads the lines into batches and hands them to the first stage. A
+     * batch is handed on when it is full or when no more input is ready, so
+     * lines typed one at a time are not held back. The last batch is marked
+     * even if the input could not be read.
+     *
+     * @param in
+     *            The reader to read the semantic representations from.
+     * @param free
+     *            The buffer of empty batches.
+     * @param read
+     *            The buffer of the first stage.
+     * @param readError
+     *            Holds the error if the lines could not be read.
+     * @throws InterruptedException
+     *             If the thread was interrupted while waiting for a batch.
+     */
+    private void read(BufferedReader in, RingBuffer<Batch> free,
+            RingBuffer<Batch> read, IOException[] readError)
+            throws InterruptedException {
+        Batch batch = free.take();
+        try {
+            String line = in.readLine();
+            while (line != null) {
+                batch.lines[batch.size++] = line;
+                if (batch.size == this.batchSize || !in.ready()) {
+                    read.put(batch);
+                    batch = free.take();
+                }
+                line = in.readLine();
+            }
+        } catch (IOException e) {
+            readError[0] = e;
+        }
+        batch.last = true;
+        read.put(batch);
+    }
+
+    /**
+     * Writes the result of a single line. The output and errors are written
+     * in the same order as when the line is generated on a single thread.
+     *
+     * @param batch
+     *            The batch of the line.
+     * @param index
+     *            The index of the line in the batch.
+     * @param out
+     *            The writer to write the sentences to.
+     * @param err
+     *            The stream to write the errors to.
+     * @throws IOException
+     *             If the sentences could not be written.
+     */
+    private void write(Batch batch, int index, Writer out, PrintStream err)
+            throws IOException {
+        @SuppressWarnings("unchecked")
+        List<String> warnings = (List<String>) batch.warnings[index];
+
+        // The errors found while building the sentences come before them
+        if (warnings != null && !warnings.isEmpty()) {
+            out.flush();
+            for (String warning : warnings) {
+                err.println(warning);
+            }
+        }
+
+        if (batch.errors[index] != null) {
+
+            // The sentences rendered before an exception come before it
+            if (batch.values[index] != null) {
+                out.write((String) batch.values[index]);
+            }
+
+            // Keep the error next to the output of the same line
+            out.flush();
+            err.println(batch.errors[index]);
+        } else if (batch.values[index] != null) {
+            out.write((String) batch.values[index]);
+        }
+    }
+
+    /**
+     * A group of consecutive lines and what each stage has made of them so
+     * far.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static final class Batch {
+
+        /**
+         * The semantic representations.
+         */
+        private final String[] lines;
+
+        /**
+         * The output of the most recent stage for each line. Each stage
+         * replaces the value with its own output.
+         */
+        private final Object[] values;
+
+        /**
+         * The errors reported while building the sentences of each line.
+         */
+        private final Object[] warnings;
+
+        /**
+         * The error of each line or null if its sentences were generated.
+         */
+        private final String[] errors;
+
+        /**
+         * The number of lines in the batch.
+         */
+        private int size;
+
+        /**
+         * If this is the last batch.
+         */
+        private boolean last;
+
+        /**
+         * Creates a new empty Batch.
+         *
+         * @param capacity
+         *            The maximum number of lines in the batch.
+         */
+        private Batch(int capacity) {
+            this.lines = new String[capacity];
+            this.values = new Object[capacity];
+            this.warnings = new Object[capacity];
+            this.errors = new String[capacity];
+        }
+
+        /**
+         * Empties the batch so it can be reused.
+         */
+        private void clear() {
+            Arrays.fill(this.lines, 0, this.size, null);
+            Arrays.fill(this.values, 0, this.size, null);
+            Arrays.fill(this.warnings, 0, this.size, null);
+            Arrays.fill(this.errors, 0, this.size, null);
+            this.size = 0;
+            this.last = false;
+        }
+    }
+
+    /**
+     * The parse trees and sentences of a single line, handed from the
+     * sentence stage to the render stage.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static final class Built {
+
+        /**
+         * The parse trees of the line.
+         */
+        private final List<Tree<ParseToken>> trees;
+
+        /**
+         * The sentences generated from the {@link trees}.
+         */
+        private final List<Sentence> sentences;
+
+        /**
+         * Creates a new Built with the given trees and sentences.
+         *
+         * @param trees
+         *            The parse trees of the line.
+         * @param sentences
+         *            The sentences generated from the trees.
+         */
+        private Built(List<Tree<ParseToken>> trees, List<Sentence> sentences) {
+            this.trees = trees;
+            this.sentences = sentences;
+        }
+    }
+
+    /**
+     * A step of the generation that runs on its own thread. It takes each
+     * batch from its input buffer, processes every line that has not failed
+     * and puts the batch in its output buffer.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private abstract class Stage implements Runnable {
+
+        /**
+         * The buffer the batches are taken from.
+         */
+        private final RingBuffer<Batch> in;
+
+        /**
+         * The buffer the batches are put in.
+         */
+        private final RingBuffer<Batch> out;
+
+        /**
+         * The stats of the stage.
+         */
+        private final StageStats stats;
+
+        /**
+         * Creates a new Stage.
+         *
+         * @param name
+         *            The name of the stage.
+         * @param in
+         *            The buffer the batches are taken from.
+         * @param out
+         *            The buffer the batches are put in.
+         * @param capacity
+         *            The number of batches the input buffer can hold.
+         */
+        private Stage(String name, RingBuffer<Batch> in, RingBuffer<Batch> out,
+                int capacity) {
+            this.in = in;
+            this.out = out;
+            this.stats = new StageStats(name, capacity);
+        }
+
+        @Override
+        /**
+         * Processes the batches until the last one has been passed on.
+         */
+        public void run() {
+            try {
+                Batch batch;
+                do {
+                    long waitStart = System.nanoTime();
+                    batch = this.in.take();
+                    long start = System.nanoTime();
+                    this.stats.recordTake(start - waitStart,
+                            this.in.size() + 1);
+                    this.processAll(batch);
+                    this.stats.recordProcessed(batch.size, System.nanoTime()
+                            - start);
+                    this.out.put(batch);
+                } while (!batch.last);
+            } catch (InterruptedException e) {
+                // The pipeline was stopped
+            }
+        }
+
+        /**
+         * Processes every line of the batch that has not failed. An
+         * unexpected exception becomes the error of its line, the same as
+         * when the line is generated on a single thread, so that the other
+         * lines still reach the writer.
+         *
+         * @param batch
+         *            The batch to process.
+         */
+        private void processAll(Batch batch) {
+            for (int i = 0; i < batch.size; i++) {
+                if (batch.errors[i] == null) {
+                    try {
+                        this.process(batch, i);
+                    } catch (RuntimeException e) {
+                        batch.values[i] = null;
+                        batch.errors[i] = ErrorLog.describe(batch.lines[i], e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Processes a single line of a batch.
+         *
+         * @param batch
+         *            The batch of the line.
+         * @param index
+         *            The index of the line in the batch.
+         */
+        protected abstract void process(Batch batch, int index);
+    }
+
+    /**
+     * Splits the lines into {@link ParseToken}s.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private class LexStage extends Stage {
+
+        /**
+         * Creates a new LexStage.
+         *
+         * @param in
+         *            The buffer the batches are taken from.
+         * @param out
+         *            The buffer the batches are put in.
+         * @param capacity
+         *            The number of batches the input buffer can hold.
+         */
+        private LexStage(RingBuffer<Batch> in, RingBuffer<Batch> out,
+                int capacity) {
+            super("lex", in, out, capacity);
+        }
+
+        @Override
+        protected void process(Batch batch, int index) {
+            try {
+                batch.values[index] = Parser.lex(batch.lines[index]);
+            } catch (CouldNotParseException e) {
+                batch.errors[index] = e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Builds the parse {@link Tree}s from the tokens.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private class TreeStage extends Stage {
+
+        /**
+         * Creates a new TreeStage.
+         *
+         * @param in
+         *            The buffer the batches are taken from.
+         * @param out
+         *            The buffer the batches are put in.
+         * @param capacity
+         *            The number of batches the input buffer can hold.
+         */
+        private TreeStage(RingBuffer<Batch> in, RingBuffer<Batch> out,
+                int capacity) {
+            super("tree", in, out, capacity);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void process(Batch batch, int index) {
+            batch.values[index] = Parser.buildTrees(new TokenIndex(
+                    (List<ParseToken>) batch.values[index]));
+        }
+    }
+
+    /**
+     * Builds the {@link Sentence}s from the parse trees, keeping the errors
+     * reported while building their entities.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private class SentenceStage extends Stage {
+
+        /**
+         * Creates a new SentenceStage.
+         *
+         * @param in
+         *            The buffer the batches are taken from.
+         * @param out
+         *            The buffer the batches are put in.
+         * @param capacity
+         *            The number of batches the input buffer can hold.
+         */
+        private SentenceStage(RingBuffer<Batch> in, RingBuffer<Batch> out,
+                int capacity) {
+            super("sentence", in, out, capacity);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void process(Batch batch, int index) {
+            List<Tree<ParseToken>> trees = (List<Tree<ParseToken>>) batch.values[index];
+            ErrorLog.startCapture();
+            try {
+                batch.values[index] = new Built(trees,
+                        StagedPipeline.this.parser.generateSentences(trees));
+            } finally {
+                batch.warnings[index] = ErrorLog.stopCapture();
+            }
+        }
+    }
+
+    /**
+     * Renders the sentences and, if shown, the parse trees in the same form
+     * as the Generator prints them.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private class RenderStage extends Stage {
+
+        /**
+         * Reused for every line so that the output does not allocate a new
+         * builder each time.
+         */
+        private final StringBuilder builder;
+
+        /**
+         * Creates a new RenderStage.
+         *
+         * @param in
+         *            The buffer the batches are taken from.
+         * @param out
+         *            The buffer the batches are put in.
+         * @param capacity
+         *            The number of batches the input buffer can hold.
+         */
+        private RenderStage(RingBuffer<Batch> in, RingBuffer<Batch> out,
+                int capacity) {
+            super("render", in, out, capacity);
+            this.builder = new StringBuilder();
+        }
+
+        @Override
+        protected void process(Batch batch, int index) {
+            Built built = (Built) batch.values[index];
+            GenerationResult result = GenerationResult.render(
+                    batch.lines[index], built.sentences,
+                    Collections.<String> emptyList());
+            this.builder.setLength(0);
+            for (String sentence : result.getSentences()) {
+                this.builder.append(sentence).append(LINE_SEPARATOR);
+            }
+
+            // Keep the sentences rendered before an exception
+            if (result.isError()) {
+                batch.errors[index] = result.getError();
+            } else if (StagedPipeline.this.showTree) {
+                for (Tree<ParseToken> tree : built.trees) {
+                    this.builder.append(tree).append('\n');
+                }
+                this.builder.append(LINE_SEPARATOR);
+            }
+            batch.values[index] = this.builder.toString();
+        }
+    }
+}
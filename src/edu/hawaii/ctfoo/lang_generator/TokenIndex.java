@@ -0,0 +1,128 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link ParseToken}s of a single semantic representation indexed by the
+ * ID of their parent and by their own ID so that the {@link Tree}s can be
+ * built in a single pass.
+ *
+ * @author Christopher Foo
+ *
+ */
+class TokenIndex {
+
+    /**
+     * The tokens in the order they were read.
+     */
+    private final List<ParseToken> tokens;
+
+    /**
+     * The tokens indexed by the ID of their parent. Root tokens are stored
+     * under the null key.
+     */
+    private final Map<String, List<ParseToken>> childrenIndex;
+
+    /**
+     * The tokens indexed by their own ID.
+     */
+    private final Map<String, ParseToken> idIndex;
+
+    /**
+     * Creates a new TokenIndex of the given tokens.
+     *
+     * @param tokens
+     *            The tokens in the order they were read.
+     */
+    TokenIndex(List<ParseToken> tokens) {
+        this.tokens = tokens;
+        this.childrenIndex = new HashMap<String, List<ParseToken>>();
+        this.idIndex = new HashMap<String, ParseToken>();
+
+        for (ParseToken token : tokens) {
+            List<ParseToken> siblings = this.childrenIndex.get(token
+                    .getParent());
+            if (siblings == null) {
+                siblings = new ArrayList<ParseToken>();
+                this.childrenIndex.put(token.getParent(), siblings);
+            }
+            siblings.add(token);
+
+            if (token.getId() != null) {
+                this.idIndex.put(token.getId(), token);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of tokens in the index.
+     *
+     * @return The number of tokens.
+     */
+    int size() {
+        return this.tokens.size();
+    }
+
+    /**
+     * Returns all of the tokens that are direct children (1 level, child not
+     * grand-child or further) of the token with the given ID.
+     *
+     * @param parentId
+     *            The ID of the parent token. null to get the root tokens.
+     * @return An unmodifiable list of the direct children of the token.
+     */
+    List<ParseToken> getDirectChildren(String parentId) {
+        List<ParseToken> children = this.childrenIndex.get(parentId);
+        if (children == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Finds the token with the given ID.
+     *
+     * @param id
+     *            The ID of the token to find.
+     * @return The token with the matching ID or null if it was not found.
+     */
+    ParseToken findId(String id) {
+        if (id == null) {
+            return null;
+        }
+        return this.idIndex.get(id);
+    }
+
+    /**
+     * Builds the {@link Tree}s of all of the root tokens.
+     *
+     * @return The trees in the order their roots were read.
+     */
+    List<Tree<ParseToken>> buildTrees() {
+        List<Tree<ParseToken>> trees = new ArrayList<Tree<ParseToken>>();
+
+        // Nodes whose children still need to be added. An explicit stack is
+        // used so that deep representations can not overflow the call stack.
+        List<Tree<ParseToken>> stack = new ArrayList<Tree<ParseToken>>();
+        for (ParseToken root : this.getDirectChildren(null)) {
+            Tree<ParseToken> tree = new Tree<ParseToken>(root, null);
+            trees.add(tree);
+            stack.add(tree);
+        }
+
+        while (!stack.isEmpty()) {
+            Tree<ParseToken> node = stack.remove(stack.size() - 1);
+            String id = node.getNode().getId();
+            if (id != null) {
+                for (ParseToken child : this.getDirectChildren(id)) {
+                    stack.add(node.addChild(child));
+                }
+            }
+        }
+        return trees;
+    }
+}
@@ -0,0 +1,170 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+/**
+ * The token types recognized by the Language Generator. Each
+ * {@link ParseToken} is given its TokenType when it is read so that tokens
+ * can be matched by identity instead of by comparing their type Strings.
+ * Types that are not recognized are given {@link #UNKNOWN} and are compared
+ * by their type Strings instead.
+ *
+ * @author Christopher Foo
+ *
+ */
+public enum TokenType {
+    BUY("buy"), SELL("sell"), FINDGROUP("findgroup"), FINDMORE("findmore"),
+    SUBJECT("subject"), OBJECT("object"), CONTACTMETHOD("contactmethod"),
+    ITEM("item"), PLAYER("player"), INSTANCE("instance"),
+    MONEYAMOUNT("moneyamount"), NAME("name"), RARITY("rarity"), TYPE("type"),
+    LEVEL("level"), QUANTITY("quantity"), VALUE("value"),
+    DENOMINATION("denomination"), CURRENCY("currency"), CLASS("class"),
+    SPECIALIZATION("specialization"), RACE("race"), ROLE("role"),
+    ITEMLEVEL("itemlevel"), MODE("mode"), DIFFICULTY("difficulty"),
+    UNKNOWN(null);
+
+    /**
+     * The size of the {@link table}. Must be a power of 2.
+     */
+    private static final int TABLE_SIZE = 64;
+
+    /**
+     * Open addressing hash table of the known types keyed by the hash of
+     * their lower case names.
+     */
+    private static final TokenType[] table = new TokenType[TABLE_SIZE];
+
+    static {
+        for (TokenType type : values()) {
+            if (type.name != null) {
+                int slot = hash(type.name, 0, type.name.length());
+                while (table[slot] != null) {
+                    slot = (slot + 1) & (TABLE_SIZE - 1);
+                }
+                table[slot] = type;
+            }
+        }
+    }
+
+    /**
+     * The lower case name of the type as it appears in the semantic
+     * representations. null for {@link #UNKNOWN}.
+     */
+    private final String name;
+
+    /**
+     * Creates a new TokenType with the given name.
+     *
+     * @param name
+     *            The lower case name of the type.
+     */
+    private TokenType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the lower case name of the type as it appears in the semantic
+     * representations.
+     *
+     * @return The name of the type. null for {@link #UNKNOWN}.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Finds the TokenType with the given name ignoring case.
+     *
+     * @param type
+     *            The name of the type.
+     * @return The matching TokenType or {@link #UNKNOWN} if it is not
+     *         recognized.
+     */
+    public static TokenType lookup(CharSequence type) {
+        if (type == null) {
+            return UNKNOWN;
+        }
+        return lookup(type, 0, type.length());
+    }
+
+    /**
+     * Finds the TokenType with the name between the given offsets of the given
+     * characters ignoring case.
+     *
+     * @param chars
+     *            The characters containing the name of the type.
+     * @param start
+     *            The offset of the first character of the name.
+     * @param end
+     *            The offset after the last character of the name.
+     * @return The matching TokenType or {@link #UNKNOWN} if it is not
+     *         recognized.
+     */
+    public static TokenType lookup(CharSequence chars, int start, int end) {
+        int slot = hash(chars, start, end);
+        TokenType candidate = table[slot];
+        while (candidate != null) {
+            if (candidate.matches(chars, start, end)) {
+                return candidate;
+            }
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+            candidate = table[slot];
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Checks if this type's name matches the given characters ignoring case.
+     *
+     * @param chars
+     *            The characters containing the name of the type.
+     * @param start
+     *            The offset of the first character of the name.
+     * @param end
+     *            The offset after the last character of the name.
+     * @return If the name matches.
+     */
+    private boolean matches(CharSequence chars, int start, int end) {
+        if (end - start != this.name.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (fold(chars.charAt(i)) != this.name.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the slot of the given name in the {@link table}.
+     *
+     * @param chars
+     *            The characters containing the name of the type.
+     * @param start
+     *            The offset of the first character of the name.
+     * @param end
+     *            The offset after the last character of the name.
+     * @return The slot that the name hashes to.
+     */
+    private static int hash(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + fold(chars.charAt(i));
+        }
+        return (hash ^ (hash >>> 16)) & (TABLE_SIZE - 1);
+    }
+
+    /**
+     * Folds the case of the given character the same way as
+     * {@link String#equalsIgnoreCase(String)}.
+     *
+     * @param c
+     *            The character to fold.
+     * @return The case folded character.
+     */
+    private static char fold(char c) {
+        if (c < 128) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,28 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+/**
+ * An implementation of the {@link MatchFunctor} used for finding ParseTokens
+ * with the given {@link TokenType} keys. Matching is done by identity, so
+ * {@link TokenType#UNKNOWN} keys should be matched with a {@link TypeMatcher}
+ * instead.
+ * 
+ * @author Christopher Foo
+ * 
+ */
+public class TokenTypeMatcher implements MatchFunctor<TokenType, ParseToken> {
+
+    /**
+     * A shared instance of the matcher. The matcher has no state, so it may be
+     * used by any number of threads.
+     */
+    public static final TokenTypeMatcher INSTANCE = new TokenTypeMatcher();
+
+    @Override
+    /**
+     * Matches if the given searchItem's TokenType is the key.
+     */
+    public boolean match(TokenType key, ParseToken searchItem) {
+        return searchItem != null && searchItem.getTypeSymbol() == key;
+    }
+
+}
@@ -1,18 +1,22 @@
 package edu.hawaii.ctfoo.lang_generator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * A node in a tree structure. An entire tree structure is made out of these
- * nodes connected by their parent / children relationships.
+ * nodes connected by their parent / children relationships. Code that only
+ * walks the tree should take a {@link TreeView} instead.
  * 
  * @author Christopher Foo
  * 
  * @param <T>
  *            The type of the nodes in the Tree.
  */
-public class Tree<T> {
+public class Tree<T> implements TreeView<T> {
 
     /**
      * The node at the top of this tree.
@@ -149,39 +153,233 @@ public class Tree<T> {
      */
     public <U> List<Tree<T>> findAll(U key, MatchFunctor<U, T> matcher) {
         ArrayList<Tree<T>> matches = new ArrayList<Tree<T>>();
-        for (Tree<T> child : this.children) {
-            if (matcher.match(key, child.node)) {
-                matches.add(child);
-            }
-            matches.addAll(child.findAll(key, matcher));
+        for (Tree<T> match : this.iterateAll(key, matcher)) {
+            matches.add(match);
         }
         return matches;
     }
 
     /**
-     * Recursively builds the string to represent this {@link Tree} and its
-     * children (and thier children, etc.)
+     * Lazily finds the direct children of this node that match the matcher
+     * with the given key. The children are only matched as the returned
+     * {@link Iterable} is iterated, so iteration can be stopped early.
      * 
-     * @param indent
-     *            The current level of indentation for this level of nodes.
-     * @return A string of the Tree's structure.
+     * @param key
+     *            The key to match with the matcher.
+     * @param matcher
+     *            The {@link MatchFunctor} used to match the key with a node.
+     * @return The matching children nodes in order.
      */
-    private String toStringHelper(String indent) {
+    public <U> Iterable<Tree<T>> iterateDirect(final U key,
+            final MatchFunctor<U, T> matcher) {
+        return new Iterable<Tree<T>>() {
+            @Override
+            public Iterator<Tree<T>> iterator() {
+                return new MatchIterator<T, U>(Tree.this, key, matcher, false);
+            }
+        };
+    }
+
+    /**
+     * Lazily finds all children (and their children, etc.) that match the
+     * matcher with the given key. The nodes are visited in the same order as
+     * {@link #findAll(Object, MatchFunctor)} using an explicit stack, so deep
+     * trees can not overflow the call stack and nothing is copied between
+     * levels.
+     * 
+     * @param key
+     *            The key to match with the matcher.
+     * @param matcher
+     *            The {@link MatchFunctor} used to match the key with a node.
+     * @return All matching nodes below this node in pre-order.
+     */
+    public <U> Iterable<Tree<T>> iterateAll(final U key,
+            final MatchFunctor<U, T> matcher) {
+        return new Iterable<Tree<T>>() {
+            @Override
+            public Iterator<Tree<T>> iterator() {
+                return new MatchIterator<T, U>(Tree.this, key, matcher, true);
+            }
+        };
+    }
+
+    @Override
+    /**
+     * Returns a String representing this node and all of its children (and their children, etc)
+     */
+    public String toString() {
         StringBuilder builder = new StringBuilder();
-        builder.append(indent + this.node.toString() + "\n");
 
-        for (Tree<T> child : this.children) {
-            builder.append(child.toStringHelper(indent + "\t"));
+        // Walk the tree with an explicit stack so deep trees can not overflow
+        // the call stack
+        List<Tree<T>> stack = new ArrayList<Tree<T>>();
+        List<Integer> depths = new ArrayList<Integer>();
+        stack.add(this);
+        depths.add(0);
+        while (!stack.isEmpty()) {
+            Tree<T> current = stack.remove(stack.size() - 1);
+            int depth = depths.remove(depths.size() - 1);
+            for (int i = 0; i < depth; i++) {
+                builder.append('\t');
+            }
+            builder.append(current.getNode().toString() + "\n");
+
+            List<Tree<T>> currentChildren = current.getDirectChildren();
+            for (int i = currentChildren.size() - 1; i >= 0; i--) {
+                stack.add(currentChildren.get(i));
+                depths.add(depth + 1);
+            }
         }
 
         return builder.toString();
     }
 
-    @Override
     /**
-     * Returns a String representing this node and all of its children (and their children, etc)
+     * An {@link Iterator} over the nodes below a {@link Tree} that match a
+     * key. The position in each level is kept in a pair of arrays that only
+     * grow when the tree is deeper than any seen before.
+     * 
+     * @author Christopher Foo
+     * 
+     * @param <T>
+     *            The type of the nodes in the Tree.
+     * @param <U>
+     *            The type of the key.
      */
-    public String toString() {
-        return this.toStringHelper("");
+    private static final class MatchIterator<T, U> implements Iterator<Tree<T>> {
+
+        /**
+         * The key to match with the matcher.
+         */
+        private final U key;
+
+        /**
+         * The {@link MatchFunctor} used to match the key with a node.
+         */
+        private final MatchFunctor<U, T> matcher;
+
+        /**
+         * If the children of the children should be searched too.
+         */
+        private final boolean recursive;
+
+        /**
+         * The lists of children being walked at each level.
+         */
+        private List<Tree<T>>[] levels;
+
+        /**
+         * The position of the next child to visit at each level.
+         */
+        private int[] positions;
+
+        /**
+         * The number of levels being walked.
+         */
+        private int depth;
+
+        /**
+         * The next matching node. null if it has not been found yet.
+         */
+        private Tree<T> next;
+
+        /**
+         * Creates a new MatchIterator over the nodes below the given root.
+         * 
+         * @param root
+         *            The node whose descendants are searched.
+         * @param key
+         *            The key to match with the matcher.
+         * @param matcher
+         *            The {@link MatchFunctor} used to match the key with a
+         *            node.
+         * @param recursive
+         *            If the children of the children should be searched too.
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private MatchIterator(Tree<T> root, U key, MatchFunctor<U, T> matcher,
+                boolean recursive) {
+            this.key = key;
+            this.matcher = matcher;
+            this.recursive = recursive;
+            this.levels = new List[recursive ? 8 : 1];
+            this.positions = new int[this.levels.length];
+            this.levels[0] = root.getDirectChildren();
+            this.depth = 1;
+            this.next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next == null) {
+                this.next = this.advance();
+            }
+            return this.next != null;
+        }
+
+        @Override
+        public Tree<T> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Tree<T> match = this.next;
+            this.next = null;
+            return match;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Walks the tree until the next matching node is found.
+         * 
+         * @return The next matching node or null if there are no more.
+         */
+        private Tree<T> advance() {
+            while (this.depth > 0) {
+                List<Tree<T>> level = this.levels[this.depth - 1];
+                int position = this.positions[this.depth - 1];
+
+                // Finished this level, go back up
+                if (position >= level.size()) {
+                    this.levels[--this.depth] = null;
+                    continue;
+                }
+
+                this.positions[this.depth - 1] = position + 1;
+                Tree<T> child = level.get(position);
+
+                // Descend before returning so the nodes come out in pre-order
+                if (this.recursive) {
+                    List<Tree<T>> grandChildren = child.getDirectChildren();
+                    if (!grandChildren.isEmpty()) {
+                        this.push(grandChildren);
+                    }
+                }
+
+                if (this.matcher.match(this.key, child.getNode())) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Starts walking a new level of the tree.
+         * 
+         * @param level
+         *            The children in the new level.
+         */
+        private void push(List<Tree<T>> level) {
+            if (this.depth == this.levels.length) {
+                this.levels = Arrays.copyOf(this.levels, this.depth * 2);
+                this.positions = Arrays.copyOf(this.positions, this.depth * 2);
+            }
+            this.levels[this.depth] = level;
+            this.positions[this.depth] = 0;
+            this.depth++;
+        }
     }
 }
@@ -0,0 +1,360 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes parse trees to a stream in the binary wire format described by
+ * {@link WireFormat}, one record per semantic representation, so that a
+ * service that already holds the trees does not have to print them as text
+ * for the {@link Parser} to read again. The stream is read back by a
+ * {@link TreeReader}.
+ * <p>
+ * The types, values, logic operations and negations of the tokens are
+ * written, but not their IDs. The sentences only depend on the written
+ * fields, so the trees read back render the same sentences as the written
+ * ones. Known types are written as their {@link TokenType}, so their case is
+ * not kept.
+ * <p>
+ * Each record is built in a reused buffer and then written to the stream,
+ * which should be buffered if many small records are written. A
+ * TreeEncoder is not thread safe.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class TreeEncoder implements Closeable, Flushable {
+
+    /**
+     * The stream the records are written to.
+     */
+    private final OutputStream out;
+
+    /**
+     * If the header of the stream has been written.
+     */
+    private boolean started;
+
+    /**
+     * The length and the number of type names of the current record.
+     */
+    private final Bytes header;
+
+    /**
+     * The type names of the current record.
+     */
+    private final Bytes names;
+
+    /**
+     * The trees of the current record.
+     */
+    private final Bytes nodes;
+
+    /**
+     * The IDs of the type names of the current record.
+     */
+    private final Map<String, Integer> nameIds;
+
+    /**
+     * Creates a new TreeEncoder writing to the given stream. The header of
+     * the stream is written with the first record.
+     *
+     * @param out
+     *            The stream to write to.
+     */
+    public TreeEncoder(OutputStream out) {
+        this.out = out;
+        this.header = new Bytes();
+        this.names = new Bytes();
+        this.nodes = new Bytes();
+        this.nameIds = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Encodes the parse trees of a single semantic representation as a
+     * complete stream holding one record.
+     *
+     * @param roots
+     *            The root nodes of the parse trees.
+     * @return The encoded stream.
+     */
+    public static byte[] encode(List<Tree<ParseToken>> roots) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            new TreeEncoder(bytes).write(roots);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the parse trees of a semantic representation as one record.
+     *
+     * @param roots
+     *            The root nodes of the parse trees.
+     * @throws IOException
+     *             If the record could not be written.
+     * @throws IllegalArgumentException
+     *             If a token does not have a type.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void write(List<Tree<ParseToken>> roots) throws IOException {
+        this.names.clear();
+        this.nodes.clear();
+        this.nameIds.clear();
+        this.nodes.writeVarint(roots.size());
+
+        // Walk with an explicit stack so that deep trees can not overflow the
+        // call stack
+        Tree<ParseToken>[] stack = new Tree[16];
+        for (Tree<ParseToken> root : roots) {
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                Tree<ParseToken> tree = stack[--top];
+                List<Tree<ParseToken>> children = tree.getDirectChildren();
+                this.writeNode(tree.getNode(), children.size());
+
+                if (top + children.size() > stack.length) {
+                    stack = Arrays.copyOf(stack,
+                            Math.max(stack.length * 2, top + children.size()));
+                }
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack[top++] = children.get(i);
+                }
+            }
+        }
+
+        if (!this.started) {
+            this.out.write(WireFormat.MAGIC);
+            this.out.write(WireFormat.VERSION);
+            this.started = true;
+        }
+        this.header.clear();
+        this.header.writeVarint(Bytes.varintSize(this.nameIds.size())
+                + this.names.length + this.nodes.length);
+        this.header.writeVarint(this.nameIds.size());
+        this.header.writeTo(this.out);
+        this.names.writeTo(this.out);
+        this.nodes.writeTo(this.out);
+    }
+
+    /**
+     * Parses a semantic representation and writes its parse trees as one
+     * record.
+     *
+     * @param representation
+     *            The semantic representation in string form.
+     * @throws IOException
+     *             If the record could not be written.
+     * @throws CouldNotParseException
+     *             If the representation could not be parsed. Nothing is
+     *             written.
+     */
+    public void write(CharSequence representation) throws IOException,
+            CouldNotParseException {
+        this.write(Parser.buildTrees(new TokenIndex(Parser
+                .lex(representation))));
+    }
+
+    @Override
+    /**
+     * Flushes the stream.
+     */
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    /**
+     * Closes the stream.
+     */
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+    /**
+     * Writes a single node to the {@link nodes}.
+     *
+     * @param token
+     *            The token of the node.
+     * @param childCount
+     *            The number of children of the node.
+     */
+    private void writeNode(ParseToken token, int childCount) {
+        TokenType type = token.getTypeSymbol();
+        int typeId = WireFormat.typeId(type);
+        if (typeId == -1) {
+            typeId = WireFormat.TYPES.length + this.internName(token.getType());
+        }
+
+        String value = token.getValue();
+        int flags = token.isNegated() ? WireFormat.NEGATED : 0;
+        if (token.getLogic() == LogicOp.AND) {
+            flags |= WireFormat.AND;
+        } else if (token.getLogic() == LogicOp.OR) {
+            flags |= WireFormat.OR;
+        }
+        if (value != null) {
+            flags |= WireFormat.HAS_VALUE;
+        }
+
+        this.nodes.write(flags);
+        this.nodes.writeVarint(typeId);
+        this.nodes.writeVarint(childCount);
+        if (value != null) {
+            this.nodes.writeString(value);
+        }
+    }
+
+    /**
+     * Gets the index of the given type name in the current record, adding it
+     * to the {@link names} the first time it is used.
+     *
+     * @param name
+     *            The type name.
+     * @return The index of the name.
+     */
+    private int internName(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Every token must have a type.");
+        }
+        Integer id = this.nameIds.get(name);
+        if (id == null) {
+            id = this.nameIds.size();
+            this.nameIds.put(name, id);
+            this.names.writeString(name);
+        }
+        return id;
+    }
+
+    /**
+     * A growable array of bytes that is reused for every record.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static final class Bytes {
+
+        /**
+         * The bytes written so far.
+         */
+        private byte[] data = new byte[256];
+
+        /**
+         * The number of bytes written.
+         */
+        private int length;
+
+        /**
+         * Removes all of the bytes.
+         */
+        void clear() {
+            this.length = 0;
+        }
+
+        /**
+         * Writes a single byte.
+         *
+         * @param b
+         *            The byte in the low bits.
+         */
+        void write(int b) {
+            this.ensure(1);
+            this.data[this.length++] = (byte) b;
+        }
+
+        /**
+         * Writes an unsigned variable length integer.
+         *
+         * @param value
+         *            The non-negative integer.
+         */
+        void writeVarint(int value) {
+            this.ensure(5);
+            while ((value & ~0x7F) != 0) {
+                this.data[this.length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.data[this.length++] = (byte) value;
+        }
+
+        /**
+         * Gets the number of bytes of an unsigned variable length integer.
+         *
+         * @param value
+         *            The non-negative integer.
+         * @return The number of bytes written for the integer.
+         */
+        static int varintSize(int value) {
+            int size = 1;
+            while ((value & ~0x7F) != 0) {
+                value >>>= 7;
+                size++;
+            }
+            return size;
+        }
+
+        /**
+         * Writes a String as its length in bytes and its UTF-8 bytes. ASCII
+         * Strings are copied without encoding them into a new array.
+         *
+         * @param string
+         *            The String.
+         */
+        void writeString(String string) {
+            int length = string.length();
+            for (int i = 0; i < length; i++) {
+                if (string.charAt(i) >= 0x80) {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    this.writeVarint(bytes.length);
+                    this.ensure(bytes.length);
+                    System.arraycopy(bytes, 0, this.data, this.length,
+                            bytes.length);
+                    this.length += bytes.length;
+                    return;
+                }
+            }
+
+            this.writeVarint(length);
+            this.ensure(length);
+            for (int i = 0; i < length; i++) {
+                this.data[this.length++] = (byte) string.charAt(i);
+            }
+        }
+
+        /**
+         * Writes the bytes to the given stream.
+         *
+         * @param out
+         *            The stream.
+         * @throws IOException
+         *             If the bytes could not be written.
+         */
+        void writeTo(OutputStream out) throws IOException {
+            out.write(this.data, 0, this.length);
+        }
+
+        /**
+         * Makes room for the given number of bytes.
+         *
+         * @param count
+         *            The number of bytes about to be written.
+         */
+        private void ensure(int count) {
+            if (this.length + count > this.data.length) {
+                this.data = Arrays.copyOf(this.data,
+                        Math.max(this.data.length * 2, this.length + count));
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The canonical form of the parse {@link Tree}s of a semantic representation,
+ * used as a cache and dedup key for their sentences. The IDs of the tokens
+ * are arbitrary labels, so "buy(a) object(a,b) item(b,c) name(c,"X")" and
+ * "buy(x) object(x,y) item(y,z) name(z,"X")" have the same key.
+ * <p>
+ * A node is keyed by its type, value, logic operation and negation. The IDs
+ * and parent IDs are dropped, and the case of the known types is ignored as
+ * the sentences and entities do. The order of siblings is kept, since it
+ * decides the order and OR groups of the rendered lists, except for the
+ * attributes of items, players, instances and money amounts. Those entities
+ * read each attribute by its type, so their children are put in the order of
+ * their {@link TokenType}s, keeping the order of attributes of the same type.
+ * Attributes are not reordered when one of them holds a subject or object,
+ * which the sentences find in tree order, or when a money amount has an
+ * attribute that is not a leaf. Representations with equal keys render the
+ * same sentences, but entity errors such as unparsable levels may be reported
+ * in another order.
+ * <p>
+ * The key holds the canonical nodes in pre-order and a Merkle style hash in
+ * which every node's hash covers its own fields and the hashes of its
+ * children in canonical order. Building the key and comparing two keys both
+ * take time linear in the number of nodes, and {@link #equals(Object)}
+ * compares the nodes themselves so that hash collisions can not mix up two
+ * representations.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class TreeKey {
+
+    /**
+     * The known types indexed by their ordinals.
+     */
+    private static final TokenType[] types = TokenType.values();
+
+    /**
+     * The multiplier used to combine the hashes of the children.
+     */
+    private static final long CHILD_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The type, logic, negation and number of children of each node, two
+     * ints per node in canonical pre-order.
+     */
+    private final int[] codes;
+
+    /**
+     * The type name of each node of an unknown type, or null, followed by
+     * its value, two Strings per node in canonical pre-order.
+     */
+    private final String[] strings;
+
+    /**
+     * The structural hash of all of the trees.
+     */
+    private final long hash;
+
+    /**
+     * Creates a new TreeKey.
+     *
+     * @param codes
+     *            The codes of the nodes.
+     * @param strings
+     *            The Strings of the nodes.
+     * @param hash
+     *            The structural hash of the trees.
+     */
+    private TreeKey(int[] codes, String[] strings, long hash) {
+        this.codes = codes;
+        this.strings = strings;
+        this.hash = hash;
+    }
+
+    /**
+     * Builds the key of a single parse tree.
+     *
+     * @param root
+     *            The root of the tree.
+     * @return The key of the tree.
+     */
+    public static TreeKey of(Tree<ParseToken> root) {
+        return of(Collections.singletonList(root));
+    }
+
+    /**
+     * Builds the key of the parse trees of a representation. The order of
+     * the trees is part of the key.
+     *
+     * @param roots
+     *            The roots of the trees.
+     * @return The key of the trees.
+     */
+    public static TreeKey of(List<Tree<ParseToken>> roots) {
+
+        // Number the nodes in pre-order with an explicit stack so that deep
+        // trees can not overflow the call stack
+        List<ParseToken> tokens = new ArrayList<ParseToken>();
+        int[] parents = new int[16];
+        List<Tree<ParseToken>> stack = new ArrayList<Tree<ParseToken>>();
+        List<Integer> stackParents = new ArrayList<Integer>();
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            stack.add(roots.get(i));
+            stackParents.add(-1);
+        }
+        while (!stack.isEmpty()) {
+            Tree<ParseToken> tree = stack.remove(stack.size() - 1);
+            int parent = stackParents.remove(stackParents.size() - 1);
+            int node = tokens.size();
+            tokens.add(tree.getNode());
+            if (node == parents.length) {
+                parents = Arrays.copyOf(parents, node * 2);
+            }
+            parents[node] = parent;
+
+            List<Tree<ParseToken>> children = tree.getDirectChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.add(children.get(i));
+                stackParents.add(node);
+            }
+        }
+
+        // Every descendant of a node comes after it in pre-order, so going
+        // backwards visits the children before their parents
+        int size = tokens.size();
+        int[] subtreeSizes = new int[size];
+        int[] childCounts = new int[size];
+        int[] firstChildren = new int[size];
+        int[] canonicalChildren = new int[size];
+        boolean[] holdsSubObj = new boolean[size];
+        long[] hashes = new long[size];
+        int nextChild = 0;
+        for (int node = size - 1; node >= 0; node--) {
+            subtreeSizes[node] += 1;
+            ParseToken token = tokens.get(node);
+            TokenType type = token.getTypeSymbol();
+            holdsSubObj[node] |= type == TokenType.SUBJECT
+                    || type == TokenType.OBJECT;
+
+            // The children are found by skipping over the subtrees of their
+            // previous siblings
+            firstChildren[node] = nextChild;
+            boolean allLeaves = true;
+            boolean anySubObj = false;
+            int end = node + subtreeSizes[node];
+            for (int child = node + 1; child < end; child += subtreeSizes[child]) {
+                canonicalChildren[nextChild++] = child;
+                allLeaves &= subtreeSizes[child] == 1;
+                anySubObj |= holdsSubObj[child];
+            }
+            childCounts[node] = nextChild - firstChildren[node];
+
+            if (!anySubObj && isAttributeHolder(type)
+                    && (allLeaves || type != TokenType.MONEYAMOUNT)) {
+                sortByType(tokens, canonicalChildren, firstChildren[node],
+                        childCounts[node]);
+            }
+
+            long nodeHash = hashNode(token);
+            for (int i = 0; i < childCounts[node]; i++) {
+                nodeHash = nodeHash * CHILD_MULTIPLIER
+                        + hashes[canonicalChildren[firstChildren[node] + i]];
+            }
+            hashes[node] = mix(nodeHash + childCounts[node]);
+
+            if (parents[node] != -1) {
+                subtreeSizes[parents[node]] += subtreeSizes[node];
+                holdsSubObj[parents[node]] |= holdsSubObj[node];
+            }
+        }
+
+        // Write out the nodes in canonical pre-order
+        int[] codes = new int[size * 2];
+        String[] strings = new String[size * 2];
+        long hash = roots.size();
+        List<Integer> order = new ArrayList<Integer>();
+        int root = 0;
+        while (root < size) {
+            hash = hash * CHILD_MULTIPLIER + hashes[root];
+            order.add(root);
+            root += subtreeSizes[root];
+        }
+        Collections.reverse(order);
+
+        int written = 0;
+        while (!order.isEmpty()) {
+            int node = order.remove(order.size() - 1);
+            ParseToken token = tokens.get(node);
+            codes[written * 2] = codeOf(token);
+            codes[written * 2 + 1] = childCounts[node];
+            strings[written * 2] = token.getTypeSymbol() == TokenType.UNKNOWN ? token
+                    .getType() : null;
+            strings[written * 2 + 1] = token.getValue();
+            written++;
+
+            for (int i = childCounts[node] - 1; i >= 0; i--) {
+                order.add(canonicalChildren[firstChildren[node] + i]);
+            }
+        }
+        return new TreeKey(codes, strings, mix(hash));
+    }
+
+    /**
+     * Gets the 64 bit structural hash of the trees.
+     *
+     * @return The structural hash.
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Gets the number of nodes in the trees.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return this.codes.length / 2;
+    }
+
+    /**
+     * Gets the approximate number of characters held by the key, used to
+     * weigh it in a cache.
+     *
+     * @return The weight of the key.
+     */
+    long weight() {
+        long weight = this.codes.length * 2;
+        for (String string : this.strings) {
+            if (string != null) {
+                weight += string.length();
+            }
+        }
+        return weight;
+    }
+
+    @Override
+    /**
+     * Returns the low bits of the structural hash.
+     */
+    public int hashCode() {
+        return (int) (this.hash ^ (this.hash >>> 32));
+    }
+
+    @Override
+    /**
+     * Checks if the given object is the key of the same canonical trees.
+     */
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof TreeKey)) {
+            return false;
+        }
+        TreeKey key = (TreeKey) other;
+        return this.hash == key.hash && Arrays.equals(this.codes, key.codes)
+                && Arrays.equals(this.strings, key.strings);
+    }
+
+    @Override
+    /**
+     * Returns the structural hash in hexadecimal and the number of nodes.
+     */
+    public String toString() {
+        return Long.toHexString(this.hash) + " (" + this.size() + " nodes)";
+    }
+
+    /**
+     * Checks if the children of a node of the given type are attributes read
+     * by their type, so that their order does not matter.
+     *
+     * @param type
+     *            The type of the node.
+     * @return If the children may be put in the order of their types.
+     */
+    private static boolean isAttributeHolder(TokenType type) {
+        return type == TokenType.ITEM || type == TokenType.PLAYER
+                || type == TokenType.INSTANCE || type == TokenType.MONEYAMOUNT;
+    }
+
+    /**
+     * Puts the given children in the order of their types, keeping the order
+     * of children of the same type. Each type is collected in turn, so the
+     * time is linear in the number of children.
+     *
+     * @param tokens
+     *            The tokens of all of the nodes.
+     * @param children
+     *            The children of all of the nodes.
+     * @param start
+     *            The index of the first child to sort.
+     * @param count
+     *            The number of children to sort.
+     */
+    private static void sortByType(List<ParseToken> tokens, int[] children,
+            int start, int count) {
+        if (count < 2) {
+            return;
+        }
+        int[] original = Arrays.copyOfRange(children, start, start + count);
+        int next = start;
+        for (TokenType type : types) {
+            for (int child : original) {
+                if (tokens.get(child).getTypeSymbol() == type) {
+                    children[next++] = child;
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs the type, logic operation and negation of a token into an int.
+     *
+     * @param token
+     *            The token.
+     * @return The code of the token.
+     */
+    private static int codeOf(ParseToken token) {
+        int logic = token.getLogic() == null ? 0
+                : token.getLogic().ordinal() + 1;
+        return token.getTypeSymbol().ordinal() << 3 | logic << 1
+                | (token.isNegated() ? 1 : 0);
+    }
+
+    /**
+     * Hashes the fields of a single token.
+     *
+     * @param token
+     *            The token.
+     * @return The hash of the token.
+     */
+    private static long hashNode(ParseToken token) {
+        long hash = codeOf(token);
+        if (token.getTypeSymbol() == TokenType.UNKNOWN) {
+            String type = token.getType();
+            hash = hash * 31 + (type == null ? 0 : type.hashCode());
+        }
+        String value = token.getValue();
+        hash = mix(hash) * 31 + (value == null ? -1 : value.hashCode());
+        return mix(hash);
+    }
+
+    /**
+     * Mixes the bits of a hash so that every input bit affects every output
+     * bit, the finalizer of MurmurHash3.
+     *
+     * @param hash
+     *            The hash to mix.
+     * @return The mixed hash.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53a87c5L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,405 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the parse trees of semantic representations straight from a
+ * {@link ByteBuffer} holding the binary wire format written by a
+ * {@link TreeEncoder}, without going through their text. Buffers that do not
+ * start with the header of the format are read as text instead, one
+ * representation per line, so that both formats can be fed to the same
+ * reader. The trees of a representation are the same either way, down to the
+ * sentences they render.
+ * <p>
+ * The tokens of binary records have no IDs, see {@link TreeEncoder}. Reading
+ * a record is recorded in the {@link GeneratorMetrics} as building the
+ * trees of a representation, as there is no lexing. A TreeReader is not
+ * thread safe.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class TreeReader {
+
+    /**
+     * The buffer being read, positioned at the next record.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * If the buffer holds the binary format.
+     */
+    private final boolean binary;
+
+    /**
+     * The text of the representation read last. null if it was a binary
+     * record.
+     */
+    private String input;
+
+    /**
+     * The type names of the current record.
+     */
+    private String[] names;
+
+    /**
+     * The {@link TokenType}s of the {@link names}.
+     */
+    private TokenType[] nameTypes;
+
+    /**
+     * The number of children of the node read last.
+     */
+    private int childCount;
+
+    /**
+     * Reused to copy strings out of buffers that are not backed by an array.
+     */
+    private byte[] scratch;
+
+    /**
+     * Creates a new TreeReader reading the given buffer from its position to
+     * its limit. The position of the given buffer is not changed.
+     *
+     * @param buffer
+     *            The buffer holding the binary format or text.
+     * @throws CouldNotParseException
+     *             If the buffer holds an unsupported version of the binary
+     *             format.
+     */
+    public TreeReader(ByteBuffer buffer) throws CouldNotParseException {
+        this.buffer = buffer.duplicate();
+        this.binary = startsWithMagic(this.buffer);
+        this.names = new String[0];
+        this.nameTypes = new TokenType[0];
+        this.scratch = new byte[64];
+        if (this.binary) {
+            this.buffer.position(this.buffer.position()
+                    + WireFormat.MAGIC.length);
+            byte version = this.buffer.hasRemaining() ? this.buffer.get() : 0;
+            if (version != WireFormat.VERSION) {
+                throw new CouldNotParseException(
+                        "Error: Unsupported wire format version " + version
+                                + ".");
+            }
+        }
+    }
+
+    /**
+     * Checks if the buffer holds the binary format rather than text.
+     *
+     * @return If the buffer started with the header of the binary format.
+     */
+    public boolean isBinary() {
+        return this.binary;
+    }
+
+    /**
+     * Gets the text of the representation returned by the last call to
+     * {@link #next()}, which is also set if it could not be parsed.
+     *
+     * @return The text of the representation or null if it was read from a
+     *         binary record.
+     */
+    public String getInput() {
+        return this.input;
+    }
+
+    /**
+     * Reads the parse trees of the next representation. A record or line
+     * that could not be read is skipped, so reading can go on after an
+     * error, unless the length of a binary record is itself corrupt, in
+     * which case the rest of the buffer is skipped.
+     *
+     * @return The root nodes of the parse trees or null if the end of the
+     *         buffer was reached.
+     * @throws CouldNotParseException
+     *             If the representation could not be parsed.
+     */
+    public List<Tree<ParseToken>> next() throws CouldNotParseException {
+        if (!this.buffer.hasRemaining()) {
+            return null;
+        }
+        if (!this.binary) {
+            this.input = this.readLine();
+            return Parser.buildTrees(new TokenIndex(Parser.lex(this.input)));
+        }
+
+        this.input = null;
+        GeneratorMetrics metrics = GeneratorMetrics.getDefault();
+        long start = metrics.start();
+        int limit = this.buffer.limit();
+        int end = limit;
+        try {
+            int length = this.readVarint();
+            if (length > this.buffer.remaining()) {
+                throw new CouldNotParseException(
+                        "Error: Truncated wire format record.");
+            }
+            end = this.buffer.position() + length;
+            this.buffer.limit(end);
+            List<Tree<ParseToken>> trees = this.readRecord();
+            if (this.buffer.hasRemaining()) {
+                throw malformed();
+            }
+
+            // There is no lexing, so the representation is counted on its
+            // own and the decoding is recorded as building the trees
+            metrics.recordLex(0);
+            metrics.recordTree(start);
+            return trees;
+        } catch (BufferUnderflowException e) {
+            metrics.recordParseFailure();
+            throw malformed();
+        } catch (CouldNotParseException e) {
+            metrics.recordParseFailure();
+            throw e;
+        } finally {
+            this.buffer.limit(limit);
+            this.buffer.position(end);
+        }
+    }
+
+    /**
+     * Reads the type names and parse trees of a binary record.
+     *
+     * @return The root nodes of the parse trees.
+     * @throws CouldNotParseException
+     *             If the record is malformed.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private List<Tree<ParseToken>> readRecord() throws CouldNotParseException {
+        int nameCount = this.readCount();
+        if (nameCount > this.names.length) {
+            this.names = new String[nameCount];
+            this.nameTypes = new TokenType[nameCount];
+        }
+        for (int i = 0; i < nameCount; i++) {
+            this.names[i] = this.readString();
+            this.nameTypes[i] = TokenType.lookup(this.names[i]);
+        }
+
+        int rootCount = this.readCount();
+        List<Tree<ParseToken>> roots = new ArrayList<Tree<ParseToken>>(
+                rootCount);
+
+        // The nodes that still have children to read and how many, kept on
+        // an explicit stack so that deep trees can not overflow the call
+        // stack
+        Tree<ParseToken>[] parents = new Tree[16];
+        int[] remaining = new int[16];
+        for (int i = 0; i < rootCount; i++) {
+            ParseToken token = this.readToken(nameCount);
+            int childCount = this.childCount;
+            Tree<ParseToken> tree = new Tree<ParseToken>(token, null);
+            roots.add(tree);
+
+            int top = 0;
+            parents[top] = tree;
+            remaining[top++] = childCount;
+            while (top > 0) {
+                if (remaining[top - 1] == 0) {
+                    top--;
+                    continue;
+                }
+                remaining[top - 1]--;
+                token = this.readToken(nameCount);
+                childCount = this.childCount;
+                tree = parents[top - 1].addChild(token);
+                if (childCount > 0) {
+                    if (top == parents.length) {
+                        parents = Arrays.copyOf(parents, top * 2);
+                        remaining = Arrays.copyOf(remaining, top * 2);
+                    }
+                    parents[top] = tree;
+                    remaining[top++] = childCount;
+                }
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Reads the token of a node and sets the {@link childCount} to its
+     * number of children.
+     *
+     * @param nameCount
+     *            The number of type names of the record.
+     * @return The token.
+     * @throws CouldNotParseException
+     *             If the node is malformed.
+     */
+    private ParseToken readToken(int nameCount) throws CouldNotParseException {
+        ParseToken token = new ParseToken();
+        int flags = this.buffer.get() & 0xFF;
+        if ((flags & ~WireFormat.FLAGS) != 0
+                || (flags & (WireFormat.AND | WireFormat.OR)) == (WireFormat.AND | WireFormat.OR)) {
+            throw malformed();
+        }
+        int typeId = this.readVarint();
+        if (typeId < WireFormat.TYPES.length) {
+            token.setType(WireFormat.TYPE_NAMES[typeId],
+                    WireFormat.TYPES[typeId]);
+        } else if (typeId - WireFormat.TYPES.length < nameCount) {
+            int name = typeId - WireFormat.TYPES.length;
+            token.setType(this.names[name], this.nameTypes[name]);
+        } else {
+            throw malformed();
+        }
+        this.childCount = this.readCount();
+
+        if ((flags & WireFormat.NEGATED) != 0) {
+            token.setNegated(true);
+        }
+        if ((flags & WireFormat.AND) != 0) {
+            token.setLogic(LogicOp.AND);
+        } else if ((flags & WireFormat.OR) != 0) {
+            token.setLogic(LogicOp.OR);
+        }
+        if ((flags & WireFormat.HAS_VALUE) != 0) {
+            token.setValue(this.readString());
+        }
+        return token;
+    }
+
+    /**
+     * Reads the next line of a text buffer, ending at a line feed, a carriage
+     * return or a carriage return followed by a line feed like
+     * {@link java.io.BufferedReader#readLine()}.
+     *
+     * @return The line without its terminator.
+     */
+    private String readLine() {
+        int start = this.buffer.position();
+        int limit = this.buffer.limit();
+        int end = start;
+        while (end < limit) {
+            byte b = this.buffer.get(end);
+            if (b == '\n' || b == '\r') {
+                break;
+            }
+            end++;
+        }
+
+        String line = this.decode(start, end - start);
+        int next = end;
+        if (next < limit && this.buffer.get(next++) == '\r' && next < limit
+                && this.buffer.get(next) == '\n') {
+            next++;
+        }
+        this.buffer.position(next);
+        return line;
+    }
+
+    /**
+     * Reads an unsigned variable length integer.
+     *
+     * @return The integer.
+     * @throws CouldNotParseException
+     *             If the integer does not fit in an int.
+     */
+    private int readVarint() throws CouldNotParseException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = this.buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0 || (shift == 28 && (b & 0x70) != 0)) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw malformed();
+    }
+
+    /**
+     * Reads a count of entries that take at least one byte each, so that a
+     * corrupt count is caught before anything is allocated for it.
+     *
+     * @return The count.
+     * @throws CouldNotParseException
+     *             If there are not enough bytes left for the entries.
+     */
+    private int readCount() throws CouldNotParseException {
+        int count = this.readVarint();
+        if (count > this.buffer.remaining()) {
+            throw malformed();
+        }
+        return count;
+    }
+
+    /**
+     * Reads a String written as its length in bytes and its UTF-8 bytes.
+     *
+     * @return The String.
+     * @throws CouldNotParseException
+     *             If the String is longer than the rest of the record.
+     */
+    private String readString() throws CouldNotParseException {
+        int length = this.readCount();
+        int start = this.buffer.position();
+        this.buffer.position(start + length);
+        return this.decode(start, length);
+    }
+
+    /**
+     * Decodes UTF-8 bytes of the buffer, straight from its array if it has
+     * one.
+     *
+     * @param start
+     *            The index of the first byte.
+     * @param length
+     *            The number of bytes.
+     * @return The decoded String.
+     */
+    private String decode(int start, int length) {
+        if (this.buffer.hasArray()) {
+            return new String(this.buffer.array(), this.buffer.arrayOffset()
+                    + start, length, StandardCharsets.UTF_8);
+        }
+        if (length > this.scratch.length) {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+        ByteBuffer bytes = this.buffer.duplicate();
+        bytes.limit(start + length).position(start);
+        bytes.get(this.scratch, 0, length);
+        return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks if the given buffer starts with the {@link WireFormat#MAGIC}
+     * bytes.
+     *
+     * @param buffer
+     *            The buffer.
+     * @return If the bytes from the position of the buffer are the magic
+     *         bytes.
+     */
+    private static boolean startsWithMagic(ByteBuffer buffer) {
+        if (buffer.remaining() < WireFormat.MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < WireFormat.MAGIC.length; i++) {
+            if (buffer.get(buffer.position() + i) != WireFormat.MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the exception thrown for a malformed binary record.
+     *
+     * @return The exception.
+     */
+    private static CouldNotParseException malformed() {
+        return new CouldNotParseException(
+                "Error: Malformed wire format record.");
+    }
+}
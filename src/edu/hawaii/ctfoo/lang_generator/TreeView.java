@@ -0,0 +1,90 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.List;
+
+/**
+ * A read-only view of a node in a tree structure. The sentences and entities
+ * only walk their parse trees, so they take a TreeView and can run on any
+ * form of the trees, either a {@link Tree} or the views of a
+ * {@link CompactTree}.
+ *
+ * @author Christopher Foo
+ *
+ * @param <T>
+ *            The type of the nodes in the tree.
+ */
+public interface TreeView<T> {
+
+    /**
+     * Gets the value of the node.
+     *
+     * @return The value of the node.
+     */
+    public T getNode();
+
+    /**
+     * Gets the parent of the node.
+     *
+     * @return The node's parent. null if the node does not have a parent.
+     */
+    public TreeView<T> getParent();
+
+    /**
+     * Gets the direct children of the node (1 level).
+     *
+     * @return The direct children of this node.
+     */
+    public List<? extends TreeView<T>> getDirectChildren();
+
+    /**
+     * Finds the direct children of this node that match the matcher with the
+     * given key.
+     *
+     * @param key
+     *            The key to match with the matcher.
+     * @param matcher
+     *            The {@link MatchFunctor} used to match the key with a node.
+     * @return A list of matching children nodes.
+     */
+    public <U> List<? extends TreeView<T>> findDirect(U key,
+            MatchFunctor<U, T> matcher);
+
+    /**
+     * Finds all children (and their children, etc.) that match the matcher with
+     * the given key.
+     *
+     * @param key
+     *            The key to match with the matcher.
+     * @param matcher
+     *            The {@link MatchFunctor} used to match the key with a node.
+     * @return A list of all matching nodes below this node in pre-order.
+     */
+    public <U> List<? extends TreeView<T>> findAll(U key,
+            MatchFunctor<U, T> matcher);
+
+    /**
+     * Finds the direct children of this node that match the matcher with the
+     * given key, as they are iterated if the form of the tree allows it.
+     *
+     * @param key
+     *            The key to match with the matcher.
+     * @param matcher
+     *            The {@link MatchFunctor} used to match the key with a node.
+     * @return The matching children nodes in order.
+     */
+    public <U> Iterable<? extends TreeView<T>> iterateDirect(U key,
+            MatchFunctor<U, T> matcher);
+
+    /**
+     * Finds all children (and their children, etc.) that match the matcher with
+     * the given key, as they are iterated if the form of the tree allows it.
+     *
+     * @param key
+     *            The key to match with the matcher.
+     * @param matcher
+     *            The {@link MatchFunctor} used to match the key with a node.
+     * @return All matching nodes below this node in pre-order.
+     */
+    public <U> Iterable<? extends TreeView<T>> iterateAll(U key,
+            MatchFunctor<U, T> matcher);
+}
@@ -18,6 +18,12 @@ public class TypeMatcher implements MatchFunctor<String, ParseToken> {
             return false;
         }
 
+        // Known types only need to compare their TokenTypes
+        TokenType keySymbol = TokenType.lookup(key);
+        if (keySymbol != TokenType.UNKNOWN) {
+            return searchItem.getTypeSymbol() == keySymbol;
+        }
+
         if (searchItem.getType() == key
                 || searchItem.getType().equalsIgnoreCase(key)) {
             return true;
@@ -0,0 +1,122 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.util.Arrays;
+
+/**
+ * The constants of the binary wire format of parse trees, written by the
+ * {@link TreeEncoder} and read by the {@link TreeReader}.
+ * <p>
+ * A stream starts with the {@link #MAGIC} bytes and the {@link #VERSION} of
+ * the format, followed by one record per semantic representation. A record
+ * is its length in bytes followed by:
+ * <ol>
+ * <li>The number of type names and the names themselves, the types of the
+ * record that are not {@link TokenType}s.</li>
+ * <li>The number of parse trees.</li>
+ * <li>The nodes of the trees in pre-order. Each node is a byte of flags, the
+ * type ID, the number of children and, if the {@link #HAS_VALUE} flag is
+ * set, the value.</li>
+ * </ol>
+ * All lengths, counts and IDs are unsigned variable length integers, seven
+ * bits per byte starting with the lowest and the high bit set on every byte
+ * but the last. Strings are their length in bytes followed by their UTF-8
+ * bytes. The type IDs below the number of {@link #TYPES} are the known types
+ * and the rest are indexes into the type names of the record, offset by the
+ * number of known types. The token IDs are not written as the trees already
+ * hold the structure they describe.
+ *
+ * @author Christopher Foo
+ *
+ */
+final class WireFormat {
+
+    /**
+     * The bytes that start a binary stream. 0xC0 never appears in UTF-8, so
+     * a text stream can not start with them.
+     */
+    static final byte[] MAGIC = { (byte) 0xC0, 'S', 'R' };
+
+    /**
+     * The version of the format written after the {@link MAGIC}.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Flag set if the token was negated.
+     */
+    static final int NEGATED = 1;
+
+    /**
+     * Flag set if the token is connected with an AND.
+     */
+    static final int AND = 2;
+
+    /**
+     * Flag set if the token is connected with an OR.
+     */
+    static final int OR = 4;
+
+    /**
+     * Flag set if the token has a value.
+     */
+    static final int HAS_VALUE = 8;
+
+    /**
+     * All of the flags of this version.
+     */
+    static final int FLAGS = NEGATED | AND | OR | HAS_VALUE;
+
+    /**
+     * The known types indexed by their type IDs. New types may only be
+     * added at the end, as the IDs of the existing types may not change
+     * within a version.
+     */
+    static final TokenType[] TYPES = { TokenType.BUY, TokenType.SELL,
+            TokenType.FINDGROUP, TokenType.FINDMORE, TokenType.SUBJECT,
+            TokenType.OBJECT, TokenType.CONTACTMETHOD, TokenType.ITEM,
+            TokenType.PLAYER, TokenType.INSTANCE, TokenType.MONEYAMOUNT,
+            TokenType.NAME, TokenType.RARITY, TokenType.TYPE, TokenType.LEVEL,
+            TokenType.QUANTITY, TokenType.VALUE, TokenType.DENOMINATION,
+            TokenType.CURRENCY, TokenType.CLASS, TokenType.SPECIALIZATION,
+            TokenType.RACE, TokenType.ROLE, TokenType.ITEMLEVEL,
+            TokenType.MODE, TokenType.DIFFICULTY };
+
+    /**
+     * The type names given to the tokens of the known types, indexed by
+     * their type IDs. Capitalized like the types read from text.
+     */
+    static final String[] TYPE_NAMES = new String[TYPES.length];
+
+    /**
+     * The type IDs of the {@link TokenType}s indexed by their ordinals, -1
+     * for {@link TokenType#UNKNOWN}.
+     */
+    private static final int[] typeIds = new int[TokenType.values().length];
+
+    static {
+        Arrays.fill(typeIds, -1);
+        for (int i = 0; i < TYPES.length; i++) {
+            String name = TYPES[i].getName();
+            TYPE_NAMES[i] = Character.toUpperCase(name.charAt(0))
+                    + name.substring(1);
+            typeIds[TYPES[i].ordinal()] = i;
+        }
+    }
+
+    /**
+     * Not instantiable.
+     */
+    private WireFormat() {
+    }
+
+    /**
+     * Gets the type ID of the given known type.
+     *
+     * @param type
+     *            The type.
+     * @return The type ID or -1 for {@link TokenType#UNKNOWN}.
+     */
+    static int typeId(TokenType type) {
+        return typeIds[type.ordinal()];
+    }
+}
@@ -0,0 +1,739 @@
+package edu.hawaii.ctfoo.lang_generator;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Generates random but valid semantic representations for benchmarks and load
+ * tests. Every representation is accepted by the {@link Parser}, and the same
+ * seed and settings always produce the same representations in the same
+ * order.
+ * <p>
+ * The shape of the representations is controlled by the settings:
+ * <ul>
+ * <li>the mix of buy, sell, find group and find more sentences,</li>
+ * <li>the maximum depth of nested subject and object nodes,</li>
+ * <li>the maximum fan-out, the number of entities below a subject or object
+ * and the number of contact methods and instances,</li>
+ * <li>the share of entities connected by OR instead of AND,</li>
+ * <li>the share of negated entities,</li>
+ * <li>the maximum number of money amounts in an item's value and</li>
+ * <li>the share of the optional Player, Item and Instance attributes that are
+ * given.</li>
+ * </ul>
+ * The settings must not be changed while the representations are being
+ * generated.
+ *
+ * @author Christopher Foo
+ *
+ */
+public class WorkloadGenerator {
+
+    /**
+     * The names of the items. Multi-word names are quoted as users type them.
+     */
+    private static final String[] ITEM_NAMES = { "\"Sword of Doom\"",
+            "Thunderfury", "Shield", "\"Wool Cloth\"", "Ore", "\"Staff of Ages\"",
+            "Ruby", "\"Frost Boots\"", "Knife", "\"Healing Potion\"" };
+
+    /**
+     * The types of the items.
+     */
+    private static final String[] ITEM_TYPES = { "Helm", "Sword", "Bow",
+            "Staff", "Boots", "Gloves", "Ring", "Shield", "Mace", "Cloak" };
+
+    /**
+     * The rarities of the items.
+     */
+    private static final String[] RARITIES = { "Common", "Uncommon", "Rare",
+            "Epic", "Legendary" };
+
+    /**
+     * The currencies of the money amounts.
+     */
+    private static final String[] CURRENCIES = { "Gold", "Silver", "Copper" };
+
+    /**
+     * The classes of the players.
+     */
+    private static final String[] CLASSES = { "Warrior", "Mage", "Priest",
+            "Rogue", "Shaman", "Paladin", "Druid", "Hunter", "Thief" };
+
+    /**
+     * The specializations of the players.
+     */
+    private static final String[] SPECIALIZATIONS = { "Restoration",
+            "Shadow", "Frost", "Holy", "Arms", "Balance" };
+
+    /**
+     * The races of the players.
+     */
+    private static final String[] RACES = { "Elf", "Human", "Orc", "Dwarf",
+            "Tauren", "Gnome" };
+
+    /**
+     * The roles of the players.
+     */
+    private static final String[] ROLES = { "Tank", "Healer", "Dps" };
+
+    /**
+     * The names of the instances.
+     */
+    private static final String[] INSTANCE_NAMES = { "\"Molten Core\"",
+            "Deadmines", "Stockade", "\"Heart of Fear\"", "Naxxramas",
+            "\"Mogushan Vaults\"" };
+
+    /**
+     * The modes of the instances.
+     */
+    private static final String[] MODES = { "Raid", "Dungeon", "\"25 man\"",
+            "\"10 man\"" };
+
+    /**
+     * The difficulties of the instances.
+     */
+    private static final String[] DIFFICULTIES = { "Normal", "Heroic",
+            "Mythic" };
+
+    /**
+     * The contact methods.
+     */
+    private static final String[] CONTACT_METHODS = { "\"PST\"",
+            "\"Whisper me\"", "\"Mail me\"" };
+
+    /**
+     * The source of all of the random choices.
+     */
+    private final Random random;
+
+    /**
+     * The builder the current representation is generated in.
+     */
+    private final StringBuilder builder;
+
+    /**
+     * The number of IDs used in the current representation.
+     */
+    private int ids;
+
+    /**
+     * The relative weights of the buy, sell, find group and find more
+     * sentences.
+     */
+    private int[] weights;
+
+    /**
+     * The maximum depth of nested subject and object nodes.
+     */
+    private int maxDepth;
+
+    /**
+     * The maximum fan-out of a node.
+     */
+    private int maxFanOut;
+
+    /**
+     * The share of the entities connected by OR.
+     */
+    private double orRate;
+
+    /**
+     * The share of the entities that are negated.
+     */
+    private double negationRate;
+
+    /**
+     * The maximum number of money amounts in an item's value.
+     */
+    private int maxMoneyAmounts;
+
+    /**
+     * The share of the optional attributes that are given.
+     */
+    private double attributeDensity;
+
+    /**
+     * Creates a new WorkloadGenerator with the default settings: an equal mix
+     * of sentences, a depth of 1, a fan-out of up to 3, 30% OR, 10% negation,
+     * up to 2 money amounts and half of the optional attributes.
+     *
+     * @param seed
+     *            The seed of the random choices.
+     */
+    public WorkloadGenerator(long seed) {
+        this.random = new Random(seed);
+        this.builder = new StringBuilder();
+        this.weights = new int[] { 1, 1, 1, 1 };
+        this.maxDepth = 1;
+        this.maxFanOut = 3;
+        this.orRate = 0.3;
+        this.negationRate = 0.1;
+        this.maxMoneyAmounts = 2;
+        this.attributeDensity = 0.5;
+    }
+
+    /**
+     * Sets the relative weights of the kinds of sentences.
+     *
+     * @param buy
+     *            The weight of the buy sentences.
+     * @param sell
+     *            The weight of the sell sentences.
+     * @param findGroup
+     *            The weight of the find group sentences.
+     * @param findMore
+     *            The weight of the find more sentences.
+     */
+    public void setSentenceWeights(int buy, int sell, int findGroup,
+            int findMore) {
+        if (buy < 0 || sell < 0 || findGroup < 0 || findMore < 0
+                || buy + sell + findGroup + findMore == 0) {
+            throw new IllegalArgumentException(
+                    "The weights must not be negative and not all be 0.");
+        }
+        this.weights = new int[] { buy, sell, findGroup, findMore };
+    }
+
+    /**
+     * Sets the maximum depth of nested subject and object nodes. Each
+     * subject or object is nested between 1 and the maximum depth times, for
+     * example object(a,b) object(b,c) item(c,d) has a depth of 2.
+     *
+     * @param maxDepth
+     *            The maximum depth, at least 1.
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = checkPositive(maxDepth, "depth");
+    }
+
+    /**
+     * Sets the maximum number of entities below a subject or object and of
+     * contact methods and instances in a sentence.
+     *
+     * @param maxFanOut
+     *            The maximum fan-out, at least 1.
+     */
+    public void setMaxFanOut(int maxFanOut) {
+        this.maxFanOut = checkPositive(maxFanOut, "fan-out");
+    }
+
+    /**
+     * Sets the share of the entities, contact methods and instances that are
+     * connected to the previous one by OR instead of AND.
+     *
+     * @param orRate
+     *            A share between 0 and 1.
+     */
+    public void setOrRate(double orRate) {
+        this.orRate = checkShare(orRate, "OR rate");
+    }
+
+    /**
+     * Sets the share of the entities that are negated.
+     *
+     * @param negationRate
+     *            A share between 0 and 1.
+     */
+    public void setNegationRate(double negationRate) {
+        this.negationRate = checkShare(negationRate, "negation rate");
+    }
+
+    /**
+     * Sets the maximum number of money amounts in an item's value.
+     *
+     * @param maxMoneyAmounts
+     *            The maximum number, at least 1.
+     */
+    public void setMaxMoneyAmounts(int maxMoneyAmounts) {
+        this.maxMoneyAmounts = checkPositive(maxMoneyAmounts,
+                "number of money amounts");
+    }
+
+    /**
+     * Sets the share of the optional Player, Item and Instance attributes that
+     * are given. Every entity has at least one attribute.
+     *
+     * @param attributeDensity
+     *            A share between 0 and 1.
+     */
+    public void setAttributeDensity(double attributeDensity) {
+        this.attributeDensity = checkShare(attributeDensity,
+                "attribute density");
+    }
+
+    /**
+     * Generates the next representation.
+     *
+     * @return A semantic representation the {@link Parser} accepts.
+     */
+    public String next() {
+        this.builder.setLength(0);
+        this.ids = 0;
+        String sentence = this.newId();
+
+        int total = 0;
+        for (int weight : this.weights) {
+            total += weight;
+        }
+        int pick = this.random.nextInt(total);
+        int kind = 0;
+        while (pick >= this.weights[kind]) {
+            pick -= this.weights[kind];
+            kind++;
+        }
+
+        switch (kind) {
+        case 0:
+        case 1:
+            this.builder.append(kind == 0 ? "buy(" : "sell(").append(sentence)
+                    .append(')');
+            if (this.random.nextDouble() < 0.8) {
+                this.appendGroup("subject", sentence, TokenType.PLAYER);
+            }
+            this.appendGroup("object", sentence, TokenType.ITEM);
+            if (this.random.nextBoolean()) {
+                this.appendContactMethods(sentence);
+            }
+            break;
+        case 2:
+            this.builder.append("findgroup(").append(sentence).append(')');
+            this.appendGroup("subject", sentence, TokenType.PLAYER);
+            this.appendGroup("object", sentence, TokenType.INSTANCE);
+            break;
+        default:
+            this.builder.append("findmore(").append(sentence).append(')');
+            this.appendGroup("object", sentence, TokenType.PLAYER);
+            int instances = this.fanOut();
+            for (int i = 0; i < instances; i++) {
+                this.appendEntity(sentence, TokenType.INSTANCE, i > 0, false);
+            }
+            break;
+        }
+        return this.builder.toString();
+    }
+
+    /**
+     * Gets an iterator over the given number of representations, generated
+     * as they are needed so that any number of them can be streamed.
+     *
+     * @param count
+     *            The number of representations.
+     * @return An iterator over the representations.
+     */
+    public Iterator<String> iterator(final long count) {
+        return new Iterator<String>() {
+
+            /**
+             * The number of representations left.
+             */
+            private long left = count;
+
+            @Override
+            public boolean hasNext() {
+                return this.left > 0;
+            }
+
+            @Override
+            public String next() {
+                if (this.left <= 0) {
+                    throw new NoSuchElementException();
+                }
+                this.left--;
+                return WorkloadGenerator.this.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Writes the given number of representations to the given writer, one
+     * per line.
+     *
+     * @param out
+     *            The writer to write to.
+     * @param count
+     *            The number of representations.
+     * @throws IOException
+     *             If the representations could not be written.
+     */
+    public void write(Writer out, long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            out.write(this.next());
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Appends a subject or object node, nested up to the maximum depth, and
+     * its entities.
+     *
+     * @param type
+     *            "subject" or "object".
+     * @param sentence
+     *            The ID of the sentence.
+     * @param entity
+     *            The type of the entities.
+     */
+    private void appendGroup(String type, String sentence, TokenType entity) {
+        String parent = sentence;
+        int depth = 1 + this.random.nextInt(this.maxDepth);
+        for (int i = 0; i < depth; i++) {
+            String id = this.newId();
+            this.builder.append(' ').append(type).append('(').append(parent)
+                    .append(',').append(id).append(')');
+            parent = id;
+        }
+
+        int entities = this.fanOut();
+        for (int i = 0; i < entities; i++) {
+            this.appendEntity(parent, entity, i > 0,
+                    this.random.nextDouble() < this.negationRate);
+        }
+    }
+
+    /**
+     * Appends the contact methods of a buy or sell sentence.
+     *
+     * @param sentence
+     *            The ID of the sentence.
+     */
+    private void appendContactMethods(String sentence) {
+        int methods = this.fanOut();
+        for (int i = 0; i < methods; i++) {
+            this.appendLogic(i > 0, false);
+            this.builder.append("contactmethod(").append(sentence).append(',')
+                    .append(this.pick(CONTACT_METHODS)).append(')');
+        }
+    }
+
+    /**
+     * Appends an entity and its attributes.
+     *
+     * @param parent
+     *            The ID of the parent of the entity.
+     * @param type
+     *            The type of the entity.
+     * @param connected
+     *            If the entity follows another one it is connected to.
+     * @param negated
+     *            If the entity is negated.
+     */
+    private void appendEntity(String parent, TokenType type,
+            boolean connected, boolean negated) {
+        String id = this.newId();
+        this.appendLogic(connected, negated);
+        this.builder.append(type.getName()).append('(').append(parent)
+                .append(',').append(id).append(')');
+
+        switch (type) {
+        case ITEM:
+            this.appendItem(id);
+            break;
+        case PLAYER:
+            this.appendPlayer(id);
+            break;
+        default:
+            this.appendInstance(id);
+            break;
+        }
+    }
+
+    /**
+     * Appends the attributes of an item.
+     *
+     * @param item
+     *            The ID of the item.
+     */
+    private void appendItem(String item) {
+        boolean named = this.random.nextBoolean();
+        if (named) {
+            this.appendAttribute(item, "name", this.pick(ITEM_NAMES));
+        }
+        if (!named || this.hasAttribute()) {
+            this.appendAttribute(item, "type", this.pick(ITEM_TYPES));
+        }
+        if (this.hasAttribute()) {
+            this.appendAttribute(item, "rarity", this.pick(RARITIES));
+        }
+        if (this.hasAttribute()) {
+            this.appendAttribute(item, "level",
+                    Integer.toString(1 + this.random.nextInt(90)));
+        }
+        if (this.hasAttribute()) {
+            this.appendAttribute(item, "quantity",
+                    Integer.toString(1 + this.random.nextInt(20)));
+        }
+        if (this.hasAttribute()) {
+            String value = this.newId();
+            this.builder.append(" value(").append(item).append(',')
+                    .append(value).append(')');
+            int amounts = 1 + this.random.nextInt(this.maxMoneyAmounts);
+            for (int i = 0; i < amounts; i++) {
+                String amount = this.newId();
+                this.builder.append(" moneyamount(").append(value).append(',')
+                        .append(amount).append(')');
+                this.appendAttribute(amount, "denomination",
+                        Integer.toString(1 + this.random.nextInt(5000)));
+                this.appendAttribute(amount, "currency",
+                        this.pick(CURRENCIES));
+            }
+        }
+    }
+
+    /**
+     * Appends the attributes of a player.
+     *
+     * @param player
+     *            The ID of the player.
+     */
+    private void appendPlayer(String player) {
+        boolean classed = this.random.nextBoolean();
+        if (classed) {
+            this.appendAttribute(player, "class", this.pick(CLASSES));
+        }
+        if (!classed || this.hasAttribute()) {
+            this.appendAttribute(player, "role", this.pick(ROLES));
+        }
+        if (this.hasAttribute()) {
+            this.appendAttribute(player, "specialization",
+                    this.pick(SPECIALIZATIONS));
+        }
+        if (this.hasAttribute()) {
+            this.appendAttribute(player, "race", this.pick(RACES));
+        }
+        if (this.hasAttribute()) {
+            this.appendAttribute(player, "level",
+                    Integer.toString(1 + this.random.nextInt(90)));
+        }
+        if (this.hasAttribute()) {
+            this.appendAttribute(player, "itemlevel",
+                    Integer.toString(1 + this.random.nextInt(500)));
+        }
+        if (this.hasAttribute()) {
+            this.appendAttribute(player, "quantity",
+                    Integer.toString(1 + this.random.nextInt(5)));
+        }
+    }
+
+    /**
+     * Appends the attributes of an instance.
+     *
+     * @param instance
+     *            The ID of the instance.
+     */
+    private void appendInstance(String instance) {
+        this.appendAttribute(instance, "name", this.pick(INSTANCE_NAMES));
+        if (this.hasAttribute()) {
+            this.appendAttribute(instance, "mode", this.pick(MODES));
+        }
+        if (this.hasAttribute()) {
+            this.appendAttribute(instance, "difficulty",
+                    this.pick(DIFFICULTIES));
+        }
+    }
+
+    /**
+     * Appends an attribute token.
+     *
+     * @param parent
+     *            The ID of the entity the attribute belongs to.
+     * @param type
+     *            The type of the attribute.
+     * @param value
+     *            The value of the attribute. Never starts with a lower case
+     *            letter, so it is not read as an ID.
+     */
+    private void appendAttribute(String parent, String type, String value) {
+        this.builder.append(' ').append(type).append('(').append(parent)
+                .append(',').append(value).append(')');
+    }
+
+    /**
+     * Appends the separator before a token, with its logic operation and
+     * negation.
+     *
+     * @param connected
+     *            If the token follows another one it is connected to. The
+     *            first token of a group has no logic operation.
+     * @param negated
+     *            If the token is negated.
+     */
+    private void appendLogic(boolean connected, boolean negated) {
+        if (connected && this.random.nextDouble() < this.orRate) {
+            this.builder.append(" ; ");
+        } else if (connected) {
+            this.builder.append(" , ");
+        } else {
+            this.builder.append(' ');
+        }
+        if (negated) {
+            this.builder.append('-');
+        }
+    }
+
+    /**
+     * Decides if the next optional attribute is given.
+     *
+     * @return If the attribute is given.
+     */
+    private boolean hasAttribute() {
+        return this.random.nextDouble() < this.attributeDensity;
+    }
+
+    /**
+     * Picks the fan-out of the next node.
+     *
+     * @return A fan-out between 1 and the maximum fan-out.
+     */
+    private int fanOut() {
+        return 1 + this.random.nextInt(this.maxFanOut);
+    }
+
+    /**
+     * Picks one of the given values.
+     *
+     * @param values
+     *            The values to pick from.
+     * @return The picked value.
+     */
+    private String pick(String[] values) {
+        return values[this.random.nextInt(values.length)];
+    }
+
+    /**
+     * Creates an ID that has not been used in the current representation.
+     *
+     * @return The new ID.
+     */
+    private String newId() {
+        return "e" + this.ids++;
+    }
+
+    /**
+     * Checks that the given setting is at least 1.
+     *
+     * @param value
+     *            The setting.
+     * @param name
+     *            The name of the setting used in the error message.
+     * @return The setting.
+     */
+    private static int checkPositive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException("The maximum " + name
+                    + " must be at least 1.");
+        }
+        return value;
+    }
+
+    /**
+     * Checks that the given setting is between 0 and 1.
+     *
+     * @param value
+     *            The setting.
+     * @param name
+     *            The name of the setting used in the error message.
+     * @return The setting.
+     */
+    private static double checkShare(double value, String name) {
+        if (!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException("The " + name
+                    + " must be between 0 and 1.");
+        }
+        return value;
+    }
+
+    /**
+     * Writes generated representations to STDOUT or a file.
+     *
+     * @param args
+     *            The number of representations, followed by any of "--seed
+     *            N", "--out FILE", "--weights BUY,SELL,FINDGROUP,FINDMORE",
+     *            "--depth N", "--fan-out N", "--or-rate R", "--negation-rate
+     *            R", "--money N" and "--density R".
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: WorkloadGenerator COUNT [--seed N] "
+                    + "[--out FILE] [--weights B,S,FG,FM] [--depth N] "
+                    + "[--fan-out N] [--or-rate R] [--negation-rate R] "
+                    + "[--money N] [--density R]");
+            return;
+        }
+
+        Writer out = null;
+        try {
+            long count = Long.parseLong(args[0]);
+            long seed = 0;
+            String file = null;
+            for (int i = 1; i + 1 < args.length; i += 2) {
+                if (args[i].equals("--seed")) {
+                    seed = Long.parseLong(args[i + 1]);
+                } else if (args[i].equals("--out")) {
+                    file = args[i + 1];
+                }
+            }
+
+            WorkloadGenerator generator = new WorkloadGenerator(seed);
+            for (int i = 1; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                if (args[i].equals("--weights")) {
+                    String[] parts = value.split(",");
+                    if (parts.length != 4) {
+                        throw new IllegalArgumentException(
+                                "Four weights are needed.");
+                    }
+                    generator.setSentenceWeights(Integer.parseInt(parts[0]),
+                            Integer.parseInt(parts[1]),
+                            Integer.parseInt(parts[2]),
+                            Integer.parseInt(parts[3]));
+                } else if (args[i].equals("--depth")) {
+                    generator.setMaxDepth(Integer.parseInt(value));
+                } else if (args[i].equals("--fan-out")) {
+                    generator.setMaxFanOut(Integer.parseInt(value));
+                } else if (args[i].equals("--or-rate")) {
+                    generator.setOrRate(Double.parseDouble(value));
+                } else if (args[i].equals("--negation-rate")) {
+                    generator.setNegationRate(Double.parseDouble(value));
+                } else if (args[i].equals("--money")) {
+                    generator.setMaxMoneyAmounts(Integer.parseInt(value));
+                } else if (args[i].equals("--density")) {
+                    generator.setAttributeDensity(Double.parseDouble(value));
+                }
+            }
+
+            Charset utf8 = Charset.forName("UTF-8");
+            out = new BufferedWriter(new OutputStreamWriter(
+                    file == null ? System.out : new FileOutputStream(file),
+                    utf8), Generator.OUTPUT_BUFFER_SIZE);
+            generator.write(out, count);
+        } catch (IllegalArgumentException e) {
+
+            // Includes the numbers that could not be parsed
+            System.err.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error: Could not write the representations.");
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    System.err.println("Error: Could not write the "
+                            + "representations.");
+                }
+            }
+        }
+    }
+}
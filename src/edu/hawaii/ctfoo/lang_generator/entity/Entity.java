@@ -1,5 +1,7 @@
 package edu.hawaii.ctfoo.lang_generator.entity;
 
+import java.io.IOException;
+
 import edu.hawaii.ctfoo.lang_generator.LogicOp;
 
 /**
@@ -20,12 +22,49 @@ public abstract class Entity {
      */
     protected boolean negated;
 
+    /**
+     * If the entity can no longer be changed.
+     */
+    private boolean sealed;
+
     /**
      * Creates a new Entity with default values.
      */
     public Entity() {
         this.logic = null;
         this.negated = false;
+        this.sealed = false;
+    }
+
+    /**
+     * Makes the entity read-only once it is built, so that it may be shared
+     * with other threads. Adding to the entity afterwards throws an
+     * {@link UnsupportedOperationException}.
+     */
+    public void seal() {
+        this.sealed = true;
+    }
+
+    /**
+     * Checks if the entity is read-only.
+     * 
+     * @return If the entity was sealed.
+     */
+    public boolean isSealed() {
+        return this.sealed;
+    }
+
+    /**
+     * Throws if the entity is read-only. Called by the methods that change
+     * the entity.
+     * 
+     * @throws UnsupportedOperationException
+     *             If the entity was sealed.
+     */
+    protected void checkNotSealed() {
+        if (this.sealed) {
+            throw new UnsupportedOperationException("The entity is sealed.");
+        }
     }
 
     /**
@@ -45,4 +84,35 @@ public abstract class Entity {
     public boolean isNegated() {
         return this.negated;
     }
+
+    /**
+     * Appends the String representation of this entity to the given builder.
+     * The appended text is the same as {@link #toString()}. Entities that do
+     * not override this method append the result of {@link #toString()}.
+     * 
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     */
+    public void render(StringBuilder builder) {
+        builder.append(this.toString());
+    }
+
+    /**
+     * Appends the String representation of this entity to the given
+     * {@link Appendable}.
+     * 
+     * @param out
+     *            The Appendable to append to.
+     * @throws IOException
+     *             If the Appendable could not be written to.
+     */
+    public void render(Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            this.render((StringBuilder) out);
+        } else {
+            StringBuilder builder = new StringBuilder();
+            this.render(builder);
+            out.append(builder);
+        }
+    }
 }
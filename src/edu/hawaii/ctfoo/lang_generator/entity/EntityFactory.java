@@ -0,0 +1,24 @@
+package edu.hawaii.ctfoo.lang_generator.entity;
+
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
+
+/**
+ * Creates {@link Entity} objects from their nodes in the parse tree. Factories
+ * are registered with the {@link EntityRegistry} under the token type of the
+ * entities that they create.
+ * 
+ * @author Christopher Foo
+ * 
+ */
+public interface EntityFactory {
+
+    /**
+     * Creates a new Entity based on the given node.
+     * 
+     * @param entityToken
+     *            The node of the entity's token in the parse tree.
+     * @return The new Entity.
+     */
+    public Entity create(TreeView<ParseToken> entityToken);
+}
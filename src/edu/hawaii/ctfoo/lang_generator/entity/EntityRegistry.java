@@ -0,0 +1,130 @@
+package edu.hawaii.ctfoo.lang_generator.entity;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
+
+/**
+ * The {@link EntityFactory}s used to create the {@link Entity} objects of the
+ * sentences, keyed by the token type of the entity ignoring case. The
+ * {@link Item}, {@link Player} and {@link Instance} factories are registered
+ * by default and new entity types may be registered at any time.
+ * 
+ * @author Christopher Foo
+ * 
+ */
+public final class EntityRegistry {
+
+    /**
+     * The registered factories keyed by their lower case token type.
+     */
+    private static final ConcurrentMap<String, EntityFactory> factories = new ConcurrentHashMap<String, EntityFactory>();
+
+    /**
+     * The factories registered by default.
+     */
+    private static final Collection<EntityFactory> defaultFactories = new HashSet<EntityFactory>();
+
+    static {
+        register(TokenType.ITEM.getName(), new EntityFactory() {
+            @Override
+            public Entity create(TreeView<ParseToken> entityToken) {
+                return new Item(entityToken);
+            }
+        });
+        register(TokenType.PLAYER.getName(), new EntityFactory() {
+            @Override
+            public Entity create(TreeView<ParseToken> entityToken) {
+                return new Player(entityToken);
+            }
+        });
+        register(TokenType.INSTANCE.getName(), new EntityFactory() {
+            @Override
+            public Entity create(TreeView<ParseToken> entityToken) {
+                return new Instance(entityToken);
+            }
+        });
+        defaultFactories.addAll(factories.values());
+    }
+
+    /**
+     * Prevents the EntityRegistry from being instantiated.
+     */
+    private EntityRegistry() {
+    }
+
+    /**
+     * Registers the given factory for the given token type, replacing any
+     * factory that was registered for it before.
+     * 
+     * @param type
+     *            The token type of the entities, ignoring case.
+     * @param factory
+     *            The factory used to create the entities.
+     */
+    public static void register(String type, EntityFactory factory) {
+        factories.put(type.toLowerCase(Locale.ENGLISH), factory);
+    }
+
+    /**
+     * Gets the factory registered for the type of the given token.
+     * 
+     * @param token
+     *            The token of the entity.
+     * @return The registered factory or null if there is none.
+     */
+    public static EntityFactory getFactory(ParseToken token) {
+        String type;
+
+        // The names of the known types are already lower case
+        if (token.getTypeSymbol() != TokenType.UNKNOWN) {
+            type = token.getTypeSymbol().getName();
+        } else if (token.getType() != null) {
+            type = token.getType().toLowerCase(Locale.ENGLISH);
+        } else {
+            return null;
+        }
+        return factories.get(type);
+    }
+
+    /**
+     * Checks if the given factory is one of the factories registered by
+     * default, which create the {@link Item}, {@link Player} and
+     * {@link Instance} objects.
+     * 
+     * @param factory
+     *            The factory.
+     * @return If the factory is a default one.
+     */
+    public static boolean isDefault(EntityFactory factory) {
+        return defaultFactories.contains(factory);
+    }
+
+    /**
+     * Creates the Entity for the given node using the factory registered for
+     * its type. An entity whose factory throws is dropped, like an entity
+     * whose constructor failed when they were created reflectively.
+     * 
+     * @param entityToken
+     *            The node of the entity's token in the parse tree.
+     * @return The new Entity or null if no factory is registered for its
+     *         type or it could not be created.
+     */
+    public static Entity create(TreeView<ParseToken> entityToken) {
+        EntityFactory factory = getFactory(entityToken.getNode());
+        if (factory == null) {
+            return null;
+        }
+        try {
+            return factory.create(entityToken);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
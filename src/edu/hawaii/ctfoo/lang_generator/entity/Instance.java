@@ -1,7 +1,9 @@
 package edu.hawaii.ctfoo.lang_generator.entity;
 
+import edu.hawaii.ctfoo.lang_generator.Generator;
 import edu.hawaii.ctfoo.lang_generator.ParseToken;
-import edu.hawaii.ctfoo.lang_generator.Tree;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
 
 /**
  * An entity representing an Instance (i.e. dungeon) in a game.
@@ -26,48 +28,50 @@ public class Instance extends Entity {
     private String difficulty;
 
     /**
-     * Creates a new Instance based on the given {@link Tree}.
+     * Creates a new Instance based on the given {@link TreeView}.
      * @param instanceToken The Tree of an Instance token node.
      */
-    public Instance(Tree<ParseToken> instanceToken) {
+    public Instance(TreeView<ParseToken> instanceToken) {
         // Set default values
         this.name = "";
         this.mode = "";
         this.difficulty = "";
         
         // Get the values from the parsed representation
-        if(instanceToken.getNode().getType().equalsIgnoreCase("instance")) {
+        if(instanceToken.getNode().getTypeSymbol() == TokenType.INSTANCE) {
            if(instanceToken.getNode().isNegated()) {
                 this.negated = true;
             }
            
-           String type;
            String value;
 
            // Read all of the attributes for the instance into the appropriate
            // fields
-           for (Tree<ParseToken> instanceAttribute : instanceToken.getDirectChildren()) {
-               
-               type = instanceAttribute.getNode().getType();
+           for (TreeView<ParseToken> instanceAttribute : instanceToken.getDirectChildren()) {
                
                value = instanceAttribute.getNode().getValue();
                
+               switch(instanceAttribute.getNode().getTypeSymbol()) {
+
                // Set name
-               if(type.equalsIgnoreCase("name")) {
+               case NAME:
                    this.name = value;
-               }
+                   break;
                
                // Set mode
-               else if(type.equalsIgnoreCase("mode")) {
+               case MODE:
                    this.mode = value;
-               }
+                   break;
                
                // Set difficulty
-               else if(type.equalsIgnoreCase("difficulty")) {
+               case DIFFICULTY:
                    this.difficulty = value;
-               }
+                   break;
                
                // Ignore unrecognized attributes
+               default:
+                   break;
+               }
            }
         }
     }
@@ -101,19 +105,30 @@ public class Instance extends Entity {
      * Returns a String representation of this Instance.
      */
     public String toString() {
+        StringBuilder builder = new StringBuilder();
+        this.render(builder);
+        return builder.toString();
+    }
+
+    @Override
+    /**
+     * Appends the String representation of this Instance to the given builder.
+     */
+    public void render(StringBuilder builder) {
         if (this.name.equals("")) {
-            return "< Error Incomplete Instance Encountered >";
+            builder.append("< Error Incomplete Instance Encountered >");
+            return;
         }
-        StringBuilder builder = new StringBuilder();
+        int start = builder.length();
         if (!this.difficulty.equals("")) {
-            builder.append(this.difficulty + " ");
+            builder.append(this.difficulty).append(' ');
         }
 
         if (!this.mode.equals("")) {
-            builder.append(this.mode + " ");
+            builder.append(this.mode).append(' ');
         }
 
         builder.append(this.name);
-        return builder.toString().trim();
+        Generator.trimFrom(builder, start);
     }
 }
@@ -2,11 +2,13 @@ package edu.hawaii.ctfoo.lang_generator.entity;
 
 import java.util.ArrayList;
 import java.util.List;
-import edu.hawaii.ctfoo.lang_generator.MatchFunctor;
+import edu.hawaii.ctfoo.lang_generator.ErrorLog;
 import edu.hawaii.ctfoo.lang_generator.Generator;
 import edu.hawaii.ctfoo.lang_generator.ParseToken;
-import edu.hawaii.ctfoo.lang_generator.Tree;
-import edu.hawaii.ctfoo.lang_generator.TypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.Pluralizer;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TokenTypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
 
 /**
  * An entity representing an in-game Item.
@@ -51,7 +53,7 @@ public class Item extends Entity {
    * 
    * @param itemToken The item token to parse from.
    */
-  public Item(Tree<ParseToken> itemToken) {
+  public Item(TreeView<ParseToken> itemToken) {
 
     // Set everything to defaults
     this.name = "";
@@ -62,76 +64,79 @@ public class Item extends Entity {
     this.quantity = 1;
 
     // If item token, read in attributes
-    if (itemToken.getNode().getType().equalsIgnoreCase("item")) {
+    if (itemToken.getNode().getTypeSymbol() == TokenType.ITEM) {
 
       if (itemToken.getNode().isNegated()) {
         this.negated = true;
       }
 
-      String type;
       String value;
 
       // Read all of the attributes for the item into the appropriate
       // fields
-      for (Tree<ParseToken> itemAttribute : itemToken.getDirectChildren()) {
-
-        type = itemAttribute.getNode().getType();
+      for (TreeView<ParseToken> itemAttribute : itemToken.getDirectChildren()) {
 
         value = itemAttribute.getNode().getValue();
 
+        switch (itemAttribute.getNode().getTypeSymbol()) {
+
         // Set Name
-        if (type.equalsIgnoreCase("name")) {
+        case NAME:
           this.name = value;
-        }
+          break;
 
         // Set Rarity
-        else if (type.equalsIgnoreCase("rarity")) {
+        case RARITY:
           this.rarity = value;
-        }
+          break;
 
         // Set Type
-        else if (type.equalsIgnoreCase("type")) {
+        case TYPE:
           this.type = value;
-        }
+          break;
 
         // Set Level
-        else if (type.equalsIgnoreCase("level")) {
+        case LEVEL:
           try {
             this.level = Integer.parseInt(value);
           }
           catch (NumberFormatException e) {
-            System.err.println("Error: Could not parse \"" + value + "\" as an integer.");
+            ErrorLog.error("Error: Could not parse \"" + value + "\" as an integer.");
           }
-        }
+          break;
 
         // Set Quantity
-        else if (type.equalsIgnoreCase("quantity")) {
+        case QUANTITY:
           try {
             this.quantity = Integer.parseInt(value);
           }
           catch (NumberFormatException e) {
-            System.err.println("Error: Could not parse " + value + " as an integer.");
+            ErrorLog.error("Error: Could not parse " + value + " as an integer.");
           }
-        }
+          break;
 
         // Set Value
-        else if (type.equalsIgnoreCase("value")) {
-          MatchFunctor<String, ParseToken> typeMatcher = new TypeMatcher();
+        case VALUE:
 
           // Get all underlying MoneyAmount elements
-          for (Tree<ParseToken> moneyAmount : itemAttribute.findAll("moneyamount", typeMatcher)) {
+          for (TreeView<ParseToken> moneyAmount : itemAttribute.iterateAll(TokenType.MONEYAMOUNT,
+              TokenTypeMatcher.INSTANCE)) {
 
             MoneyAmount amount = new MoneyAmount(moneyAmount);
 
             // If the MoneyAmount is complete add it, if not ignore
             // it
-            if (amount.getDenomination() != -1 && !amount.getCurrency().equals("")) {
+            if (amount.getDenomination() != -1 && amount.getCurrency() != null
+                && !amount.getCurrency().equals("")) {
               this.addValue(amount);
             }
           }
-        }
+          break;
 
         // Ignore unrecognized attributes
+        default:
+          break;
+        }
       }
     }
   }
@@ -177,8 +182,10 @@ public class Item extends Entity {
    * 
    * @param denomination The denomination of the added amount.
    * @param currency The currency of the added amount.
+   * @throws UnsupportedOperationException If the Item was sealed.
    */
   public void addValue(double denomination, String currency) {
+    this.checkNotSealed();
     this.value.add(new MoneyAmount(denomination, currency));
   }
 
@@ -186,8 +193,10 @@ public class Item extends Entity {
    * Adds the given amount to the Item's value.
    * 
    * @param amount The {@link MoneyAmount} to add.
+   * @throws UnsupportedOperationException If the Item was sealed.
    */
   public void addValue(MoneyAmount amount) {
+    this.checkNotSealed();
     this.value.add(amount);
   }
 
@@ -214,62 +223,72 @@ public class Item extends Entity {
    * Returns a String representation of the Item.
    */
   public String toString() {
-    StringBuilder returnString = new StringBuilder();
+    StringBuilder builder = new StringBuilder();
+    this.render(builder);
+    return builder.toString();
+  }
+
+  @Override
+  /**
+   * Appends the String representation of the Item to the given builder.
+   */
+  public void render(StringBuilder builder) {
+    int start = builder.length();
 
     // Append quantity if it is there.
     if (this.quantity > 0) {
-      returnString.append(this.quantity + " ");
+      builder.append(this.quantity).append(' ');
     }
 
     // If has name, use it.
     if (!this.name.equals("")) {
 
       if (this.quantity > 1) {
-        returnString.append(Generator.pluralize(this.name));
+        builder.append(Pluralizer.getDefault().pluralize(this.name));
       }
       else {
-        returnString.append(this.name);
+        builder.append(this.name);
       }
 
-      returnString.append(" ");
+      builder.append(' ');
 
       if (this.value.size() > 0) {
-        returnString.append("for ");
+        builder.append("for ");
       }
 
-      Generator.appendCommaList(this.value, returnString, "and");
-      return returnString.toString().trim();
-
+      Generator.appendCommaList(this.value, builder, "and");
+      Generator.trimFrom(builder, start);
     }
 
     // Otherwise use type if it has it.
     else if (!this.type.equals("")) {
       if (!this.rarity.equals("")) {
-        returnString.append(this.rarity.toLowerCase() + " ");
+        builder.append(this.rarity.toLowerCase()).append(' ');
       }
       if (this.level > -1) {
-        returnString.append("Item Level " + this.level + " ");
+        builder.append("Item Level ").append(this.level).append(' ');
       }
       if (this.quantity > 1) {
-        returnString.append(Generator.pluralize(this.type.toLowerCase()));
+        builder.append(Pluralizer.getDefault().pluralize(this.type.toLowerCase()));
       }
       else {
-        returnString.append(this.type.toLowerCase());
+        builder.append(this.type.toLowerCase());
 
       }
-      returnString.append(" ");
+      builder.append(' ');
 
       if (this.value.size() > 0) {
-        returnString.append("for ");
+        builder.append("for ");
       }
 
-      Generator.appendCommaList(this.value, returnString, "and");
-      return returnString.toString().trim();
+      Generator.appendCommaList(this.value, builder, "and");
+      Generator.trimFrom(builder, start);
     }
 
     // Item needs a name or type to be complete.
     else {
-      return "< Error: Incomplete item encountered >";
+      builder.setLength(start);
+      builder.append("< Error: Incomplete item encountered >");
     }
   }
 }
@@ -1,9 +1,10 @@
 package edu.hawaii.ctfoo.lang_generator.entity;
 
-import edu.hawaii.ctfoo.lang_generator.MatchFunctor;
+import edu.hawaii.ctfoo.lang_generator.ErrorLog;
 import edu.hawaii.ctfoo.lang_generator.ParseToken;
-import edu.hawaii.ctfoo.lang_generator.Tree;
-import edu.hawaii.ctfoo.lang_generator.TypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TokenTypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
 
 /**
  * An amount of money consisting of a denomination and its currency.
@@ -37,26 +38,25 @@ public class MoneyAmount {
     }
 
     /**
-     * Creates a new MoneyAmount token by parsing the {@link Tree} from the
+     * Creates a new MoneyAmount token by parsing the {@link TreeView} from the
      * given money token.
      * 
      * @param moneyToken
      *            The node containing the money amount token.
      */
-    public MoneyAmount(Tree<ParseToken> moneyToken) {
+    public MoneyAmount(TreeView<ParseToken> moneyToken) {
 
-        if (moneyToken.getNode().getType().equalsIgnoreCase("moneyamount")) {
-            MatchFunctor<String, ParseToken> typeMatcher = new TypeMatcher();
+        if (moneyToken.getNode().getTypeSymbol() == TokenType.MONEYAMOUNT) {
 
             // Get the denomination for the MoneyAmount (defaults to
             // last one if there are multiple)
-            for (Tree<ParseToken> denominationToken : moneyToken.findAll(
-                    "denomination", typeMatcher)) {
+            for (TreeView<ParseToken> denominationToken : moneyToken.iterateAll(
+                    TokenType.DENOMINATION, TokenTypeMatcher.INSTANCE)) {
                 try {
                     this.denomination = Integer.parseInt(denominationToken
                             .getNode().getValue());
                 } catch (NumberFormatException e) {
-                    System.err.println("Error: Could not parse "
+                    ErrorLog.error("Error: Could not parse "
                             + denominationToken.getNode().getValue()
                             + " as an integer.");
                 }
@@ -64,8 +64,8 @@ public class MoneyAmount {
 
             // Get the currency for the MoneyAmount (defaults to the
             // last one if there are multiple)
-            for (Tree<ParseToken> currencyToken : moneyToken.findAll(
-                    "currency", typeMatcher)) {
+            for (TreeView<ParseToken> currencyToken : moneyToken.iterateAll(
+                    TokenType.CURRENCY, TokenTypeMatcher.INSTANCE)) {
                 this.currency = currencyToken.getNode().getValue();
             }
         }
@@ -94,15 +94,29 @@ public class MoneyAmount {
      * Returns a String representation of the MoneyAmount.
      */
     public String toString() {
+        StringBuilder builder = new StringBuilder();
+        this.render(builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the String representation of the MoneyAmount to the given
+     * builder. The appended text is the same as {@link #toString()}.
+     * 
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     */
+    public void render(StringBuilder builder) {
         if (this.denomination - (-1.0) < 0.0001 || this.currency.equals("")) {
-            return "< Error: Incomplete currency encountered >";
+            builder.append("< Error: Incomplete currency encountered >");
         } else {
 
             if (this.denomination > 1000) {
-                return (this.denomination / 1000) + "k "
-                        + this.currency.toLowerCase();
+                builder.append(this.denomination / 1000).append("k ")
+                        .append(this.currency.toLowerCase());
             } else {
-                return this.denomination + " " + this.currency.toLowerCase();
+                builder.append(this.denomination).append(' ')
+                        .append(this.currency.toLowerCase());
             }
 
         }
@@ -2,9 +2,12 @@ package edu.hawaii.ctfoo.lang_generator.entity;
 
 import java.util.ArrayList;
 import java.util.List;
+import edu.hawaii.ctfoo.lang_generator.ErrorLog;
 import edu.hawaii.ctfoo.lang_generator.Generator;
 import edu.hawaii.ctfoo.lang_generator.ParseToken;
-import edu.hawaii.ctfoo.lang_generator.Tree;
+import edu.hawaii.ctfoo.lang_generator.Pluralizer;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
 
 /**
  * An Entity representing a player character in a MMORPG.
@@ -50,12 +53,12 @@ public class Player extends Entity {
   private int quantity;
 
   /**
-   * Creates a new Player based on the information in the {@link Tree} rooted by the given player
+   * Creates a new Player based on the information in the {@link TreeView} rooted by the given player
    * token.
    * 
    * @param playerToken The player token in the parse tree to build the Player from.
    */
-  public Player(Tree<ParseToken> playerToken) {
+  public Player(TreeView<ParseToken> playerToken) {
 
     // Set default values
     this.characterClasses = new ArrayList<String>();
@@ -66,71 +69,73 @@ public class Player extends Entity {
     this.itemLevel = -1;
     this.quantity = 1;
 
-    if (playerToken.getNode().getType().equalsIgnoreCase("player")) {
+    if (playerToken.getNode().getTypeSymbol() == TokenType.PLAYER) {
       if (playerToken.getNode().isNegated()) {
         this.negated = true;
       }
 
-      String type;
       String value;
 
       // Read all of the attributes for the player into the appropriate
       // fields
-      for (Tree<ParseToken> playerAttributes : playerToken.getDirectChildren()) {
-
-        type = playerAttributes.getNode().getType();
+      for (TreeView<ParseToken> playerAttributes : playerToken.getDirectChildren()) {
 
         value = playerAttributes.getNode().getValue();
 
+        switch (playerAttributes.getNode().getTypeSymbol()) {
+
         // Set class
-        if (type.equalsIgnoreCase("class")) {
+        case CLASS:
           this.characterClasses.add(value);
-        }
+          break;
 
         // Set specialization
-        else if (type.equalsIgnoreCase("specialization")) {
+        case SPECIALIZATION:
           this.characterSpecializations.add(value);
-        }
+          break;
 
         // Set Race
-        else if (type.equalsIgnoreCase("race")) {
+        case RACE:
           this.characterRace = value;
-        }
+          break;
 
         // Set Role
-        else if (type.equalsIgnoreCase("role")) {
+        case ROLE:
           this.role = value;
-        }
+          break;
 
         // Set level
-        else if (type.equalsIgnoreCase("level")) {
+        case LEVEL:
           try {
             this.level = Integer.parseInt(value);
           }
           catch (NumberFormatException e) {
-            System.err.println("Error: Could not parse \"" + value + "\" as an integer.");
+            ErrorLog.error("Error: Could not parse \"" + value + "\" as an integer.");
           }
-        }
-        else if (type.equalsIgnoreCase("itemlevel")) {
+          break;
+        case ITEMLEVEL:
           try {
             this.itemLevel = Integer.parseInt(value);
           }
           catch (NumberFormatException e) {
-            System.err.println("Error: Could not parse \"" + value + "\" as an integer.");
+            ErrorLog.error("Error: Could not parse \"" + value + "\" as an integer.");
           }
-        }
+          break;
 
         // Set quantity
-        else if (type.equalsIgnoreCase("quantity")) {
+        case QUANTITY:
           try {
             this.quantity = Integer.parseInt(value);
           }
           catch (NumberFormatException e) {
-            System.err.println("Error: Could not parse \"" + value + "\" as an integer.");
+            ErrorLog.error("Error: Could not parse \"" + value + "\" as an integer.");
           }
-        }
+          break;
 
         // Ignore other unrecognized attributes
+        default:
+          break;
+        }
       }
     }
   }
@@ -148,8 +153,10 @@ public class Player extends Entity {
    * Adds a new class to the player character.
    * 
    * @param characterClass The new class to add.
+   * @throws UnsupportedOperationException If the Player was sealed.
    */
   public void addCharacterClass(String characterClass) {
+    this.checkNotSealed();
     this.characterClasses.add(characterClass);
   }
 
@@ -166,8 +173,10 @@ public class Player extends Entity {
    * Adds a new specialization.
    * 
    * @param characterSpecialization The new specialization ot add.
+   * @throws UnsupportedOperationException If the Player was sealed.
    */
   public void addCharacterSpecialization(String characterSpecialization) {
+    this.checkNotSealed();
     this.characterSpecializations.add(characterSpecialization);
   }
 
@@ -222,36 +231,47 @@ public class Player extends Entity {
    */
   public String toString() {
     StringBuilder builder = new StringBuilder();
+    this.render(builder);
+    return builder.toString();
+  }
+
+  @Override
+  /**
+   * Appends the String representation of this Player character to the given builder.
+   */
+  public void render(StringBuilder builder) {
     if (this.characterClasses.size() < 1 && this.role.equals("")) {
-      return "< Error: Incomplete player encountered >";
+      builder.append("< Error: Incomplete player encountered >");
+      return;
     }
+    int start = builder.length();
 
     if (this.quantity > 1) {
-      builder.append(this.quantity + " ");
+      builder.append(this.quantity).append(' ');
     }
     if (this.level > -1) {
-      builder.append("Level " + this.level + " ");
+      builder.append("Level ").append(this.level).append(' ');
       if (this.itemLevel > -1) {
         builder.append("/ ");
       }
     }
 
     if (this.itemLevel > -1) {
-      builder.append("Item Level " + this.itemLevel + " ");
+      builder.append("Item Level ").append(this.itemLevel).append(' ');
     }
 
     if (this.characterClasses.size() > 0) {
       if (!this.characterRace.equals("")) {
-        builder.append(this.characterRace + " ");
+        builder.append(this.characterRace).append(' ');
       }
 
       if (this.characterSpecializations.size() > 0) {
         Generator.appendDelimiterList(this.characterSpecializations, builder, " / ");
-        builder.append(" ");
+        builder.append(' ');
       }
 
       if (this.characterClasses.size() == 1 && this.quantity > 1) {
-        builder.append(Generator.pluralize(this.characterClasses.get(0)));
+        builder.append(Pluralizer.getDefault().pluralize(this.characterClasses.get(0)));
       }
 
       else {
@@ -261,12 +281,12 @@ public class Player extends Entity {
 
     else {
       if (this.quantity > 1) {
-        builder.append(Generator.pluralize(this.role));
+        builder.append(Pluralizer.getDefault().pluralize(this.role));
       }
       else {
         builder.append(this.role);
       }
     }
-    return builder.toString().trim();
+    Generator.trimFrom(builder, start);
   }
 }
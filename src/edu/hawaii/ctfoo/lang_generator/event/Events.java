@@ -0,0 +1,33 @@
+package edu.hawaii.ctfoo.lang_generator.event;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Decides if the generator's events should be created at all.
+ * <p>
+ * Loading the first {@link jdk.jfr.Event} class starts the Flight Recorder's
+ * internals, which takes a noticeable part of a second, so the events are
+ * only created once a recording has started the Flight Recorder. Without a
+ * recording the generator never loads the event classes.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class Events {
+
+    /**
+     * Prevents instances.
+     */
+    private Events() {
+    }
+
+    /**
+     * Checks if the Flight Recorder has been started, so that the events may
+     * be recorded.
+     *
+     * @return If the events should be created.
+     */
+    public static boolean isRecorderRunning() {
+        return FlightRecorder.isInitialized();
+    }
+}
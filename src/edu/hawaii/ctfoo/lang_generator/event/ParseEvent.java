@@ -0,0 +1,43 @@
+package edu.hawaii.ctfoo.lang_generator.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a semantic representation is split into its tokens.
+ *
+ * @author Christopher Foo
+ *
+ */
+@Name("edu.hawaii.ctfoo.lang_generator.Parse")
+@Label("Parse Representation")
+@Description("Splits a semantic representation into its tokens")
+@Category({ "Language Generator" })
+@Enabled(false)
+@StackTrace(false)
+public class ParseEvent extends Event {
+
+    /**
+     * The length of the representation.
+     */
+    @Label("Input Length")
+    public int inputLength;
+
+    /**
+     * The number of tokens read. 0 if the representation could not be
+     * parsed.
+     */
+    @Label("Token Count")
+    public int tokenCount;
+
+    /**
+     * If the representation could not be parsed.
+     */
+    @Label("Error")
+    public boolean error;
+}
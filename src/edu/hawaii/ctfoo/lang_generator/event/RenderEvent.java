@@ -0,0 +1,42 @@
+package edu.hawaii.ctfoo.lang_generator.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a sentence is rendered.
+ *
+ * @author Christopher Foo
+ *
+ */
+@Name("edu.hawaii.ctfoo.lang_generator.Render")
+@Label("Render Sentence")
+@Description("Renders a sentence into its text")
+@Category({ "Language Generator" })
+@Enabled(false)
+@StackTrace(false)
+public class RenderEvent extends Event {
+
+    /**
+     * The class of the sentence.
+     */
+    @Label("Sentence Type")
+    public String sentenceType;
+
+    /**
+     * The length of the rendered text.
+     */
+    @Label("Output Length")
+    public int outputLength;
+
+    /**
+     * If the sentence was rendered as an error message.
+     */
+    @Label("Error")
+    public boolean error;
+}
@@ -0,0 +1,37 @@
+package edu.hawaii.ctfoo.lang_generator.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when a sentence and its entities are built from a parse tree.
+ *
+ * @author Christopher Foo
+ *
+ */
+@Name("edu.hawaii.ctfoo.lang_generator.BuildSentence")
+@Label("Build Sentence")
+@Description("Builds a sentence and its entities from a parse tree")
+@Category({ "Language Generator" })
+@Enabled(false)
+@StackTrace(false)
+public class SentenceEvent extends Event {
+
+    /**
+     * The type of the root token of the tree.
+     */
+    @Label("Sentence Type")
+    public String sentenceType;
+
+    /**
+     * If no sentence type is registered for the root token, so no sentence
+     * was built.
+     */
+    @Label("Error")
+    public boolean error;
+}
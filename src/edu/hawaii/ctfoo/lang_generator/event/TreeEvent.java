@@ -0,0 +1,37 @@
+package edu.hawaii.ctfoo.lang_generator.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded when the parse trees are built from the tokens of a semantic
+ * representation.
+ *
+ * @author Christopher Foo
+ *
+ */
+@Name("edu.hawaii.ctfoo.lang_generator.BuildTrees")
+@Label("Build Parse Trees")
+@Description("Builds the parse trees from the tokens of a semantic representation")
+@Category({ "Language Generator" })
+@Enabled(false)
+@StackTrace(false)
+public class TreeEvent extends Event {
+
+    /**
+     * The number of tokens.
+     */
+    @Label("Token Count")
+    public int tokenCount;
+
+    /**
+     * The number of trees built.
+     */
+    @Label("Tree Count")
+    public int treeCount;
+}
@@ -2,12 +2,10 @@ package edu.hawaii.ctfoo.lang_generator.sentence;
 
 import java.util.ArrayList;
 import java.util.List;
-import edu.hawaii.ctfoo.lang_generator.MatchFunctor;
 import edu.hawaii.ctfoo.lang_generator.Generator;
-import edu.hawaii.ctfoo.lang_generator.LogicOp;
 import edu.hawaii.ctfoo.lang_generator.ParseToken;
-import edu.hawaii.ctfoo.lang_generator.Tree;
-import edu.hawaii.ctfoo.lang_generator.TypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
 import edu.hawaii.ctfoo.lang_generator.entity.Item;
 import edu.hawaii.ctfoo.lang_generator.entity.Player;
 
@@ -35,45 +33,34 @@ public class BuySentence extends Sentence {
   private List<List<String>> contactMethods;
 
   /**
-   * Creates a new BuySentence based on the given Buy {@link Tree} node.
+   * The index of the sublist of {@link contactMethods} that the next contact method is added to.
+   */
+  private int contactGroup;
+
+  /**
+   * Creates a new BuySentence based on the given Buy {@link TreeView} node.
    * 
    * @param buyToken The Buy node to build the BuySentence from.
    */
-  public BuySentence(Tree<ParseToken> buyToken) {
+  public BuySentence(TreeView<ParseToken> buyToken) {
     super(BuySentence.validObjectClasses, BuySentence.validSubjectClasses);
     this.contactMethods = new ArrayList<List<String>>();
 
-    if (buyToken.getNode().getType().equalsIgnoreCase("buy")) {
-
-      this.readSubObj(buyToken, "object");
-
-      this.readSubObj(buyToken, "subject");
-
-      this.getContactMethods(buyToken);
+    if (buyToken.getNode().getTypeSymbol() == TokenType.BUY) {
+      this.readSentence(buyToken);
     }
   }
 
+  @Override
   /**
-   * Gets the contact methods for the BuySentence based on the given Buy {@link Tree} node.
-   * 
-   * @param buyToken The Buy node to get the contact methods from.
+   * Adds the value of the given contact method node to the contact methods.
    */
-  private void getContactMethods(Tree<ParseToken> buyToken) {
-    MatchFunctor<String, ParseToken> typeMatcher = new TypeMatcher();
-    int index = 0;
-    for (Tree<ParseToken> typeNode : buyToken.findDirect("contactmethod", typeMatcher)) {
-      ParseToken typeToken = typeNode.getNode();
+  protected void visitContactMethod(TreeView<ParseToken> contactMethodNode) {
+    ParseToken token = contactMethodNode.getNode();
 
-      // Put in new list if OR
-      if (typeToken.getLogic() == LogicOp.OR
-          && (index >= this.contactMethods.size() || this.contactMethods.get(index).size() > 0)) {
-        index++;
-      }
-      if (index >= this.contactMethods.size()) {
-        this.contactMethods.add(new ArrayList<String>());
-      }
-      this.contactMethods.get(index).add(typeNode.getNode().getValue());
-    }
+    // Put in new list if OR
+    this.contactGroup = nextGroup(this.contactMethods, this.contactGroup, token.getLogic());
+    addToGroup(this.contactMethods, this.contactGroup, token.getValue());
   }
 
   @Override
@@ -81,15 +68,26 @@ public class BuySentence extends Sentence {
    * Returns the generated sentence as a String.
    */
   public String toString() {
+    StringBuilder builder = new StringBuilder();
+    this.render(builder);
+    return builder.toString();
+  }
+
+  @Override
+  /**
+   * Appends the generated sentence to the given builder.
+   */
+  public void render(StringBuilder builder) {
     if (this.eventObject.size() < 1) {
-      return "< Error in BuySentence: No object to buy found >";
+      builder.append("< Error in BuySentence: No object to buy found >");
+      return;
     }
 
     if (this.checkObject() && this.checkSubject()) {
-      StringBuilder builder = new StringBuilder();
+      int start = builder.length();
       Generator.appendCommaList(this.eventSubject, builder, "or");
-      if (builder.length() > 0) {
-        builder.append(" ");
+      if (builder.length() > start) {
+        builder.append(' ');
       }
       builder.append("WTB ");
       Generator.appendCommaList(this.eventObject, builder, "or");
@@ -97,12 +95,11 @@ public class BuySentence extends Sentence {
         builder.append(", ");
         Generator.appendCommaList(this.contactMethods, builder, "or");
       }
-      builder.append(".");
-      return builder.toString();
+      builder.append('.');
     }
 
     else {
-      return "< Error in BuySentence: Invalid object or subject found >";
+      builder.append("< Error in BuySentence: Invalid object or subject found >");
     }
   }
 
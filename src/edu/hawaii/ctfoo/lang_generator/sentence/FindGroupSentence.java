@@ -2,7 +2,8 @@ package edu.hawaii.ctfoo.lang_generator.sentence;
 
 import edu.hawaii.ctfoo.lang_generator.Generator;
 import edu.hawaii.ctfoo.lang_generator.ParseToken;
-import edu.hawaii.ctfoo.lang_generator.Tree;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
 import edu.hawaii.ctfoo.lang_generator.entity.Instance;
 import edu.hawaii.ctfoo.lang_generator.entity.Player;
 
@@ -27,18 +28,17 @@ public class FindGroupSentence extends Sentence {
 
     /**
      * Creates a new FindGroupSentence and fills it with values based on the
-     * given FindGroup {@link Tree} node.
+     * given FindGroup {@link TreeView} node.
      * 
      * @param findGroupToken
      *            The FindGroup Tree node used to populate the
      *            FindGroupSentence.
      */
-    public FindGroupSentence(Tree<ParseToken> findGroupToken) {
+    public FindGroupSentence(TreeView<ParseToken> findGroupToken) {
       super(validObjectClasses, validSubjectClasses);
 
-        if (findGroupToken.getNode().getType().equalsIgnoreCase("findgroup")) {
-            this.readSubObj(findGroupToken, "object");
-            this.readSubObj(findGroupToken, "subject");
+        if (findGroupToken.getNode().getTypeSymbol() == TokenType.FINDGROUP) {
+            this.readSentence(findGroupToken);
         }
     }
 
@@ -47,29 +47,36 @@ public class FindGroupSentence extends Sentence {
      * Returns the generated sentence in String form.
      */
     public String toString() {
+        StringBuilder builder = new StringBuilder();
+        this.render(builder);
+        return builder.toString();
+    }
+
+    @Override
+    /**
+     * Appends the generated sentence to the given builder.
+     */
+    public void render(StringBuilder builder) {
 
         if (this.eventObject.size() < 1 && this.eventSubject.size() < 1) {
-            return "< Error in FindGroupSentence: No object nor subject found >";
+            builder.append("< Error in FindGroupSentence: No object nor subject found >");
+            return;
         }
 
         if (this.checkObject() && this.checkSubject()) {
-            StringBuilder builder = new StringBuilder();
-            if (this.checkObject() && this.checkSubject()) {
-
-                Generator.appendCommaList(this.eventSubject, builder, "or");
-                if (builder.length() > 0) {
-                    builder.append(" ");
-                }
-                builder.append("LFG");
-                if (this.eventObject.size() > 0) {
-                    builder.append(" for ");
-                    Generator.appendCommaList(this.eventObject, builder, "or");
-                }
-                builder.append(".");
+            int start = builder.length();
+            Generator.appendCommaList(this.eventSubject, builder, "or");
+            if (builder.length() > start) {
+                builder.append(' ');
+            }
+            builder.append("LFG");
+            if (this.eventObject.size() > 0) {
+                builder.append(" for ");
+                Generator.appendCommaList(this.eventObject, builder, "or");
             }
-            return builder.toString();
+            builder.append('.');
         } else {
-            return "< Error in FindGroupSentence: Invalid subject or object found >";
+            builder.append("< Error in FindGroupSentence: Invalid subject or object found >");
         }
     }
 }
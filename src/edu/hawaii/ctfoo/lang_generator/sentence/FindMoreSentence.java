@@ -2,12 +2,10 @@ package edu.hawaii.ctfoo.lang_generator.sentence;
 
 import java.util.ArrayList;
 import java.util.List;
-import edu.hawaii.ctfoo.lang_generator.MatchFunctor;
 import edu.hawaii.ctfoo.lang_generator.Generator;
-import edu.hawaii.ctfoo.lang_generator.LogicOp;
 import edu.hawaii.ctfoo.lang_generator.ParseToken;
-import edu.hawaii.ctfoo.lang_generator.Tree;
-import edu.hawaii.ctfoo.lang_generator.TypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
 import edu.hawaii.ctfoo.lang_generator.entity.Entity;
 import edu.hawaii.ctfoo.lang_generator.entity.Instance;
 import edu.hawaii.ctfoo.lang_generator.entity.Player;
@@ -35,45 +33,36 @@ public class FindMoreSentence extends Sentence {
    */
   private List<List<Instance>> instances;
 
+  /**
+   * The index of the sublist of {@link instances} that the next instance is added to.
+   */
+  private int instanceGroup;
+
   /**
    * Creates a new FindMoreSentence filled with values based on the given FindMore token
-   * {@link Tree} node.
+   * {@link TreeView} node.
    * 
    * @param findMoreToken The FindMore Tree node used to fill the FindMoreSentence.
    */
-  public FindMoreSentence(Tree<ParseToken> findMoreToken) {
+  public FindMoreSentence(TreeView<ParseToken> findMoreToken) {
     super(validObjectClasses, validSubjectClasses);
     this.instances = new ArrayList<List<Instance>>();
 
-    if (findMoreToken.getNode().getType().equalsIgnoreCase("findmore")) {
-
-      this.readSubObj(findMoreToken, "object");
-      this.readSubObj(findMoreToken, "subject");
-      this.getInstances(findMoreToken);
+    if (findMoreToken.getNode().getTypeSymbol() == TokenType.FINDMORE) {
+      this.readSentence(findMoreToken);
     }
   }
 
+  @Override
   /**
-   * Gets the {@link Instance}s that members are being sought for in the FindMore event.
-   * 
-   * @param findMoreToken The FindMore {@link Tree} node describing this FindMoreSentence.
+   * Adds the {@link Instance} of the given instance node to the instances.
    */
-  private void getInstances(Tree<ParseToken> findMoreToken) {
-    MatchFunctor<String, ParseToken> typeMatcher = new TypeMatcher();
-    int index = 0;
-    for (Tree<ParseToken> typeNode : findMoreToken.findDirect("instance", typeMatcher)) {
-      ParseToken typeToken = typeNode.getNode();
-
-      // Put in new list if OR
-      if (typeToken.getLogic() == LogicOp.OR
-          && (index >= this.instances.size() || this.instances.get(index).size() > 0)) {
-        index++;
-      }
-      if (index >= this.instances.size()) {
-        this.instances.add(new ArrayList<Instance>());
-      }
-      this.instances.get(index).add(new Instance(typeNode));
-    }
+  protected void visitInstance(TreeView<ParseToken> instanceNode) {
+
+    // Put in new list if OR
+    this.instanceGroup = nextGroup(this.instances, this.instanceGroup, instanceNode.getNode()
+        .getLogic());
+    addToGroup(this.instances, this.instanceGroup, new Instance(instanceNode));
   }
 
   @Override
@@ -81,12 +70,23 @@ public class FindMoreSentence extends Sentence {
    * Returns the generated sentence as a String.
    */
   public String toString() {
+    StringBuilder builder = new StringBuilder();
+    this.render(builder);
+    return builder.toString();
+  }
+
+  @Override
+  /**
+   * Appends the generated sentence to the given builder.
+   */
+  public void render(StringBuilder builder) {
     if (this.eventObject.size() < 1 && this.eventSubject.size() < 1 && this.instances.size() < 1) {
-      return "< Error in FindMoreSentence: No subject or object found >";
+      builder.append("< Error in FindMoreSentence: No subject or object found >");
+      return;
     }
 
     if (this.checkObject() && this.checkSubject()) {
-      StringBuilder builder = new StringBuilder();
+      int start = builder.length();
       Generator.appendCommaList(this.eventSubject, builder, "or");
       builder.append(" LF");
       int numMembersSmall = 0;
@@ -121,7 +121,7 @@ public class FindMoreSentence extends Sentence {
           builder.append(numMembersSmall);
         }
         else {
-          builder.append(numMembersSmall + "-" + numMembersBig);
+          builder.append(numMembersSmall).append('-').append(numMembersBig);
         }
       }
 
@@ -134,12 +134,12 @@ public class FindMoreSentence extends Sentence {
         builder.append("for ");
         Generator.appendCommaList(this.instances, builder, "or");
       }
-      builder.append(".");
-      return builder.toString().trim();
+      builder.append('.');
+      Generator.trimFrom(builder, start);
     }
 
     else {
-      return "< Error in FindMoreSentence: Invalid subject or object found >";
+      builder.append("< Error in FindMoreSentence: Invalid subject or object found >");
     }
   }
 }
@@ -0,0 +1,356 @@
+package edu.hawaii.ctfoo.lang_generator.sentence;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.Tree;
+
+/**
+ * The nodes of a sentence's parse {@link Tree} numbered in pre-order, with
+ * the class of every value that decides how the sentence is rendered. Used
+ * by the {@link RenderPlans} to find the {@link RenderPlan} of the tree's
+ * shape and to fill in its value slots. The shape is read in the same single
+ * pass over the tree.
+ * <p>
+ * The values of integer attributes are parsed the same way as the entities
+ * parse them, and integers are put into classes by the thresholds the
+ * entities compare them against.
+ *
+ * @author Christopher Foo
+ *
+ */
+final class FlatTree {
+
+    /**
+     * The class of a null value.
+     */
+    static final int NULL = 0;
+
+    /**
+     * The class of an empty value.
+     */
+    static final int EMPTY = 1;
+
+    /**
+     * The class of a value that is not an integer.
+     */
+    static final int TEXT = 2;
+
+    /**
+     * The class of an integer below -1.
+     */
+    static final int BELOW_MINUS_ONE = 3;
+
+    /**
+     * The class of the integer -1.
+     */
+    static final int MINUS_ONE = 4;
+
+    /**
+     * The class of the integer 0.
+     */
+    static final int ZERO = 5;
+
+    /**
+     * The class of the integer 1.
+     */
+    static final int ONE = 6;
+
+    /**
+     * The class of an integer from 2 to 1000.
+     */
+    static final int SMALL = 7;
+
+    /**
+     * The class of an integer above 1000.
+     */
+    static final int LARGE = 8;
+
+    /**
+     * The multiplier used to combine the codes of the nodes into the hash.
+     */
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * The number of nodes.
+     */
+    private final int size;
+
+    /**
+     * The tokens of the nodes. May be longer than the number of nodes.
+     */
+    final ParseToken[] tokens;
+
+    /**
+     * The value of each node. May be longer than the number of nodes.
+     */
+    final String[] values;
+
+    /**
+     * The parsed value of each node whose value is an integer. May be longer
+     * than the number of nodes.
+     */
+    final int[] ints;
+
+    /**
+     * The type, logic operation and value class of each node followed by its
+     * number of children, two ints per node. These make up the shape of the
+     * tree.
+     */
+    final int[] codes;
+
+    /**
+     * The type name of each node of an unknown type, or null if every type
+     * is known.
+     */
+    final String[] names;
+
+    /**
+     * The hash of the {@link codes} and {@link names}.
+     */
+    final long hash;
+
+    /**
+     * Numbers the nodes of the given tree and classifies their values.
+     *
+     * @param root
+     *            The root node of the sentence.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    FlatTree(Tree<ParseToken> root) {
+        ParseToken[] nodeTokens = new ParseToken[16];
+        String[] nodeValues = new String[16];
+        int[] nodeInts = new int[16];
+        int[] nodeCodes = new int[32];
+        String[] unknownNames = null;
+        long nodeHash = 0;
+
+        // Walk with an explicit stack so that deep trees can not overflow the
+        // call stack
+        Tree<ParseToken>[] stack = new Tree[16];
+        int top = 0;
+        int node = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            Tree<ParseToken> tree = stack[--top];
+            if (node == nodeTokens.length) {
+                nodeTokens = Arrays.copyOf(nodeTokens, node * 2);
+                nodeValues = Arrays.copyOf(nodeValues, node * 2);
+                nodeInts = Arrays.copyOf(nodeInts, node * 2);
+                nodeCodes = Arrays.copyOf(nodeCodes, node * 4);
+            }
+
+            ParseToken token = tree.getNode();
+            TokenType type = token.getTypeSymbol();
+            String value = token.getValue();
+            nodeTokens[node] = token;
+            nodeValues[node] = value;
+            int logic = token.getLogic() == null ? 0 : token.getLogic()
+                    .ordinal() + 1;
+            int code = type.ordinal() << 8 | logic << 4
+                    | classify(value, nodeInts, node);
+            List<Tree<ParseToken>> children = tree.getDirectChildren();
+            nodeCodes[node * 2] = code;
+            nodeCodes[node * 2 + 1] = children.size();
+            nodeHash = (nodeHash * MULTIPLIER + code) * MULTIPLIER
+                    + children.size();
+
+            if (type == TokenType.UNKNOWN) {
+                if (unknownNames == null) {
+                    unknownNames = new String[nodeTokens.length];
+                } else if (unknownNames.length < nodeTokens.length) {
+                    unknownNames = Arrays.copyOf(unknownNames,
+                            nodeTokens.length);
+                }
+                unknownNames[node] = token.getType();
+                nodeHash = nodeHash * MULTIPLIER
+                        + (token.getType() == null ? 0 : token.getType()
+                                .hashCode());
+            }
+
+            if (top + children.size() > stack.length) {
+                stack = Arrays.copyOf(stack,
+                        Math.max(stack.length * 2, top + children.size()));
+            }
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack[top++] = children.get(i);
+            }
+            node++;
+        }
+
+        this.size = node;
+        this.tokens = nodeTokens;
+        this.values = nodeValues;
+        this.ints = nodeInts;
+        this.codes = Arrays.copyOf(nodeCodes, node * 2);
+        this.names = unknownNames == null ? null : Arrays.copyOf(
+                unknownNames, node);
+        this.hash = nodeHash ^ (nodeHash >>> 29);
+    }
+
+    /**
+     * Gets the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets the type of the given node.
+     *
+     * @param node
+     *            The index of the node.
+     * @return The type of the node.
+     */
+    TokenType type(int node) {
+        return this.tokens[node].getTypeSymbol();
+    }
+
+    /**
+     * Gets the class of the value of the given node.
+     *
+     * @param node
+     *            The index of the node.
+     * @return The class of the value.
+     */
+    int valueClass(int node) {
+        return this.codes[node * 2] & 0xF;
+    }
+
+    /**
+     * Gets the number of children of the given node.
+     *
+     * @param node
+     *            The index of the node.
+     * @return The number of children.
+     */
+    int childCount(int node) {
+        return this.codes[node * 2 + 1];
+    }
+
+    /**
+     * Checks if the value of the given node is an integer.
+     *
+     * @param node
+     *            The index of the node.
+     * @return If the value was parsed into {@link ints}.
+     */
+    boolean isInt(int node) {
+        return this.valueClass(node) >= BELOW_MINUS_ONE;
+    }
+
+    /**
+     * Checks if the value of the given node is neither null nor empty.
+     *
+     * @param node
+     *            The index of the node.
+     * @return If the value has any characters.
+     */
+    boolean isFilled(int node) {
+        return this.valueClass(node) >= TEXT;
+    }
+
+    /**
+     * Classifies a value, parsing it into the given array if it is an
+     * integer. Values made of ASCII characters are checked without
+     * {@link Integer#parseInt(String)} so that text does not cost an
+     * exception.
+     *
+     * @param value
+     *            The value.
+     * @param ints
+     *            The parsed values of the nodes.
+     * @param node
+     *            The index of the node of the value.
+     * @return The class of the value.
+     */
+    private static int classify(String value, int[] ints, int node) {
+        if (value == null) {
+            return NULL;
+        }
+        int length = value.length();
+        if (length == 0) {
+            return EMPTY;
+        }
+
+        int i = 0;
+        char first = value.charAt(0);
+        boolean negative = first == '-';
+        if (negative || first == '+') {
+            i++;
+        }
+        if (i == length) {
+            return TEXT;
+        }
+
+        long magnitude = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c > 127) {
+                return classifySlowly(value, ints, node);
+            }
+            if (c < '0' || c > '9') {
+                return TEXT;
+            }
+            if (magnitude <= Integer.MAX_VALUE + 1L) {
+                magnitude = magnitude * 10 + (c - '0');
+            }
+        }
+        long parsed = negative ? -magnitude : magnitude;
+        if (parsed < Integer.MIN_VALUE || parsed > Integer.MAX_VALUE) {
+            return TEXT;
+        }
+        return classifyInt((int) parsed, ints, node);
+    }
+
+    /**
+     * Classifies a value holding non-ASCII characters, which may still be an
+     * integer written with other digits.
+     *
+     * @param value
+     *            The value.
+     * @param ints
+     *            The parsed values of the nodes.
+     * @param node
+     *            The index of the node of the value.
+     * @return The class of the value.
+     */
+    private static int classifySlowly(String value, int[] ints, int node) {
+        try {
+            return classifyInt(Integer.parseInt(value), ints, node);
+        } catch (NumberFormatException e) {
+            return TEXT;
+        }
+    }
+
+    /**
+     * Stores a parsed value and classifies it.
+     *
+     * @param value
+     *            The parsed value.
+     * @param ints
+     *            The parsed values of the nodes.
+     * @param node
+     *            The index of the node of the value.
+     * @return The class of the value.
+     */
+    private static int classifyInt(int value, int[] ints, int node) {
+        ints[node] = value;
+        if (value < -1) {
+            return BELOW_MINUS_ONE;
+        } else if (value == -1) {
+            return MINUS_ONE;
+        } else if (value == 0) {
+            return ZERO;
+        } else if (value == 1) {
+            return ONE;
+        } else if (value <= 1000) {
+            return SMALL;
+        }
+        return LARGE;
+    }
+}
@@ -0,0 +1,380 @@
+package edu.hawaii.ctfoo.lang_generator.sentence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.hawaii.ctfoo.lang_generator.Generator;
+import edu.hawaii.ctfoo.lang_generator.Pluralizer;
+
+/**
+ * A flat list of instructions that renders every sentence of one shape, as
+ * compiled by the {@link RenderPlanCompiler}. The decisions that only depend
+ * on the shape, such as which entity fields are set, which quantities are
+ * plural and how the lists are joined, are made once when the plan is
+ * compiled, so the plan only appends literal fragments and the values of the
+ * tree's nodes.
+ * <p>
+ * Each instruction is an opcode and an operand, the index of a literal or of
+ * the node whose value is appended. Marks hold the start of the text that is
+ * trimmed or checked by a later instruction, like the starts kept by the
+ * sentences and entities while they render.
+ *
+ * @author Christopher Foo
+ *
+ */
+final class RenderPlan {
+
+    /**
+     * Appends the literal with the index of the operand.
+     */
+    static final int LITERAL = 0;
+
+    /**
+     * Appends the value of the node.
+     */
+    static final int VALUE = 1;
+
+    /**
+     * Appends the value of the node without its leading and trailing
+     * whitespace.
+     */
+    static final int TRIMMED = 2;
+
+    /**
+     * Appends the value of the node in lower case.
+     */
+    static final int LOWER = 3;
+
+    /**
+     * Appends the plural of the value of the node.
+     */
+    static final int PLURAL = 4;
+
+    /**
+     * Appends the plural of the value of the node in lower case.
+     */
+    static final int PLURAL_LOWER = 5;
+
+    /**
+     * Appends the integer value of the node.
+     */
+    static final int INT = 6;
+
+    /**
+     * Appends the integer value of the node as a double, the way money
+     * amounts print their denominations.
+     */
+    static final int DOUBLE = 7;
+
+    /**
+     * Appends the integer value of the node in thousands as a double.
+     */
+    static final int THOUSANDS = 8;
+
+    /**
+     * Pushes a mark at the end of the builder.
+     */
+    static final int MARK = 9;
+
+    /**
+     * Pops a mark and trims the text appended after it.
+     */
+    static final int TRIM = 10;
+
+    /**
+     * Pops a mark and appends a space if any text was appended after it.
+     */
+    static final int SPACE_IF_GROWN = 11;
+
+    /**
+     * Appends the number of members sought by the {@link #members} groups.
+     */
+    static final int MEMBERS = 12;
+
+    /**
+     * The opcodes and operands of the instructions, two ints per
+     * instruction.
+     */
+    private final int[] code;
+
+    /**
+     * The literal fragments.
+     */
+    private final String[] literals;
+
+    /**
+     * The quantity nodes of the players of each group whose members are
+     * counted by {@link #MEMBERS}, -1 for players without a quantity.
+     */
+    private final int[][] members;
+
+    /**
+     * The largest number of marks held at once.
+     */
+    private final int maxMarks;
+
+    /**
+     * Creates a new RenderPlan.
+     *
+     * @param code
+     *            The opcodes and operands of the instructions.
+     * @param literals
+     *            The literal fragments.
+     * @param members
+     *            The quantity nodes of the groups of players counted by
+     *            {@link #MEMBERS}.
+     * @param maxMarks
+     *            The largest number of marks held at once.
+     */
+    private RenderPlan(int[] code, String[] literals, int[][] members,
+            int maxMarks) {
+        this.code = code;
+        this.literals = literals;
+        this.members = members;
+        this.maxMarks = maxMarks;
+    }
+
+    /**
+     * Renders the sentence of the given tree to the given builder.
+     *
+     * @param tree
+     *            A tree of the shape the plan was compiled for.
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     */
+    void render(FlatTree tree, StringBuilder builder) {
+        int[] code = this.code;
+        String[] values = tree.values;
+        int[] ints = tree.ints;
+        int[] marks = new int[this.maxMarks];
+        int top = 0;
+        for (int pc = 0; pc < code.length; pc += 2) {
+            int operand = code[pc + 1];
+            switch (code[pc]) {
+            case LITERAL:
+                builder.append(this.literals[operand]);
+                break;
+            case VALUE:
+                builder.append(values[operand]);
+                break;
+            case TRIMMED:
+                int start = builder.length();
+                builder.append(values[operand]);
+                Generator.trimFrom(builder, start);
+                break;
+            case LOWER:
+                builder.append(values[operand].toLowerCase());
+                break;
+            case PLURAL:
+                builder.append(Pluralizer.getDefault().pluralize(
+                        values[operand]));
+                break;
+            case PLURAL_LOWER:
+                builder.append(Pluralizer.getDefault().pluralize(
+                        values[operand].toLowerCase()));
+                break;
+            case INT:
+                builder.append(ints[operand]);
+                break;
+            case DOUBLE:
+                builder.append((double) ints[operand]);
+                break;
+            case THOUSANDS:
+                builder.append((double) ints[operand] / 1000);
+                break;
+            case MARK:
+                marks[top++] = builder.length();
+                break;
+            case TRIM:
+                Generator.trimFrom(builder, marks[--top]);
+                break;
+            case SPACE_IF_GROWN:
+                if (builder.length() > marks[--top]) {
+                    builder.append(' ');
+                }
+                break;
+            case MEMBERS:
+                this.appendMembers(ints, builder);
+                break;
+            default:
+                throw new IllegalStateException("Unknown opcode " + code[pc]);
+            }
+        }
+    }
+
+    /**
+     * Appends the smallest and largest number of members sought by the
+     * groups of players, the same way as {@link FindMoreSentence}.
+     *
+     * @param ints
+     *            The integer values of the nodes.
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     */
+    private void appendMembers(int[] ints, StringBuilder builder) {
+        int numMembersSmall = 0;
+        int numMembersBig = 0;
+        for (int[] group : this.members) {
+            int numMembersTemp = 0;
+            for (int quantity : group) {
+                numMembersTemp += quantity == -1 ? 1 : ints[quantity];
+            }
+
+            if (numMembersSmall == 0) {
+                numMembersSmall = numMembersTemp;
+                numMembersBig = numMembersTemp;
+            } else if (numMembersTemp < numMembersSmall) {
+                numMembersSmall = numMembersTemp;
+            } else if (numMembersTemp > numMembersBig) {
+                numMembersBig = numMembersTemp;
+            }
+        }
+
+        if (numMembersSmall > 0) {
+            builder.append(numMembersSmall);
+            if (numMembersSmall != numMembersBig) {
+                builder.append('-').append(numMembersBig);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of instructions.
+     *
+     * @return The number of instructions.
+     */
+    int size() {
+        return this.code.length / 2;
+    }
+
+    /**
+     * Collects the instructions of a plan, merging adjacent literals into
+     * one.
+     *
+     * @author Christopher Foo
+     *
+     */
+    static final class Builder {
+
+        /**
+         * The opcodes and operands written so far.
+         */
+        private int[] code = new int[32];
+
+        /**
+         * The number of ints written to {@link code}.
+         */
+        private int length;
+
+        /**
+         * The literals written so far.
+         */
+        private final List<String> literals = new ArrayList<String>();
+
+        /**
+         * The literal that is not written yet, as it may still be merged
+         * with the next one.
+         */
+        private final StringBuilder pending = new StringBuilder();
+
+        /**
+         * The groups counted by {@link RenderPlan#MEMBERS}.
+         */
+        private int[][] members = new int[0][];
+
+        /**
+         * The number of marks held at this point of the plan.
+         */
+        private int marks;
+
+        /**
+         * The largest number of marks held at once.
+         */
+        private int maxMarks;
+
+        /**
+         * Appends a literal fragment.
+         *
+         * @param literal
+         *            The fragment.
+         * @return This Builder.
+         */
+        Builder literal(String literal) {
+            this.pending.append(literal);
+            return this;
+        }
+
+        /**
+         * Appends an instruction.
+         *
+         * @param opcode
+         *            The opcode of the instruction.
+         * @param operand
+         *            The operand of the instruction, usually a node index.
+         * @return This Builder.
+         */
+        Builder op(int opcode, int operand) {
+            this.flush();
+            if (opcode == MARK) {
+                this.maxMarks = Math.max(this.maxMarks, ++this.marks);
+            } else if (opcode == TRIM || opcode == SPACE_IF_GROWN) {
+                this.marks--;
+            }
+            this.write(opcode, operand);
+            return this;
+        }
+
+        /**
+         * Appends the number of members sought by the given groups.
+         *
+         * @param members
+         *            The quantity nodes of the players of each group, -1 for
+         *            players without a quantity.
+         * @return This Builder.
+         */
+        Builder members(int[][] members) {
+            this.members = members;
+            return this.op(MEMBERS, 0);
+        }
+
+        /**
+         * Creates the plan from the instructions appended so far.
+         *
+         * @return The new plan.
+         */
+        RenderPlan build() {
+            this.flush();
+            return new RenderPlan(Arrays.copyOf(this.code, this.length),
+                    this.literals.toArray(new String[this.literals.size()]),
+                    this.members, this.maxMarks);
+        }
+
+        /**
+         * Writes the pending literal as an instruction if there is one.
+         */
+        private void flush() {
+            if (this.pending.length() > 0) {
+                this.write(LITERAL, this.literals.size());
+                this.literals.add(this.pending.toString());
+                this.pending.setLength(0);
+            }
+        }
+
+        /**
+         * Writes an instruction to the {@link code}.
+         *
+         * @param opcode
+         *            The opcode of the instruction.
+         * @param operand
+         *            The operand of the instruction.
+         */
+        private void write(int opcode, int operand) {
+            if (this.length == this.code.length) {
+                this.code = Arrays.copyOf(this.code, this.length * 2);
+            }
+            this.code[this.length++] = opcode;
+            this.code[this.length++] = operand;
+        }
+    }
+}
@@ -0,0 +1,811 @@
+package edu.hawaii.ctfoo.lang_generator.sentence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.entity.EntityFactory;
+import edu.hawaii.ctfoo.lang_generator.entity.EntityRegistry;
+
+/**
+ * Compiles the {@link RenderPlan} of the shape of a {@link FlatTree}. The
+ * compiler reads the tree the same way as the default {@link Sentence}s and
+ * entities read it, but keeps node indexes instead of values, and then walks
+ * their render methods for that shape, writing out the fragments they would
+ * append. The lists joined with commas are unrolled, as their lengths are
+ * part of the shape.
+ * <p>
+ * Only shapes whose sentence and entities are created by the default
+ * factories can be compiled. Shapes that would log a warning, such as an
+ * integer attribute that can not be parsed, or that hold null values are
+ * not compiled either, so that those trees keep going through the
+ * sentences.
+ *
+ * @author Christopher Foo
+ *
+ */
+final class RenderPlanCompiler {
+
+    /**
+     * The terminator of the lists of entities, contact methods and
+     * instances.
+     */
+    private static final String GROUP_TERMINATOR = "or";
+
+    /**
+     * The terminator of the lists within a group and of money amounts.
+     */
+    private static final String INNER_TERMINATOR = "and";
+
+    /**
+     * The tree being compiled.
+     */
+    private final FlatTree tree;
+
+    /**
+     * The type of each node.
+     */
+    private final TokenType[] types;
+
+    /**
+     * The number of nodes in the subtree of each node, itself included.
+     */
+    private final int[] sizes;
+
+    /**
+     * The index of the parent of each node, -1 for the root.
+     */
+    private final int[] parents;
+
+    /**
+     * The type of the sentence.
+     */
+    private final TokenType sentenceType;
+
+    /**
+     * The groups of subject entity nodes.
+     */
+    private final List<List<Integer>> subjects = new ArrayList<List<Integer>>();
+
+    /**
+     * The groups of object entity nodes.
+     */
+    private final List<List<Integer>> objects = new ArrayList<List<Integer>>();
+
+    /**
+     * The groups of contact method nodes.
+     */
+    private final List<List<Integer>> contactMethods = new ArrayList<List<Integer>>();
+
+    /**
+     * The groups of instance nodes.
+     */
+    private final List<List<Integer>> instances = new ArrayList<List<Integer>>();
+
+    /**
+     * The instructions written so far.
+     */
+    private final RenderPlan.Builder plan = new RenderPlan.Builder();
+
+    /**
+     * If the shape turned out not to be supported.
+     */
+    private boolean unsupported;
+
+    /**
+     * Creates a new RenderPlanCompiler.
+     *
+     * @param tree
+     *            The tree whose shape is compiled.
+     */
+    private RenderPlanCompiler(FlatTree tree) {
+        int size = tree.size();
+        this.tree = tree;
+        this.types = new TokenType[size];
+        this.sizes = new int[size];
+        this.parents = new int[size];
+
+        // Every descendant of a node comes after it in pre-order, so going
+        // backwards sizes the children before their parents
+        for (int node = size - 1; node >= 0; node--) {
+            this.types[node] = tree.type(node);
+            this.sizes[node] = 1;
+            int child = node + 1;
+            for (int i = 0; i < tree.childCount(node); i++) {
+                this.parents[child] = node;
+                this.sizes[node] += this.sizes[child];
+                child += this.sizes[child];
+            }
+        }
+        this.parents[0] = -1;
+        this.sentenceType = this.types[0];
+    }
+
+    /**
+     * Compiles the plan of the shape of the given tree.
+     *
+     * @param tree
+     *            The tree of a sentence created by a default factory.
+     * @return The plan or null if the shape is not supported.
+     */
+    static RenderPlan compile(FlatTree tree) {
+        RenderPlanCompiler compiler = new RenderPlanCompiler(tree);
+        switch (compiler.sentenceType) {
+        case BUY:
+        case SELL:
+        case FINDGROUP:
+        case FINDMORE:
+            break;
+        default:
+            return null;
+        }
+
+        compiler.readSentence();
+        if (!compiler.unsupported) {
+            compiler.emitSentence();
+        }
+        return compiler.unsupported ? null : compiler.plan.build();
+    }
+
+    /**
+     * Reads the groups of the sentence, as in
+     * {@link Sentence#readSentence(edu.hawaii.ctfoo.lang_generator.Tree)}.
+     * The nodes below the root are already in the order the sentence visits
+     * them in.
+     */
+    private void readSentence() {
+        int subjectGroup = 0;
+        int objectGroup = 0;
+        int contactGroup = 0;
+        int instanceGroup = 0;
+        for (int node = 1; node < this.types.length; node++) {
+            boolean direct = this.parents[node] == 0;
+            switch (this.types[node]) {
+            case SUBJECT:
+                subjectGroup = this.readEntities(node, false, subjectGroup);
+                break;
+            case OBJECT:
+                objectGroup = this.readEntities(node, true, objectGroup);
+                break;
+            case CONTACTMETHOD:
+                if (direct
+                        && (this.sentenceType == TokenType.BUY || this.sentenceType == TokenType.SELL)) {
+                    this.require(this.tree.valueClass(node) != FlatTree.NULL);
+                    contactGroup = this.addToGroup(this.contactMethods,
+                            contactGroup, node);
+                }
+                break;
+            case INSTANCE:
+                if (direct && this.sentenceType == TokenType.FINDMORE) {
+                    instanceGroup = this.addToGroup(this.instances,
+                            instanceGroup, node);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads the entities below a subject or object node, as in
+     * {@link Sentence}.
+     *
+     * @param typeNode
+     *            The subject or object node.
+     * @param object
+     *            If the entities are objects.
+     * @param index
+     *            The index of the current group.
+     * @return The index of the current group after the entities.
+     */
+    private int readEntities(int typeNode, boolean object, int index) {
+        List<List<Integer>> groups = object ? this.objects : this.subjects;
+        index = Sentence.nextGroup(groups, index,
+                this.tree.tokens[typeNode].getLogic());
+
+        int end = typeNode + this.sizes[typeNode];
+        for (int child = typeNode + 1; child < end; child += this.sizes[child]) {
+            EntityFactory factory = EntityRegistry
+                    .getFactory(this.tree.tokens[child]);
+            if (factory == null) {
+                continue;
+            }
+            this.require(EntityRegistry.isDefault(factory));
+            this.checkEntity(child);
+            index = Sentence.nextGroup(groups, index,
+                    this.tree.tokens[child].getLogic());
+            if (this.isValid(this.types[child], object)) {
+                Sentence.addToGroup(groups, index, child);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Checks that creating the entity of the given node does not log a
+     * warning or fail, whether or not the sentence keeps it. Every integer
+     * attribute must be parsable and every currency of a money amount must
+     * have a value.
+     *
+     * @param node
+     *            The entity node.
+     */
+    private void checkEntity(int node) {
+        switch (this.types[node]) {
+        case ITEM:
+            this.requireInts(node, TokenType.LEVEL);
+            this.requireInts(node, TokenType.QUANTITY);
+            int end = node + this.sizes[node];
+            for (int child = node + 1; child < end; child += this.sizes[child]) {
+                if (this.types[child] != TokenType.VALUE) {
+                    continue;
+                }
+                int valueEnd = child + this.sizes[child];
+                for (int descendant = child + 1; descendant < valueEnd; descendant++) {
+                    TokenType type = this.types[descendant];
+                    if (type == TokenType.DENOMINATION) {
+                        this.require(this.tree.isInt(descendant));
+                    } else if (type == TokenType.CURRENCY) {
+                        this.require(this.tree.valueClass(descendant) != FlatTree.NULL);
+                    }
+                }
+            }
+            break;
+        case PLAYER:
+            this.requireInts(node, TokenType.LEVEL);
+            this.requireInts(node, TokenType.ITEMLEVEL);
+            this.requireInts(node, TokenType.QUANTITY);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Checks if an entity of the given type is a valid subject or object of
+     * the sentence.
+     *
+     * @param type
+     *            The type of the entity node.
+     * @param object
+     *            If the entity is an object.
+     * @return If the sentence keeps the entity.
+     */
+    private boolean isValid(TokenType type, boolean object) {
+        switch (this.sentenceType) {
+        case BUY:
+        case SELL:
+            return type == (object ? TokenType.ITEM : TokenType.PLAYER);
+        case FINDGROUP:
+            return type == (object ? TokenType.INSTANCE : TokenType.PLAYER);
+        default:
+            return object && type == TokenType.PLAYER;
+        }
+    }
+
+    /**
+     * Adds a node to its group, starting a new group if it is an OR.
+     *
+     * @param groups
+     *            The groups.
+     * @param index
+     *            The index of the current group.
+     * @param node
+     *            The node to add.
+     * @return The index of the group the node was added to.
+     */
+    private int addToGroup(List<List<Integer>> groups, int index, int node) {
+        index = Sentence.nextGroup(groups, index,
+                this.tree.tokens[node].getLogic());
+        Sentence.addToGroup(groups, index, node);
+        return index;
+    }
+
+    /**
+     * Writes the instructions of the sentence, as rendered by its class.
+     */
+    private void emitSentence() {
+        switch (this.sentenceType) {
+        case BUY:
+        case SELL:
+            if (this.objects.size() < 1) {
+                this.plan.literal(this.sentenceType == TokenType.BUY
+                        ? "< Error in BuySentence: No object to buy found >"
+                        : "< Error in SellSentence: No object to sell found >");
+                return;
+            }
+            this.plan.op(RenderPlan.MARK, 0);
+            this.emitGroups(this.subjects);
+            this.plan.op(RenderPlan.SPACE_IF_GROWN, 0);
+            this.plan.literal(this.sentenceType == TokenType.BUY ? "WTB "
+                    : "WTS ");
+            this.emitGroups(this.objects);
+            if (this.contactMethods.size() > 0) {
+                this.plan.literal(", ");
+                this.emitGroups(this.contactMethods);
+            }
+            this.plan.literal(".");
+            break;
+
+        case FINDGROUP:
+            if (this.objects.size() < 1 && this.subjects.size() < 1) {
+                this.plan.literal("< Error in FindGroupSentence: No object nor subject found >");
+                return;
+            }
+            this.plan.op(RenderPlan.MARK, 0);
+            this.emitGroups(this.subjects);
+            this.plan.op(RenderPlan.SPACE_IF_GROWN, 0);
+            this.plan.literal("LFG");
+            if (this.objects.size() > 0) {
+                this.plan.literal(" for ");
+                this.emitGroups(this.objects);
+            }
+            this.plan.literal(".");
+            break;
+
+        default:
+            if (this.objects.size() < 1 && this.subjects.size() < 1
+                    && this.instances.size() < 1) {
+                this.plan.literal("< Error in FindMoreSentence: No subject or object found >");
+                return;
+            }
+            this.plan.op(RenderPlan.MARK, 0);
+            this.emitGroups(this.subjects);
+            this.plan.literal(" LF");
+            this.emitMembers();
+            this.plan.literal("M ");
+            this.emitGroups(this.objects);
+            if (this.instances.size() > 0) {
+                if (this.objects.size() > 0) {
+                    this.plan.literal(" ");
+                }
+                this.plan.literal("for ");
+                this.emitGroups(this.instances);
+            }
+            this.plan.literal(".");
+            this.plan.op(RenderPlan.TRIM, 0);
+            break;
+        }
+    }
+
+    /**
+     * Writes the member count of a find more sentence, whose objects are all
+     * players.
+     */
+    private void emitMembers() {
+        int[][] members = new int[this.objects.size()][];
+        for (int i = 0; i < members.length; i++) {
+            List<Integer> group = this.objects.get(i);
+            members[i] = new int[group.size()];
+            for (int j = 0; j < members[i].length; j++) {
+                members[i][j] = this.lastChild(group.get(j),
+                        TokenType.QUANTITY);
+            }
+        }
+        this.plan.members(members);
+    }
+
+    /**
+     * Writes a list of groups joined with commas and "or", as appended by
+     * {@link edu.hawaii.ctfoo.lang_generator.Generator#appendCommaList(List, StringBuilder, String)}.
+     *
+     * @param groups
+     *            The groups of nodes.
+     */
+    private void emitGroups(List<List<Integer>> groups) {
+        int listLength = groups.size();
+        for (int i = 0; i < listLength; i++) {
+            this.emitList(groups.get(i), INNER_TERMINATOR);
+            this.emitSeparator(i, listLength, GROUP_TERMINATOR);
+        }
+    }
+
+    /**
+     * Writes a list of nodes joined with commas and the given terminator.
+     *
+     * @param nodes
+     *            The nodes.
+     * @param terminator
+     *            The terminator of the list.
+     */
+    private void emitList(List<Integer> nodes, String terminator) {
+        int listLength = nodes.size();
+        for (int i = 0; i < listLength; i++) {
+            this.emitElement(nodes.get(i), listLength != 2);
+            this.emitSeparator(i, listLength, terminator);
+        }
+    }
+
+    /**
+     * Writes the separator that follows an element of a comma list.
+     *
+     * @param i
+     *            The index of the element.
+     * @param listLength
+     *            The length of the list.
+     * @param terminator
+     *            The terminator of the list.
+     */
+    private void emitSeparator(int i, int listLength, String terminator) {
+        if (listLength == 2) {
+            if (i == 0) {
+                this.plan.literal(" ").literal(terminator).literal(" ");
+            }
+        } else if (i < listLength - 2) {
+            this.plan.literal(", ");
+        } else if (i == listLength - 2) {
+            this.plan.literal(", ").literal(terminator).literal(" ");
+        }
+    }
+
+    /**
+     * Writes a single element of a list.
+     *
+     * @param node
+     *            The node of the element.
+     * @param trim
+     *            If a contact method should be trimmed.
+     */
+    private void emitElement(int node, boolean trim) {
+        switch (this.types[node]) {
+        case ITEM:
+            this.emitItem(node);
+            break;
+        case PLAYER:
+            this.emitPlayer(node);
+            break;
+        case INSTANCE:
+            this.emitInstance(node);
+            break;
+        case MONEYAMOUNT:
+            this.emitMoneyAmount(node);
+            break;
+        default:
+            this.plan.op(trim ? RenderPlan.TRIMMED : RenderPlan.VALUE, node);
+            break;
+        }
+    }
+
+    /**
+     * Writes an item, as rendered by
+     * {@link edu.hawaii.ctfoo.lang_generator.entity.Item}.
+     *
+     * @param node
+     *            The item node.
+     */
+    private void emitItem(int node) {
+        int name = this.lastChild(node, TokenType.NAME);
+        int rarity = this.lastChild(node, TokenType.RARITY);
+        int type = this.lastChild(node, TokenType.TYPE);
+        int level = this.lastChild(node, TokenType.LEVEL);
+        int quantity = this.lastChild(node, TokenType.QUANTITY);
+
+        // The complete money amounts of all of the value attributes
+        List<Integer> amounts = new ArrayList<Integer>();
+        int end = node + this.sizes[node];
+        for (int child = node + 1; child < end; child += this.sizes[child]) {
+            if (this.types[child] != TokenType.VALUE) {
+                continue;
+            }
+            int valueEnd = child + this.sizes[child];
+            for (int amount = child + 1; amount < valueEnd; amount++) {
+                if (this.types[amount] == TokenType.MONEYAMOUNT
+                        && this.isComplete(amount)) {
+                    amounts.add(amount);
+                }
+            }
+        }
+        if (this.unsupported) {
+            return;
+        }
+
+        int quantityClass = this.classOf(quantity, FlatTree.ONE);
+        boolean plural = quantityClass >= FlatTree.SMALL;
+        if (this.isFilled(name)) {
+            this.plan.op(RenderPlan.MARK, 0);
+            this.emitQuantity(quantity, quantityClass);
+            this.plan.op(plural ? RenderPlan.PLURAL : RenderPlan.VALUE, name);
+            this.plan.literal(" ");
+        } else if (this.isFilled(type)) {
+            this.plan.op(RenderPlan.MARK, 0);
+            this.emitQuantity(quantity, quantityClass);
+            if (this.isFilled(rarity)) {
+                this.plan.op(RenderPlan.LOWER, rarity).literal(" ");
+            }
+            if (this.classOf(level, FlatTree.MINUS_ONE) >= FlatTree.ZERO) {
+                this.plan.literal("Item Level ").op(RenderPlan.INT, level)
+                        .literal(" ");
+            }
+            this.plan.op(plural ? RenderPlan.PLURAL_LOWER : RenderPlan.LOWER,
+                    type);
+            this.plan.literal(" ");
+        } else {
+            this.plan.literal("< Error: Incomplete item encountered >");
+            return;
+        }
+
+        if (amounts.size() > 0) {
+            this.plan.literal("for ");
+        }
+        this.emitList(amounts, INNER_TERMINATOR);
+        this.plan.op(RenderPlan.TRIM, 0);
+    }
+
+    /**
+     * Writes the quantity that starts an item.
+     *
+     * @param quantity
+     *            The quantity node or -1 if the item has none.
+     * @param quantityClass
+     *            The class of the quantity.
+     */
+    private void emitQuantity(int quantity, int quantityClass) {
+        if (quantityClass >= FlatTree.ONE) {
+            if (quantity == -1) {
+                this.plan.literal("1");
+            } else {
+                this.plan.op(RenderPlan.INT, quantity);
+            }
+            this.plan.literal(" ");
+        }
+    }
+
+    /**
+     * Checks if a money amount of an item is complete, reading its
+     * denomination and currency as in
+     * {@link edu.hawaii.ctfoo.lang_generator.entity.MoneyAmount}.
+     *
+     * @param node
+     *            The money amount node.
+     * @return If the item keeps the money amount.
+     */
+    private boolean isComplete(int node) {
+        int denomination = this.lastDescendant(node, TokenType.DENOMINATION);
+        int currency = this.lastDescendant(node, TokenType.CURRENCY);
+        return denomination != -1
+                && this.tree.valueClass(denomination) != FlatTree.MINUS_ONE
+                && this.isFilled(currency);
+    }
+
+    /**
+     * Writes a complete money amount, as rendered by
+     * {@link edu.hawaii.ctfoo.lang_generator.entity.MoneyAmount}.
+     *
+     * @param node
+     *            The money amount node.
+     */
+    private void emitMoneyAmount(int node) {
+        int denomination = this.lastDescendant(node, TokenType.DENOMINATION);
+        int currency = this.lastDescendant(node, TokenType.CURRENCY);
+        int denominationClass = this.tree.valueClass(denomination);
+        if (denominationClass <= FlatTree.MINUS_ONE) {
+            this.plan.literal("< Error: Incomplete currency encountered >");
+        } else if (denominationClass == FlatTree.LARGE) {
+            this.plan.op(RenderPlan.THOUSANDS, denomination).literal("k ")
+                    .op(RenderPlan.LOWER, currency);
+        } else {
+            this.plan.op(RenderPlan.DOUBLE, denomination).literal(" ")
+                    .op(RenderPlan.LOWER, currency);
+        }
+    }
+
+    /**
+     * Writes a player, as rendered by
+     * {@link edu.hawaii.ctfoo.lang_generator.entity.Player}.
+     *
+     * @param node
+     *            The player node.
+     */
+    private void emitPlayer(int node) {
+        List<Integer> classes = this.children(node, TokenType.CLASS);
+        List<Integer> specializations = this.children(node,
+                TokenType.SPECIALIZATION);
+        int race = this.lastChild(node, TokenType.RACE);
+        int role = this.lastChild(node, TokenType.ROLE);
+        int level = this.lastChild(node, TokenType.LEVEL);
+        int itemLevel = this.lastChild(node, TokenType.ITEMLEVEL);
+        int quantity = this.lastChild(node, TokenType.QUANTITY);
+        if (this.unsupported) {
+            return;
+        }
+
+        if (classes.size() < 1 && !this.isFilled(role)) {
+            this.plan.literal("< Error: Incomplete player encountered >");
+            return;
+        }
+        this.plan.op(RenderPlan.MARK, 0);
+
+        boolean plural = this.classOf(quantity, FlatTree.ONE) >= FlatTree.SMALL;
+        boolean hasLevel = this.classOf(level, FlatTree.MINUS_ONE) >= FlatTree.ZERO;
+        boolean hasItemLevel = this.classOf(itemLevel, FlatTree.MINUS_ONE) >= FlatTree.ZERO;
+        if (plural) {
+            this.plan.op(RenderPlan.INT, quantity).literal(" ");
+        }
+        if (hasLevel) {
+            this.plan.literal("Level ").op(RenderPlan.INT, level).literal(" ");
+            if (hasItemLevel) {
+                this.plan.literal("/ ");
+            }
+        }
+        if (hasItemLevel) {
+            this.plan.literal("Item Level ").op(RenderPlan.INT, itemLevel)
+                    .literal(" ");
+        }
+
+        if (classes.size() > 0) {
+            if (this.isFilled(race)) {
+                this.plan.op(RenderPlan.VALUE, race).literal(" ");
+            }
+            if (specializations.size() > 0) {
+                this.emitDelimited(specializations);
+                this.plan.literal(" ");
+            }
+            if (classes.size() == 1 && plural) {
+                this.plan.op(RenderPlan.PLURAL, classes.get(0));
+            } else {
+                this.emitDelimited(classes);
+            }
+        } else {
+            this.plan.op(plural ? RenderPlan.PLURAL : RenderPlan.VALUE, role);
+        }
+        this.plan.op(RenderPlan.TRIM, 0);
+    }
+
+    /**
+     * Writes the trimmed values of the given nodes separated by slashes, as
+     * appended by
+     * {@link edu.hawaii.ctfoo.lang_generator.Generator#appendDelimiterList(List, StringBuilder, String)}.
+     *
+     * @param nodes
+     *            The nodes.
+     */
+    private void emitDelimited(List<Integer> nodes) {
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) {
+                this.plan.literal(" / ");
+            }
+            this.plan.op(RenderPlan.TRIMMED, nodes.get(i));
+        }
+    }
+
+    /**
+     * Writes an instance, as rendered by
+     * {@link edu.hawaii.ctfoo.lang_generator.entity.Instance}.
+     *
+     * @param node
+     *            The instance node.
+     */
+    private void emitInstance(int node) {
+        int name = this.lastChild(node, TokenType.NAME);
+        int mode = this.lastChild(node, TokenType.MODE);
+        int difficulty = this.lastChild(node, TokenType.DIFFICULTY);
+        if (this.unsupported) {
+            return;
+        }
+
+        if (!this.isFilled(name)) {
+            this.plan.literal("< Error Incomplete Instance Encountered >");
+            return;
+        }
+        this.plan.op(RenderPlan.MARK, 0);
+        if (this.isFilled(difficulty)) {
+            this.plan.op(RenderPlan.VALUE, difficulty).literal(" ");
+        }
+        if (this.isFilled(mode)) {
+            this.plan.op(RenderPlan.VALUE, mode).literal(" ");
+        }
+        this.plan.op(RenderPlan.VALUE, name).op(RenderPlan.TRIM, 0);
+    }
+
+    /**
+     * Finds the children of the given type, which must not have null values.
+     *
+     * @param node
+     *            The parent node.
+     * @param type
+     *            The type of the children.
+     * @return The children in order.
+     */
+    private List<Integer> children(int node, TokenType type) {
+        List<Integer> children = new ArrayList<Integer>();
+        int end = node + this.sizes[node];
+        for (int child = node + 1; child < end; child += this.sizes[child]) {
+            if (this.types[child] == type) {
+                this.require(this.tree.valueClass(child) != FlatTree.NULL);
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Finds the last child of the given type, whose value is the one the
+     * entities keep. The children of the type must not have null values.
+     *
+     * @param node
+     *            The parent node.
+     * @param type
+     *            The type of the child.
+     * @return The last child of the type or -1 if there is none.
+     */
+    private int lastChild(int node, TokenType type) {
+        List<Integer> children = this.children(node, type);
+        return children.isEmpty() ? -1 : children.get(children.size() - 1);
+    }
+
+    /**
+     * Finds the last descendant of the given type in pre-order.
+     *
+     * @param node
+     *            The ancestor node.
+     * @param type
+     *            The type of the descendant.
+     * @return The last descendant of the type or -1 if there is none.
+     */
+    private int lastDescendant(int node, TokenType type) {
+        int last = -1;
+        int end = node + this.sizes[node];
+        for (int descendant = node + 1; descendant < end; descendant++) {
+            if (this.types[descendant] == type) {
+                last = descendant;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Gets the class of the value of a node that may be missing.
+     *
+     * @param node
+     *            The node or -1.
+     * @param missing
+     *            The class of the entity's default value.
+     * @return The class of the value.
+     */
+    private int classOf(int node, int missing) {
+        return node == -1 ? missing : this.tree.valueClass(node);
+    }
+
+    /**
+     * Checks if a node that may be missing has a value that is neither null
+     * nor empty.
+     *
+     * @param node
+     *            The node or -1.
+     * @return If the value has any characters.
+     */
+    private boolean isFilled(int node) {
+        return node != -1 && this.tree.isFilled(node);
+    }
+
+    /**
+     * Requires every child of the given type to be a parsable integer, as the
+     * entities log a warning otherwise.
+     *
+     * @param node
+     *            The entity node.
+     * @param type
+     *            The type of the integer attribute.
+     */
+    private void requireInts(int node, TokenType type) {
+        int end = node + this.sizes[node];
+        for (int child = node + 1; child < end; child += this.sizes[child]) {
+            if (this.types[child] == type) {
+                this.require(this.tree.isInt(child));
+            }
+        }
+    }
+
+    /**
+     * Marks the shape as not supported unless the given condition holds.
+     *
+     * @param condition
+     *            The condition the shape needs to meet.
+     */
+    private void require(boolean condition) {
+        if (!condition) {
+            this.unsupported = true;
+        }
+    }
+}
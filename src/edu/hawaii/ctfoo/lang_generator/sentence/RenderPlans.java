@@ -0,0 +1,386 @@
+package edu.hawaii.ctfoo.lang_generator.sentence;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.hawaii.ctfoo.lang_generator.GeneratorMetrics;
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.Tree;
+
+/**
+ * Renders sentences with {@link RenderPlan}s compiled for their shapes, so
+ * that sentences of a shape that keeps coming up are rendered without
+ * building their {@link Sentence} and entity objects. The shape of a parse
+ * tree is its structure, the types and logic operations of its nodes and the
+ * classes of its values: null, empty, text, or the range of an integer that
+ * the entities compare against. Trees that only differ in their IDs and in
+ * the text of their values share a shape.
+ * <p>
+ * A shape is compiled the second time it comes up, so that shapes that are
+ * only seen once are never compiled. Until then its trees are rendered by
+ * their Sentences as usual, and the compiled plan is kept only if it renders
+ * the same sentence as the Sentence did. Shapes that can not be compiled,
+ * such as those of custom sentence or entity types and those that log
+ * warnings, are remembered so that their trees go straight to their
+ * Sentences. The plans are kept in a bounded cache keyed by the shape. Once
+ * it is full, the shapes that were only seen once are dropped, and the whole
+ * cache starts over if that does not free half of it.
+ * <p>
+ * Plans are disabled by default. They are compiled against the factories
+ * registered when the shape is first seen, so the plans should be
+ * {@link #clear() cleared} after registering new sentence or entity types.
+ *
+ * @author Christopher Foo
+ *
+ */
+public final class RenderPlans {
+
+    /**
+     * The default maximum number of cached shapes.
+     */
+    public static final int DEFAULT_MAXIMUM_PLANS = 1024;
+
+    /**
+     * The system property that enables the default plans when set to "true".
+     */
+    public static final String ENABLED_PROPERTY = "edu.hawaii.ctfoo.lang_generator.plans";
+
+    /**
+     * The plans shared by the whole Language Generator.
+     */
+    private static final RenderPlans defaultPlans = new RenderPlans(
+            DEFAULT_MAXIMUM_PLANS,
+            "true".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY)));
+
+    /**
+     * The plan cached for shapes that have been seen once.
+     */
+    private static final RenderPlan SEEN = new RenderPlan.Builder().build();
+
+    /**
+     * The plan cached for shapes that are rendered by their Sentences.
+     */
+    private static final RenderPlan UNSUPPORTED = new RenderPlan.Builder()
+            .build();
+
+    /**
+     * The cached plans keyed by their shapes.
+     */
+    private final ConcurrentMap<Shape, RenderPlan> plans;
+
+    /**
+     * The maximum number of entries in the {@link plans}.
+     */
+    private final int maximumPlans;
+
+    /**
+     * If sentences are rendered with plans.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * The number of sentences rendered by a cached plan.
+     */
+    private final LongAdder hits;
+
+    /**
+     * The number of shapes compiled.
+     */
+    private final LongAdder compiled;
+
+    /**
+     * The number of sentences rendered by their Sentences.
+     */
+    private final LongAdder fallbacks;
+
+    /**
+     * Creates new RenderPlans.
+     *
+     * @param maximumPlans
+     *            The maximum number of cached shapes.
+     * @param enabled
+     *            If sentences are rendered with plans.
+     */
+    public RenderPlans(int maximumPlans, boolean enabled) {
+        if (maximumPlans < 1) {
+            throw new IllegalArgumentException("The maximum number of plans must be positive: "
+                    + maximumPlans);
+        }
+        this.plans = new ConcurrentHashMap<Shape, RenderPlan>();
+        this.maximumPlans = maximumPlans;
+        this.enabled = enabled;
+        this.hits = new LongAdder();
+        this.compiled = new LongAdder();
+        this.fallbacks = new LongAdder();
+    }
+
+    /**
+     * Gets the plans shared by the whole Language Generator, enabled by the
+     * {@link #ENABLED_PROPERTY} system property.
+     *
+     * @return The default plans.
+     */
+    public static RenderPlans getDefault() {
+        return defaultPlans;
+    }
+
+    /**
+     * Checks if sentences are rendered with plans.
+     *
+     * @return If the plans are enabled.
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Enables or disables rendering with plans.
+     *
+     * @param enabled
+     *            If sentences should be rendered with plans.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Renders the sentence of the given parse tree to the given builder, with
+     * the plan of its shape if there is one and otherwise with its
+     * {@link Sentence}. The render is recorded by the
+     * {@link GeneratorMetrics}.
+     *
+     * @param root
+     *            The root node of the sentence's parse tree.
+     * @param builder
+     *            The {@link StringBuilder} to append the sentence to.
+     * @return If a sentence was rendered, false if no factory is registered
+     *         for the type of the root.
+     */
+    public boolean render(Tree<ParseToken> root, StringBuilder builder) {
+        SentenceFactory factory = SentenceRegistry.getFactory(root.getNode());
+        if (factory == null) {
+            return false;
+        }
+        if (!SentenceRegistry.isDefault(factory)) {
+            this.renderSentence(root, builder);
+            return true;
+        }
+
+        FlatTree tree = new FlatTree(root);
+        Shape shape = new Shape(tree);
+        RenderPlan plan = this.plans.get(shape);
+        if (plan == null) {
+            this.renderSentence(root, builder);
+            this.put(shape, SEEN);
+        } else if (plan == SEEN) {
+            this.compile(shape, tree, root, builder);
+        } else if (plan == UNSUPPORTED) {
+            this.renderSentence(root, builder);
+        } else {
+            this.hits.increment();
+            GeneratorMetrics metrics = GeneratorMetrics.getDefault();
+            int offset = builder.length();
+            long start = metrics.start();
+            plan.render(tree, builder);
+            metrics.recordRender(start, builder, offset);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all of the cached plans.
+     */
+    public void clear() {
+        this.plans.clear();
+    }
+
+    /**
+     * Gets the number of cached shapes, including those that are rendered by
+     * their Sentences.
+     *
+     * @return The number of cached shapes.
+     */
+    public int getSize() {
+        return this.plans.size();
+    }
+
+    /**
+     * Gets the number of sentences rendered by a cached plan.
+     *
+     * @return The number of plan renders.
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Gets the number of shapes compiled.
+     *
+     * @return The number of compiled shapes.
+     */
+    public long getCompiled() {
+        return this.compiled.sum();
+    }
+
+    /**
+     * Gets the number of sentences rendered by their Sentences, including
+     * the first two sentences of every shape.
+     *
+     * @return The number of Sentence renders.
+     */
+    public long getFallbacks() {
+        return this.fallbacks.sum();
+    }
+
+    @Override
+    /**
+     * Returns the counters of the plans.
+     */
+    public String toString() {
+        return "Render plans: " + this.getSize() + " shapes, "
+                + this.getHits() + " plan renders, " + this.getCompiled()
+                + " compiled, " + this.getFallbacks() + " sentence renders";
+    }
+
+    /**
+     * Renders a tree of a shape that was seen once with its Sentence and
+     * compiles the plan of the shape, keeping it only if it renders the same
+     * sentence.
+     *
+     * @param shape
+     *            The shape of the tree.
+     * @param tree
+     *            The numbered nodes of the tree.
+     * @param root
+     *            The root node of the tree.
+     * @param builder
+     *            The {@link StringBuilder} to append the sentence to.
+     */
+    private void compile(Shape shape, FlatTree tree, Tree<ParseToken> root,
+            StringBuilder builder) {
+        int offset = builder.length();
+        this.renderSentence(root, builder);
+
+        this.compiled.increment();
+        RenderPlan plan = RenderPlanCompiler.compile(tree);
+        if (plan != null) {
+            StringBuilder planned = new StringBuilder(builder.length() - offset);
+            plan.render(tree, planned);
+            if (!planned.toString().contentEquals(
+                    builder.subSequence(offset, builder.length()))) {
+                plan = UNSUPPORTED;
+            }
+        } else {
+            plan = UNSUPPORTED;
+        }
+
+        this.put(shape, plan);
+    }
+
+    /**
+     * Caches the plan of a shape, making room for it if the cache is full.
+     *
+     * @param shape
+     *            The shape.
+     * @param plan
+     *            The plan of the shape.
+     */
+    private void put(Shape shape, RenderPlan plan) {
+        if (this.plans.size() >= this.maximumPlans) {
+
+            // Drop the shapes seen only once first, and start over if the
+            // compiled plans alone fill half of the cache so that it follows
+            // the shapes that are currently in use
+            Iterator<RenderPlan> iterator = this.plans.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next() == SEEN) {
+                    iterator.remove();
+                }
+            }
+            if (this.plans.size() >= this.maximumPlans / 2) {
+                this.plans.clear();
+            }
+        }
+        this.plans.put(shape, plan);
+    }
+
+    /**
+     * Renders the sentence of the given tree with its {@link Sentence}.
+     *
+     * @param root
+     *            The root node of the sentence's parse tree.
+     * @param builder
+     *            The {@link StringBuilder} to append the sentence to.
+     */
+    private void renderSentence(Tree<ParseToken> root, StringBuilder builder) {
+        this.fallbacks.increment();
+        GeneratorMetrics.getDefault().render(SentenceRegistry.create(root),
+                builder);
+    }
+
+    /**
+     * The shape of a parse tree, used as the key of its plan.
+     *
+     * @author Christopher Foo
+     *
+     */
+    private static final class Shape {
+
+        /**
+         * The type, logic operation and value class of each node followed
+         * by its number of children, two ints per node in pre-order.
+         */
+        private final int[] codes;
+
+        /**
+         * The type name of each node of an unknown type, or null if every
+         * type is known.
+         */
+        private final String[] names;
+
+        /**
+         * The hash of the {@link codes} and {@link names}.
+         */
+        private final long hash;
+
+        /**
+         * Creates the shape of the given tree, sharing its codes.
+         *
+         * @param tree
+         *            The numbered nodes of the tree.
+         */
+        Shape(FlatTree tree) {
+            this.codes = tree.codes;
+            this.names = tree.names;
+            this.hash = tree.hash;
+        }
+
+        @Override
+        /**
+         * Returns the low bits of the hash.
+         */
+        public int hashCode() {
+            return (int) (this.hash ^ (this.hash >>> 32));
+        }
+
+        @Override
+        /**
+         * Checks if the given object is the same shape.
+         */
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Shape)) {
+                return false;
+            }
+            Shape shape = (Shape) other;
+            return this.hash == shape.hash
+                    && Arrays.equals(this.codes, shape.codes)
+                    && Arrays.equals(this.names, shape.names);
+        }
+    }
+}
@@ -2,12 +2,10 @@ package edu.hawaii.ctfoo.lang_generator.sentence;
 
 import java.util.ArrayList;
 import java.util.List;
-import edu.hawaii.ctfoo.lang_generator.MatchFunctor;
 import edu.hawaii.ctfoo.lang_generator.Generator;
-import edu.hawaii.ctfoo.lang_generator.LogicOp;
 import edu.hawaii.ctfoo.lang_generator.ParseToken;
-import edu.hawaii.ctfoo.lang_generator.Tree;
-import edu.hawaii.ctfoo.lang_generator.TypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
 import edu.hawaii.ctfoo.lang_generator.entity.Item;
 import edu.hawaii.ctfoo.lang_generator.entity.Player;
 
@@ -34,46 +32,35 @@ public class SellSentence extends Sentence {
    */
   private List<List<String>> contactMethods;
 
+  /**
+   * The index of the sublist of {@link contactMethods} that the next contact method is added to.
+   */
+  private int contactGroup;
+
   /**
    * Creates a new SellSentence based on the Sell token at the given node.
    * 
    * @param sellToken The node with the sell token used to generate the SellSentence.
    */
-  public SellSentence(Tree<ParseToken> sellToken) {
+  public SellSentence(TreeView<ParseToken> sellToken) {
     super(SellSentence.validObjectClasses, SellSentence.validSubjectClasses);
     this.contactMethods = new ArrayList<List<String>>();
 
-    if (sellToken.getNode().getType().equalsIgnoreCase("sell")) {
-
-      this.readSubObj(sellToken, "object");
-
-      this.readSubObj(sellToken, "subject");
-
-      this.getContactMethods(sellToken);
+    if (sellToken.getNode().getTypeSymbol() == TokenType.SELL) {
+      this.readSentence(sellToken);
     }
   }
 
+  @Override
   /**
-   * Gets the contact methods for the SellSentence from the given Sell token {@link Tree} node.
-   * 
-   * @param sellToken The {@link Tree} node of the contact methods to get.
+   * Adds the value of the given contact method node to the contact methods.
    */
-  private void getContactMethods(Tree<ParseToken> sellToken) {
-    MatchFunctor<String, ParseToken> typeMatcher = new TypeMatcher();
-    int index = 0;
-    for (Tree<ParseToken> typeNode : sellToken.findDirect("contactmethod", typeMatcher)) {
-      ParseToken typeToken = typeNode.getNode();
+  protected void visitContactMethod(TreeView<ParseToken> contactMethodNode) {
+    ParseToken token = contactMethodNode.getNode();
 
-      // Put in new list if OR
-      if (typeToken.getLogic() == LogicOp.OR
-          && (index >= this.contactMethods.size() || this.contactMethods.get(index).size() > 0)) {
-        index++;
-      }
-      if (index >= this.contactMethods.size()) {
-        this.contactMethods.add(new ArrayList<String>());
-      }
-      this.contactMethods.get(index).add(typeNode.getNode().getValue());
-    }
+    // Put in new list if OR
+    this.contactGroup = nextGroup(this.contactMethods, this.contactGroup, token.getLogic());
+    addToGroup(this.contactMethods, this.contactGroup, token.getValue());
   }
 
   @Override
@@ -81,15 +68,26 @@ public class SellSentence extends Sentence {
    * Returns the generated sentence as a String.
    */
   public String toString() {
+    StringBuilder builder = new StringBuilder();
+    this.render(builder);
+    return builder.toString();
+  }
+
+  @Override
+  /**
+   * Appends the generated sentence to the given builder.
+   */
+  public void render(StringBuilder builder) {
     if (this.eventObject.size() < 1) {
-      return "< Error in SellSentence: No object to sell found >";
+      builder.append("< Error in SellSentence: No object to sell found >");
+      return;
     }
 
     if (this.checkObject() && this.checkSubject()) {
-      StringBuilder builder = new StringBuilder();
+      int start = builder.length();
       Generator.appendCommaList(this.eventSubject, builder, "or");
-      if (builder.length() > 0) {
-        builder.append(" ");
+      if (builder.length() > start) {
+        builder.append(' ');
       }
       builder.append("WTS ");
       Generator.appendCommaList(this.eventObject, builder, "or");
@@ -97,12 +95,11 @@ public class SellSentence extends Sentence {
         builder.append(", ");
         Generator.appendCommaList(this.contactMethods, builder, "or");
       }
-      builder.append(".");
-      return builder.toString();
+      builder.append('.');
     }
 
     else {
-      return "< Error in SellSentence: Invalid object or subject found >";
+      builder.append("< Error in SellSentence: Invalid object or subject found >");
     }
   }
 
@@ -1,16 +1,16 @@
 package edu.hawaii.ctfoo.lang_generator.sentence;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import edu.hawaii.ctfoo.lang_generator.LogicOp;
-import edu.hawaii.ctfoo.lang_generator.MatchFunctor;
 import edu.hawaii.ctfoo.lang_generator.ParseToken;
-import edu.hawaii.ctfoo.lang_generator.Tree;
-import edu.hawaii.ctfoo.lang_generator.TypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TokenTypeMatcher;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
 import edu.hawaii.ctfoo.lang_generator.entity.Entity;
+import edu.hawaii.ctfoo.lang_generator.entity.EntityRegistry;
 
 /**
  * Represents a simple English sentence about a single event.
@@ -42,6 +42,23 @@ public abstract class Sentence {
      */
     protected Class<?>[] validSubjectClasses;
 
+    /**
+     * The index of the sublist of {@link eventObject} that the next object is
+     * added to.
+     */
+    private int objectGroup;
+
+    /**
+     * The index of the sublist of {@link eventSubject} that the next subject
+     * is added to.
+     */
+    private int subjectGroup;
+
+    /**
+     * If the sentence can no longer be changed.
+     */
+    private boolean sealed;
+
     /**
      * Creates and initializes a new Sentence.
      * 
@@ -56,6 +73,9 @@ public abstract class Sentence {
         this.validSubjectClasses = validSubjectClasses;
         this.eventObject = new ArrayList<List<Entity>>();
         this.eventSubject = new ArrayList<List<Entity>>();
+        this.objectGroup = 0;
+        this.subjectGroup = 0;
+        this.sealed = false;
     }
 
     /**
@@ -65,8 +85,11 @@ public abstract class Sentence {
      *            The new object to add.
      * @param index
      *            The index of the sublist to add it to.
+     * @throws UnsupportedOperationException
+     *             If the sentence was sealed.
      */
     public void addObject(Entity newObject, int index) {
+        this.checkNotSealed();
         if (checkObject(newObject)) {
             if (index >= this.eventObject.size()) {
                 this.eventObject.add(new ArrayList<Entity>());
@@ -82,8 +105,11 @@ public abstract class Sentence {
      *            The new subject to add.
      * @param index
      *            The index of the sublist to add it to.
+     * @throws UnsupportedOperationException
+     *             If the sentence was sealed.
      */
     public void addSubject(Entity newSubject, int index) {
+        this.checkNotSealed();
         if (checkSubject(newSubject)) {
             if (index >= this.eventSubject.size()) {
                 this.eventSubject.add(new ArrayList<Entity>());
@@ -100,82 +126,208 @@ public abstract class Sentence {
      * @param type
      *            Either "subject" to read in the subjects or "object" to read
      *            in the objects.
+     * @throws UnsupportedOperationException
+     *             If the sentence was sealed.
      */
-    public void readSubObj(Tree<ParseToken> sentenceToken, String type) {
-        MatchFunctor<String, ParseToken> typeMatcher = new TypeMatcher();
+    public void readSubObj(TreeView<ParseToken> sentenceToken, String type) {
+        this.checkNotSealed();
+        TokenType typeSymbol = TokenType.lookup(type);
 
-        if (type.equalsIgnoreCase("subject") || type.equalsIgnoreCase("object")) {
+        if (typeSymbol == TokenType.SUBJECT) {
+            this.subjectGroup = 0;
+            for (TreeView<ParseToken> typeNode : sentenceToken.iterateAll(
+                    typeSymbol, TokenTypeMatcher.INSTANCE)) {
+                this.visitSubject(typeNode);
+            }
+        }
 
-            List<List<Entity>> targetList;
-            if (type.equalsIgnoreCase("subject")) {
-                targetList = this.eventSubject;
-            } else {
-                targetList = this.eventObject;
+        else if (typeSymbol == TokenType.OBJECT) {
+            this.objectGroup = 0;
+            for (TreeView<ParseToken> typeNode : sentenceToken.iterateAll(
+                    typeSymbol, TokenTypeMatcher.INSTANCE)) {
+                this.visitObject(typeNode);
             }
+        }
+    }
 
-            int index = 0;
-            for (Tree<ParseToken> typeNode : sentenceToken.findAll(type,
-                    typeMatcher)) {
-                ParseToken typeToken = typeNode.getNode();
+    /**
+     * Reads the given sentence by walking its tree once and passing the
+     * subject and object nodes (at any depth) and the contact method and
+     * instance nodes (direct children only) to the matching visit methods.
+     * The nodes are visited in pre-order, so a subject or object is always
+     * visited before the nodes below it.
+     * 
+     * @param sentenceToken
+     *            The node containing the token for the sentence.
+     */
+    protected void readSentence(TreeView<ParseToken> sentenceToken) {
 
-                // Put in new list if OR
-                if (typeToken.getLogic() == LogicOp.OR
-                        && (index >= targetList.size() || targetList.get(index)
-                                .size() > 0)) {
-                    index++;
+        // Walk with an explicit stack so that deep trees can not overflow the
+        // call stack
+        List<TreeView<ParseToken>> stack = new ArrayList<TreeView<ParseToken>>();
+        for (TreeView<ParseToken> child : sentenceToken.getDirectChildren()) {
+            stack.add(child);
+            while (!stack.isEmpty()) {
+                TreeView<ParseToken> node = stack.remove(stack.size() - 1);
+                switch (node.getNode().getTypeSymbol()) {
+                case SUBJECT:
+                    this.visitSubject(node);
+                    break;
+                case OBJECT:
+                    this.visitObject(node);
+                    break;
+                case CONTACTMETHOD:
+                    if (node == child) {
+                        this.visitContactMethod(node);
+                    }
+                    break;
+                case INSTANCE:
+                    if (node == child) {
+                        this.visitInstance(node);
+                    }
+                    break;
+                default:
+                    break;
                 }
 
-                // Get all of the subject or object entities
-                for (Tree<ParseToken> typeChild : typeNode.getDirectChildren()) {
-                    ParseToken tokenChild = typeChild.getNode();
-                    Entity entity = null;
-                    if (typeToken.isNegated()) {
-                        tokenChild.setNegated(true);
-                    }
+                List<? extends TreeView<ParseToken>> nodeChildren = node.getDirectChildren();
+                for (int i = nodeChildren.size() - 1; i >= 0; i--) {
+                    stack.add(nodeChildren.get(i));
+                }
+            }
+        }
+    }
 
-                    // Use reflection to get a new instance of the entity
-                    try {
-                        Class<? extends Entity> foundClass = Class.forName(
-                                "edu.hawaii.ctfoo.lang_generator.entity."
-                                        + typeChild.getNode().getType())
-                                .asSubclass(Entity.class);
-                        Constructor<? extends Entity> foundClassConstructor = foundClass
-                                .getConstructor(Tree.class);
-                        entity = foundClassConstructor.newInstance(typeChild);
-                        if (entity != null) {
-
-                            // Update index if OR
-                            if (tokenChild.getLogic() == LogicOp.OR
-                                    && (index >= targetList.size() || targetList
-                                            .get(index).size() > 0)) {
-                                index++;
-                            }
-
-                            // Add to the appropriate list
-                            if (type.equalsIgnoreCase("object")) {
-                                this.addObject(entity, index);
-                            } else {
-                                this.addSubject(entity, index);
-                            }
-                        }
-                    } catch (ClassNotFoundException e) {
-                        // Ignore it
-                    } catch (IllegalArgumentException e) {
-                        // Ignore it
-                    } catch (InstantiationException e) {
-                        // Ignore it
-                    } catch (IllegalAccessException e) {
-                        // Ignore it
-                    } catch (InvocationTargetException e) {
-                        // Ignore it
-                    } catch (SecurityException e) {
-                        // Ignore it
-                    } catch (NoSuchMethodException e) {
-                        // Ignore it
-                    }
+    /**
+     * Reads the entities of the given subject node into the subjects.
+     * 
+     * @param subjectNode
+     *            A subject node of the sentence.
+     */
+    protected void visitSubject(TreeView<ParseToken> subjectNode) {
+        this.subjectGroup = this.readEntities(subjectNode, false,
+                this.subjectGroup);
+    }
+
+    /**
+     * Reads the entities of the given object node into the objects.
+     * 
+     * @param objectNode
+     *            An object node of the sentence.
+     */
+    protected void visitObject(TreeView<ParseToken> objectNode) {
+        this.objectGroup = this.readEntities(objectNode, true,
+                this.objectGroup);
+    }
+
+    /**
+     * Reads the given contact method node. Ignored unless overridden by the
+     * Sentence type.
+     * 
+     * @param contactMethodNode
+     *            A contact method node that is a direct child of the sentence.
+     */
+    protected void visitContactMethod(TreeView<ParseToken> contactMethodNode) {
+        // Not used by this type of sentence
+    }
+
+    /**
+     * Reads the given instance node. Ignored unless overridden by the Sentence
+     * type.
+     * 
+     * @param instanceNode
+     *            An instance node that is a direct child of the sentence.
+     */
+    protected void visitInstance(TreeView<ParseToken> instanceNode) {
+        // Not used by this type of sentence
+    }
+
+    /**
+     * Reads all of the entities below the given subject or object node.
+     * 
+     * @param typeNode
+     *            The subject or object node.
+     * @param object
+     *            If the entities are objects (true) or subjects (false).
+     * @param index
+     *            The index of the sublist that the next entity is added to.
+     * @return The index of the sublist that the next entity should be added
+     *         to.
+     */
+    private int readEntities(TreeView<ParseToken> typeNode, boolean object,
+            int index) {
+        List<List<Entity>> targetList = object ? this.eventObject
+                : this.eventSubject;
+        ParseToken typeToken = typeNode.getNode();
+
+        // Put in new list if OR
+        index = nextGroup(targetList, index, typeToken.getLogic());
+
+        // Get all of the subject or object entities
+        for (TreeView<ParseToken> typeChild : typeNode.getDirectChildren()) {
+            ParseToken tokenChild = typeChild.getNode();
+            if (typeToken.isNegated()) {
+                tokenChild.setNegated(true);
+            }
+
+            // Create the entity with the factory registered for its type,
+            // unregistered types are ignored
+            Entity entity = EntityRegistry.create(typeChild);
+            if (entity != null) {
+
+                // Update index if OR
+                index = nextGroup(targetList, index, tokenChild.getLogic());
+
+                // Add to the appropriate list
+                if (object) {
+                    this.addObject(entity, index);
+                } else {
+                    this.addSubject(entity, index);
                 }
             }
         }
+        return index;
+    }
+
+    /**
+     * Finds the sublist that the next element connected by the given logic
+     * operation should be added to. An OR starts a new sublist unless the
+     * current one is still empty.
+     * 
+     * @param groups
+     *            The list of sublists.
+     * @param index
+     *            The index of the current sublist.
+     * @param logic
+     *            The logic operation connecting the next element.
+     * @return The index of the sublist to add the next element to.
+     */
+    protected static int nextGroup(List<? extends List<?>> groups, int index,
+            LogicOp logic) {
+        if (logic == LogicOp.OR && index < groups.size()
+                && groups.get(index).size() > 0) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Adds the given element to the sublist at the given index, creating the
+     * sublist if it does not exist yet.
+     * 
+     * @param groups
+     *            The list of sublists.
+     * @param index
+     *            The index of the sublist, at most the number of sublists.
+     * @param element
+     *            The element to add.
+     */
+    protected static <E> void addToGroup(List<List<E>> groups, int index,
+            E element) {
+        if (index >= groups.size()) {
+            groups.add(new ArrayList<E>());
+        }
+        groups.get(index).add(element);
     }
 
     /**
@@ -247,4 +399,75 @@ public abstract class Sentence {
         }
         return false;
     }
+
+    /**
+     * Makes the sentence and its subjects and objects read-only once it is
+     * built, so that it may be shared with other threads. Adding to the
+     * sentence afterwards throws an {@link UnsupportedOperationException}.
+     */
+    public void seal() {
+        this.sealed = true;
+        for (List<Entity> objectList : this.eventObject) {
+            for (Entity object : objectList) {
+                object.seal();
+            }
+        }
+        for (List<Entity> subjectList : this.eventSubject) {
+            for (Entity subject : subjectList) {
+                subject.seal();
+            }
+        }
+    }
+
+    /**
+     * Checks if the sentence is read-only.
+     * 
+     * @return If the sentence was sealed.
+     */
+    public boolean isSealed() {
+        return this.sealed;
+    }
+
+    /**
+     * Throws if the sentence is read-only. Called by the methods that change
+     * the sentence.
+     * 
+     * @throws UnsupportedOperationException
+     *             If the sentence was sealed.
+     */
+    protected void checkNotSealed() {
+        if (this.sealed) {
+            throw new UnsupportedOperationException("The sentence is sealed.");
+        }
+    }
+
+    /**
+     * Appends the generated sentence to the given builder. The appended text
+     * is the same as {@link #toString()}. Sentences that do not override this
+     * method append the result of {@link #toString()}.
+     * 
+     * @param builder
+     *            The {@link StringBuilder} to append to.
+     */
+    public void render(StringBuilder builder) {
+        builder.append(this.toString());
+    }
+
+    /**
+     * Appends the generated sentence to the given {@link Appendable}.
+     * 
+     * @param out
+     *            The Appendable to append to.
+     * @throws IOException
+     *             If the Appendable could not be written to.
+     */
+    public void render(Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            this.render((StringBuilder) out);
+        } else {
+            StringBuilder builder = new StringBuilder();
+            this.render(builder);
+            out.append(builder);
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package edu.hawaii.ctfoo.lang_generator.sentence;
+
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
+
+/**
+ * Creates {@link Sentence}s from the root nodes of the parse trees. Factories
+ * are registered with the {@link SentenceRegistry} under the token type that
+ * they handle. Factories listed in
+ * <code>META-INF/services/edu.hawaii.ctfoo.lang_generator.sentence.SentenceFactory</code>
+ * are registered automatically and must have a public no argument
+ * constructor.
+ * 
+ * @author Christopher Foo
+ * 
+ */
+public interface SentenceFactory {
+
+    /**
+     * Gets the token type of the root nodes that this factory creates
+     * Sentences for.
+     * 
+     * @return The token type, ignoring case (i.e. "buy").
+     */
+    public String getType();
+
+    /**
+     * Creates a new Sentence based on the given root node.
+     * 
+     * @param rootToken
+     *            The root node of the sentence's parse tree.
+     * @return The new Sentence.
+     */
+    public Sentence create(TreeView<ParseToken> rootToken);
+}
@@ -0,0 +1,166 @@
+package edu.hawaii.ctfoo.lang_generator.sentence;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.hawaii.ctfoo.lang_generator.ParseToken;
+import edu.hawaii.ctfoo.lang_generator.TokenType;
+import edu.hawaii.ctfoo.lang_generator.TreeView;
+import edu.hawaii.ctfoo.lang_generator.event.Events;
+import edu.hawaii.ctfoo.lang_generator.event.SentenceEvent;
+
+/**
+ * The {@link SentenceFactory}s used to create the {@link Sentence}s of the
+ * parse trees, keyed by the token type of the root nodes ignoring case. The
+ * buy, sell, findgroup and findmore factories are registered by default,
+ * followed by any factories found with the {@link ServiceLoader}. New sentence
+ * types may also be registered at any time.
+ * 
+ * @author Christopher Foo
+ * 
+ */
+public final class SentenceRegistry {
+
+    /**
+     * The registered factories keyed by their lower case token type.
+     */
+    private static final ConcurrentMap<String, SentenceFactory> factories = new ConcurrentHashMap<String, SentenceFactory>();
+
+    /**
+     * The buy, sell, findgroup and findmore factories registered by default.
+     */
+    private static final Collection<SentenceFactory> defaultFactories = new HashSet<SentenceFactory>();
+
+    static {
+        register(new SentenceFactory() {
+            @Override
+            public String getType() {
+                return TokenType.BUY.getName();
+            }
+
+            @Override
+            public Sentence create(TreeView<ParseToken> rootToken) {
+                return new BuySentence(rootToken);
+            }
+        });
+        register(new SentenceFactory() {
+            @Override
+            public String getType() {
+                return TokenType.SELL.getName();
+            }
+
+            @Override
+            public Sentence create(TreeView<ParseToken> rootToken) {
+                return new SellSentence(rootToken);
+            }
+        });
+        register(new SentenceFactory() {
+            @Override
+            public String getType() {
+                return TokenType.FINDGROUP.getName();
+            }
+
+            @Override
+            public Sentence create(TreeView<ParseToken> rootToken) {
+                return new FindGroupSentence(rootToken);
+            }
+        });
+        register(new SentenceFactory() {
+            @Override
+            public String getType() {
+                return TokenType.FINDMORE.getName();
+            }
+
+            @Override
+            public Sentence create(TreeView<ParseToken> rootToken) {
+                return new FindMoreSentence(rootToken);
+            }
+        });
+        defaultFactories.addAll(factories.values());
+
+        for (SentenceFactory factory : ServiceLoader.load(
+                SentenceFactory.class, SentenceRegistry.class.getClassLoader())) {
+            register(factory);
+        }
+    }
+
+    /**
+     * Prevents the SentenceRegistry from being instantiated.
+     */
+    private SentenceRegistry() {
+    }
+
+    /**
+     * Registers the given factory for its token type, replacing any factory
+     * that was registered for it before.
+     * 
+     * @param factory
+     *            The factory used to create the sentences.
+     */
+    public static void register(SentenceFactory factory) {
+        factories.put(factory.getType().toLowerCase(Locale.ENGLISH), factory);
+    }
+
+    /**
+     * Gets the factory registered for the type of the given token.
+     * 
+     * @param token
+     *            The root token of the sentence.
+     * @return The registered factory or null if there is none.
+     */
+    public static SentenceFactory getFactory(ParseToken token) {
+        String type;
+
+        // The names of the known types are already lower case
+        if (token.getTypeSymbol() != TokenType.UNKNOWN) {
+            type = token.getTypeSymbol().getName();
+        } else if (token.getType() != null) {
+            type = token.getType().toLowerCase(Locale.ENGLISH);
+        } else {
+            return null;
+        }
+        return factories.get(type);
+    }
+
+    /**
+     * Checks if the given factory is one of the buy, sell, findgroup and
+     * findmore factories registered by default.
+     * 
+     * @param factory
+     *            The factory.
+     * @return If the factory is a default one.
+     */
+    public static boolean isDefault(SentenceFactory factory) {
+        return defaultFactories.contains(factory);
+    }
+
+    /**
+     * Creates the Sentence for the given root node using the factory
+     * registered for its type, recorded as a {@link SentenceEvent}.
+     * 
+     * @param rootToken
+     *            The root node of the sentence's parse tree.
+     * @return The new Sentence or null if no factory is registered for its
+     *         type.
+     */
+    public static Sentence create(TreeView<ParseToken> rootToken) {
+        SentenceEvent event = null;
+        if (Events.isRecorderRunning()) {
+            event = new SentenceEvent();
+            event.begin();
+        }
+        SentenceFactory factory = getFactory(rootToken.getNode());
+        Sentence sentence = factory == null ? null : factory
+                .create(rootToken);
+        if (event != null && event.shouldCommit()) {
+            event.sentenceType = rootToken.getNode().getType();
+            event.error = sentence == null;
+            event.commit();
+        }
+        return sentence;
+    }
+}